@@ -36,6 +36,13 @@ android {
         viewBinding = true
     }
 
+    testOptions {
+        unitTests.all {
+            // ./gradlew test -Pbenchmark also runs the benchmarks
+            it.systemProperty("benchmark", project.hasProperty("benchmark"))
+        }
+    }
+
     packagingOptions {
         resources {
             excludes += listOf(
@@ -2,6 +2,9 @@ package com.example.saferun.app;
 
 import android.app.Application;
 
+import com.example.saferun.data.local.SensorDataStore;
+import com.example.saferun.ml.AnomalyDetectionModel;
+import com.example.saferun.ml.MLModelService;
 import com.google.firebase.FirebaseApp;
 
 // In your Application class or MainActivity
@@ -12,5 +15,14 @@ public class SafeRunApplication extends Application {
 
         // Initialize Firebase
         FirebaseApp.initializeApp(this);
+
+        // Open the on-device sensor history store
+        SensorDataStore.init(this);
+
+        // Load the on-device anomaly model
+        MLModelService.init(this);
+
+        // Install the configured local anomaly rules before any sample is checked
+        AnomalyDetectionModel.getInstance(this);
     }
 }
\ No newline at end of file
@@ -9,6 +9,7 @@ import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
 import com.google.firebase.firestore.ServerTimestamp;
 
@@ -98,31 +99,50 @@ public class FirestoreManager {
     }
 
     public void getUserById(String userId, UserCallback callback) {
-        db.collection(USERS_COLLECTION).document(userId)
-                .get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        User user = documentSnapshotToUser(documentSnapshot);
-                        callback.onUserLoaded(user);
-                    } else {
-                        callback.onError("User not found");
+        getUserById(userId, ReadPolicy.SERVER, callback);
+    }
+
+    public void getUserById(String userId, ReadPolicy policy, UserCallback callback) {
+        FirestoreReads.get(db.collection(USERS_COLLECTION).document(userId), policy,
+                new FirestoreReads.DocumentListener() {
+                    @Override
+                    public void onDocument(DocumentSnapshot documentSnapshot) {
+                        if (documentSnapshot.exists()) {
+                            User user = documentSnapshotToUser(documentSnapshot);
+                            callback.onUserLoaded(user);
+                        } else {
+                            callback.onError("User not found");
+                        }
                     }
-                })
-                .addOnFailureListener(e -> callback.onError(e.getMessage()));
+
+                    @Override
+                    public void onError(Exception e) {
+                        callback.onError(e.getMessage());
+                    }
+                });
     }
 
     public void getUsersByRole(String role, UsersCallback callback) {
-        db.collection(USERS_COLLECTION)
-                .whereEqualTo("role", role)
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<User> users = new ArrayList<>();
-                    for (DocumentSnapshot document : queryDocumentSnapshots) {
-                        users.add(documentSnapshotToUser(document));
+        getUsersByRole(role, ReadPolicy.SERVER, callback);
+    }
+
+    public void getUsersByRole(String role, ReadPolicy policy, UsersCallback callback) {
+        FirestoreReads.get(db.collection(USERS_COLLECTION).whereEqualTo("role", role), policy,
+                new FirestoreReads.QueryListener() {
+                    @Override
+                    public void onQuery(QuerySnapshot queryDocumentSnapshots) {
+                        List<User> users = new ArrayList<>();
+                        for (DocumentSnapshot document : queryDocumentSnapshots) {
+                            users.add(documentSnapshotToUser(document));
+                        }
+                        callback.onUsersLoaded(users);
                     }
-                    callback.onUsersLoaded(users);
-                })
-                .addOnFailureListener(e -> callback.onError(e.getMessage()));
+
+                    @Override
+                    public void onError(Exception e) {
+                        callback.onError(e.getMessage());
+                    }
+                });
     }
 
     public void updateUserField(String userId, String field, Object value, FirestoreCallback callback) {
@@ -165,45 +185,61 @@ public class FirestoreManager {
     }
 
     public void getTeamById(String teamId, TeamCallback callback) {
-        db.collection(TEAMS_COLLECTION).document(teamId)
-                .get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        Team team = documentSnapshotToTeam(documentSnapshot);
-                        callback.onTeamLoaded(team);
-                    } else {
-                        callback.onError("Team not found");
+        getTeamById(teamId, ReadPolicy.SERVER, callback);
+    }
+
+    public void getTeamById(String teamId, ReadPolicy policy, TeamCallback callback) {
+        FirestoreReads.get(db.collection(TEAMS_COLLECTION).document(teamId), policy,
+                new FirestoreReads.DocumentListener() {
+                    @Override
+                    public void onDocument(DocumentSnapshot documentSnapshot) {
+                        if (documentSnapshot.exists()) {
+                            Team team = documentSnapshotToTeam(documentSnapshot);
+                            callback.onTeamLoaded(team);
+                        } else {
+                            callback.onError("Team not found");
+                        }
                     }
-                })
-                .addOnFailureListener(e -> callback.onError(e.getMessage()));
+
+                    @Override
+                    public void onError(Exception e) {
+                        callback.onError(e.getMessage());
+                    }
+                });
     }
 
     public void getTeamsByCoach(String coachId, TeamsCallback callback) {
-        db.collection(TEAMS_COLLECTION)
-                .whereEqualTo("coachId", coachId)
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<Team> teams = new ArrayList<>();
-                    for (DocumentSnapshot document : queryDocumentSnapshots) {
-                        teams.add(documentSnapshotToTeam(document));
-                    }
-                    callback.onTeamsLoaded(teams);
-                })
-                .addOnFailureListener(e -> callback.onError(e.getMessage()));
+        getTeamsByCoach(coachId, ReadPolicy.SERVER, callback);
+    }
+
+    public void getTeamsByCoach(String coachId, ReadPolicy policy, TeamsCallback callback) {
+        getTeams(db.collection(TEAMS_COLLECTION).whereEqualTo("coachId", coachId), policy, callback);
     }
 
     public void getTeamsByAthlete(String athleteId, TeamsCallback callback) {
-        db.collection(TEAMS_COLLECTION)
-                .whereArrayContains("athleteIds", athleteId)
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<Team> teams = new ArrayList<>();
-                    for (DocumentSnapshot document : queryDocumentSnapshots) {
-                        teams.add(documentSnapshotToTeam(document));
-                    }
-                    callback.onTeamsLoaded(teams);
-                })
-                .addOnFailureListener(e -> callback.onError(e.getMessage()));
+        getTeamsByAthlete(athleteId, ReadPolicy.SERVER, callback);
+    }
+
+    public void getTeamsByAthlete(String athleteId, ReadPolicy policy, TeamsCallback callback) {
+        getTeams(db.collection(TEAMS_COLLECTION).whereArrayContains("athleteIds", athleteId), policy, callback);
+    }
+
+    private void getTeams(Query query, ReadPolicy policy, TeamsCallback callback) {
+        FirestoreReads.get(query, policy, new FirestoreReads.QueryListener() {
+            @Override
+            public void onQuery(QuerySnapshot queryDocumentSnapshots) {
+                List<Team> teams = new ArrayList<>();
+                for (DocumentSnapshot document : queryDocumentSnapshots) {
+                    teams.add(documentSnapshotToTeam(document));
+                }
+                callback.onTeamsLoaded(teams);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                callback.onError(e.getMessage());
+            }
+        });
     }
 
     public void addAthleteToTeam(String teamId, String athleteId, FirestoreCallback callback) {
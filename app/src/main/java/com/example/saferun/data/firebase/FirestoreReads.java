@@ -0,0 +1,184 @@
+package com.example.saferun.data.firebase;
+
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.MetadataChanges;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import java.util.List;
+
+/**
+ * One-time Firestore reads under a {@link ReadPolicy}
+ */
+public final class FirestoreReads {
+    private static final String TAG = "FirestoreReads";
+
+    public interface DocumentListener {
+        void onDocument(DocumentSnapshot snapshot);
+        void onError(Exception e);
+    }
+
+    public interface QueryListener {
+        void onQuery(QuerySnapshot snapshot);
+        void onError(Exception e);
+    }
+
+    private FirestoreReads() {
+    }
+
+    public static void get(DocumentReference reference, ReadPolicy policy, DocumentListener listener) {
+        switch (policy) {
+            case CACHE_ONLY:
+                reference.get(Source.CACHE)
+                        .addOnSuccessListener(listener::onDocument)
+                        .addOnFailureListener(listener::onError);
+                break;
+            case CACHE_THEN_SERVER:
+                listenUntilSynced(reference, listener);
+                break;
+            default:
+                reference.get()
+                        .addOnSuccessListener(listener::onDocument)
+                        .addOnFailureListener(listener::onError);
+                break;
+        }
+    }
+
+    public static void get(Query query, ReadPolicy policy, QueryListener listener) {
+        switch (policy) {
+            case CACHE_ONLY:
+                query.get(Source.CACHE)
+                        .addOnSuccessListener(listener::onQuery)
+                        .addOnFailureListener(listener::onError);
+                break;
+            case CACHE_THEN_SERVER:
+                listenUntilSynced(query, listener);
+                break;
+            default:
+                query.get()
+                        .addOnSuccessListener(listener::onQuery)
+                        .addOnFailureListener(listener::onError);
+                break;
+        }
+    }
+
+    /**
+     * CACHE_THEN_SERVER for a document. One snapshot listener delivers the cached copy and then
+     * confirms it with the server, instead of a cache read followed by a full server read; the
+     * listener is removed once the server has answered, and while offline waits for the connection.
+     * With nothing cached it is a plain server read.
+     */
+    private static void listenUntilSynced(DocumentReference reference, DocumentListener listener) {
+        ListenerRegistration[] registration = new ListenerRegistration[1];
+        DocumentSnapshot[] delivered = new DocumentSnapshot[1];
+        registration[0] = reference.addSnapshotListener(MetadataChanges.INCLUDE, (snapshot, e) -> {
+            if (e != null) {
+                registration[0].remove();
+                if (delivered[0] == null) {
+                    listener.onError(e);
+                } else {
+                    Log.w(TAG, "Server read failed, keeping cached " + reference.getPath(), e);
+                }
+                return;
+            }
+
+            if (snapshot.getMetadata().isFromCache()) {
+                if (delivered[0] == null) {
+                    if (snapshot.exists()) {
+                        delivered[0] = snapshot;
+                        listener.onDocument(snapshot);
+                    } else {
+                        registration[0].remove();
+                        reference.get(Source.SERVER)
+                                .addOnSuccessListener(listener::onDocument)
+                                .addOnFailureListener(listener::onError);
+                    }
+                }
+                return;
+            }
+
+            registration[0].remove();
+            if (delivered[0] == null || !sameDocument(delivered[0], snapshot)) {
+                listener.onDocument(snapshot);
+            }
+        });
+    }
+
+    /**
+     * CACHE_THEN_SERVER for a query, as for a document. When the listen resumes a recent sync of
+     * the query, Firestore only reads the documents that changed since.
+     */
+    private static void listenUntilSynced(Query query, QueryListener listener) {
+        ListenerRegistration[] registration = new ListenerRegistration[1];
+        QuerySnapshot[] delivered = new QuerySnapshot[1];
+        registration[0] = query.addSnapshotListener(MetadataChanges.INCLUDE, (snapshot, e) -> {
+            if (e != null) {
+                registration[0].remove();
+                if (delivered[0] == null) {
+                    listener.onError(e);
+                } else {
+                    Log.w(TAG, "Server query failed, keeping cached result", e);
+                }
+                return;
+            }
+
+            if (snapshot.getMetadata().isFromCache()) {
+                if (delivered[0] == null) {
+                    if (!snapshot.isEmpty()) {
+                        delivered[0] = snapshot;
+                        listener.onQuery(snapshot);
+                    } else {
+                        registration[0].remove();
+                        query.get(Source.SERVER)
+                                .addOnSuccessListener(listener::onQuery)
+                                .addOnFailureListener(listener::onError);
+                    }
+                }
+                return;
+            }
+
+            registration[0].remove();
+            if (delivered[0] == null || !sameDocuments(delivered[0].getDocuments(), snapshot.getDocuments())) {
+                listener.onQuery(snapshot);
+            }
+        });
+    }
+
+    /**
+     * Read a document that never changes once written: from the cache when it holds a copy,
+     * otherwise from the server. Only a cache miss costs a billed read.
+     */
+    public static Task<DocumentSnapshot> getImmutable(DocumentReference reference) {
+        return reference.get(Source.CACHE).continueWithTask(cacheTask -> {
+            if (cacheTask.isSuccessful() && cacheTask.getResult().exists()) {
+                return cacheTask;
+            }
+            return reference.get();
+        });
+    }
+
+    private static boolean sameDocument(DocumentSnapshot a, DocumentSnapshot b) {
+        if (a.exists() != b.exists()) {
+            return false;
+        }
+        return !a.exists() || a.getData().equals(b.getData());
+    }
+
+    private static boolean sameDocuments(List<DocumentSnapshot> a, List<DocumentSnapshot> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (!a.get(i).getId().equals(b.get(i).getId()) || !sameDocument(a.get(i), b.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
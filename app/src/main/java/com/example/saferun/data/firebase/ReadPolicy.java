@@ -0,0 +1,23 @@
+package com.example.saferun.data.firebase;
+
+/**
+ * Where a one-time Firestore read is answered from
+ */
+public enum ReadPolicy {
+    /**
+     * Firestore's local cache only; no network round trip and no billed reads.
+     * Fails when the cache has no copy of the document.
+     */
+    CACHE_ONLY,
+
+    /**
+     * The cached result first, when there is one, then the server result if it differs from it.
+     * Callbacks may therefore run twice and must be idempotent.
+     */
+    CACHE_THEN_SERVER,
+
+    /**
+     * The server, falling back to the cache while offline. The default for every read.
+     */
+    SERVER
+}
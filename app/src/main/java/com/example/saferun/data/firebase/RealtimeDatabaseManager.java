@@ -1,4 +1,166 @@
 package com.example.saferun.data.firebase;
 
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+
+/**
+ * Push-based access to the Realtime Database.
+ * Live sensor samples are streamed with a limitToLast(1) child listener,
+ * so each new sample is delivered once and history is never re-downloaded.
+ */
 public class RealtimeDatabaseManager {
+    private static final String TAG = "RealtimeDatabaseManager";
+
+    // Database paths
+    private static final String SENSOR_DATA_PATH = "sensor_data";
+
+    private final FirebaseDatabase database;
+    private static RealtimeDatabaseManager instance;
+
+    private RealtimeDatabaseManager() {
+        database = FirebaseDatabase.getInstance();
+    }
+
+    public static synchronized RealtimeDatabaseManager getInstance() {
+        if (instance == null) {
+            instance = new RealtimeDatabaseManager();
+        }
+        return instance;
+    }
+
+    public interface SnapshotStreamListener {
+        void onSnapshot(DataSnapshot snapshot);
+        void onError(String errorMessage);
+    }
+
+    /**
+     * Handle for an attached stream. Call {@link #remove()} to detach the listener.
+     */
+    public static class StreamRegistration {
+        private final Query query;
+        private final ChildEventListener listener;
+        private boolean removed = false;
+
+        StreamRegistration(Query query, ChildEventListener listener) {
+            this.query = query;
+            this.listener = listener;
+        }
+
+        public synchronized void remove() {
+            if (!removed) {
+                query.removeEventListener(listener);
+                removed = true;
+            }
+        }
+
+        public synchronized boolean isRemoved() {
+            return removed;
+        }
+    }
+
+    /**
+     * Root reference of the sensor data tree (sensor_data/{session}/{athlete}/{sample})
+     */
+    public DatabaseReference getSensorDataRef() {
+        return database.getReference(SENSOR_DATA_PATH);
+    }
+
+    /**
+     * Stream new sensor samples written under sensor_data/{sessionId}/{athleteId}.
+     * The listener first receives the current latest sample, then every sample appended
+     * afterwards, each exactly once.
+     */
+    public StreamRegistration streamSensorData(String sessionId, String athleteId,
+                                               SnapshotStreamListener listener) {
+        Query query = getSensorDataRef().child(sessionId).child(athleteId)
+                .orderByKey()
+                .limitToLast(1);
+
+        ChildEventListener childListener = new ChildEventListener() {
+            // Key of the last delivered sample; keys are push IDs or timestamps, both ordered
+            private String lastKey;
+
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                String key = snapshot.getKey();
+                if (key == null) {
+                    return;
+                }
+
+                // When the newest child is removed, limitToLast re-adds the previous one; skip it
+                if (lastKey != null && compareKeys(key, lastKey) <= 0) {
+                    return;
+                }
+
+                lastKey = key;
+                listener.onSnapshot(snapshot);
+            }
+
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                // Samples are immutable once written
+            }
+
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+                // Window eviction, nothing to do
+            }
+
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                // Ordering is by key, children never move
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Sensor stream cancelled: " + error.getMessage());
+                listener.onError("Database error: " + error.getMessage());
+            }
+        };
+
+        query.addChildEventListener(childListener);
+        Log.d(TAG, "Streaming sensor data for session: " + sessionId + ", athlete: " + athleteId);
+
+        return new StreamRegistration(query, childListener);
+    }
+
+    /**
+     * Compare two child keys the way the database orders them:
+     * integer-like keys numerically and before string keys, others lexicographically.
+     */
+    private static int compareKeys(String a, String b) {
+        boolean aNumeric = isNumericKey(a);
+        boolean bNumeric = isNumericKey(b);
+
+        if (aNumeric && bNumeric) {
+            return Long.compare(Long.parseLong(a), Long.parseLong(b));
+        } else if (aNumeric) {
+            return -1;
+        } else if (bNumeric) {
+            return 1;
+        }
+        return a.compareTo(b);
+    }
+
+    private static boolean isNumericKey(String key) {
+        if (key.isEmpty() || key.length() > 18) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,319 @@
+package com.example.saferun.data.local;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import com.example.saferun.data.model.SensorSeries;
+
+/**
+ * On-device time-series store for sensor history, keyed by (session, athlete).
+ * Samples live in one SQLite table whose primary key is (session, athlete, timestamp), so
+ * reads come back already sorted and re-inserting a sample is a no-op. A sync_state row per
+ * key holds the newest synced timestamp (the "timestamp > lastSeen" cursor) and whether the
+ * key is sealed, i.e. the session is completed and fully downloaded. Sealed keys can also hold
+ * the encoded {@link com.example.saferun.data.model.SensorPyramid} of their samples, so charts
+ * of a completed session don't need to read the samples at all. Each athlete also has an
+ * encoded {@link com.example.saferun.data.model.VitalsSketch} of every session folded into it,
+ * with one baseline_sessions row per folded session so none is counted twice.
+ *
+ * Calls do disk I/O and must not run on the main thread.
+ */
+public class SensorDataStore extends SQLiteOpenHelper {
+    private static final String TAG = "SensorDataStore";
+
+    private static final String DATABASE_NAME = "sensor_data.db";
+    private static final int DATABASE_VERSION = 3;
+
+    private static final String TABLE_SAMPLES = "sensor_samples";
+    private static final String TABLE_SYNC_STATE = "sync_state";
+    private static final String TABLE_PYRAMIDS = "sensor_pyramids";
+    private static final String TABLE_BASELINES = "athlete_baselines";
+    private static final String TABLE_BASELINE_SESSIONS = "baseline_sessions";
+
+    private static final String COLUMN_SESSION_ID = "session_id";
+    private static final String COLUMN_ATHLETE_ID = "athlete_id";
+    private static final String COLUMN_TIMESTAMP = "timestamp";
+    private static final String COLUMN_HEART_RATE = "heart_rate";
+    private static final String COLUMN_TEMPERATURE = "temperature";
+    private static final String COLUMN_SPEED = "speed";
+    private static final String COLUMN_ANOMALY = "anomaly";
+    private static final String COLUMN_LAST_TIMESTAMP = "last_timestamp";
+    private static final String COLUMN_SEALED = "sealed";
+    private static final String COLUMN_DATA = "data";
+
+    private static final String KEY_SELECTION = COLUMN_SESSION_ID + " = ? AND " + COLUMN_ATHLETE_ID + " = ?";
+
+    private static SensorDataStore instance;
+
+    /**
+     * Sync position of one (session, athlete) key
+     */
+    public static class SyncState {
+        private final long lastTimestamp;
+        private final boolean sealed;
+
+        SyncState(long lastTimestamp, boolean sealed) {
+            this.lastTimestamp = lastTimestamp;
+            this.sealed = sealed;
+        }
+
+        /**
+         * Newest stored timestamp, or 0 when nothing is stored yet
+         */
+        public long getLastTimestamp() {
+            return lastTimestamp;
+        }
+
+        /**
+         * Whether the key is complete locally and needs no network reads
+         */
+        public boolean isSealed() {
+            return sealed;
+        }
+    }
+
+    private SensorDataStore(Context context) {
+        super(context.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    /**
+     * Open the store. Called once from the Application.
+     */
+    public static synchronized void init(Context context) {
+        if (instance == null) {
+            instance = new SensorDataStore(context);
+        }
+    }
+
+    /**
+     * @return the store, or null when {@link #init(Context)} has not been called
+     */
+    public static synchronized SensorDataStore getInstance() {
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        createCacheTables(db);
+        createBaselineTables(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Samples, sync state and pyramids are a cache of Firestore, so they are simply rebuilt
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_SAMPLES);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_SYNC_STATE);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_PYRAMIDS);
+        createCacheTables(db);
+
+        // Baselines hold every session folded in so far and are kept; sessions downloaded again
+        // are recognized by baseline_sessions and not counted twice
+        if (oldVersion < 3) {
+            createBaselineTables(db);
+        }
+    }
+
+    private static void createCacheTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SAMPLES + " ("
+                + COLUMN_SESSION_ID + " TEXT NOT NULL, "
+                + COLUMN_ATHLETE_ID + " TEXT NOT NULL, "
+                + COLUMN_TIMESTAMP + " INTEGER NOT NULL, "
+                + COLUMN_HEART_RATE + " INTEGER NOT NULL, "
+                + COLUMN_TEMPERATURE + " REAL NOT NULL, "
+                + COLUMN_SPEED + " REAL NOT NULL, "
+                + COLUMN_ANOMALY + " INTEGER NOT NULL, "
+                + "PRIMARY KEY (" + COLUMN_SESSION_ID + ", " + COLUMN_ATHLETE_ID + ", " + COLUMN_TIMESTAMP + ")"
+                + ") WITHOUT ROWID");
+
+        db.execSQL("CREATE TABLE " + TABLE_SYNC_STATE + " ("
+                + COLUMN_SESSION_ID + " TEXT NOT NULL, "
+                + COLUMN_ATHLETE_ID + " TEXT NOT NULL, "
+                + COLUMN_LAST_TIMESTAMP + " INTEGER NOT NULL, "
+                + COLUMN_SEALED + " INTEGER NOT NULL, "
+                + "PRIMARY KEY (" + COLUMN_SESSION_ID + ", " + COLUMN_ATHLETE_ID + ")"
+                + ") WITHOUT ROWID");
+
+        db.execSQL("CREATE TABLE " + TABLE_PYRAMIDS + " ("
+                + COLUMN_SESSION_ID + " TEXT NOT NULL, "
+                + COLUMN_ATHLETE_ID + " TEXT NOT NULL, "
+                + COLUMN_DATA + " BLOB NOT NULL, "
+                + "PRIMARY KEY (" + COLUMN_SESSION_ID + ", " + COLUMN_ATHLETE_ID + ")"
+                + ")");
+    }
+
+    private static void createBaselineTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_BASELINES + " ("
+                + COLUMN_ATHLETE_ID + " TEXT PRIMARY KEY, "
+                + COLUMN_DATA + " BLOB NOT NULL"
+                + ")");
+
+        db.execSQL("CREATE TABLE " + TABLE_BASELINE_SESSIONS + " ("
+                + COLUMN_ATHLETE_ID + " TEXT NOT NULL, "
+                + COLUMN_SESSION_ID + " TEXT NOT NULL, "
+                + "PRIMARY KEY (" + COLUMN_ATHLETE_ID + ", " + COLUMN_SESSION_ID + ")"
+                + ") WITHOUT ROWID");
+    }
+
+    /**
+     * Read the sync position of a key. Returns an unsealed state at timestamp 0 for unknown keys.
+     */
+    public SyncState getSyncState(String sessionId, String athleteId) {
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_SYNC_STATE,
+                new String[]{COLUMN_LAST_TIMESTAMP, COLUMN_SEALED},
+                KEY_SELECTION, new String[]{sessionId, athleteId},
+                null, null, null)) {
+            if (cursor.moveToFirst()) {
+                return new SyncState(cursor.getLong(0), cursor.getInt(1) != 0);
+            }
+        }
+        return new SyncState(0L, false);
+    }
+
+    /**
+     * Read every stored sample of a key, sorted by ascending timestamp
+     */
+    public SensorSeries readSeries(String sessionId, String athleteId) {
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_SAMPLES,
+                new String[]{COLUMN_TIMESTAMP, COLUMN_HEART_RATE, COLUMN_TEMPERATURE, COLUMN_SPEED, COLUMN_ANOMALY},
+                KEY_SELECTION, new String[]{sessionId, athleteId},
+                null, null, COLUMN_TIMESTAMP + " ASC")) {
+            SensorSeries series = new SensorSeries(Math.max(1, cursor.getCount()));
+            while (cursor.moveToNext()) {
+                series.add(cursor.getLong(0), cursor.getInt(1), cursor.getDouble(2),
+                        cursor.getDouble(3), cursor.getInt(4) != 0);
+            }
+            return series;
+        }
+    }
+
+    /**
+     * Append samples to a key and advance its cursor in one transaction.
+     * Samples already stored (same timestamp) are ignored.
+     *
+     * @param seal mark the key complete, so later reads skip the network entirely
+     */
+    public void append(String sessionId, String athleteId, SensorSeries samples, boolean seal) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            SyncState state = getSyncState(sessionId, athleteId);
+            long lastTimestamp = state.getLastTimestamp();
+
+            SQLiteStatement insert = db.compileStatement("INSERT OR IGNORE INTO " + TABLE_SAMPLES + " ("
+                    + COLUMN_SESSION_ID + ", " + COLUMN_ATHLETE_ID + ", " + COLUMN_TIMESTAMP + ", "
+                    + COLUMN_HEART_RATE + ", " + COLUMN_TEMPERATURE + ", " + COLUMN_SPEED + ", "
+                    + COLUMN_ANOMALY + ") VALUES (?, ?, ?, ?, ?, ?, ?)");
+            try {
+                for (int i = 0; i < samples.size(); i++) {
+                    insert.bindString(1, sessionId);
+                    insert.bindString(2, athleteId);
+                    insert.bindLong(3, samples.getTimestamp(i));
+                    insert.bindLong(4, samples.getHeartRate(i));
+                    insert.bindDouble(5, samples.getTemperature(i));
+                    insert.bindDouble(6, samples.getSpeed(i));
+                    insert.bindLong(7, samples.isAnomaly(i) ? 1 : 0);
+                    insert.executeInsert();
+
+                    lastTimestamp = Math.max(lastTimestamp, samples.getTimestamp(i));
+                }
+            } finally {
+                insert.close();
+            }
+
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_SESSION_ID, sessionId);
+            values.put(COLUMN_ATHLETE_ID, athleteId);
+            values.put(COLUMN_LAST_TIMESTAMP, lastTimestamp);
+            values.put(COLUMN_SEALED, seal || state.isSealed() ? 1 : 0);
+            db.insertWithOnConflict(TABLE_SYNC_STATE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        Log.d(TAG, "Stored " + samples.size() + " samples for session: " + sessionId + ", athlete: " + athleteId
+                + (seal ? " (sealed)" : ""));
+    }
+
+    /**
+     * Read the encoded pyramid of a key, or null when none is stored
+     */
+    public byte[] readPyramid(String sessionId, String athleteId) {
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_PYRAMIDS, new String[]{COLUMN_DATA},
+                KEY_SELECTION, new String[]{sessionId, athleteId},
+                null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getBlob(0) : null;
+        }
+    }
+
+    /**
+     * Store the encoded pyramid of a key, replacing any previous one
+     */
+    public void writePyramid(String sessionId, String athleteId, byte[] data) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_SESSION_ID, sessionId);
+        values.put(COLUMN_ATHLETE_ID, athleteId);
+        values.put(COLUMN_DATA, data);
+        getWritableDatabase().insertWithOnConflict(TABLE_PYRAMIDS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+
+        Log.d(TAG, "Stored " + data.length + " byte pyramid for session: " + sessionId + ", athlete: " + athleteId);
+    }
+
+    /**
+     * Read the encoded vitals sketch of an athlete, or null when none is stored
+     */
+    public byte[] readBaseline(String athleteId) {
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_BASELINES, new String[]{COLUMN_DATA},
+                COLUMN_ATHLETE_ID + " = ?", new String[]{athleteId},
+                null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getBlob(0) : null;
+        }
+    }
+
+    /**
+     * Whether a session is already folded into an athlete's vitals sketch
+     */
+    public boolean hasBaselineSession(String athleteId, String sessionId) {
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_BASELINE_SESSIONS, new String[]{COLUMN_SESSION_ID},
+                KEY_SELECTION, new String[]{sessionId, athleteId},
+                null, null, null)) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    /**
+     * Store an athlete's vitals sketch after folding a session into it, in one transaction
+     */
+    public void writeBaseline(String athleteId, String sessionId, byte[] data) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_ATHLETE_ID, athleteId);
+            values.put(COLUMN_DATA, data);
+            db.insertWithOnConflict(TABLE_BASELINES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+
+            ContentValues session = new ContentValues();
+            session.put(COLUMN_ATHLETE_ID, athleteId);
+            session.put(COLUMN_SESSION_ID, sessionId);
+            db.insertWithOnConflict(TABLE_BASELINE_SESSIONS, null, session, SQLiteDatabase.CONFLICT_IGNORE);
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        Log.d(TAG, "Stored " + data.length + " byte baseline for athlete: " + athleteId + " after session: " + sessionId);
+    }
+}
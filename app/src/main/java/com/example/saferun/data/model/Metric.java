@@ -0,0 +1,16 @@
+package com.example.saferun.data.model;
+
+/**
+ * Ids of the vitals a sample carries, for per-metric arrays of statistics, sketches, rules
+ * and chart summaries.
+ */
+public final class Metric {
+
+    public static final int HEART_RATE = 0;
+    public static final int SPEED = 1;
+    public static final int TEMPERATURE = 2;
+    public static final int COUNT = 3;
+
+    private Metric() {
+    }
+}
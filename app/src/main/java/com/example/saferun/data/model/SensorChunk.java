@@ -0,0 +1,62 @@
+package com.example.saferun.data.model;
+
+import com.example.saferun.data.util.SensorChunkCodec;
+
+/**
+ * One encoded sensor_chunks document: every sample of one athlete within one minute of a session.
+ * Samples are encoded when the chunk is built, so queued chunks stay small.
+ */
+public class SensorChunk {
+    private final String sessionId;
+    private final String athleteId;
+    private final long startTime;
+    private final long endTime;
+    private final int count;
+    private final byte[] data;
+
+    private SensorChunk(String sessionId, String athleteId, long startTime, long endTime,
+                        int count, byte[] data) {
+        this.sessionId = sessionId;
+        this.athleteId = athleteId;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.count = count;
+        this.data = data;
+    }
+
+    /**
+     * Encode samples [from, to) of a sorted series; they must all fall into the same minute
+     */
+    public static SensorChunk encode(String sessionId, String athleteId, SensorSeries series, int from, int to) {
+        long startTime = SensorChunkCodec.chunkStart(series.getTimestamp(from));
+        if (SensorChunkCodec.chunkStart(series.getTimestamp(to - 1)) != startTime) {
+            throw new IllegalArgumentException("Samples span more than one chunk");
+        }
+        return new SensorChunk(sessionId, athleteId, startTime, series.getTimestamp(to - 1),
+                to - from, SensorChunkCodec.encode(series, from, to));
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getAthleteId() {
+        return athleteId;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+}
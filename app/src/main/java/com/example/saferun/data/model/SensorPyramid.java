@@ -0,0 +1,289 @@
+package com.example.saferun.data.model;
+
+import java.util.Arrays;
+
+/**
+ * Multi-resolution summary of one athlete's session: for each level of bucket duration
+ * (1 s, 10 s, 1 min, 5 min) the min, max and mean of every vital per bucket.
+ * A chart showing a time range reads the finest level that still fits its width, so zooming
+ * through a long session never touches the raw samples.
+ *
+ * Only buckets with at least one sample are kept. Invalid readings (heart rate or temperature
+ * of zero, negative speed) are left out of the aggregates; a bucket without any valid reading
+ * of a vital has a count of zero and NaN aggregates for it.
+ */
+public class SensorPyramid {
+
+    public static final long[] BUCKET_DURATIONS_MS = {1_000L, 10_000L, 60_000L, 300_000L};
+
+    private final Level[] levels;
+
+    /**
+     * Buckets of one duration, sorted by start time
+     */
+    public static class Level {
+        private final long bucketDuration;
+        private int size;
+        private long[] starts;
+        private final int[][] counts = new int[Metric.COUNT][];
+        private final float[][] mins = new float[Metric.COUNT][];
+        private final float[][] maxs = new float[Metric.COUNT][];
+        private final float[][] means = new float[Metric.COUNT][];
+
+        public Level(long bucketDuration, int capacity) {
+            this.bucketDuration = bucketDuration;
+            int initial = Math.max(1, capacity);
+            starts = new long[initial];
+            for (int metric = 0; metric < Metric.COUNT; metric++) {
+                counts[metric] = new int[initial];
+                mins[metric] = new float[initial];
+                maxs[metric] = new float[initial];
+                means[metric] = new float[initial];
+            }
+        }
+
+        public long getBucketDuration() {
+            return bucketDuration;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long getStart(int index) {
+            return starts[index];
+        }
+
+        public int getCount(int metric, int index) {
+            return counts[metric][index];
+        }
+
+        public float getMin(int metric, int index) {
+            return mins[metric][index];
+        }
+
+        public float getMax(int metric, int index) {
+            return maxs[metric][index];
+        }
+
+        public float getMean(int metric, int index) {
+            return means[metric][index];
+        }
+
+        /**
+         * Index of the first bucket ending after {@code time}, or size() if there is none
+         */
+        public int indexOf(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (starts[mid] + bucketDuration <= time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Append an empty bucket and return its index
+         */
+        public int addBucket(long start) {
+            if (size == starts.length) {
+                int capacity = Math.max(16, size * 2);
+                starts = Arrays.copyOf(starts, capacity);
+                for (int metric = 0; metric < Metric.COUNT; metric++) {
+                    counts[metric] = Arrays.copyOf(counts[metric], capacity);
+                    mins[metric] = Arrays.copyOf(mins[metric], capacity);
+                    maxs[metric] = Arrays.copyOf(maxs[metric], capacity);
+                    means[metric] = Arrays.copyOf(means[metric], capacity);
+                }
+            }
+            starts[size] = start;
+            for (int metric = 0; metric < Metric.COUNT; metric++) {
+                counts[metric][size] = 0;
+                mins[metric][size] = Float.NaN;
+                maxs[metric][size] = Float.NaN;
+                means[metric][size] = Float.NaN;
+            }
+            return size++;
+        }
+
+        /**
+         * Fold {@code count} readings with the given aggregates into a bucket of a metric
+         */
+        public void merge(int metric, int index, int count, float min, float max, float mean) {
+            if (count <= 0) {
+                return;
+            }
+            int total = counts[metric][index] + count;
+            if (counts[metric][index] == 0) {
+                mins[metric][index] = min;
+                maxs[metric][index] = max;
+                means[metric][index] = mean;
+            } else {
+                mins[metric][index] = Math.min(mins[metric][index], min);
+                maxs[metric][index] = Math.max(maxs[metric][index], max);
+                means[metric][index] += (mean - means[metric][index]) * count / total;
+            }
+            counts[metric][index] = total;
+        }
+
+        void trimToSize() {
+            starts = Arrays.copyOf(starts, size);
+            for (int metric = 0; metric < Metric.COUNT; metric++) {
+                counts[metric] = Arrays.copyOf(counts[metric], size);
+                mins[metric] = Arrays.copyOf(mins[metric], size);
+                maxs[metric] = Arrays.copyOf(maxs[metric], size);
+                means[metric] = Arrays.copyOf(means[metric], size);
+            }
+        }
+    }
+
+    public SensorPyramid(Level[] levels) {
+        this.levels = levels;
+    }
+
+    /**
+     * Build the pyramid of a series sorted by ascending timestamp.
+     * The finest level is built from the samples, every coarser level from the one below it.
+     */
+    public static SensorPyramid fromSeries(SensorSeries series) {
+        Level[] levels = new Level[BUCKET_DURATIONS_MS.length];
+
+        Level finest = new Level(BUCKET_DURATIONS_MS[0], series.size());
+        int bucket = -1;
+        for (int i = 0; i < series.size(); i++) {
+            long start = bucketStart(series.getTimestamp(i), finest.bucketDuration);
+            if (bucket < 0 || finest.starts[bucket] != start) {
+                if (bucket >= 0 && start < finest.starts[bucket]) {
+                    throw new IllegalArgumentException("Samples must be sorted by timestamp");
+                }
+                bucket = finest.addBucket(start);
+            }
+
+            int heartRate = series.getHeartRate(i);
+            if (heartRate > 0) {
+                finest.merge(Metric.HEART_RATE, bucket, 1, heartRate, heartRate, heartRate);
+            }
+            float speed = series.getSpeed(i);
+            if (speed >= 0) {
+                finest.merge(Metric.SPEED, bucket, 1, speed, speed, speed);
+            }
+            float temperature = series.getTemperature(i);
+            if (temperature > 0) {
+                finest.merge(Metric.TEMPERATURE, bucket, 1, temperature, temperature, temperature);
+            }
+        }
+        finest.trimToSize();
+        levels[0] = finest;
+
+        for (int level = 1; level < levels.length; level++) {
+            levels[level] = coarsen(levels[level - 1], BUCKET_DURATIONS_MS[level]);
+        }
+        return new SensorPyramid(levels);
+    }
+
+    private static Level coarsen(Level finer, long bucketDuration) {
+        long ratio = bucketDuration / finer.bucketDuration;
+        Level level = new Level(bucketDuration, (int) (finer.size / ratio) + 1);
+        int bucket = -1;
+        for (int i = 0; i < finer.size; i++) {
+            long start = bucketStart(finer.starts[i], bucketDuration);
+            if (bucket < 0 || level.starts[bucket] != start) {
+                bucket = level.addBucket(start);
+            }
+            for (int metric = 0; metric < Metric.COUNT; metric++) {
+                level.merge(metric, bucket, finer.counts[metric][i],
+                        finer.mins[metric][i], finer.maxs[metric][i], finer.means[metric][i]);
+            }
+        }
+        level.trimToSize();
+        return level;
+    }
+
+    private static long bucketStart(long timestamp, long bucketDuration) {
+        return timestamp - Math.floorMod(timestamp, bucketDuration);
+    }
+
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    public Level getLevel(int index) {
+        return levels[index];
+    }
+
+    public boolean isEmpty() {
+        return levels[0].size == 0;
+    }
+
+    public long getStartTime() {
+        return isEmpty() ? 0 : levels[0].starts[0];
+    }
+
+    public long getEndTime() {
+        Level finest = levels[0];
+        return isEmpty() ? 0 : finest.starts[finest.size - 1] + finest.bucketDuration;
+    }
+
+    /**
+     * Finest level with at most {@code maxBuckets} buckets over {@code rangeMs}; the coarsest
+     * level when none is coarse enough
+     */
+    public Level levelFor(long rangeMs, int maxBuckets) {
+        for (Level level : levels) {
+            if (rangeMs / level.bucketDuration <= maxBuckets) {
+                return level;
+            }
+        }
+        return levels[levels.length - 1];
+    }
+
+    /**
+     * Number of valid readings of a metric over the whole session
+     */
+    public int getCount(int metric) {
+        Level coarsest = levels[levels.length - 1];
+        int count = 0;
+        for (int i = 0; i < coarsest.size; i++) {
+            count += coarsest.counts[metric][i];
+        }
+        return count;
+    }
+
+    /**
+     * Mean of a metric over the whole session, 0 without valid readings
+     */
+    public double getMean(int metric) {
+        Level coarsest = levels[levels.length - 1];
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i < coarsest.size; i++) {
+            int bucketCount = coarsest.counts[metric][i];
+            if (bucketCount > 0) {
+                sum += (double) coarsest.means[metric][i] * bucketCount;
+                count += bucketCount;
+            }
+        }
+        return count > 0 ? sum / count : 0;
+    }
+
+    /**
+     * Maximum of a metric over the whole session, 0 without valid readings
+     */
+    public float getMax(int metric) {
+        Level coarsest = levels[levels.length - 1];
+        boolean found = false;
+        float max = 0;
+        for (int i = 0; i < coarsest.size; i++) {
+            if (coarsest.counts[metric][i] > 0 && (!found || coarsest.maxs[metric][i] > max)) {
+                max = coarsest.maxs[metric][i];
+                found = true;
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.saferun.data.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Columnar time series of sensor samples for one athlete.
+ * Stores each field in its own primitive array instead of one SensorData object per sample,
+ * which keeps history for many sessions small and makes aggregation loops cache-friendly.
+ */
+public class SensorSeries {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private long[] timestamps;
+    private short[] heartRates;
+    private float[] temperatures;
+    private float[] speeds;
+    private final BitSet anomalies = new BitSet();
+    private int size;
+
+    public SensorSeries() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SensorSeries(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        timestamps = new long[capacity];
+        heartRates = new short[capacity];
+        temperatures = new float[capacity];
+        speeds = new float[capacity];
+    }
+
+    /**
+     * Append a sample. Heart rate is clamped to the short range.
+     */
+    public void add(long timestamp, int heartRate, double temperature, double speed, boolean anomaly) {
+        ensureCapacity(size + 1);
+        timestamps[size] = timestamp;
+        heartRates[size] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, heartRate));
+        temperatures[size] = (float) temperature;
+        speeds[size] = (float) speed;
+        anomalies.set(size, anomaly);
+        size++;
+    }
+
+    public void add(SensorData data) {
+        add(data.getTimestamp(), data.getHeartRate(), data.getTemperature(), data.getSpeed(),
+                data.isAnomalyDetected());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[checkIndex(index)];
+    }
+
+    public int getHeartRate(int index) {
+        return heartRates[checkIndex(index)];
+    }
+
+    public float getTemperature(int index) {
+        return temperatures[checkIndex(index)];
+    }
+
+    public float getSpeed(int index) {
+        return speeds[checkIndex(index)];
+    }
+
+    public boolean isAnomaly(int index) {
+        return anomalies.get(checkIndex(index));
+    }
+
+    public void setAnomaly(int index, boolean anomaly) {
+        anomalies.set(checkIndex(index), anomaly);
+    }
+
+    public int getAnomalyCount() {
+        return anomalies.cardinality();
+    }
+
+    /**
+     * Whether at least one sample carries a real reading (any vital above zero)
+     */
+    public boolean hasReadings() {
+        for (int i = 0; i < size; i++) {
+            if (heartRates[i] > 0 || temperatures[i] > 0 || speeds[i] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Materialize one sample as a SensorData object, for code that still needs the boxed model
+     */
+    public SensorData toSensorData(int index) {
+        SensorData data = new SensorData(getTimestamp(index), getHeartRate(index),
+                getTemperature(index), getSpeed(index), null);
+        data.setAnomalyDetected(isAnomaly(index));
+        return data;
+    }
+
+    /**
+     * Sort samples by ascending timestamp. Already ascending or descending
+     * (as returned by history queries) series are handled in linear time.
+     */
+    public void sortByTimestamp() {
+        boolean ascending = true;
+        boolean descending = true;
+        for (int i = 1; i < size && (ascending || descending); i++) {
+            if (timestamps[i] < timestamps[i - 1]) {
+                ascending = false;
+            } else if (timestamps[i] > timestamps[i - 1]) {
+                descending = false;
+            }
+        }
+
+        if (ascending) {
+            return;
+        }
+        if (descending) {
+            reverse();
+            return;
+        }
+        heapSort();
+    }
+
+    public void reverse() {
+        for (int i = 0, j = size - 1; i < j; i++, j--) {
+            swap(i, j);
+        }
+    }
+
+    public void clear() {
+        size = 0;
+        anomalies.clear();
+    }
+
+    /**
+     * Drop every other sample, in place, to bound a series that keeps growing. Of each pair the
+     * sample whose heart rate is further from the last kept one stays, so spikes survive;
+     * a trailing unpaired sample stays.
+     */
+    public void halve() {
+        int kept = 0;
+        for (int i = 0; i < size; i += 2) {
+            int sample = i;
+            if (i + 1 < size && kept > 0 && Math.abs(heartRates[i + 1] - heartRates[kept - 1])
+                    > Math.abs(heartRates[i] - heartRates[kept - 1])) {
+                sample = i + 1;
+            }
+            timestamps[kept] = timestamps[sample];
+            heartRates[kept] = heartRates[sample];
+            temperatures[kept] = temperatures[sample];
+            speeds[kept] = speeds[sample];
+            anomalies.set(kept, anomalies.get(sample));
+            kept++;
+        }
+        anomalies.clear(kept, size);
+        size = kept;
+    }
+
+    /**
+     * Release unused capacity once loading is complete
+     */
+    public void trimToSize() {
+        if (timestamps.length > size) {
+            int capacity = Math.max(1, size);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            heartRates = Arrays.copyOf(heartRates, capacity);
+            temperatures = Arrays.copyOf(temperatures, capacity);
+            speeds = Arrays.copyOf(speeds, capacity);
+        }
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > timestamps.length) {
+            int capacity = Math.max(minCapacity, timestamps.length + (timestamps.length >> 1) + 1);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            heartRates = Arrays.copyOf(heartRates, capacity);
+            temperatures = Arrays.copyOf(temperatures, capacity);
+            speeds = Arrays.copyOf(speeds, capacity);
+        }
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return index;
+    }
+
+    private void heapSort() {
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i, size);
+        }
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+    }
+
+    private void siftDown(int root, int end) {
+        while (true) {
+            int child = 2 * root + 1;
+            if (child >= end) {
+                return;
+            }
+            if (child + 1 < end && timestamps[child + 1] > timestamps[child]) {
+                child++;
+            }
+            if (timestamps[root] >= timestamps[child]) {
+                return;
+            }
+            swap(root, child);
+            root = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        long t = timestamps[i];
+        timestamps[i] = timestamps[j];
+        timestamps[j] = t;
+
+        short hr = heartRates[i];
+        heartRates[i] = heartRates[j];
+        heartRates[j] = hr;
+
+        float temp = temperatures[i];
+        temperatures[i] = temperatures[j];
+        temperatures[j] = temp;
+
+        float speed = speeds[i];
+        speeds[i] = speeds[j];
+        speeds[j] = speed;
+
+        boolean anomaly = anomalies.get(i);
+        anomalies.set(i, anomalies.get(j));
+        anomalies.set(j, anomaly);
+    }
+}
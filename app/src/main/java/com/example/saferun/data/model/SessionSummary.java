@@ -0,0 +1,208 @@
+package com.example.saferun.data.model;
+
+/**
+ * Per-athlete aggregates of one run session, computed once when the session completes
+ * and stored at runSessions/{sessionId}/summaries/{athleteId}.
+ * Sums and valid-reading counts are kept rather than only averages, so summaries of
+ * several sessions can be combined exactly.
+ */
+public class SessionSummary {
+    private String sessionId;
+    private String athleteId;
+    private int sampleCount;
+    private int anomalyCount;
+    private long startTime;
+    private long endTime;
+
+    // Heart rate readings above zero
+    private int heartRateCount;
+    private double heartRateSum;
+    private int maxHeartRate;
+
+    // Speed readings of zero or more
+    private int speedCount;
+    private double speedSum;
+    private double maxSpeed;
+
+    // Temperature readings above zero
+    private int temperatureCount;
+    private double temperatureSum;
+
+    public SessionSummary() {
+        // Required empty constructor for Firebase
+    }
+
+    public SessionSummary(String sessionId, String athleteId) {
+        this.sessionId = sessionId;
+        this.athleteId = athleteId;
+    }
+
+    /**
+     * Aggregate a full session series
+     */
+    public static SessionSummary fromSeries(String sessionId, String athleteId, SensorSeries series) {
+        SessionSummary summary = new SessionSummary(sessionId, athleteId);
+        summary.sampleCount = series.size();
+        summary.anomalyCount = series.getAnomalyCount();
+
+        if (!series.isEmpty()) {
+            summary.startTime = series.getTimestamp(0);
+            summary.endTime = series.getTimestamp(series.size() - 1);
+        }
+
+        for (int i = 0; i < series.size(); i++) {
+            int heartRate = series.getHeartRate(i);
+            if (heartRate > 0) {
+                summary.heartRateSum += heartRate;
+                summary.heartRateCount++;
+                summary.maxHeartRate = Math.max(summary.maxHeartRate, heartRate);
+            }
+
+            double speed = series.getSpeed(i);
+            if (speed >= 0) {
+                summary.speedSum += speed;
+                summary.speedCount++;
+                summary.maxSpeed = Math.max(summary.maxSpeed, speed);
+            }
+
+            double temperature = series.getTemperature(i);
+            if (temperature > 0) {
+                summary.temperatureSum += temperature;
+                summary.temperatureCount++;
+            }
+        }
+
+        return summary;
+    }
+
+    /**
+     * Whether at least one vital was actually recorded
+     */
+    public boolean hasReadings() {
+        return heartRateCount > 0 || temperatureCount > 0 || maxSpeed > 0;
+    }
+
+    public double getAvgHeartRate() {
+        return heartRateCount > 0 ? heartRateSum / heartRateCount : 0;
+    }
+
+    public double getAvgSpeed() {
+        return speedCount > 0 ? speedSum / speedCount : 0;
+    }
+
+    public double getAvgTemperature() {
+        return temperatureCount > 0 ? temperatureSum / temperatureCount : 0;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getAthleteId() {
+        return athleteId;
+    }
+
+    public void setAthleteId(String athleteId) {
+        this.athleteId = athleteId;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public void setSampleCount(int sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+
+    public int getAnomalyCount() {
+        return anomalyCount;
+    }
+
+    public void setAnomalyCount(int anomalyCount) {
+        this.anomalyCount = anomalyCount;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(long endTime) {
+        this.endTime = endTime;
+    }
+
+    public int getHeartRateCount() {
+        return heartRateCount;
+    }
+
+    public void setHeartRateCount(int heartRateCount) {
+        this.heartRateCount = heartRateCount;
+    }
+
+    public double getHeartRateSum() {
+        return heartRateSum;
+    }
+
+    public void setHeartRateSum(double heartRateSum) {
+        this.heartRateSum = heartRateSum;
+    }
+
+    public int getMaxHeartRate() {
+        return maxHeartRate;
+    }
+
+    public void setMaxHeartRate(int maxHeartRate) {
+        this.maxHeartRate = maxHeartRate;
+    }
+
+    public int getSpeedCount() {
+        return speedCount;
+    }
+
+    public void setSpeedCount(int speedCount) {
+        this.speedCount = speedCount;
+    }
+
+    public double getSpeedSum() {
+        return speedSum;
+    }
+
+    public void setSpeedSum(double speedSum) {
+        this.speedSum = speedSum;
+    }
+
+    public double getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    public void setMaxSpeed(double maxSpeed) {
+        this.maxSpeed = maxSpeed;
+    }
+
+    public int getTemperatureCount() {
+        return temperatureCount;
+    }
+
+    public void setTemperatureCount(int temperatureCount) {
+        this.temperatureCount = temperatureCount;
+    }
+
+    public double getTemperatureSum() {
+        return temperatureSum;
+    }
+
+    public void setTemperatureSum(double temperatureSum) {
+        this.temperatureSum = temperatureSum;
+    }
+}
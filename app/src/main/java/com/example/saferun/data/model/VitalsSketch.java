@@ -0,0 +1,130 @@
+package com.example.saferun.data.model;
+
+/**
+ * Distribution of an athlete's vitals over all their sessions, for quantiles such as the
+ * 1st and 99.5th percentile. Vitals have a known range and resolution, so each metric is a
+ * fixed histogram at the resolution of its sensor (1 bpm, 0.25 km/h, 0.05 degrees): quantiles
+ * are exact to half a bin, adding a reading is O(1) and sketches of separate sessions merge by
+ * adding counts. Readings outside the range go to the first or last bin.
+ *
+ * Invalid readings (heart rate or temperature of zero, negative speed) are ignored, as in
+ * {@link SessionSummary}. Not thread-safe.
+ */
+public class VitalsSketch {
+
+    private static final double[] ORIGINS = new double[Metric.COUNT];
+    private static final double[] BIN_WIDTHS = new double[Metric.COUNT];
+    private static final int[] BIN_COUNTS = new int[Metric.COUNT];
+
+    static {
+        ORIGINS[Metric.HEART_RATE] = 0;
+        BIN_WIDTHS[Metric.HEART_RATE] = 1;
+        BIN_COUNTS[Metric.HEART_RATE] = 256;
+
+        ORIGINS[Metric.SPEED] = 0;
+        BIN_WIDTHS[Metric.SPEED] = 0.25;
+        BIN_COUNTS[Metric.SPEED] = 256;
+
+        ORIGINS[Metric.TEMPERATURE] = 30.0;
+        BIN_WIDTHS[Metric.TEMPERATURE] = 0.05;
+        BIN_COUNTS[Metric.TEMPERATURE] = 320;
+    }
+
+    private final int[][] bins = new int[Metric.COUNT][];
+    private final long[] counts = new long[Metric.COUNT];
+
+    public VitalsSketch() {
+        for (int metric = 0; metric < Metric.COUNT; metric++) {
+            bins[metric] = new int[BIN_COUNTS[metric]];
+        }
+    }
+
+    /**
+     * Number of bins of a metric
+     */
+    public static int getBinCount(int metric) {
+        return BIN_COUNTS[metric];
+    }
+
+    /**
+     * Value a bin of a metric stands for
+     */
+    public static double getBinValue(int metric, int bin) {
+        return ORIGINS[metric] + bin * BIN_WIDTHS[metric];
+    }
+
+    public void add(int heartRate, double temperature, double speed) {
+        if (heartRate > 0) {
+            addReading(Metric.HEART_RATE, heartRate);
+        }
+        if (speed >= 0) {
+            addReading(Metric.SPEED, speed);
+        }
+        if (temperature > 0) {
+            addReading(Metric.TEMPERATURE, temperature);
+        }
+    }
+
+    public void addAll(SensorSeries series) {
+        for (int i = 0; i < series.size(); i++) {
+            add(series.getHeartRate(i), series.getTemperature(i), series.getSpeed(i));
+        }
+    }
+
+    /**
+     * Add {@code count} readings to a bin, e.g. when decoding
+     */
+    public void addToBin(int metric, int bin, int count) {
+        bins[metric][bin] += count;
+        counts[metric] += count;
+    }
+
+    private void addReading(int metric, double value) {
+        long bin = Math.round((value - ORIGINS[metric]) / BIN_WIDTHS[metric]);
+        addToBin(metric, (int) Math.max(0, Math.min(BIN_COUNTS[metric] - 1, bin)), 1);
+    }
+
+    public void merge(VitalsSketch other) {
+        for (int metric = 0; metric < Metric.COUNT; metric++) {
+            for (int bin = 0; bin < BIN_COUNTS[metric]; bin++) {
+                bins[metric][bin] += other.bins[metric][bin];
+            }
+            counts[metric] += other.counts[metric];
+        }
+    }
+
+    /**
+     * Number of valid readings of a metric
+     */
+    public long getCount(int metric) {
+        return counts[metric];
+    }
+
+    /**
+     * Readings of a metric in a bin
+     */
+    public int getBin(int metric, int bin) {
+        return bins[metric][bin];
+    }
+
+    /**
+     * Value below which a share {@code q} of a metric's readings lie (nearest rank),
+     * NaN without readings
+     */
+    public double quantile(int metric, double q) {
+        long count = counts[metric];
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * count));
+        long seen = 0;
+        int[] metricBins = bins[metric];
+        for (int bin = 0; bin < metricBins.length; bin++) {
+            seen += metricBins[bin];
+            if (seen >= rank) {
+                return getBinValue(metric, bin);
+            }
+        }
+        return getBinValue(metric, metricBins.length - 1);
+    }
+}
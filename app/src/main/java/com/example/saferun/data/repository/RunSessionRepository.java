@@ -4,13 +4,23 @@ import android.util.Log;
 
 import com.example.saferun.data.firebase.FirebaseAuthManager;
 import com.example.saferun.data.firebase.FirestoreManager;
+import com.example.saferun.data.firebase.FirestoreReads;
+import com.example.saferun.data.firebase.ReadPolicy;
 import com.example.saferun.data.model.RunSession;
+import com.example.saferun.data.model.SensorSeries;
+import com.example.saferun.data.model.SessionSummary;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.WriteBatch;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -20,6 +30,7 @@ import java.util.UUID;
 public class RunSessionRepository {
     private static final String TAG = "RunSessionRepository";
     private static final String COLLECTION_RUN_SESSIONS = "runSessions";
+    private static final String COLLECTION_SUMMARIES = "summaries";
 
     private FirebaseAuthManager authManager;
     private FirebaseFirestore db;
@@ -52,6 +63,14 @@ public class RunSessionRepository {
         void onError(String errorMessage);
     }
 
+    public interface SessionSummariesCallback {
+        /**
+         * @param summaries session ID -> summary; sessions without any sensor data are left out
+         */
+        void onSuccess(Map<String, SessionSummary> summaries);
+        void onError(String errorMessage);
+    }
+
     public void createRunSession(String title, String description, long duration,
                                  double distance, Date date, List<String> athleteIds,
                                  RunSessionCallback callback) {
@@ -88,48 +107,50 @@ public class RunSessionRepository {
     }
 
     public void getRunSession(String sessionId, RunSessionCallback callback) {
-        db.collection(COLLECTION_RUN_SESSIONS).document(sessionId)
-                .get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        RunSession session = mapToRunSession(documentSnapshot);
-                        callback.onSuccess(session);
-                    } else {
-                        callback.onError("Run session not found");
+        getRunSession(sessionId, ReadPolicy.SERVER, callback);
+    }
+
+    public void getRunSession(String sessionId, ReadPolicy policy, RunSessionCallback callback) {
+        FirestoreReads.get(db.collection(COLLECTION_RUN_SESSIONS).document(sessionId), policy,
+                new FirestoreReads.DocumentListener() {
+                    @Override
+                    public void onDocument(DocumentSnapshot documentSnapshot) {
+                        if (documentSnapshot.exists()) {
+                            RunSession session = mapToRunSession(documentSnapshot);
+                            callback.onSuccess(session);
+                        } else {
+                            callback.onError("Run session not found");
+                        }
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        Log.e(TAG, "Error getting run session", e);
+                        callback.onError("Failed to get run session: " + e.getMessage());
                     }
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error getting run session", e);
-                    callback.onError("Failed to get run session: " + e.getMessage());
                 });
     }
 
     public void getRunSessionsByCoach(RunSessionsCallback callback) {
+        getRunSessionsByCoach(ReadPolicy.SERVER, callback);
+    }
+
+    public void getRunSessionsByCoach(ReadPolicy policy, RunSessionsCallback callback) {
         String coachId = authManager.getCurrentUserId();
         if (coachId == null) {
             callback.onError("You must be logged in to view sessions");
             return;
         }
 
-        db.collection(COLLECTION_RUN_SESSIONS)
-                .whereEqualTo("coachId", coachId)
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<RunSession> sessions = new ArrayList<>();
-                    for (DocumentSnapshot document : queryDocumentSnapshots.getDocuments()) {
-                        RunSession session = mapToRunSession(document);
-                        sessions.add(session);
-                    }
-                    callback.onSuccess(sessions);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error getting run sessions", e);
-                    callback.onError("Failed to get run sessions: " + e.getMessage());
-                });
+        getRunSessions(db.collection(COLLECTION_RUN_SESSIONS).whereEqualTo("coachId", coachId),
+                policy, callback);
     }
 
-    // Method in RunSessionRepository that needs to be fixed to properly fetch sessions for an athlete
     public void getRunSessionsByAthlete(String athleteId, RunSessionsCallback callback) {
+        getRunSessionsByAthlete(athleteId, ReadPolicy.SERVER, callback);
+    }
+
+    public void getRunSessionsByAthlete(String athleteId, ReadPolicy policy, RunSessionsCallback callback) {
         Log.d(TAG, "Getting run sessions for athlete ID: " + athleteId);
 
         if (athleteId == null || athleteId.isEmpty()) {
@@ -137,27 +158,29 @@ public class RunSessionRepository {
             return;
         }
 
-        // FIXED: Modified query to correctly search for athlete in athleteIds array
-        db.collection(COLLECTION_RUN_SESSIONS)
-                .whereArrayContains("athletes", athleteId)  // Use athletes list instead of athleteIds
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<RunSession> sessions = new ArrayList<>();
-                    Log.d(TAG, "Found " + queryDocumentSnapshots.size() + " sessions for athlete");
-
-                    for (DocumentSnapshot document : queryDocumentSnapshots.getDocuments()) {
-                        RunSession session = mapToRunSession(document);
-                        sessions.add(session);
-                        Log.d(TAG, "Added session: ID=" + session.getId() +
-                                ", Title=" + session.getTitle() +
-                                ", Status=" + session.getStatus());
-                    }
-                    callback.onSuccess(sessions);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error getting run sessions for athlete", e);
-                    callback.onError("Failed to get run sessions: " + e.getMessage());
-                });
+        getRunSessions(db.collection(COLLECTION_RUN_SESSIONS).whereArrayContains("athletes", athleteId),
+                policy, callback);
+    }
+
+    private void getRunSessions(Query query, ReadPolicy policy, RunSessionsCallback callback) {
+        FirestoreReads.get(query, policy, new FirestoreReads.QueryListener() {
+            @Override
+            public void onQuery(QuerySnapshot queryDocumentSnapshots) {
+                List<RunSession> sessions = new ArrayList<>();
+                for (DocumentSnapshot document : queryDocumentSnapshots.getDocuments()) {
+                    sessions.add(mapToRunSession(document));
+                }
+                Log.d(TAG, "Found " + sessions.size() + " sessions"
+                        + (queryDocumentSnapshots.getMetadata().isFromCache() ? " in cache" : ""));
+                callback.onSuccess(sessions);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Error getting run sessions", e);
+                callback.onError("Failed to get run sessions: " + e.getMessage());
+            }
+        });
     }
 
     public void updateSessionStatus(String sessionId, String status, OperationCallback callback) {
@@ -232,7 +255,199 @@ public class RunSessionRepository {
     }
 
     public void completeSession(String sessionId, OperationCallback callback) {
-        updateSessionStatus(sessionId, "completed", callback);
+        updateSessionStatus(sessionId, "completed", new OperationCallback() {
+            @Override
+            public void onSuccess() {
+                callback.onSuccess();
+
+                // Aggregate once now, so dashboards never have to scan the raw samples again
+                materializeSessionSummaries(sessionId);
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                callback.onError(errorMessage);
+            }
+        });
+    }
+
+    /**
+     * Compute per-athlete aggregates of a completed session from its sensor data and store them
+     * at runSessions/{sessionId}/summaries/{athleteId}. Loading the sealed data also adds it to
+     * each athlete's baseline for the local alert bands.
+     */
+    public void materializeSessionSummaries(String sessionId) {
+        getRunSession(sessionId, new RunSessionCallback() {
+            @Override
+            public void onSuccess(RunSession session) {
+                List<String> athleteIds = session.getAthletes();
+                if (athleteIds == null || athleteIds.isEmpty()) {
+                    return;
+                }
+
+                SensorDataRepository.getInstance().getSensorSeriesBatch(Collections.singletonList(session),
+                        athleteIds, new SensorDataRepository.SensorSeriesBatchCallback() {
+                            @Override
+                            public void onSuccess(Map<String, Map<String, SensorSeries>> seriesBySession) {
+                                Map<String, SensorSeries> byAthlete = seriesBySession.get(sessionId);
+                                WriteBatch batch = db.batch();
+
+                                for (String athleteId : athleteIds) {
+                                    SensorSeries series = byAthlete != null ? byAthlete.get(athleteId) : null;
+                                    SessionSummary summary = SessionSummary.fromSeries(sessionId, athleteId,
+                                            series != null ? series : new SensorSeries(1));
+                                    batch.set(summaryRef(sessionId, athleteId), summaryToMap(summary));
+                                }
+
+                                batch.commit()
+                                        .addOnSuccessListener(aVoid ->
+                                                Log.d(TAG, "Stored " + athleteIds.size() + " summaries for session: " + sessionId))
+                                        .addOnFailureListener(e ->
+                                                Log.e(TAG, "Error storing session summaries", e));
+                            }
+
+                            @Override
+                            public void onError(String errorMessage) {
+                                Log.e(TAG, "Could not load sensor data for summaries: " + errorMessage);
+                            }
+                        });
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                Log.e(TAG, "Could not load session for summaries: " + errorMessage);
+            }
+        });
+    }
+
+    /**
+     * Get an athlete's summary for each session, one small document read per completed session.
+     * Summaries never change once written, so they are served from Firestore's cache when it has them.
+     * Sessions without a stored summary (still running, or completed before summaries existed)
+     * are aggregated from their sensor data instead.
+     */
+    public void getSessionSummaries(List<RunSession> sessions, String athleteId, SessionSummariesCallback callback) {
+        List<RunSession> completedSessions = new ArrayList<>();
+        List<Task<DocumentSnapshot>> tasks = new ArrayList<>();
+        List<RunSession> missing = new ArrayList<>();
+        for (RunSession session : sessions) {
+            if (session == null || session.getId() == null || session.getId().isEmpty()) {
+                continue;
+            }
+            if (session.isCompleted()) {
+                completedSessions.add(session);
+                tasks.add(FirestoreReads.getImmutable(summaryRef(session.getId(), athleteId)));
+            } else {
+                missing.add(session);
+            }
+        }
+
+        Tasks.whenAllComplete(tasks).addOnCompleteListener(allDone -> {
+            Map<String, SessionSummary> summaries = new HashMap<>();
+
+            for (int i = 0; i < tasks.size(); i++) {
+                Task<DocumentSnapshot> task = tasks.get(i);
+                RunSession session = completedSessions.get(i);
+
+                if (task.isSuccessful() && task.getResult().exists()) {
+                    SessionSummary summary = mapToSummary(task.getResult());
+                    if (summary.getSampleCount() > 0) {
+                        summaries.put(session.getId(), summary);
+                    }
+                } else {
+                    missing.add(session);
+                }
+            }
+
+            if (missing.isEmpty()) {
+                callback.onSuccess(summaries);
+                return;
+            }
+
+            Log.d(TAG, "Aggregating " + missing.size() + " sessions without stored summaries");
+            SensorDataRepository.getInstance().getSensorSeriesBatch(missing, Collections.singletonList(athleteId),
+                    new SensorDataRepository.SensorSeriesBatchCallback() {
+                        @Override
+                        public void onSuccess(Map<String, Map<String, SensorSeries>> seriesBySession) {
+                            for (Map.Entry<String, Map<String, SensorSeries>> entry : seriesBySession.entrySet()) {
+                                SensorSeries series = entry.getValue().get(athleteId);
+                                if (series != null && !series.isEmpty()) {
+                                    summaries.put(entry.getKey(),
+                                            SessionSummary.fromSeries(entry.getKey(), athleteId, series));
+                                }
+                            }
+                            callback.onSuccess(summaries);
+                        }
+
+                        @Override
+                        public void onError(String errorMessage) {
+                            if (summaries.isEmpty()) {
+                                callback.onError(errorMessage);
+                            } else {
+                                callback.onSuccess(summaries);
+                            }
+                        }
+                    });
+        });
+    }
+
+    private DocumentReference summaryRef(String sessionId, String athleteId) {
+        return db.collection(COLLECTION_RUN_SESSIONS).document(sessionId)
+                .collection(COLLECTION_SUMMARIES).document(athleteId);
+    }
+
+    private Map<String, Object> summaryToMap(SessionSummary summary) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("sessionId", summary.getSessionId());
+        map.put("athleteId", summary.getAthleteId());
+        map.put("sampleCount", summary.getSampleCount());
+        map.put("anomalyCount", summary.getAnomalyCount());
+        map.put("startTime", summary.getStartTime());
+        map.put("endTime", summary.getEndTime());
+        map.put("heartRateCount", summary.getHeartRateCount());
+        map.put("heartRateSum", summary.getHeartRateSum());
+        map.put("maxHeartRate", summary.getMaxHeartRate());
+        map.put("speedCount", summary.getSpeedCount());
+        map.put("speedSum", summary.getSpeedSum());
+        map.put("maxSpeed", summary.getMaxSpeed());
+        map.put("temperatureCount", summary.getTemperatureCount());
+        map.put("temperatureSum", summary.getTemperatureSum());
+        // Convenience fields for readers that only need averages
+        map.put("avgHeartRate", summary.getAvgHeartRate());
+        map.put("avgSpeed", summary.getAvgSpeed());
+        map.put("avgTemperature", summary.getAvgTemperature());
+        return map;
+    }
+
+    private SessionSummary mapToSummary(DocumentSnapshot document) {
+        SessionSummary summary = new SessionSummary(document.getString("sessionId"), document.getString("athleteId"));
+        summary.setSampleCount(getInt(document, "sampleCount"));
+        summary.setAnomalyCount(getInt(document, "anomalyCount"));
+        summary.setStartTime(getLong(document, "startTime"));
+        summary.setEndTime(getLong(document, "endTime"));
+        summary.setHeartRateCount(getInt(document, "heartRateCount"));
+        summary.setHeartRateSum(getDouble(document, "heartRateSum"));
+        summary.setMaxHeartRate(getInt(document, "maxHeartRate"));
+        summary.setSpeedCount(getInt(document, "speedCount"));
+        summary.setSpeedSum(getDouble(document, "speedSum"));
+        summary.setMaxSpeed(getDouble(document, "maxSpeed"));
+        summary.setTemperatureCount(getInt(document, "temperatureCount"));
+        summary.setTemperatureSum(getDouble(document, "temperatureSum"));
+        return summary;
+    }
+
+    private static long getLong(DocumentSnapshot document, String field) {
+        Long value = document.getLong(field);
+        return value != null ? value : 0L;
+    }
+
+    private static int getInt(DocumentSnapshot document, String field) {
+        return (int) getLong(document, field);
+    }
+
+    private static double getDouble(DocumentSnapshot document, String field) {
+        Double value = document.getDouble(field);
+        return value != null ? value : 0.0;
     }
 
     private Map<String, Object> sessionToMap(RunSession session) {
@@ -1,39 +1,97 @@
 package com.example.saferun.data.repository;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import com.example.saferun.data.firebase.FirebaseAuthManager;
 import com.example.saferun.data.firebase.FirestoreManager;
+import com.example.saferun.data.firebase.FirestoreReads;
+import com.example.saferun.data.firebase.ReadPolicy;
+import com.example.saferun.data.firebase.RealtimeDatabaseManager;
+import com.example.saferun.data.local.SensorDataStore;
+import com.example.saferun.data.model.RunSession;
+import com.example.saferun.data.model.SensorChunk;
 import com.example.saferun.data.model.SensorData;
+import com.example.saferun.data.model.SensorPyramid;
+import com.example.saferun.data.model.SensorSeries;
+import com.example.saferun.data.util.DataConverter;
+import com.example.saferun.data.util.SensorChunkCodec;
+import com.example.saferun.data.util.SensorPyramidCodec;
+import com.example.saferun.ml.AnomalyDetectionModel;
 import com.example.saferun.ml.AnomalyPredictionClient;
+import com.example.saferun.ml.AthleteBaselines;
+import com.example.saferun.ml.AthleteWindowManager;
+import com.example.saferun.ml.DriftDetector;
+import com.example.saferun.ml.LocalRule;
+import com.example.saferun.ml.LocalRuleEngine;
+import com.example.saferun.ml.MLModelService;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskExecutors;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.database.Query;
 import com.google.firebase.database.ValueEventListener;
+import com.google.firebase.firestore.Blob;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.WriteBatch;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class SensorDataRepository {
     private static final String TAG = "SensorDataRepository";
+    private static final String COLLECTION_SENSOR_DATA = "sensor_data";
+    // Per-minute chunks of encoded samples, see SensorChunkCodec
+    private static final String COLLECTION_SENSOR_CHUNKS = "sensor_chunks";
+
+    // Maximum number of writes in one Firestore batch
+    public static final int MAX_BATCH_WRITES = 500;
+
+    // Maximum number of values in one Firestore whereIn filter
+    private static final int WHERE_IN_LIMIT = 30;
 
     private FirebaseAuthManager authManager;
     private DatabaseReference sensorDataRef;
     private static SensorDataRepository instance;
     private AnomalyPredictionClient predictionClient;
     private FirestoreManager firestoreManager;
+    private RealtimeDatabaseManager realtimeDatabaseManager;
     private FirebaseFirestore db;
 
+    // Local history store; disk work runs on storeExecutor, results are posted to the main thread
+    private final ExecutorService storeExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Recent samples per athlete: scored by the on-device model on every sample,
+    // by the prediction API every AthleteWindowManager.DEFAULT_STRIDE samples
+    private final AthleteWindowManager localWindows =
+            new AthleteWindowManager(AthleteWindowManager.DEFAULT_WINDOW_SIZE, 1);
+    private final AthleteWindowManager apiWindows = new AthleteWindowManager();
+    // Slow drifts per athlete, fed every sample and checked with the local thresholds
+    private final DriftDetector driftDetector = new DriftDetector();
+
     private SensorDataRepository() {
         authManager = FirebaseAuthManager.getInstance();
         firestoreManager = FirestoreManager.getInstance();
+        realtimeDatabaseManager = RealtimeDatabaseManager.getInstance();
+        sensorDataRef = realtimeDatabaseManager.getSensorDataRef();
+        predictionClient = AnomalyPredictionClient.getInstance();
         db = FirebaseFirestore.getInstance();
         Log.d(TAG, "Initialized SensorDataRepository");
     }
@@ -50,11 +108,70 @@ public class SensorDataRepository {
         void onError(String errorMessage);
     }
 
+    /**
+     * A sensor data callback that accepts a quick answer from the local rules when the ML
+     * verdict would exceed the latency budget
+     */
+    public interface ReconcilingSensorDataCallback extends SensorDataCallback {
+        /**
+         * The late ML verdict found an anomaly in a sample the local rules had passed; the
+         * sample is now flagged, so raise the alert
+         */
+        void onReconciled(SensorData sensorData);
+    }
+
     public interface SensorDataListCallback {
         void onSuccess(List<SensorData> sensorDataList);
         void onError(String errorMessage);
     }
 
+    public interface SensorSeriesCallback {
+        void onSuccess(SensorSeries series);
+        void onError(String errorMessage);
+    }
+
+    public interface SensorPyramidCallback {
+        void onSuccess(SensorPyramid pyramid);
+        void onError(String errorMessage);
+    }
+
+    public interface OperationCallback {
+        void onSuccess();
+        void onError(String errorMessage);
+    }
+
+    public interface SensorSeriesBatchCallback {
+        /**
+         * @param seriesBySession session ID -> athlete ID -> series; pairs without data are left out
+         */
+        void onSuccess(Map<String, Map<String, SensorSeries>> seriesBySession);
+        void onError(String errorMessage);
+    }
+
+    /**
+     * Receives sensor history page by page, in ascending timestamp order
+     */
+    public interface SensorSeriesPageConsumer {
+        void onPage(SensorSeries page);
+        void onComplete(int totalCount);
+        void onError(String errorMessage);
+    }
+
+    /**
+     * Handle for a running paged history read. Call {@link #cancel()} to stop requesting pages.
+     */
+    public static class PageStream {
+        private volatile boolean cancelled = false;
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
     /**
      * Get the latest sensor data for a specific athlete in a session
      */
@@ -86,28 +203,8 @@ public class SensorDataRepository {
                     // Create SensorData object
                     SensorData sensorData = createSensorDataFromSnapshot(dataSnapshot, sessionId, athleteId);
 
-                    // Check if data requires anomaly prediction
-                    if (!sensorData.isAnomalyDetected()) {
-                        // Use ML prediction API to detect anomalies
-                        detectAnomaliesWithML(sensorData, athleteId, new AnomalyPredictionClient.PredictionCallback() {
-                            @Override
-                            public void onSuccess(boolean isAnomaly) {
-                                sensorData.setAnomalyDetected(isAnomaly);
-                                callback.onSuccess(sensorData);
-                            }
-
-                            @Override
-                            public void onError(String errorMessage) {
-                                Log.e(TAG, "ML prediction failed: " + errorMessage);
-                                // Fall back to basic anomaly detection
-                                detectAnomaliesLocally(sensorData);
-                                callback.onSuccess(sensorData);
-                            }
-                        });
-                    } else {
-                        // If anomaly already detected, return as is
-                        callback.onSuccess(sensorData);
-                    }
+                    // Check for anomalies before returning
+                    detectAnomalies(sensorData, athleteId, callback);
 
                 } catch (Exception e) {
                     Log.e(TAG, "Error parsing sensor data directly: " + e.getMessage(), e);
@@ -137,30 +234,8 @@ public class SensorDataRepository {
                             if (latestData != null) {
                                 Log.d(TAG, "Found latest sensor data from child nodes");
 
-                                // Final data object to be returned
-                                final SensorData finalData = latestData;
-
                                 // Check for anomalies before returning
-                                if (!finalData.isAnomalyDetected()) {
-                                    // Use ML prediction API
-                                    detectAnomaliesWithML(finalData, athleteId, new AnomalyPredictionClient.PredictionCallback() {
-                                        @Override
-                                        public void onSuccess(boolean isAnomaly) {
-                                            finalData.setAnomalyDetected(isAnomaly);
-                                            callback.onSuccess(finalData);
-                                        }
-
-                                        @Override
-                                        public void onError(String errorMessage) {
-                                            Log.e(TAG, "ML prediction failed: " + errorMessage);
-                                            // Fall back to basic anomaly detection
-                                            detectAnomaliesLocally(finalData);
-                                            callback.onSuccess(finalData);
-                                        }
-                                    });
-                                } else {
-                                    callback.onSuccess(finalData);
-                                }
+                                detectAnomalies(latestData, athleteId, callback);
                                 return;
                             }
                         }
@@ -183,197 +258,905 @@ public class SensorDataRepository {
         });
     }
 
+    /**
+     * Stream sensor data for a specific athlete in a session as it is written.
+     * Replaces polling getLatestSensorData(): each new sample is pushed once and
+     * history is not re-downloaded. Call remove() on the returned registration to stop.
+     */
+    public RealtimeDatabaseManager.StreamRegistration observeSensorData(String sessionId, String athleteId,
+                                                                        SensorDataCallback callback) {
+        return observeRawSensorData(sessionId, athleteId, new SensorDataCallback() {
+            @Override
+            public void onSuccess(SensorData sensorData) {
+                detectAnomalies(sensorData, athleteId, callback);
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                callback.onError(errorMessage);
+            }
+        });
+    }
+
+    /**
+     * Stream decoded sensor samples without running anomaly detection.
+     * Used by the ingestion pipeline, which decodes once and fans out to its own consumers.
+     */
+    public RealtimeDatabaseManager.StreamRegistration observeRawSensorData(String sessionId, String athleteId,
+                                                                           SensorDataCallback callback) {
+        return realtimeDatabaseManager.streamSensorData(sessionId, athleteId,
+                new RealtimeDatabaseManager.SnapshotStreamListener() {
+                    @Override
+                    public void onSnapshot(DataSnapshot snapshot) {
+                        callback.onSuccess(createSensorDataFromSnapshot(snapshot, sessionId, athleteId));
+                    }
+
+                    @Override
+                    public void onError(String errorMessage) {
+                        callback.onError(errorMessage);
+                    }
+                });
+    }
+
+    /**
+     * Run anomaly detection on a sample unless it is already flagged, then hand it to the callback.
+     * Samples are judged in the context of the athlete's recent samples: by the on-device model on
+     * every sample when one is loaded, otherwise by the ML prediction API every few samples.
+     * The local rules are a floor under either verdict, and judge the samples in between and
+     * those whose API call fails on their own. A {@link ReconcilingSensorDataCallback} gets
+     * the local verdict if the API misses the latency budget, and the API verdict later.
+     */
+    public void detectAnomalies(SensorData sensorData, String athleteId, SensorDataCallback callback) {
+        int drift = driftDetector.update(athleteId, sensorData);
+        // Every sample is checked, in order, so rule durations see the whole stream
+        boolean localAnomaly = matchesLocalRules(athleteId, sensorData, drift);
+
+        if (sensorData.isAnomalyDetected()) {
+            // If anomaly already detected, return as is
+            callback.onSuccess(sensorData);
+            return;
+        }
+
+        MLModelService modelService = MLModelService.getInstance();
+        if (modelService.isModelLoaded()) {
+            Boolean isAnomaly = localWindows.offer(athleteId, sensorData, modelService::predict);
+            // A replayed sample isn't added to the window, judge it on its own
+            boolean modelAnomaly = isAnomaly != null ? isAnomaly : modelService.predict(sensorData);
+            sensorData.setAnomalyDetected(modelAnomaly || localAnomaly);
+            callback.onSuccess(sensorData);
+            return;
+        }
+
+        // Use ML prediction API to detect anomalies, one window per stride, batched across athletes
+        Boolean submitted = apiWindows.offer(athleteId, sensorData, (temperature, speed, heartRate, offset, count) -> {
+            AnomalyDetectionModel.AnomalyCallback verdict = verdictCallback(sensorData, localAnomaly, callback);
+            detectAnomaliesWithML(athleteId, temperature, speed, heartRate, offset, count,
+                    new AnomalyPredictionClient.PredictionCallback() {
+                        @Override
+                        public void onSuccess(boolean isAnomaly) {
+                            verdict.onDetectionComplete(isAnomaly || localAnomaly, "ML API");
+                        }
+
+                        @Override
+                        public void onError(String errorMessage) {
+                            Log.e(TAG, "ML prediction failed: " + errorMessage);
+                            // Fall back to basic anomaly detection
+                            verdict.onDetectionComplete(localAnomaly, "Local rules (API fallback)");
+                        }
+                    });
+            return Boolean.TRUE;
+        });
+
+        if (submitted == null) {
+            sensorData.setAnomalyDetected(localAnomaly);
+            callback.onSuccess(sensorData);
+        }
+    }
+
+    /**
+     * Where an API verdict for a sample goes: straight to the callback, or through the latency
+     * deadline of {@link AnomalyDetectionModel} when the callback can take a reconciliation
+     */
+    private AnomalyDetectionModel.AnomalyCallback verdictCallback(SensorData sensorData, boolean localAnomaly,
+                                                                  SensorDataCallback callback) {
+        AnomalyDetectionModel model = AnomalyDetectionModel.getInstance();
+        if (!(callback instanceof ReconcilingSensorDataCallback) || model == null) {
+            return (isAnomaly, source) -> {
+                sensorData.setAnomalyDetected(isAnomaly);
+                callback.onSuccess(sensorData);
+            };
+        }
+
+        ReconcilingSensorDataCallback reconciling = (ReconcilingSensorDataCallback) callback;
+        return model.startDeadline(localAnomaly, new AnomalyDetectionModel.ReconcilingCallback() {
+            @Override
+            public void onDetectionComplete(boolean isAnomaly, String source) {
+                sensorData.setAnomalyDetected(isAnomaly);
+                reconciling.onSuccess(sensorData);
+            }
+
+            @Override
+            public void onReconciled(boolean isAnomaly, String source) {
+                Log.d(TAG, "Late verdict from " + source + " for athlete: " + sensorData.getAthleteId()
+                        + ", anomaly " + isAnomaly);
+                sensorData.setAnomalyDetected(isAnomaly);
+                reconciling.onReconciled(sensorData);
+            }
+        });
+    }
+
     /**
      * Create a SensorData object from a DataSnapshot, handling various data formats
      */
     private SensorData createSensorDataFromSnapshot(DataSnapshot snapshot, String sessionId, String athleteId) {
-        SensorData sensorData = new SensorData();
-        sensorData.setSessionId(sessionId);
-        sensorData.setAthleteId(athleteId);
-
-        // Default values
-        sensorData.setHeartRate(0);
-        sensorData.setTemperature(0.0);
-        sensorData.setSpeed(0.0);
-        sensorData.setTimestamp(System.currentTimeMillis());
-        sensorData.setStatus("active");
-        sensorData.setAnomalyDetected(false);
-
-        try {
-            // Try to read timestamp directly from key
-            String timestampKey = snapshot.getKey();
-            if (timestampKey != null) {
-                try {
-                    // Some implementations store timestamp as key
-                    sensorData.setTimestamp(Long.parseLong(timestampKey));
-                    Log.d(TAG, "Using timestamp from key: " + timestampKey);
-                } catch (NumberFormatException e) {
-                    // Not a numeric timestamp key, try to read from value
-                    if (snapshot.hasChild("timestamp")) {
-                        Object timeValue = snapshot.child("timestamp").getValue();
-                        if (timeValue instanceof Number) {
-                            sensorData.setTimestamp(((Number) timeValue).longValue());
-                            Log.d(TAG, "Using timestamp from value: " + sensorData.getTimestamp());
+        return DataConverter.decodeSensorData(snapshot.getKey(), snapshot.getValue(), sessionId, athleteId);
+    }
+
+    /**
+     * Get sensor data history for a specific athlete in a session
+     */
+    // Modifications to SensorDataRepository.java to handle Firestore structure properly
+
+    /**
+     * Get sensor data history for a specific athlete in a session
+     */
+    // Method in SensorDataRepository that only retrieves real data from Firebase
+    // Modified getSensorDataHistory method for SensorDataRepository.java
+    public void getSensorDataHistory(String sessionId, String athleteId, int limit, SensorDataListCallback callback) {
+        getSensorDataHistory(sessionId, athleteId, limit, ReadPolicy.SERVER, callback);
+    }
+
+    /**
+     * Same as {@link #getSensorDataHistory(String, String, int, SensorDataListCallback)} under a read policy.
+     * Firestore may hold only part of the queried samples, so a cached answer can be incomplete;
+     * pair CACHE_ONLY with sessions whose samples were read before.
+     */
+    public void getSensorDataHistory(String sessionId, String athleteId, int limit, ReadPolicy policy,
+                                     SensorDataListCallback callback) {
+        Log.d(TAG, "Getting sensor data history for session: " + sessionId + ", athlete: " + athleteId);
+
+        // Build a query for the 'sensor_data' collection
+        // filtered by session_id and athlete_id fields
+        com.google.firebase.firestore.Query query = db.collection(COLLECTION_SENSOR_DATA)
+                .whereEqualTo("session_id", sessionId)
+                .whereEqualTo("athlete_id", athleteId)
+                .orderBy("timestamp", com.google.firebase.firestore.Query.Direction.DESCENDING)
+                .limit(limit);
+
+        FirestoreReads.get(query, policy, new FirestoreReads.QueryListener() {
+            @Override
+            public void onQuery(QuerySnapshot queryDocumentSnapshots) {
+                if (queryDocumentSnapshots != null && !queryDocumentSnapshots.isEmpty()) {
+                    List<SensorData> dataList = new ArrayList<>();
+
+                    for (DocumentSnapshot document : queryDocumentSnapshots.getDocuments()) {
+                        SensorData sensorData = new SensorData();
+
+                        // Extract fields directly from the document
+                        if (document.contains("heart_rate")) {
+                            Long heartRate = document.getLong("heart_rate");
+                            sensorData.setHeartRate(heartRate != null ? heartRate.intValue() : 0);
+                        }
+
+                        if (document.contains("temperature")) {
+                            Double temperature = document.getDouble("temperature");
+                            sensorData.setTemperature(temperature != null ? temperature : 0.0);
                         }
+
+                        if (document.contains("speed")) {
+                            Double speed = document.getDouble("speed");
+                            sensorData.setSpeed(speed != null ? speed : 0.0);
+                        }
+
+                        if (document.contains("timestamp")) {
+                            Long timestamp = document.getLong("timestamp");
+                            sensorData.setTimestamp(timestamp != null ? timestamp : 0L);
+                        }
+
+                        if (document.contains("anomaly_detected")) {
+                            Boolean anomalyDetected = document.getBoolean("anomaly_detected");
+                            sensorData.setAnomalyDetected(anomalyDetected != null ? anomalyDetected : false);
+                        }
+
+                        sensorData.setSessionId(sessionId);
+                        sensorData.setAthleteId(athleteId);
+
+                        dataList.add(sensorData);
                     }
+
+                    Log.d(TAG, "Retrieved " + dataList.size() + " sensor data points");
+                    callback.onSuccess(dataList);
+                } else {
+                    Log.w(TAG, "No sensor data found for session:" + sessionId + ", athlete:" + athleteId);
+                    callback.onError("No sensor data found for this athlete and session");
                 }
             }
 
-            // Try to read fields directly from the snapshot
-            if (snapshot.hasChild("heart_rate")) {
-                Object heartRateValue = snapshot.child("heart_rate").getValue();
-                if (heartRateValue instanceof Number) {
-                    sensorData.setHeartRate(((Number) heartRateValue).intValue());
-                    Log.d(TAG, "Found heart rate: " + sensorData.getHeartRate());
-                }
-            } else if (snapshot.hasChild("heartRate")) {
-                // Try alternative field name
-                Object heartRateValue = snapshot.child("heartRate").getValue();
-                if (heartRateValue instanceof Number) {
-                    sensorData.setHeartRate(((Number) heartRateValue).intValue());
-                    Log.d(TAG, "Found heart rate (alternative field): " + sensorData.getHeartRate());
-                }
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Error getting sensor data", e);
+                callback.onError("Error getting sensor data: " + e.getMessage());
             }
+        });
+    }
 
-            if (snapshot.hasChild("temperature")) {
-                Object tempValue = snapshot.child("temperature").getValue();
-                if (tempValue instanceof Number) {
-                    sensorData.setTemperature(((Number) tempValue).doubleValue());
-                    Log.d(TAG, "Found temperature: " + sensorData.getTemperature());
-                }
+    /**
+     * Get sensor data history for a specific athlete in a session as a columnar series,
+     * sorted by ascending timestamp. Preferred over getSensorDataHistory() for analytics
+     * since no per-sample objects are allocated.
+     */
+    public void getSensorSeries(String sessionId, String athleteId, int limit, SensorSeriesCallback callback) {
+        getSensorSeries(sessionId, athleteId, limit, false, callback);
+    }
+
+    /**
+     * Get the full sensor history of an athlete in a session from the on-device store,
+     * downloading only samples newer than the last synced timestamp, {@code pageSize} per query.
+     * Once a completed session has been fully downloaded it is served from disk with no network reads.
+     * When the network fails, whatever is stored locally is returned.
+     *
+     * @param sessionCompleted whether the session has ended, so its history can no longer grow
+     */
+    public void getSensorSeries(String sessionId, String athleteId, int pageSize, boolean sessionCompleted,
+                                SensorSeriesCallback callback) {
+        SensorDataStore store = SensorDataStore.getInstance();
+        if (store == null) {
+            // No local store (e.g. not initialized), query Firestore directly
+            fetchSensorSeries(sessionId, athleteId, pageSize, callback);
+            return;
+        }
+
+        storeExecutor.execute(() -> {
+            SensorDataStore.SyncState state = store.getSyncState(sessionId, athleteId);
+            if (state.isSealed()) {
+                deliverStoredSeries(store, sessionId, athleteId, callback);
+                return;
             }
+            syncSensorSeries(store, sessionId, athleteId, state.getLastTimestamp(), pageSize, sessionCompleted, callback);
+        });
+    }
+
+    /**
+     * Get the level-of-detail pyramid of an athlete's history in a session, for zoomable charts.
+     * A completed session keeps its pyramid in the on-device store once built, so reopening it
+     * reads a few kilobytes instead of every sample. Otherwise the series is loaded as in
+     * {@link #getSensorSeries(String, String, int, boolean, SensorSeriesCallback)} and reduced to
+     * its pyramid off the main thread; the samples themselves are not kept.
+     */
+    public void getSensorPyramid(String sessionId, String athleteId, int pageSize, boolean sessionCompleted,
+                                 SensorPyramidCallback callback) {
+        SensorDataStore store = SensorDataStore.getInstance();
+        if (store == null) {
+            getSensorSeries(sessionId, athleteId, pageSize, sessionCompleted, new PyramidBuilder(null,
+                    sessionId, athleteId, false, callback));
+            return;
+        }
 
-            if (snapshot.hasChild("speed")) {
-                Object speedValue = snapshot.child("speed").getValue();
-                if (speedValue instanceof Number) {
-                    sensorData.setSpeed(((Number) speedValue).doubleValue());
-                    Log.d(TAG, "Found speed: " + sensorData.getSpeed());
+        storeExecutor.execute(() -> {
+            if (store.getSyncState(sessionId, athleteId).isSealed()) {
+                byte[] data = store.readPyramid(sessionId, athleteId);
+                if (data != null) {
+                    try {
+                        SensorPyramid pyramid = SensorPyramidCodec.decode(data);
+                        mainHandler.post(() -> callback.onSuccess(pyramid));
+                        return;
+                    } catch (IllegalArgumentException e) {
+                        Log.e(TAG, "Corrupt pyramid for session: " + sessionId + ", rebuilding", e);
+                    }
                 }
             }
+            getSensorSeries(sessionId, athleteId, pageSize, sessionCompleted, new PyramidBuilder(store,
+                    sessionId, athleteId, sessionCompleted, callback));
+        });
+    }
+
+    /**
+     * Reduces a loaded series to its pyramid on storeExecutor, storing it when the session is complete
+     */
+    private class PyramidBuilder implements SensorSeriesCallback {
+        private final SensorDataStore store;
+        private final String sessionId;
+        private final String athleteId;
+        private final boolean persist;
+        private final SensorPyramidCallback callback;
 
-            if (snapshot.hasChild("status")) {
-                Object statusValue = snapshot.child("status").getValue();
-                if (statusValue != null) {
-                    sensorData.setStatus(statusValue.toString());
+        PyramidBuilder(SensorDataStore store, String sessionId, String athleteId, boolean persist,
+                       SensorPyramidCallback callback) {
+            this.store = store;
+            this.sessionId = sessionId;
+            this.athleteId = athleteId;
+            this.persist = persist;
+            this.callback = callback;
+        }
+
+        @Override
+        public void onSuccess(SensorSeries series) {
+            storeExecutor.execute(() -> {
+                SensorPyramid pyramid = SensorPyramid.fromSeries(series);
+                if (persist && store.getSyncState(sessionId, athleteId).isSealed()) {
+                    store.writePyramid(sessionId, athleteId, SensorPyramidCodec.encode(pyramid));
                 }
+                mainHandler.post(() -> callback.onSuccess(pyramid));
+            });
+        }
+
+        @Override
+        public void onError(String errorMessage) {
+            callback.onError(errorMessage);
+        }
+    }
+
+    /**
+     * Download samples newer than {@code lastTimestamp} into the store, then deliver the stored series.
+     * Chunked sessions are read from sensor_chunks; sessions stored one document per sample
+     * fall back to paging through sensor_data. Disk writes run on storeExecutor.
+     */
+    private void syncSensorSeries(SensorDataStore store, String sessionId, String athleteId, long lastTimestamp,
+                                  int pageSize, boolean sessionCompleted, SensorSeriesCallback callback) {
+        chunkQuery(sessionId, athleteId, lastTimestamp)
+                .get()
+                .addOnSuccessListener(storeExecutor, queryDocumentSnapshots -> {
+                    if (queryDocumentSnapshots.isEmpty()) {
+                        syncSampleDocuments(store, sessionId, athleteId, lastTimestamp, pageSize,
+                                sessionCompleted, callback);
+                        return;
+                    }
+
+                    SensorSeries samples = decodeChunks(queryDocumentSnapshots.getDocuments(), lastTimestamp);
+                    store.append(sessionId, athleteId, samples, sessionCompleted);
+                    deliverStoredSeries(store, sessionId, athleteId, callback);
+                })
+                .addOnFailureListener(storeExecutor, e -> {
+                    Log.e(TAG, "Error syncing sensor chunks, using local copy", e);
+                    deliverLocalCopy(store, sessionId, athleteId, "Error getting sensor data: " + e.getMessage(),
+                            callback);
+                });
+    }
+
+    /**
+     * Page through per-sample sensor_data documents newer than {@code lastTimestamp} into the store
+     */
+    private void syncSampleDocuments(SensorDataStore store, String sessionId, String athleteId, long lastTimestamp,
+                                     int pageSize, boolean sessionCompleted, SensorSeriesCallback callback) {
+        walkSensorData(sessionId, athleteId, lastTimestamp, pageSize, storeExecutor, null, 0, new PageStream(),
+                new SensorSeriesPageConsumer() {
+                    @Override
+                    public void onPage(SensorSeries page) {
+                        store.append(sessionId, athleteId, page, false);
+                    }
+
+                    @Override
+                    public void onComplete(int totalCount) {
+                        if (sessionCompleted) {
+                            // Nothing newer can be written, never query this key again
+                            store.append(sessionId, athleteId, new SensorSeries(1), true);
+                        }
+                        deliverStoredSeries(store, sessionId, athleteId, callback);
+                    }
+
+                    @Override
+                    public void onError(String errorMessage) {
+                        Log.e(TAG, "Error syncing sensor data, using local copy: " + errorMessage);
+                        deliverLocalCopy(store, sessionId, athleteId, errorMessage, callback);
+                    }
+                });
+    }
+
+    /**
+     * After a failed sync, deliver whatever is stored, or the error when nothing is
+     */
+    private void deliverLocalCopy(SensorDataStore store, String sessionId, String athleteId, String errorMessage,
+                                  SensorSeriesCallback callback) {
+        SensorSeries series = store.readSeries(sessionId, athleteId);
+        mainHandler.post(() -> {
+            if (series.isEmpty()) {
+                callback.onError(errorMessage);
+            } else {
+                callback.onSuccess(series);
             }
+        });
+    }
 
-            if (snapshot.hasChild("anomaly_detected")) {
-                Object anomalyValue = snapshot.child("anomaly_detected").getValue();
-                if (anomalyValue instanceof Boolean) {
-                    sensorData.setAnomalyDetected((Boolean) anomalyValue);
-                }
-            } else if (snapshot.hasChild("anomalyDetected")) {
-                // Try alternative field name
-                Object anomalyValue = snapshot.child("anomalyDetected").getValue();
-                if (anomalyValue instanceof Boolean) {
-                    sensorData.setAnomalyDetected((Boolean) anomalyValue);
-                }
+    /**
+     * Stream the full sensor history of an athlete in a session, about {@code pageSize} samples at a
+     * time, in ascending timestamp order. Each page is handed to the consumer on the main thread as soon
+     * as it arrives, so callers can render progressively; sessions of any length are read completely.
+     * Chunked sessions are read from sensor_chunks, others from sensor_data.
+     */
+    public PageStream streamSensorDataHistory(String sessionId, String athleteId, int pageSize,
+                                              SensorSeriesPageConsumer consumer) {
+        PageStream stream = new PageStream();
+        walkSensorChunks(sessionId, athleteId, 0L, pageSize, TaskExecutors.MAIN_THREAD, null, 0, stream, consumer);
+        return stream;
+    }
+
+    /**
+     * Like {@link #walkSensorData} over the chunks of a key, a page of chunks holding about
+     * {@code pageSize} samples at a time. Falls back to sensor_data when the key has no chunks.
+     */
+    private void walkSensorChunks(String sessionId, String athleteId, long afterTimestamp, int pageSize,
+                                  Executor executor, DocumentSnapshot lastChunk, int deliveredCount,
+                                  PageStream stream, SensorSeriesPageConsumer consumer) {
+        // Chunks hold a minute of samples, about 60 at one per second
+        int chunksPerPage = Math.max(1, pageSize / 60);
+        com.google.firebase.firestore.Query query = chunkQuery(sessionId, athleteId, afterTimestamp);
+        if (lastChunk != null) {
+            query = query.startAfter(lastChunk);
+        }
+
+        query.limit(chunksPerPage)
+                .get()
+                .addOnSuccessListener(executor, queryDocumentSnapshots -> {
+                    if (stream.isCancelled()) {
+                        return;
+                    }
+
+                    List<DocumentSnapshot> documents = queryDocumentSnapshots.getDocuments();
+                    if (documents.isEmpty() && lastChunk == null) {
+                        // Stored one document per sample
+                        walkSensorData(sessionId, athleteId, afterTimestamp, pageSize, executor, null, 0,
+                                stream, consumer);
+                        return;
+                    }
+
+                    SensorSeries page = decodeChunks(documents, afterTimestamp);
+                    int total = deliveredCount + page.size();
+                    if (!page.isEmpty()) {
+                        consumer.onPage(page);
+                    }
+
+                    if (documents.size() < chunksPerPage || stream.isCancelled()) {
+                        Log.d(TAG, "Streamed " + total + " chunked sensor data points for session: " + sessionId);
+                        consumer.onComplete(total);
+                    } else {
+                        walkSensorChunks(sessionId, athleteId, afterTimestamp, pageSize, executor,
+                                documents.get(documents.size() - 1), total, stream, consumer);
+                    }
+                })
+                .addOnFailureListener(executor, e -> {
+                    Log.e(TAG, "Error getting sensor chunk page", e);
+                    if (!stream.isCancelled()) {
+                        consumer.onError("Error getting sensor data: " + e.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Query one page of samples newer than {@code afterTimestamp}, continuing after {@code lastDocument},
+     * then request the next page until a short page marks the end.
+     * Consumer methods run on {@code executor}.
+     */
+    private void walkSensorData(String sessionId, String athleteId, long afterTimestamp, int pageSize,
+                                Executor executor, DocumentSnapshot lastDocument, int deliveredCount,
+                                PageStream stream, SensorSeriesPageConsumer consumer) {
+        com.google.firebase.firestore.Query query = db.collection(COLLECTION_SENSOR_DATA)
+                .whereEqualTo("session_id", sessionId)
+                .whereEqualTo("athlete_id", athleteId)
+                .whereGreaterThan("timestamp", afterTimestamp)
+                .orderBy("timestamp", com.google.firebase.firestore.Query.Direction.ASCENDING);
+        if (lastDocument != null) {
+            query = query.startAfter(lastDocument);
+        }
+
+        query.limit(pageSize)
+                .get()
+                .addOnSuccessListener(executor, queryDocumentSnapshots -> {
+                    if (stream.isCancelled()) {
+                        return;
+                    }
+
+                    List<DocumentSnapshot> documents = queryDocumentSnapshots.getDocuments();
+                    int total = deliveredCount + documents.size();
+
+                    if (!documents.isEmpty()) {
+                        SensorSeries page = new SensorSeries(documents.size());
+                        for (DocumentSnapshot document : documents) {
+                            appendDocument(page, document);
+                        }
+                        consumer.onPage(page);
+                    }
+
+                    if (documents.size() < pageSize || stream.isCancelled()) {
+                        Log.d(TAG, "Streamed " + total + " sensor data points for session: " + sessionId);
+                        consumer.onComplete(total);
+                    } else {
+                        walkSensorData(sessionId, athleteId, afterTimestamp, pageSize, executor,
+                                documents.get(documents.size() - 1), total, stream, consumer);
+                    }
+                })
+                .addOnFailureListener(executor, e -> {
+                    Log.e(TAG, "Error getting sensor data page", e);
+                    if (!stream.isCancelled()) {
+                        consumer.onError("Error getting sensor data: " + e.getMessage());
+                    }
+                });
+    }
+
+    private void deliverStoredSeries(SensorDataStore store, String sessionId, String athleteId,
+                                     SensorSeriesCallback callback) {
+        SensorSeries series = store.readSeries(sessionId, athleteId);
+        Log.d(TAG, "Loaded " + series.size() + " stored sensor data points for session: " + sessionId);
+        if (store.getSyncState(sessionId, athleteId).isSealed()) {
+            foldIntoBaseline(sessionId, athleteId, series);
+        }
+
+        mainHandler.post(() -> {
+            if (series.isEmpty()) {
+                Log.w(TAG, "No sensor data found for session:" + sessionId + ", athlete:" + athleteId);
+                callback.onError("No sensor data found for this athlete and session");
+            } else {
+                callback.onSuccess(series);
             }
+        });
+    }
 
-            // If the snapshot itself is a Map, try to extract values directly
-            if (snapshot.getValue() instanceof Map) {
-                Map<String, Object> valueMap = (Map<String, Object>) snapshot.getValue();
+    /**
+     * Load the sensor history of several athletes across several sessions in a handful of queries.
+     * Sessions already complete in the local store are read from disk. The others are queried in
+     * whereIn chunks of session and athlete IDs, all chunks running concurrently, and stored for next time.
+     * Series are sorted by ascending timestamp. The callback runs on the main thread.
+     */
+    public void getSensorSeriesBatch(Collection<RunSession> sessions, Collection<String> athleteIds,
+                                     SensorSeriesBatchCallback callback) {
+        Set<String> athletes = new HashSet<>(athleteIds);
+        Map<String, RunSession> sessionsById = new LinkedHashMap<>();
+        for (RunSession session : sessions) {
+            if (session != null && session.getId() != null && !session.getId().isEmpty()) {
+                sessionsById.put(session.getId(), session);
+            }
+        }
 
-                // Log all keys for debugging
-                Log.d(TAG, "Map keys: " + valueMap.keySet());
+        if (sessionsById.isEmpty() || athletes.isEmpty()) {
+            mainHandler.post(() -> callback.onSuccess(new HashMap<>()));
+            return;
+        }
 
-                // Check all possible field names for heart rate
-                for (String key : new String[]{"heart_rate", "heartRate", "heart-rate", "heartrate"}) {
-                    if (valueMap.containsKey(key) && valueMap.get(key) instanceof Number) {
-                        sensorData.setHeartRate(((Number) valueMap.get(key)).intValue());
-                        Log.d(TAG, "Found heart rate from map with key '" + key + "': " + sensorData.getHeartRate());
-                        break;
+        SensorDataStore store = SensorDataStore.getInstance();
+        storeExecutor.execute(() -> {
+            Map<String, Map<String, SensorSeries>> result = new HashMap<>();
+            List<String> toFetch = new ArrayList<>();
+
+            for (String sessionId : sessionsById.keySet()) {
+                if (store != null && isSealed(store, sessionId, athletes)) {
+                    for (String athleteId : athletes) {
+                        SensorSeries series = store.readSeries(sessionId, athleteId);
+                        foldIntoBaseline(sessionId, athleteId, series);
+                        putSeries(result, sessionId, athleteId, series);
                     }
+                } else {
+                    toFetch.add(sessionId);
                 }
+            }
+
+            if (toFetch.isEmpty()) {
+                Log.d(TAG, "Loaded " + sessionsById.size() + " sessions from local store");
+                mainHandler.post(() -> callback.onSuccess(result));
+                return;
+            }
+
+            // Per group of sessions and athletes, one query for chunked data and one for per-sample
+            // documents, all groups in flight at once. Firestore allows WHERE_IN_LIMIT combinations
+            // of the two whereIn lists per query, so wide athlete groups get narrow session groups.
+            List<String> athleteList = new ArrayList<>(athletes);
+            int athleteGroupSize = athleteGroupSize(toFetch.size(), athleteList.size());
+            int sessionGroupSize = WHERE_IN_LIMIT / athleteGroupSize;
 
-                // Check all possible field names for temperature
-                for (String key : new String[]{"temperature", "temp", "bodyTemp", "body_temp"}) {
-                    if (valueMap.containsKey(key) && valueMap.get(key) instanceof Number) {
-                        sensorData.setTemperature(((Number) valueMap.get(key)).doubleValue());
-                        Log.d(TAG, "Found temperature from map with key '" + key + "': " + sensorData.getTemperature());
-                        break;
+            List<List<String>> sessionGroups = new ArrayList<>();
+            List<List<String>> athleteGroups = new ArrayList<>();
+            List<Task<QuerySnapshot>> sampleTasks = new ArrayList<>();
+            List<Task<QuerySnapshot>> chunkTasks = new ArrayList<>();
+            for (int i = 0; i < toFetch.size(); i += sessionGroupSize) {
+                List<String> group = toFetch.subList(i, Math.min(i + sessionGroupSize, toFetch.size()));
+                for (int a = 0; a < athleteList.size(); a += athleteGroupSize) {
+                    List<String> athleteGroup = athleteList.subList(a, Math.min(a + athleteGroupSize,
+                            athleteList.size()));
+                    com.google.firebase.firestore.Query sampleQuery = db.collection(COLLECTION_SENSOR_DATA)
+                            .whereIn("session_id", group);
+                    com.google.firebase.firestore.Query chunkQuery = db.collection(COLLECTION_SENSOR_CHUNKS)
+                            .whereIn("session_id", group);
+                    if (athleteGroup.size() == 1) {
+                        sampleQuery = sampleQuery.whereEqualTo("athlete_id", athleteGroup.get(0));
+                        chunkQuery = chunkQuery.whereEqualTo("athlete_id", athleteGroup.get(0));
+                    } else {
+                        sampleQuery = sampleQuery.whereIn("athlete_id", athleteGroup);
+                        chunkQuery = chunkQuery.whereIn("athlete_id", athleteGroup);
                     }
+                    sessionGroups.add(group);
+                    athleteGroups.add(athleteGroup);
+                    sampleTasks.add(sampleQuery.get());
+                    chunkTasks.add(chunkQuery.get());
                 }
+            }
+
+            List<Task<QuerySnapshot>> tasks = new ArrayList<>(sampleTasks);
+            tasks.addAll(chunkTasks);
+
+            Tasks.whenAllComplete(tasks).addOnCompleteListener(storeExecutor, allDone -> {
+                String errorMessage = null;
+
+                for (int g = 0; g < sessionGroups.size(); g++) {
+                    Task<QuerySnapshot> sampleTask = sampleTasks.get(g);
+                    Task<QuerySnapshot> chunkTask = chunkTasks.get(g);
+                    List<String> group = sessionGroups.get(g);
+                    List<String> athleteGroup = athleteGroups.get(g);
+
+                    if (!sampleTask.isSuccessful() || !chunkTask.isSuccessful()) {
+                        Exception e = sampleTask.isSuccessful() ? chunkTask.getException() : sampleTask.getException();
+                        Log.e(TAG, "Error getting sensor data batch, using local copy", e);
+                        errorMessage = "Error getting sensor data: " + (e != null ? e.getMessage() : "unknown error");
 
-                // Check all possible field names for speed
-                for (String key : new String[]{"speed", "velocity"}) {
-                    if (valueMap.containsKey(key) && valueMap.get(key) instanceof Number) {
-                        sensorData.setSpeed(((Number) valueMap.get(key)).doubleValue());
-                        Log.d(TAG, "Found speed from map with key '" + key + "': " + sensorData.getSpeed());
-                        break;
+                        if (store != null) {
+                            for (String sessionId : group) {
+                                for (String athleteId : athleteGroup) {
+                                    putSeries(result, sessionId, athleteId, store.readSeries(sessionId, athleteId));
+                                }
+                            }
+                        }
+                        continue;
+                    }
+
+                    Map<String, Map<String, SensorSeries>> fetched = new HashMap<>();
+                    groupDocuments(sampleTask.getResult(), athletes, fetched);
+                    groupDocuments(chunkTask.getResult(), athletes, fetched);
+
+                    for (String sessionId : group) {
+                        boolean completed = sessionsById.get(sessionId).isCompleted();
+                        Map<String, SensorSeries> byAthlete = fetched.get(sessionId);
+
+                        for (String athleteId : athleteGroup) {
+                            SensorSeries series = byAthlete != null ? byAthlete.get(athleteId) : null;
+                            if (series == null) {
+                                series = new SensorSeries(1);
+                            }
+                            series.sortByTimestamp();
+
+                            // Completed sessions were fetched in full, seal them so they are never queried again
+                            if (store != null) {
+                                store.append(sessionId, athleteId, series, completed);
+                            }
+                            if (completed) {
+                                foldIntoBaseline(sessionId, athleteId, series);
+                            }
+                            putSeries(result, sessionId, athleteId, series);
+                        }
                     }
                 }
+
+                Log.d(TAG, "Loaded sensor data for " + result.size() + " of " + sessionsById.size()
+                        + " sessions with " + tasks.size() + " queries");
+
+                String error = errorMessage;
+                mainHandler.post(() -> {
+                    if (result.isEmpty() && error != null) {
+                        callback.onError(error);
+                    } else {
+                        callback.onSuccess(result);
+                    }
+                });
+            });
+        });
+    }
+
+    /**
+     * Add the full series of a completed session to the athlete's alert baseline. Called wherever
+     * a sealed key is read or written; sessions already in the baseline are skipped.
+     */
+    private static void foldIntoBaseline(String sessionId, String athleteId, SensorSeries series) {
+        if (!series.isEmpty()) {
+            AthleteBaselines.getInstance().addSession(sessionId, athleteId, series);
+        }
+    }
+
+    /**
+     * Athletes per batch query that need the fewest queries, with as many sessions per query as
+     * the whereIn limit leaves room for
+     */
+    private static int athleteGroupSize(int sessionCount, int athleteCount) {
+        int best = 1;
+        int bestQueries = Integer.MAX_VALUE;
+        for (int size = 1; size <= Math.min(athleteCount, WHERE_IN_LIMIT); size++) {
+            int sessionGroupSize = WHERE_IN_LIMIT / size;
+            int queries = ((sessionCount + sessionGroupSize - 1) / sessionGroupSize)
+                    * ((athleteCount + size - 1) / size);
+            if (queries < bestQueries) {
+                best = size;
+                bestQueries = queries;
+            }
+        }
+        return best;
+    }
+
+    private static boolean isSealed(SensorDataStore store, String sessionId, Set<String> athleteIds) {
+        for (String athleteId : athleteIds) {
+            if (!store.getSyncState(sessionId, athleteId).isSealed()) {
+                return false;
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Error while parsing sensor data fields: " + e.getMessage(), e);
         }
+        return true;
+    }
 
-        return sensorData;
+    private static void putSeries(Map<String, Map<String, SensorSeries>> result, String sessionId,
+                                  String athleteId, SensorSeries series) {
+        if (series.isEmpty()) {
+            return;
+        }
+        Map<String, SensorSeries> byAthlete = result.get(sessionId);
+        if (byAthlete == null) {
+            byAthlete = new HashMap<>();
+            result.put(sessionId, byAthlete);
+        }
+        byAthlete.put(athleteId, series);
     }
 
     /**
-     * Get sensor data history for a specific athlete in a session
+     * Group the documents of a batch query by session and athlete, skipping athletes not asked for.
+     * Handles both per-sample documents and encoded chunks.
      */
-    // Modifications to SensorDataRepository.java to handle Firestore structure properly
+    private void groupDocuments(QuerySnapshot snapshot, Set<String> athleteIds,
+                                Map<String, Map<String, SensorSeries>> grouped) {
+        for (DocumentSnapshot document : snapshot.getDocuments()) {
+            String sessionId = document.getString("session_id");
+            String athleteId = document.getString("athlete_id");
+            if (sessionId == null || athleteId == null || !athleteIds.contains(athleteId)) {
+                continue;
+            }
+
+            Map<String, SensorSeries> byAthlete = grouped.get(sessionId);
+            if (byAthlete == null) {
+                byAthlete = new HashMap<>();
+                grouped.put(sessionId, byAthlete);
+            }
+            SensorSeries series = byAthlete.get(athleteId);
+            if (series == null) {
+                series = new SensorSeries();
+                byAthlete.put(athleteId, series);
+            }
+
+            Blob chunk = document.getBlob("data");
+            if (chunk != null) {
+                SensorChunkCodec.decode(chunk.toBytes(), series);
+            } else {
+                appendDocument(series, document);
+            }
+        }
+    }
 
     /**
-     * Get sensor data history for a specific athlete in a session
+     * Write samples of one athlete as per-minute chunk documents in sensor_chunks.
+     * Each chunk document is written whole, so {@code series} must hold every sample of
+     * each minute it touches; writing a minute again replaces its chunk.
      */
-    // Method in SensorDataRepository that only retrieves real data from Firebase
-    // Modified getSensorDataHistory method for SensorDataRepository.java
-    public void getSensorDataHistory(String sessionId, String athleteId, int limit, SensorDataListCallback callback) {
-        Log.d(TAG, "Getting sensor data history for session: " + sessionId + ", athlete: " + athleteId);
+    public void writeSensorChunks(String sessionId, String athleteId, SensorSeries series,
+                                  OperationCallback callback) {
+        series.sortByTimestamp();
 
-        // Build a query for the 'sensor_data' collection
-        // filtered by session_id and athlete_id fields
-        db.collection("sensor_data")
-                .whereEqualTo("session_id", sessionId)
-                .whereEqualTo("athlete_id", athleteId)
-                .orderBy("timestamp", com.google.firebase.firestore.Query.Direction.DESCENDING)
-                .limit(limit)
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    if (queryDocumentSnapshots != null && !queryDocumentSnapshots.isEmpty()) {
-                        List<SensorData> dataList = new ArrayList<>();
+        List<SensorChunk> chunks = new ArrayList<>();
+        int from = 0;
+        while (from < series.size()) {
+            long start = SensorChunkCodec.chunkStart(series.getTimestamp(from));
+            int to = from + 1;
+            while (to < series.size() && series.getTimestamp(to) < start + SensorChunkCodec.CHUNK_DURATION_MS) {
+                to++;
+            }
+            chunks.add(SensorChunk.encode(sessionId, athleteId, series, from, to));
+            from = to;
+        }
 
-                        for (DocumentSnapshot document : queryDocumentSnapshots.getDocuments()) {
-                            SensorData sensorData = new SensorData();
+        writeSensorChunks(chunks, callback);
+    }
 
-                            // Extract fields directly from the document
-                            if (document.contains("heart_rate")) {
-                                Long heartRate = document.getLong("heart_rate");
-                                sensorData.setHeartRate(heartRate != null ? heartRate.intValue() : 0);
-                            }
+    /**
+     * Write encoded chunks, of any sessions and athletes, in batches of at most
+     * {@link #MAX_BATCH_WRITES} documents
+     */
+    public void writeSensorChunks(List<SensorChunk> chunks, OperationCallback callback) {
+        List<Task<Void>> commits = new ArrayList<>();
+        WriteBatch batch = db.batch();
+        int batchWrites = 0;
+        int sampleCount = 0;
 
-                            if (document.contains("temperature")) {
-                                Double temperature = document.getDouble("temperature");
-                                sensorData.setTemperature(temperature != null ? temperature : 0.0);
-                            }
+        for (SensorChunk chunk : chunks) {
+            Map<String, Object> document = new HashMap<>();
+            document.put("session_id", chunk.getSessionId());
+            document.put("athlete_id", chunk.getAthleteId());
+            document.put("start_time", chunk.getStartTime());
+            document.put("end_time", chunk.getEndTime());
+            document.put("count", chunk.getCount());
+            document.put("data", Blob.fromBytes(chunk.getData()));
+            batch.set(db.collection(COLLECTION_SENSOR_CHUNKS)
+                    .document(chunkId(chunk.getSessionId(), chunk.getAthleteId(), chunk.getStartTime())), document);
+            sampleCount += chunk.getCount();
 
-                            if (document.contains("speed")) {
-                                Double speed = document.getDouble("speed");
-                                sensorData.setSpeed(speed != null ? speed : 0.0);
-                            }
+            if (++batchWrites == MAX_BATCH_WRITES) {
+                commits.add(batch.commit());
+                batch = db.batch();
+                batchWrites = 0;
+            }
+        }
+        if (batchWrites > 0) {
+            commits.add(batch.commit());
+        }
 
-                            if (document.contains("timestamp")) {
-                                Long timestamp = document.getLong("timestamp");
-                                sensorData.setTimestamp(timestamp != null ? timestamp : 0L);
-                            }
+        int writtenSamples = sampleCount;
+        Tasks.whenAll(commits)
+                .addOnSuccessListener(aVoid -> {
+                    Log.d(TAG, "Wrote " + writtenSamples + " samples in " + chunks.size() + " chunks");
+                    callback.onSuccess();
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error writing sensor chunks", e);
+                    callback.onError("Error writing sensor data: " + e.getMessage());
+                });
+    }
 
-                            if (document.contains("anomaly_detected")) {
-                                Boolean anomalyDetected = document.getBoolean("anomaly_detected");
-                                sensorData.setAnomalyDetected(anomalyDetected != null ? anomalyDetected : false);
-                            }
+    private static String chunkId(String sessionId, String athleteId, long start) {
+        return sessionId + "_" + athleteId + "_" + start;
+    }
+
+    /**
+     * Chunks of an athlete in a session that may hold samples newer than {@code afterTimestamp}
+     */
+    private com.google.firebase.firestore.Query chunkQuery(String sessionId, String athleteId, long afterTimestamp) {
+        return db.collection(COLLECTION_SENSOR_CHUNKS)
+                .whereEqualTo("session_id", sessionId)
+                .whereEqualTo("athlete_id", athleteId)
+                .whereGreaterThanOrEqualTo("start_time", SensorChunkCodec.chunkStart(afterTimestamp))
+                .orderBy("start_time", com.google.firebase.firestore.Query.Direction.ASCENDING);
+    }
+
+    /**
+     * Decode chunk documents (ordered by start time) into one series, keeping samples newer than
+     * {@code afterTimestamp}
+     */
+    private static SensorSeries decodeChunks(List<DocumentSnapshot> documents, long afterTimestamp) {
+        SensorSeries decoded = new SensorSeries(documents.size() * 60);
+        for (DocumentSnapshot document : documents) {
+            Blob chunk = document.getBlob("data");
+            if (chunk != null) {
+                SensorChunkCodec.decode(chunk.toBytes(), decoded);
+            }
+        }
+
+        int first = 0;
+        while (first < decoded.size() && decoded.getTimestamp(first) <= afterTimestamp) {
+            first++;
+        }
+        if (first == 0) {
+            return decoded;
+        }
+
+        SensorSeries newer = new SensorSeries(Math.max(1, decoded.size() - first));
+        for (int i = first; i < decoded.size(); i++) {
+            newer.add(decoded.getTimestamp(i), decoded.getHeartRate(i), decoded.getTemperature(i),
+                    decoded.getSpeed(i), decoded.isAnomaly(i));
+        }
+        return newer;
+    }
 
-                            sensorData.setSessionId(sessionId);
-                            sensorData.setAthleteId(athleteId);
+    /**
+     * Query the latest {@code limit} samples straight from Firestore, bypassing the local store
+     */
+    private void fetchSensorSeries(String sessionId, String athleteId, int limit, SensorSeriesCallback callback) {
+        db.collection(COLLECTION_SENSOR_DATA)
+                .whereEqualTo("session_id", sessionId)
+                .whereEqualTo("athlete_id", athleteId)
+                .orderBy("timestamp", com.google.firebase.firestore.Query.Direction.DESCENDING)
+                .limit(limit)
+                .get()
+                .addOnSuccessListener(queryDocumentSnapshots -> {
+                    if (queryDocumentSnapshots != null && !queryDocumentSnapshots.isEmpty()) {
+                        List<DocumentSnapshot> documents = queryDocumentSnapshots.getDocuments();
+                        SensorSeries series = new SensorSeries(documents.size());
 
-                            dataList.add(sensorData);
+                        for (DocumentSnapshot document : documents) {
+                            appendDocument(series, document);
                         }
 
-                        Log.d(TAG, "Retrieved " + dataList.size() + " sensor data points");
-                        callback.onSuccess(dataList);
+                        // Query returns newest first
+                        series.sortByTimestamp();
+
+                        Log.d(TAG, "Retrieved " + series.size() + " sensor data points");
+                        callback.onSuccess(series);
                     } else {
                         Log.w(TAG, "No sensor data found for session:" + sessionId + ", athlete:" + athleteId);
                         callback.onError("No sensor data found for this athlete and session");
@@ -386,39 +1169,48 @@ public class SensorDataRepository {
     }
 
     /**
-     * Detect anomalies using ML API
+     * Decode one sensor_data document straight into a series
      */
-    private void detectAnomaliesWithML(SensorData sensorData, String athleteId, AnomalyPredictionClient.PredictionCallback callback) {
-        Log.d(TAG, "Detecting anomalies with ML API for athlete: " + athleteId);
-        predictionClient.predictAnomaly(athleteId, sensorData, callback);
+    private void appendDocument(SensorSeries series, DocumentSnapshot document) {
+        Long heartRate = document.getLong("heart_rate");
+        Double temperature = document.getDouble("temperature");
+        Double speed = document.getDouble("speed");
+        Long timestamp = document.getLong("timestamp");
+        Boolean anomalyDetected = document.getBoolean("anomaly_detected");
+
+        series.add(timestamp != null ? timestamp : 0L,
+                heartRate != null ? heartRate.intValue() : 0,
+                temperature != null ? temperature : 0.0,
+                speed != null ? speed : 0.0,
+                anomalyDetected != null && anomalyDetected);
     }
 
     /**
-     * Detect anomalies using local thresholds as fallback
-     * This is a simple implementation - in a real application,
-     * this might involve more sophisticated algorithms
+     * Detect anomalies in a window of an athlete's samples using ML API. Windows of all athletes
+     * due in the same tick share one request; with the model initialized they also go through its
+     * prediction cache and in-flight calls.
      */
-    private void detectAnomaliesLocally(SensorData sensorData) {
-        boolean anomalyDetected = false;
-
-        // Check heart rate anomalies (too high or too low)
-        if (sensorData.getHeartRate() > 180 || sensorData.getHeartRate() < 40) {
-            Log.d(TAG, "Heart rate anomaly detected: " + sensorData.getHeartRate());
-            anomalyDetected = true;
-        }
-
-        // Check temperature anomalies
-        if (sensorData.getTemperature() > 39.0 || sensorData.getTemperature() < 35.0) {
-            Log.d(TAG, "Temperature anomaly detected: " + sensorData.getTemperature());
-            anomalyDetected = true;
+    private void detectAnomaliesWithML(String athleteId, float[] temperature, float[] speed, int[] heartRate,
+                                       int offset, int count, AnomalyPredictionClient.PredictionCallback callback) {
+        Log.d(TAG, "Detecting anomalies with ML API for athlete: " + athleteId + " over " + count + " samples");
+        AnomalyDetectionModel model = AnomalyDetectionModel.getInstance();
+        if (model != null) {
+            model.predictWindow(athleteId, temperature, speed, heartRate, offset, count, callback);
+        } else {
+            predictionClient.predictAnomalyBatched(athleteId, temperature, speed, heartRate, offset, count, callback);
         }
+    }
 
-        // Check speed anomalies (sudden drop to zero while session is active)
-        if (sensorData.getSpeed() == 0 && "active".equals(sensorData.getStatus())) {
-            Log.d(TAG, "Speed anomaly detected: Athlete stopped while session active");
-            anomalyDetected = true;
+    /**
+     * Check a sample against the shared local rules, with the athlete's alert bands and their
+     * drift flags from {@link DriftDetector}
+     */
+    private boolean matchesLocalRules(String athleteId, SensorData sensorData, int drift) {
+        LocalRule rule = LocalRuleEngine.getInstance().evaluate(athleteId, sensorData,
+                AthleteBaselines.getInstance().getBands(athleteId), drift);
+        if (rule != null) {
+            Log.d(TAG, "Anomaly detected by rule '" + rule + "' for athlete: " + athleteId);
         }
-
-        sensorData.setAnomalyDetected(anomalyDetected);
+        return rule != null;
     }
-}
\ No newline at end of file
+}
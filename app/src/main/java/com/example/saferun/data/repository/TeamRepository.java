@@ -2,6 +2,7 @@ package com.example.saferun.data.repository;
 
 import com.example.saferun.data.firebase.FirebaseAuthManager;
 import com.example.saferun.data.firebase.FirestoreManager;
+import com.example.saferun.data.firebase.ReadPolicy;
 import com.example.saferun.data.model.Team;
 
 import java.util.List;
@@ -77,13 +78,17 @@ public class TeamRepository {
     }
 
     public void getTeamsForCoach(TeamsCallback callback) {
+        getTeamsForCoach(ReadPolicy.SERVER, callback);
+    }
+
+    public void getTeamsForCoach(ReadPolicy policy, TeamsCallback callback) {
         String coachId = authManager.getCurrentUserId();
         if (coachId == null) {
             callback.onError("You must be logged in to view teams");
             return;
         }
 
-        firestoreManager.getTeamsByCoach(coachId, new FirestoreManager.TeamsCallback() {
+        firestoreManager.getTeamsByCoach(coachId, policy, new FirestoreManager.TeamsCallback() {
             @Override
             public void onTeamsLoaded(List<Team> teams) {
                 callback.onSuccess(teams);
@@ -6,6 +6,7 @@ import androidx.annotation.NonNull;
 
 import com.example.saferun.data.firebase.FirebaseAuthManager;
 import com.example.saferun.data.firebase.FirestoreManager;
+import com.example.saferun.data.firebase.ReadPolicy;
 import com.example.saferun.data.model.User;
 import com.google.android.gms.tasks.OnCompleteListener;
 
@@ -84,9 +85,13 @@ public class UserRepository {
     }
 
     public void getCurrentUser(UserCallback callback) {
+        getCurrentUser(ReadPolicy.SERVER, callback);
+    }
+
+    public void getCurrentUser(ReadPolicy policy, UserCallback callback) {
         String userId = authManager.getCurrentUserId();
         if (userId != null) {
-            firestoreManager.getUserById(userId, new FirestoreManager.UserCallback() {
+            firestoreManager.getUserById(userId, policy, new FirestoreManager.UserCallback() {
                 @Override
                 public void onUserLoaded(User user) {
                     callback.onSuccess(user);
@@ -117,7 +122,11 @@ public class UserRepository {
     }
 
     public void getAthletes(UsersCallback callback) {
-        firestoreManager.getUsersByRole("athlete", new FirestoreManager.UsersCallback() {
+        getAthletes(ReadPolicy.SERVER, callback);
+    }
+
+    public void getAthletes(ReadPolicy policy, UsersCallback callback) {
+        firestoreManager.getUsersByRole("athlete", policy, new FirestoreManager.UsersCallback() {
             @Override
             public void onUsersLoaded(List<User> users) {
                 callback.onSuccess(users);
@@ -1,4 +1,171 @@
 package com.example.saferun.data.util;
 
-public class DataConverter {
+import com.example.saferun.data.model.SensorData;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decodes raw sensor samples (the value of a sensor_data/{session}/{athlete}/{sample} node)
+ * into SensorData. Every accepted field name is resolved once, up front, into a lookup table
+ * of (field, priority), so a sample is decoded in a single pass over its entries with no
+ * per-field lookups, alias rescans or logging.
+ *
+ * When a sample carries several aliases of the same field, the preferred alias wins
+ * (e.g. heart_rate over heartRate), regardless of entry order.
+ */
+public final class DataConverter {
+
+    private static final int FIELD_TIMESTAMP = 0;
+    private static final int FIELD_HEART_RATE = 1;
+    private static final int FIELD_TEMPERATURE = 2;
+    private static final int FIELD_SPEED = 3;
+    private static final int FIELD_STATUS = 4;
+    private static final int FIELD_ANOMALY = 5;
+
+    // Priority is kept in the low bits of each table entry, field id above it
+    private static final int PRIORITY_BITS = 4;
+    private static final int PRIORITY_MASK = (1 << PRIORITY_BITS) - 1;
+    private static final int NO_VALUE = PRIORITY_MASK;
+
+    private static final String DEFAULT_STATUS = "active";
+
+    // Field name -> (field << PRIORITY_BITS | priority), in order of preference
+    private static final Map<String, Integer> SCHEMA = new HashMap<>();
+
+    static {
+        register(FIELD_TIMESTAMP, "timestamp");
+        register(FIELD_HEART_RATE, "heart_rate", "heartRate", "heart-rate", "heartrate");
+        register(FIELD_TEMPERATURE, "temperature", "temp", "bodyTemp", "body_temp");
+        register(FIELD_SPEED, "speed", "velocity");
+        register(FIELD_STATUS, "status");
+        register(FIELD_ANOMALY, "anomaly_detected", "anomalyDetected");
+    }
+
+    private DataConverter() {
+    }
+
+    private static void register(int field, String... aliases) {
+        for (int priority = 0; priority < aliases.length; priority++) {
+            SCHEMA.put(aliases[priority], field << PRIORITY_BITS | priority);
+        }
+    }
+
+    /**
+     * Decode one sample.
+     *
+     * @param key   node key; used as the timestamp when it is numeric
+     * @param value node value, normally a Map of field name to value
+     */
+    public static SensorData decodeSensorData(String key, Object value, String sessionId, String athleteId) {
+        SensorData sensorData = new SensorData();
+        sensorData.setSessionId(sessionId);
+        sensorData.setAthleteId(athleteId);
+        decodeInto(key, value, sensorData);
+        return sensorData;
+    }
+
+    /**
+     * Decode one sample into an existing SensorData, overwriting its sample fields.
+     * Missing or mistyped fields get the defaults: zero vitals, current time, status "active", no anomaly.
+     */
+    public static void decodeInto(String key, Object value, SensorData target) {
+        long keyTimestamp = parseTimestampKey(key);
+
+        long timestamp = keyTimestamp >= 0 ? keyTimestamp : System.currentTimeMillis();
+        int heartRate = 0;
+        double temperature = 0.0;
+        double speed = 0.0;
+        String status = DEFAULT_STATUS;
+        boolean anomaly = false;
+
+        // Priority of the alias each field was taken from; NO_VALUE until one is found
+        int timestampPriority = keyTimestamp >= 0 ? -1 : NO_VALUE;
+        int heartRatePriority = NO_VALUE;
+        int temperaturePriority = NO_VALUE;
+        int speedPriority = NO_VALUE;
+        int statusPriority = NO_VALUE;
+        int anomalyPriority = NO_VALUE;
+
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                Integer slot = SCHEMA.get(entry.getKey());
+                if (slot == null) {
+                    continue;
+                }
+
+                int priority = slot & PRIORITY_MASK;
+                Object fieldValue = entry.getValue();
+
+                switch (slot >>> PRIORITY_BITS) {
+                    case FIELD_TIMESTAMP:
+                        if (priority < timestampPriority && fieldValue instanceof Number) {
+                            timestamp = ((Number) fieldValue).longValue();
+                            timestampPriority = priority;
+                        }
+                        break;
+                    case FIELD_HEART_RATE:
+                        if (priority < heartRatePriority && fieldValue instanceof Number) {
+                            heartRate = ((Number) fieldValue).intValue();
+                            heartRatePriority = priority;
+                        }
+                        break;
+                    case FIELD_TEMPERATURE:
+                        if (priority < temperaturePriority && fieldValue instanceof Number) {
+                            temperature = ((Number) fieldValue).doubleValue();
+                            temperaturePriority = priority;
+                        }
+                        break;
+                    case FIELD_SPEED:
+                        if (priority < speedPriority && fieldValue instanceof Number) {
+                            speed = ((Number) fieldValue).doubleValue();
+                            speedPriority = priority;
+                        }
+                        break;
+                    case FIELD_STATUS:
+                        if (priority < statusPriority && fieldValue != null) {
+                            status = fieldValue.toString();
+                            statusPriority = priority;
+                        }
+                        break;
+                    case FIELD_ANOMALY:
+                        if (priority < anomalyPriority && fieldValue instanceof Boolean) {
+                            anomaly = (Boolean) fieldValue;
+                            anomalyPriority = priority;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        target.setTimestamp(timestamp);
+        target.setHeartRate(heartRate);
+        target.setTemperature(temperature);
+        target.setSpeed(speed);
+        target.setStatus(status);
+        target.setAnomalyDetected(anomaly);
+    }
+
+    /**
+     * Parse a node key holding a timestamp, without throwing.
+     *
+     * @return the timestamp, or -1 when the key is not a non-negative integer
+     */
+    static long parseTimestampKey(String key) {
+        if (key == null || key.isEmpty() || key.length() > 18) {
+            return -1;
+        }
+
+        long result = 0;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
 }
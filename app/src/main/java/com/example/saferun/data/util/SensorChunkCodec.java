@@ -0,0 +1,191 @@
+package com.example.saferun.data.util;
+
+import com.example.saferun.data.model.SensorSeries;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Compact binary encoding for a chunk of sensor samples (one athlete, one minute of a session),
+ * stored as a single document instead of one document per sample.
+ *
+ * Layout, all integers as unsigned LEB128 varints:
+ * <pre>
+ *   version, count, firstTimestamp
+ *   count x (timestampDelta, zigzag(heartRateDelta), zigzag(temperatureDelta), zigzag(speedDelta))
+ *   anomaly bitmap, ceil(count / 8) bytes, LSB first
+ * </pre>
+ * Temperature and speed are stored in fixed point with two decimals; every vital is delta-encoded
+ * against the previous sample, so a steady signal costs about one byte per field.
+ * Samples must be sorted by ascending timestamp.
+ */
+public final class SensorChunkCodec {
+
+    public static final long CHUNK_DURATION_MS = 60_000L;
+
+    private static final int VERSION = 1;
+    static final int FIXED_POINT_SCALE = 100;
+
+    private SensorChunkCodec() {
+    }
+
+    /**
+     * Start of the chunk a timestamp falls into
+     */
+    public static long chunkStart(long timestamp) {
+        return timestamp - Math.floorMod(timestamp, CHUNK_DURATION_MS);
+    }
+
+    /**
+     * Encode samples [from, to) of a series
+     */
+    public static byte[] encode(SensorSeries series, int from, int to) {
+        if (from < 0 || to > series.size() || from > to) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") of " + series.size());
+        }
+
+        int count = to - from;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + count * 5);
+        writeVarint(out, VERSION);
+        writeVarint(out, count);
+
+        if (count == 0) {
+            return out.toByteArray();
+        }
+
+        long previousTimestamp = series.getTimestamp(from);
+        writeVarint(out, previousTimestamp);
+
+        long previousHeartRate = 0;
+        long previousTemperature = 0;
+        long previousSpeed = 0;
+        byte[] anomalies = new byte[(count + 7) / 8];
+
+        for (int i = from; i < to; i++) {
+            long timestamp = series.getTimestamp(i);
+            if (timestamp < previousTimestamp) {
+                throw new IllegalArgumentException("Samples must be sorted by timestamp");
+            }
+            long heartRate = series.getHeartRate(i);
+            long temperature = toFixedPoint(series.getTemperature(i));
+            long speed = toFixedPoint(series.getSpeed(i));
+
+            writeVarint(out, timestamp - previousTimestamp);
+            writeVarint(out, zigZag(heartRate - previousHeartRate));
+            writeVarint(out, zigZag(temperature - previousTemperature));
+            writeVarint(out, zigZag(speed - previousSpeed));
+
+            if (series.isAnomaly(i)) {
+                int bit = i - from;
+                anomalies[bit >> 3] |= (byte) (1 << (bit & 7));
+            }
+
+            previousTimestamp = timestamp;
+            previousHeartRate = heartRate;
+            previousTemperature = temperature;
+            previousSpeed = speed;
+        }
+
+        out.write(anomalies, 0, anomalies.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode a chunk, appending its samples to {@code into}
+     *
+     * @return the number of samples decoded
+     */
+    public static int decode(byte[] data, SensorSeries into) {
+        Reader reader = new Reader(data);
+
+        int version = (int) reader.readVarint();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported chunk version: " + version);
+        }
+
+        int count = (int) reader.readVarint();
+        if (count == 0) {
+            return 0;
+        }
+
+        int first = into.size();
+        long timestamp = reader.readVarint();
+        long heartRate = 0;
+        long temperature = 0;
+        long speed = 0;
+
+        for (int i = 0; i < count; i++) {
+            timestamp += reader.readVarint();
+            heartRate += unZigZag(reader.readVarint());
+            temperature += unZigZag(reader.readVarint());
+            speed += unZigZag(reader.readVarint());
+
+            into.add(timestamp, (int) heartRate,
+                    (double) temperature / FIXED_POINT_SCALE,
+                    (double) speed / FIXED_POINT_SCALE,
+                    false);
+        }
+
+        byte[] anomalies = reader.readBytes((count + 7) / 8);
+        for (int i = 0; i < count; i++) {
+            if ((anomalies[i >> 3] & (1 << (i & 7))) != 0) {
+                into.setAnomaly(first + i, true);
+            }
+        }
+
+        return count;
+    }
+
+    static long toFixedPoint(float value) {
+        return Math.round((double) value * FIXED_POINT_SCALE);
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static class Reader {
+        private final byte[] data;
+        private int position = 0;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        long readVarint() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= data.length) {
+                    throw new IllegalArgumentException("Truncated chunk");
+                }
+                byte b = data[position++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        byte[] readBytes(int length) {
+            if (position + length > data.length) {
+                throw new IllegalArgumentException("Truncated chunk");
+            }
+            byte[] bytes = Arrays.copyOfRange(data, position, position + length);
+            position += length;
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.saferun.data.util;
+
+import com.example.saferun.data.model.Metric;
+import com.example.saferun.data.model.SensorPyramid;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Binary encoding of a {@link SensorPyramid}, stored next to the session's samples.
+ *
+ * Layout, integers as unsigned LEB128 varints as in {@link SensorChunkCodec}:
+ * <pre>
+ *   version, levelCount
+ *   levelCount x (bucketDuration, size, size x bucketIndexDelta,
+ *                 Metric.COUNT x size x (count [, zigzag(meanDelta) [, zigzag(minDelta), zigzag(maxDelta)]]))
+ * </pre>
+ * Bucket starts are stored as multiples of the bucket duration. Aggregates are in fixed point
+ * with two decimals and delta-encoded against the previous bucket of the same metric.
+ * Buckets without readings of a metric store only their zero count, buckets with a single
+ * reading only its value, which is most of the finest level.
+ */
+public final class SensorPyramidCodec {
+
+    private static final int VERSION = 1;
+
+    private SensorPyramidCodec() {
+    }
+
+    public static byte[] encode(SensorPyramid pyramid) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+        SensorChunkCodec.writeVarint(out, VERSION);
+        SensorChunkCodec.writeVarint(out, pyramid.getLevelCount());
+
+        for (int l = 0; l < pyramid.getLevelCount(); l++) {
+            SensorPyramid.Level level = pyramid.getLevel(l);
+            long duration = level.getBucketDuration();
+            SensorChunkCodec.writeVarint(out, duration);
+            SensorChunkCodec.writeVarint(out, level.size());
+
+            long previousBucket = 0;
+            for (int i = 0; i < level.size(); i++) {
+                long bucket = level.getStart(i) / duration;
+                SensorChunkCodec.writeVarint(out, bucket - previousBucket);
+                previousBucket = bucket;
+            }
+
+            for (int metric = 0; metric < Metric.COUNT; metric++) {
+                long previousMin = 0;
+                long previousMax = 0;
+                long previousMean = 0;
+                for (int i = 0; i < level.size(); i++) {
+                    int count = level.getCount(metric, i);
+                    SensorChunkCodec.writeVarint(out, count);
+                    if (count == 0) {
+                        continue;
+                    }
+                    long mean = SensorChunkCodec.toFixedPoint(level.getMean(metric, i));
+                    SensorChunkCodec.writeVarint(out, SensorChunkCodec.zigZag(mean - previousMean));
+                    long min = mean;
+                    long max = mean;
+                    if (count > 1) {
+                        min = SensorChunkCodec.toFixedPoint(level.getMin(metric, i));
+                        max = SensorChunkCodec.toFixedPoint(level.getMax(metric, i));
+                        SensorChunkCodec.writeVarint(out, SensorChunkCodec.zigZag(min - previousMin));
+                        SensorChunkCodec.writeVarint(out, SensorChunkCodec.zigZag(max - previousMax));
+                    }
+                    previousMin = min;
+                    previousMax = max;
+                    previousMean = mean;
+                }
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    public static SensorPyramid decode(byte[] data) {
+        SensorChunkCodec.Reader reader = new SensorChunkCodec.Reader(data);
+
+        int version = (int) reader.readVarint();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported pyramid version: " + version);
+        }
+
+        SensorPyramid.Level[] levels = new SensorPyramid.Level[(int) reader.readVarint()];
+        for (int l = 0; l < levels.length; l++) {
+            long duration = reader.readVarint();
+            int size = (int) reader.readVarint();
+            SensorPyramid.Level level = new SensorPyramid.Level(duration, size);
+
+            long bucket = 0;
+            for (int i = 0; i < size; i++) {
+                bucket += reader.readVarint();
+                level.addBucket(bucket * duration);
+            }
+
+            for (int metric = 0; metric < Metric.COUNT; metric++) {
+                long min = 0;
+                long max = 0;
+                long mean = 0;
+                for (int i = 0; i < size; i++) {
+                    int count = (int) reader.readVarint();
+                    if (count == 0) {
+                        continue;
+                    }
+                    mean += SensorChunkCodec.unZigZag(reader.readVarint());
+                    if (count > 1) {
+                        min += SensorChunkCodec.unZigZag(reader.readVarint());
+                        max += SensorChunkCodec.unZigZag(reader.readVarint());
+                    } else {
+                        min = mean;
+                        max = mean;
+                    }
+                    level.merge(metric, i, count, fromFixedPoint(min), fromFixedPoint(max), fromFixedPoint(mean));
+                }
+            }
+            levels[l] = level;
+        }
+
+        return new SensorPyramid(levels);
+    }
+
+    private static float fromFixedPoint(long value) {
+        return (float) ((double) value / SensorChunkCodec.FIXED_POINT_SCALE);
+    }
+}
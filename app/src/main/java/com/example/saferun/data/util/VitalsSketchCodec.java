@@ -0,0 +1,82 @@
+package com.example.saferun.data.util;
+
+import com.example.saferun.data.model.Metric;
+import com.example.saferun.data.model.VitalsSketch;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Binary encoding of a {@link VitalsSketch}, stored per athlete.
+ *
+ * Layout, integers as unsigned LEB128 varints as in {@link SensorChunkCodec}:
+ * <pre>
+ *   version
+ *   Metric.COUNT x (binCount, nonEmptyBins, nonEmptyBins x (binIndexDelta, count))
+ * </pre>
+ * Only bins with readings are stored; an athlete's vitals fill a narrow part of each range,
+ * so a sketch takes a few hundred bytes however many sessions it covers.
+ */
+public final class VitalsSketchCodec {
+
+    private static final int VERSION = 1;
+
+    private VitalsSketchCodec() {
+    }
+
+    public static byte[] encode(VitalsSketch sketch) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        SensorChunkCodec.writeVarint(out, VERSION);
+
+        for (int metric = 0; metric < Metric.COUNT; metric++) {
+            int binCount = VitalsSketch.getBinCount(metric);
+            SensorChunkCodec.writeVarint(out, binCount);
+
+            int nonEmpty = 0;
+            for (int bin = 0; bin < binCount; bin++) {
+                if (sketch.getBin(metric, bin) > 0) {
+                    nonEmpty++;
+                }
+            }
+            SensorChunkCodec.writeVarint(out, nonEmpty);
+
+            int previousBin = 0;
+            for (int bin = 0; bin < binCount; bin++) {
+                int count = sketch.getBin(metric, bin);
+                if (count > 0) {
+                    SensorChunkCodec.writeVarint(out, bin - previousBin);
+                    SensorChunkCodec.writeVarint(out, count);
+                    previousBin = bin;
+                }
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    public static VitalsSketch decode(byte[] data) {
+        SensorChunkCodec.Reader reader = new SensorChunkCodec.Reader(data);
+
+        int version = (int) reader.readVarint();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported sketch version: " + version);
+        }
+
+        VitalsSketch sketch = new VitalsSketch();
+        for (int metric = 0; metric < Metric.COUNT; metric++) {
+            int binCount = (int) reader.readVarint();
+            if (binCount != VitalsSketch.getBinCount(metric)) {
+                throw new IllegalArgumentException("Unexpected bin count " + binCount + " for metric " + metric);
+            }
+            int nonEmpty = (int) reader.readVarint();
+            int bin = 0;
+            for (int i = 0; i < nonEmpty; i++) {
+                bin += (int) reader.readVarint();
+                if (bin >= binCount) {
+                    throw new IllegalArgumentException("Bin out of range: " + bin);
+                }
+                sketch.addToBin(metric, bin, (int) reader.readVarint());
+            }
+        }
+        return sketch;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.saferun.ml;
+
+import com.example.saferun.data.model.Metric;
+import com.example.saferun.data.model.VitalsSketch;
+
+/**
+ * Heart rate and temperature limits of one athlete for the local rules. Athletes with enough
+ * history get personal bands from the 1st and 99.5th percentile of their readings, widened by a
+ * margin and kept within absolute limits; everyone else gets the fixed 40-180 bpm and
+ * 35-39 degree limits. Speed has no band. Immutable.
+ */
+public final class AlertBands {
+
+    // Readings of a metric, about ten minutes of one session, before its band is personal
+    static final long MIN_READINGS = 600;
+    static final double LOW_QUANTILE = 0.01;
+    static final double HIGH_QUANTILE = 0.995;
+
+    private static final double[] MARGINS = new double[Metric.COUNT];
+    private static final double[] DEFAULT_LOWS = new double[Metric.COUNT];
+    private static final double[] DEFAULT_HIGHS = new double[Metric.COUNT];
+    // Personal bands never reach past these
+    private static final double[] ABSOLUTE_LOWS = new double[Metric.COUNT];
+    private static final double[] ABSOLUTE_HIGHS = new double[Metric.COUNT];
+
+    static {
+        for (int metric = 0; metric < Metric.COUNT; metric++) {
+            DEFAULT_LOWS[metric] = Double.NEGATIVE_INFINITY;
+            DEFAULT_HIGHS[metric] = Double.POSITIVE_INFINITY;
+        }
+
+        MARGINS[Metric.HEART_RATE] = 5;
+        DEFAULT_LOWS[Metric.HEART_RATE] = 40;
+        DEFAULT_HIGHS[Metric.HEART_RATE] = 180;
+        ABSOLUTE_LOWS[Metric.HEART_RATE] = 35;
+        ABSOLUTE_HIGHS[Metric.HEART_RATE] = 200;
+
+        MARGINS[Metric.TEMPERATURE] = 0.3;
+        DEFAULT_LOWS[Metric.TEMPERATURE] = 35.0;
+        DEFAULT_HIGHS[Metric.TEMPERATURE] = 39.0;
+        ABSOLUTE_LOWS[Metric.TEMPERATURE] = 34.5;
+        ABSOLUTE_HIGHS[Metric.TEMPERATURE] = 39.5;
+    }
+
+    /**
+     * The fixed limits, for athletes without history
+     */
+    public static final AlertBands DEFAULT = new AlertBands(DEFAULT_LOWS, DEFAULT_HIGHS, false);
+
+    private final double[] lows;
+    private final double[] highs;
+    private final boolean personal;
+
+    private AlertBands(double[] lows, double[] highs, boolean personal) {
+        this.lows = lows;
+        this.highs = highs;
+        this.personal = personal;
+    }
+
+    /**
+     * Bands from an athlete's vitals; metrics with fewer than {@link #MIN_READINGS} readings
+     * keep the fixed limits
+     */
+    public static AlertBands from(VitalsSketch sketch) {
+        double[] lows = DEFAULT_LOWS.clone();
+        double[] highs = DEFAULT_HIGHS.clone();
+        boolean personal = false;
+
+        for (int metric : new int[]{Metric.HEART_RATE, Metric.TEMPERATURE}) {
+            if (sketch.getCount(metric) < MIN_READINGS) {
+                continue;
+            }
+            lows[metric] = Math.max(ABSOLUTE_LOWS[metric], sketch.quantile(metric, LOW_QUANTILE) - MARGINS[metric]);
+            highs[metric] = Math.min(ABSOLUTE_HIGHS[metric], sketch.quantile(metric, HIGH_QUANTILE) + MARGINS[metric]);
+            personal = true;
+        }
+
+        return personal ? new AlertBands(lows, highs, true) : DEFAULT;
+    }
+
+    public double getLow(int metric) {
+        return lows[metric];
+    }
+
+    public double getHigh(int metric) {
+        return highs[metric];
+    }
+
+    /**
+     * Whether a reading of a metric is outside the athlete's band
+     */
+    public boolean isOutside(int metric, double value) {
+        return value < lows[metric] || value > highs[metric];
+    }
+
+    /**
+     * Whether any band comes from the athlete's history
+     */
+    public boolean isPersonal() {
+        return personal;
+    }
+
+    @Override
+    public String toString() {
+        return "AlertBands{heartRate=" + lows[Metric.HEART_RATE] + "-" + highs[Metric.HEART_RATE]
+                + ", temperature=" + lows[Metric.TEMPERATURE] + "-" + highs[Metric.TEMPERATURE]
+                + (personal ? ", personal" : "") + "}";
+    }
+}
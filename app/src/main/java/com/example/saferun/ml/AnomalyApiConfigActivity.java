@@ -24,6 +24,7 @@ public class AnomalyApiConfigActivity extends AppCompatActivity {
     private Toolbar toolbar;
     private Switch apiEnabledSwitch;
     private EditText apiUrlEditText;
+    private EditText localRulesEditText;
     private Button testApiButton;
     private TextView apiStatusTextView;
     private TextView testResultTextView;
@@ -58,6 +59,7 @@ public class AnomalyApiConfigActivity extends AppCompatActivity {
 
         apiEnabledSwitch = findViewById(R.id.api_enabled_switch);
         apiUrlEditText = findViewById(R.id.api_url_edit_text);
+        localRulesEditText = findViewById(R.id.local_rules_edit_text);
         testApiButton = findViewById(R.id.test_api_button);
         apiStatusTextView = findViewById(R.id.api_status_text_view);
         testResultTextView = findViewById(R.id.test_result_text_view);
@@ -69,6 +71,7 @@ public class AnomalyApiConfigActivity extends AppCompatActivity {
         // Load current settings
         apiEnabledSwitch.setChecked(detectionModel.isApiEnabled());
         apiUrlEditText.setText(detectionModel.getApiUrl());
+        localRulesEditText.setText(detectionModel.getLocalRules());
         updateApiStatus();
     }
 
@@ -86,6 +89,7 @@ public class AnomalyApiConfigActivity extends AppCompatActivity {
         resetButton.setOnClickListener(v -> {
             apiEnabledSwitch.setChecked(true);
             apiUrlEditText.setText("http://192.168.11.109:5000/api/predict");
+            localRulesEditText.setText(LocalRule.DEFAULT_RULES);
             detectionModel.resetFailureCounter();
             updateApiStatus();
             testResultTextView.setText("");
@@ -97,7 +101,7 @@ public class AnomalyApiConfigActivity extends AppCompatActivity {
 
     private void updateApiStatus() {
         String status = detectionModel.getApiStatus();
-        apiStatusTextView.setText("Status: " + status);
+        apiStatusTextView.setText("Status: " + status + "\n" + detectionModel.getCacheStatus());
     }
 
     private void testApi() {
@@ -124,6 +128,9 @@ public class AnomalyApiConfigActivity extends AppCompatActivity {
         String originalUrl = detectionModel.getApiUrl();
         detectionModel.setApiUrl(testUrl);
 
+        // Let the test through even while the circuit breaker is open
+        detectionModel.resetFailureCounter();
+
         // Test API with temporary settings
         AnomalyPredictionClient client = AnomalyPredictionClient.getInstance();
         client.predictAnomaly("test_user", testData, new AnomalyPredictionClient.PredictionCallback() {
@@ -158,6 +165,14 @@ public class AnomalyApiConfigActivity extends AppCompatActivity {
     }
 
     private void saveSettings() {
+        // Validate and apply the local rules first, so nothing is saved when they don't parse
+        try {
+            detectionModel.setLocalRules(localRulesEditText.getText().toString());
+        } catch (IllegalArgumentException e) {
+            localRulesEditText.setError(e.getMessage());
+            return;
+        }
+
         // Validate URL if API is enabled
         if (apiEnabledSwitch.isChecked()) {
             String url = apiUrlEditText.getText().toString().trim();
@@ -2,19 +2,21 @@ package com.example.saferun.ml;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 
 import com.example.saferun.data.model.SensorData;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Model for detecting anomalies in athlete sensor data
- * Combines both local rule-based detection and ML prediction API
+ * Uses the on-device model on each athlete's recent window when one is loaded, otherwise the
+ * ML prediction API. Local rule-based detection is a floor under both, and the last resort
  */
 public class AnomalyDetectionModel {
     private static final String TAG = "AnomalyDetectionModel";
@@ -22,26 +24,52 @@ public class AnomalyDetectionModel {
     private static final String KEY_API_ENABLED = "ml_api_enabled";
     private static final String KEY_API_URL = "ml_api_url";
     private static final String KEY_API_FAILURES = "ml_api_failures";
+    private static final String KEY_LATENCY_BUDGET = "latency_budget_ms";
+    private static final String KEY_LOCAL_RULES = "local_rules";
 
-    private static final int MAX_API_FAILURES = 5;  // After this many failures, fall back to local detection
+    public static final long DEFAULT_LATENCY_BUDGET_MS = 50;
+
+    private static final int CACHE_SIZE = 1024;
+    private static final long CACHE_TTL_MS = 5 * 60 * 1000L;
 
     private static AnomalyDetectionModel instance;
     private final AnomalyPredictionClient predictionClient;
+    private final MLModelService modelService;
     private final Context context;
     private final SharedPreferences preferences;
-    private final AtomicInteger consecutiveFailures = new AtomicInteger(0);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     // Cache of recent anomaly predictions to avoid repeated API calls for similar data
-    private final Map<String, Boolean> predictionCache = new HashMap<>();
+    private final PredictionCache predictionCache = new PredictionCache(CACHE_SIZE, CACHE_TTL_MS);
+    // API calls in flight, shared by concurrent requests for the same cache key
+    private final SingleFlight inFlightPredictions = new SingleFlight();
+    // Fires the local answer of checks whose ML result is late
+    private final ScheduledExecutorService deadlineScheduler = Executors.newSingleThreadScheduledExecutor();
+    // Slow drifts per athlete, checked with the local rules
+    private final DriftDetector driftDetector = new DriftDetector();
+    // Recent samples per athlete, so the on-device model scores windows like the ones it was trained on
+    private final AthleteWindowManager modelWindows =
+            new AthleteWindowManager(AthleteWindowManager.DEFAULT_WINDOW_SIZE, 1);
 
     public interface AnomalyCallback {
         void onDetectionComplete(boolean isAnomaly, String source);
     }
 
+    public interface ReconcilingCallback extends AnomalyCallback {
+        /**
+         * The ML verdict arrived after the deadline and found an anomaly the local rules
+         * answering in time did not: raise the alert
+         */
+        void onReconciled(boolean isAnomaly, String source);
+    }
+
     private AnomalyDetectionModel(Context context) {
         this.context = context.getApplicationContext();
         this.predictionClient = AnomalyPredictionClient.getInstance();
+        this.modelService = MLModelService.getInstance();
         this.preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        installLocalRules(getLocalRules());
+        predictionClient.setApiUrl(getApiUrl());
     }
 
     public static synchronized AnomalyDetectionModel getInstance(Context context) {
@@ -51,6 +79,13 @@ public class AnomalyDetectionModel {
         return instance;
     }
 
+    /**
+     * @return the model, or null when {@link #getInstance(Context)} has not been called
+     */
+    public static synchronized AnomalyDetectionModel getInstance() {
+        return instance;
+    }
+
     /**
      * Check if the sensor data represents an anomaly
      * @param athleteId athlete's ID
@@ -59,115 +94,169 @@ public class AnomalyDetectionModel {
      */
     public void detectAnomaly(@NonNull String athleteId, @NonNull SensorData sensorData,
                               @NonNull AnomalyCallback callback) {
-        // Check if ML API is enabled
-        if (isApiEnabled() && consecutiveFailures.get() < MAX_API_FAILURES) {
+        int drift = driftDetector.update(athleteId, sensorData);
+        detectAnomaly(athleteId, sensorData, detectAnomalyLocally(athleteId, sensorData, drift), callback);
+    }
+
+    /**
+     * @param localAnomaly the local rules' verdict, a floor under the model's and the API's
+     */
+    private void detectAnomaly(String athleteId, SensorData sensorData, boolean localAnomaly,
+                               AnomalyCallback callback) {
+        // The on-device model answers in microseconds and needs no connectivity
+        if (modelService.isModelLoaded()) {
+            Boolean windowResult = modelWindows.offer(athleteId, sensorData, modelService::predict);
+            // A replayed sample isn't added to the window, judge it on its own
+            boolean modelResult = windowResult != null ? windowResult : modelService.predict(sensorData);
+            complete(callback, modelResult, localAnomaly, "On-device model");
+            return;
+        }
+
+        // Check if ML API is enabled; while its circuit breaker is open calls fail fast
+        if (isApiEnabled()) {
             // Check cache first for similar data to avoid excessive API calls
-            String cacheKey = createCacheKey(athleteId, sensorData);
-            if (predictionCache.containsKey(cacheKey)) {
-                boolean cachedResult = predictionCache.get(cacheKey);
-                Log.d(TAG, "Using cached prediction for athlete " + athleteId + ": " + cachedResult);
-                callback.onDetectionComplete(cachedResult, "ML API (cached)");
+            long cacheKey = predictionCache.key(athleteId, sensorData.getHeartRate(),
+                    sensorData.getTemperature(), sensorData.getSpeed());
+            Boolean cachedResult = predictionCache.get(cacheKey);
+            if (cachedResult != null) {
+                complete(callback, cachedResult, localAnomaly, "ML API (cached)");
                 return;
             }
 
-            // Not in cache, make API call
-            predictionClient.predictAnomaly(athleteId, sensorData, new AnomalyPredictionClient.PredictionCallback() {
-                @Override
-                public void onSuccess(boolean isAnomaly) {
-                    // Reset failure counter on success
-                    consecutiveFailures.set(0);
-
-                    // Cache the result
-                    predictionCache.put(cacheKey, isAnomaly);
-
-                    // Limit cache size
-                    if (predictionCache.size() > 100) {
-                        // Remove a random entry
-                        String keyToRemove = predictionCache.keySet().iterator().next();
-                        predictionCache.remove(keyToRemove);
-                    }
-
-                    // Return the result
-                    callback.onDetectionComplete(isAnomaly, "ML API");
-                }
-
-                @Override
-                public void onError(String errorMessage) {
-                    Log.e(TAG, "ML API error: " + errorMessage);
-
-                    // Increment failure counter
-                    int failures = consecutiveFailures.incrementAndGet();
-                    Log.w(TAG, "Consecutive API failures: " + failures);
-
-                    if (failures >= MAX_API_FAILURES) {
-                        Log.w(TAG, "Too many API failures, switching to local detection");
-                    }
-
-                    // Fall back to local detection
-                    boolean localResult = detectAnomalyLocally(sensorData);
-                    callback.onDetectionComplete(localResult, "Local rules (API fallback)");
-                }
-            });
+            // Not in cache, make API call unless the same prediction is already being made
+            AnomalyPredictionClient.PredictionCallback leader = inFlightPredictions.join(cacheKey,
+                    new AnomalyPredictionClient.PredictionCallback() {
+                        @Override
+                        public void onSuccess(boolean isAnomaly) {
+                            // Cache the result
+                            predictionCache.put(cacheKey, isAnomaly);
+
+                            // Return the result
+                            complete(callback, isAnomaly, localAnomaly, "ML API");
+                        }
+
+                        @Override
+                        public void onError(String errorMessage) {
+                            Log.e(TAG, "ML API error: " + errorMessage);
+
+                            // Fall back to local detection
+                            callback.onDetectionComplete(localAnomaly, "Local rules (API fallback)");
+                        }
+                    });
+            if (leader != null) {
+                predictionClient.predictAnomaly(athleteId, sensorData, leader);
+            }
         } else {
             // Use local detection
-            boolean localResult = detectAnomalyLocally(sensorData);
-            callback.onDetectionComplete(localResult, "Local rules");
+            callback.onDetectionComplete(localAnomaly, "Local rules");
         }
     }
 
     /**
-     * Detect anomalies using local rule-based approach
-     * This serves as fallback when ML API is unavailable
-     * @param sensorData sensor data to check
-     * @return true if an anomaly is detected, false otherwise
+     * Predict with the ML API whether the window {@code [offset, offset + count)} of an athlete's
+     * columns, oldest first, is an anomaly. Like single samples, windows go through the prediction
+     * cache and share the call of an identical window in flight; windows of all athletes due in
+     * the same tick share one request. The columns are read before this method returns.
      */
-    private boolean detectAnomalyLocally(SensorData sensorData) {
-        // Check heart rate anomalies (too high or too low)
-        if (sensorData.getHeartRate() > 180 || sensorData.getHeartRate() < 40) {
-            Log.d(TAG, "Local detection: Heart rate anomaly detected: " + sensorData.getHeartRate());
-            return true;
+    public void predictWindow(@NonNull String athleteId, float[] temperature, float[] speed, int[] heartRate,
+                              int offset, int count, @NonNull AnomalyPredictionClient.PredictionCallback callback) {
+        long cacheKey = predictionCache.windowKey(athleteId, temperature, speed, heartRate, offset, count);
+        Boolean cachedResult = predictionCache.get(cacheKey);
+        if (cachedResult != null) {
+            callback.onSuccess(cachedResult);
+            return;
         }
 
-        // Check temperature anomalies
-        if (sensorData.getTemperature() > 39.0 || sensorData.getTemperature() < 35.0) {
-            Log.d(TAG, "Local detection: Temperature anomaly detected: " + sensorData.getTemperature());
-            return true;
-        }
+        AnomalyPredictionClient.PredictionCallback leader = inFlightPredictions.join(cacheKey,
+                new AnomalyPredictionClient.PredictionCallback() {
+                    @Override
+                    public void onSuccess(boolean isAnomaly) {
+                        predictionCache.put(cacheKey, isAnomaly);
+                        callback.onSuccess(isAnomaly);
+                    }
 
-        // Check speed anomalies (sudden drop to zero while session is active)
-        if (sensorData.getSpeed() == 0.0 && "active".equals(sensorData.getStatus())) {
-            Log.d(TAG, "Local detection: Speed anomaly detected: Athlete stopped while session active");
-            return true;
+                    @Override
+                    public void onError(String errorMessage) {
+                        callback.onError(errorMessage);
+                    }
+                });
+        if (leader != null) {
+            predictionClient.predictAnomalyBatched(athleteId, temperature, speed, heartRate, offset, count, leader);
         }
+    }
 
-        return false;
+    /**
+     * Deliver a model or API verdict, raised to an anomaly when the local rules found one
+     */
+    private static void complete(AnomalyCallback callback, boolean verdict, boolean localAnomaly, String source) {
+        if (!verdict && localAnomaly) {
+            callback.onDetectionComplete(true, "Local rules");
+        } else {
+            callback.onDetectionComplete(verdict, source);
+        }
     }
 
     /**
-     * Create a cache key for the given athlete and sensor data
-     * This helps avoid redundant API calls for similar data
+     * Check if the sensor data represents an anomaly, answering within the latency budget.
+     * If the ML verdict takes longer, local rules answer at the deadline and the ML verdict
+     * reconciles the answer when it arrives.
+     * @param athleteId athlete's ID
+     * @param sensorData sensor data to check
+     * @param callback callback to receive the result, on the main thread
      */
-    private String createCacheKey(String athleteId, SensorData data) {
-        // Round values to reduce sensitivity and increase cache hits
-        int roundedHeartRate = roundToNearest(data.getHeartRate(), 5);
-        double roundedTemp = roundToNearest(data.getTemperature(), 0.5);
-        double roundedSpeed = roundToNearest(data.getSpeed(), 1.0);
+    public void detectAnomalyWithDeadline(@NonNull String athleteId, @NonNull SensorData sensorData,
+                                          @NonNull ReconcilingCallback callback) {
+        int drift = driftDetector.update(athleteId, sensorData);
+        boolean localAnomaly = detectAnomalyLocally(athleteId, sensorData, drift);
+        detectAnomaly(athleteId, sensorData, localAnomaly, startDeadline(localAnomaly, callback));
+    }
 
-        return athleteId + "_" + roundedHeartRate + "_" + roundedTemp + "_" + roundedSpeed;
+    /**
+     * Arm the latency budget for a detection about to start elsewhere, such as the batched API
+     * windows of SensorDataRepository. Pass the detection result to the returned callback; if it
+     * isn't in by the deadline the local verdict answers and the result reconciles it later.
+     * @param localAnomaly the local rules' verdict for the sample
+     * @param callback callback to receive the result, on the main thread
+     */
+    public AnomalyCallback startDeadline(boolean localAnomaly, @NonNull ReconcilingCallback callback) {
+        DeadlineReconciler reconciler = new DeadlineReconciler(() -> localAnomaly, onMainThread(callback));
+        reconciler.start(deadlineScheduler, getLatencyBudgetMs());
+        return reconciler;
     }
 
     /**
-     * Round a value to the nearest multiple of the given unit
+     * Post a callback's calls to the main thread, in order, instead of making them on the
+     * deadline scheduler or network threads while the reconciler holds its lock
      */
-    private int roundToNearest(int value, int unit) {
-        return Math.round((float) value / unit) * unit;
+    private ReconcilingCallback onMainThread(ReconcilingCallback callback) {
+        return new ReconcilingCallback() {
+            @Override
+            public void onDetectionComplete(boolean isAnomaly, String source) {
+                mainHandler.post(() -> callback.onDetectionComplete(isAnomaly, source));
+            }
+
+            @Override
+            public void onReconciled(boolean isAnomaly, String source) {
+                mainHandler.post(() -> callback.onReconciled(isAnomaly, source));
+            }
+        };
     }
 
     /**
-     * Round a value to the nearest multiple of the given unit
+     * Detect anomalies using local rule-based approach
+     * This serves as fallback when ML API is unavailable
+     * @param athleteId athlete's ID, for their alert bands
+     * @param sensorData sensor data to check
+     * @param drift the athlete's drift flags from {@link DriftDetector}
+     * @return true if an anomaly is detected, false otherwise
      */
-    private double roundToNearest(double value, double unit) {
-        return Math.round(value / unit) * unit;
+    private boolean detectAnomalyLocally(String athleteId, SensorData sensorData, int drift) {
+        LocalRule rule = LocalRuleEngine.getInstance().evaluate(athleteId, sensorData,
+                AthleteBaselines.getInstance().getBands(athleteId), drift);
+        if (rule != null) {
+            Log.d(TAG, "Local detection: Anomaly detected by rule '" + rule + "'");
+        }
+        return rule != null;
     }
 
     /**
@@ -184,8 +273,8 @@ public class AnomalyDetectionModel {
         preferences.edit().putBoolean(KEY_API_ENABLED, enabled).apply();
 
         if (enabled) {
-            // Reset failures counter when re-enabling
-            consecutiveFailures.set(0);
+            // Give the API a fresh start when re-enabling
+            predictionClient.getCircuitBreaker().reset();
         }
     }
 
@@ -193,7 +282,7 @@ public class AnomalyDetectionModel {
      * Get the current API URL
      */
     public String getApiUrl() {
-        return preferences.getString(KEY_API_URL, "http://localhost:5000/api/predict");
+        return preferences.getString(KEY_API_URL, AnomalyPredictionClient.DEFAULT_API_URL);
     }
 
     /**
@@ -201,6 +290,45 @@ public class AnomalyDetectionModel {
      */
     public void setApiUrl(String url) {
         preferences.edit().putString(KEY_API_URL, url).apply();
+        predictionClient.setApiUrl(url);
+    }
+
+    /**
+     * Get how long alerts may wait for the ML verdict
+     */
+    public long getLatencyBudgetMs() {
+        return preferences.getLong(KEY_LATENCY_BUDGET, DEFAULT_LATENCY_BUDGET_MS);
+    }
+
+    /**
+     * Set how long alerts may wait for the ML verdict
+     */
+    public void setLatencyBudgetMs(long budgetMs) {
+        preferences.edit().putLong(KEY_LATENCY_BUDGET, Math.max(0, budgetMs)).apply();
+    }
+
+    /**
+     * Get the local anomaly rules, one per line in the syntax of {@link LocalRule}
+     */
+    public String getLocalRules() {
+        return preferences.getString(KEY_LOCAL_RULES, LocalRule.DEFAULT_RULES);
+    }
+
+    /**
+     * Set the local anomaly rules; they apply to every detection path at once
+     * @throws IllegalArgumentException if the rules don't parse; the current rules stay
+     */
+    public void setLocalRules(String rules) {
+        LocalRuleEngine.getInstance().setRules(rules);
+        preferences.edit().putString(KEY_LOCAL_RULES, rules).apply();
+    }
+
+    private void installLocalRules(String rules) {
+        try {
+            LocalRuleEngine.getInstance().setRules(rules);
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Invalid saved local rules, using the defaults: " + e.getMessage());
+        }
     }
 
     /**
@@ -214,24 +342,42 @@ public class AnomalyDetectionModel {
      * Get current API status summary
      */
     public String getApiStatus() {
-        boolean enabled = isApiEnabled();
-        int failures = consecutiveFailures.get();
-
-        if (!enabled) {
+        if (!isApiEnabled()) {
             return "ML API Disabled";
-        } else if (failures >= MAX_API_FAILURES) {
-            return "ML API Failing (using local detection)";
-        } else if (failures > 0) {
-            return "ML API Warning (" + failures + " failures)";
-        } else {
-            return "ML API Active";
         }
+
+        CircuitBreaker breaker = predictionClient.getCircuitBreaker();
+        int failurePercent = (int) Math.round(breaker.getFailureRate() * 100);
+        switch (breaker.getState()) {
+            case OPEN:
+                return "ML API Failing (using local detection, retrying in "
+                        + (breaker.getRemainingOpenMs() + 999) / 1000 + " s)";
+            case HALF_OPEN:
+                return "ML API Recovering (probing)";
+            default:
+                if (failurePercent > 0) {
+                    return "ML API Warning (" + failurePercent + "% failures, "
+                            + breaker.getAverageLatencyMs() + " ms avg)";
+                }
+                return "ML API Active (" + breaker.getAverageLatencyMs() + " ms avg)";
+        }
+    }
+
+    /**
+     * Get prediction cache statistics
+     */
+    public String getCacheStatus() {
+        return "Cache: " + predictionCache.size() + " entries, "
+                + predictionCache.getHitCount() + " hits, "
+                + predictionCache.getMissCount() + " misses, "
+                + predictionCache.getEvictionCount() + " evictions, "
+                + predictionCache.getExpirationCount() + " expired";
     }
 
     /**
-     * Reset API failure counter
+     * Reset API failure counter, closing the circuit breaker
      */
     public void resetFailureCounter() {
-        consecutiveFailures.set(0);
+        predictionClient.getCircuitBreaker().reset();
     }
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+package com.example.saferun.ml;
+
+/**
+ * Feature vector of a window of samples, as fed to the anomaly model.
+ * For each vital, in the order the prediction API receives them (temperature, speed, heart rate):
+ * last value, mean, standard deviation, min, max and slope per sample.
+ * Values are taken as received, like the API does, so exported models see the same inputs.
+ */
+public final class AnomalyFeatures {
+
+    public static final int VITAL_TEMPERATURE = 0;
+    public static final int VITAL_SPEED = 1;
+    public static final int VITAL_HEART_RATE = 2;
+
+    public static final int STAT_LAST = 0;
+    public static final int STAT_MEAN = 1;
+    public static final int STAT_STD = 2;
+    public static final int STAT_MIN = 3;
+    public static final int STAT_MAX = 4;
+    public static final int STAT_SLOPE = 5;
+
+    private static final int VITAL_COUNT = 3;
+    private static final int STAT_COUNT = 6;
+
+    public static final int COUNT = VITAL_COUNT * STAT_COUNT;
+
+    private AnomalyFeatures() {
+    }
+
+    /**
+     * Index of a statistic of a vital in the feature vector
+     */
+    public static int index(int vital, int stat) {
+        return vital * STAT_COUNT + stat;
+    }
+
+    /**
+     * Write the features of the window {@code [offset, offset + count)} of the given columns into
+     * {@code out}. A window of one sample has zero deviation and slope.
+     */
+    public static void extract(float[] temperature, float[] speed, int[] heartRate, int offset, int count,
+                               float[] out) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Empty window");
+        }
+        extractVital(VITAL_TEMPERATURE, temperature, null, offset, count, out);
+        extractVital(VITAL_SPEED, speed, null, offset, count, out);
+        extractVital(VITAL_HEART_RATE, null, heartRate, offset, count, out);
+    }
+
+    private static void extractVital(int vital, float[] floats, int[] ints, int offset, int count, float[] out) {
+        double mean = 0;
+        double m2 = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        // Least squares slope against the sample index, centered on the middle of the window
+        double center = (count - 1) / 2.0;
+        double covariance = 0;
+        double last = 0;
+
+        for (int i = 0; i < count; i++) {
+            double value = floats != null ? floats[offset + i] : ints[offset + i];
+            double delta = value - mean;
+            mean += delta / (i + 1);
+            m2 += delta * (value - mean);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            covariance += (i - center) * value;
+            last = value;
+        }
+
+        // Sum of (i - center)^2 over the window
+        double indexVariance = count * ((double) count * count - 1) / 12.0;
+
+        int base = vital * STAT_COUNT;
+        out[base + STAT_LAST] = (float) last;
+        out[base + STAT_MEAN] = (float) mean;
+        out[base + STAT_STD] = count > 1 ? (float) Math.sqrt(m2 / count) : 0f;
+        out[base + STAT_MIN] = (float) min;
+        out[base + STAT_MAX] = (float) max;
+        out[base + STAT_SLOPE] = count > 1 ? (float) (covariance / indexVariance) : 0f;
+    }
+}
@@ -9,7 +9,9 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import okhttp3.Call;
@@ -25,11 +27,21 @@ import okhttp3.Response;
  */
 public class AnomalyPredictionClient {
     private static final String TAG = "AnomalyPredictionClient";
-    private static final String API_URL = "http://192.168.11.109:5000/api/predict";
+    public static final String DEFAULT_API_URL = "http://localhost:5000/api/predict";
+    private static final String CIRCUIT_OPEN_MESSAGE = "Prediction API unavailable, skipped while it recovers";
     private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
 
     private static AnomalyPredictionClient instance;
     private final OkHttpClient client;
+    private final PredictionBatcher batcher;
+    // Fails calls fast while the API is known to be down
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    // Set from the configured URL, see setApiUrl
+    private volatile String apiUrl = DEFAULT_API_URL;
+    private volatile String batchApiUrl = batchUrl(DEFAULT_API_URL);
+    // Set when the service has no batch endpoint; batches are then sent one window at a time
+    private volatile boolean batchUnsupported;
 
     // Interface for receiving prediction results
     public interface PredictionCallback {
@@ -43,6 +55,7 @@ public class AnomalyPredictionClient {
                 .readTimeout(30, TimeUnit.SECONDS)
                 .writeTimeout(30, TimeUnit.SECONDS)
                 .build();
+        batcher = new PredictionBatcher(Executors.newSingleThreadScheduledExecutor(), this::sendBatch);
     }
 
     public static synchronized AnomalyPredictionClient getInstance() {
@@ -52,6 +65,39 @@ public class AnomalyPredictionClient {
         return instance;
     }
 
+    /**
+     * Point the client at a prediction service. Windows are posted to {@code url} and batches to
+     * the same URL with {@code _batch} appended, e.g. {@code /api/predict_batch}.
+     */
+    public void setApiUrl(String url) {
+        if (url.equals(apiUrl)) {
+            return;
+        }
+        apiUrl = url;
+        batchApiUrl = batchUrl(url);
+        // The new service may have the batch endpoint
+        batchUnsupported = false;
+    }
+
+    static String batchUrl(String apiUrl) {
+        String url = apiUrl;
+        while (url.endsWith("/")) {
+            url = url.substring(0, url.length() - 1);
+        }
+        return url + "_batch";
+    }
+
+    /**
+     * Predicts if a single sensor sample represents an anomaly.
+     *
+     * @param athleteId the ID of the athlete
+     * @param sensorData the sample to check
+     * @param callback callback for receiving the prediction result
+     */
+    public void predictAnomaly(String athleteId, SensorData sensorData, PredictionCallback callback) {
+        predictAnomaly(athleteId, Collections.singletonList(sensorData), callback);
+    }
+
     /**
      * Predicts if the given sequence of sensor data represents an anomaly.
      *
@@ -61,58 +107,227 @@ public class AnomalyPredictionClient {
      */
     public void predictAnomaly(String athleteId, List<SensorData> sensorSequence, PredictionCallback callback) {
         try {
-            JSONObject requestBody = new JSONObject();
-            requestBody.put("user_id", athleteId);
-
             JSONArray dataArray = new JSONArray();
 
             for (SensorData dataPoint : sensorSequence) {
-                JSONObject jsonPoint = new JSONObject();
-                jsonPoint.put("temperature", dataPoint.getTemperature());
-                jsonPoint.put("speed", dataPoint.getSpeed());
-                jsonPoint.put("heart_beat", dataPoint.getHeartRate());
-                dataArray.put(jsonPoint);
+                dataArray.put(dataPoint(dataPoint.getTemperature(), dataPoint.getSpeed(), dataPoint.getHeartRate()));
+            }
+
+            post(athleteId, dataArray, callback);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error creating request body: " + e.getMessage());
+            callback.onError("Error creating API request: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Predicts if the window {@code [offset, offset + count)} of the given columns, oldest first,
+     * represents an anomaly. The columns are read before this method returns.
+     *
+     * @param athleteId the ID of the athlete
+     * @param callback callback for receiving the prediction result
+     */
+    public void predictAnomaly(String athleteId, float[] temperature, float[] speed, int[] heartRate,
+                               int offset, int count, PredictionCallback callback) {
+        try {
+            JSONArray dataArray = new JSONArray();
+
+            for (int i = offset; i < offset + count; i++) {
+                dataArray.put(dataPoint(temperature[i], speed[i], heartRate[i]));
             }
 
-            requestBody.put("data", dataArray);
+            post(athleteId, dataArray, callback);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error creating request body: " + e.getMessage());
+            callback.onError("Error creating API request: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Like {@link #predictAnomaly(String, float[], float[], int[], int, int, PredictionCallback)},
+     * but the window is sent together with the windows of the other athletes submitted during the
+     * same tick, in one request. The columns are read before this method returns.
+     */
+    public void predictAnomalyBatched(String athleteId, float[] temperature, float[] speed, int[] heartRate,
+                                      int offset, int count, PredictionCallback callback) {
+        if (batchUnsupported) {
+            predictAnomaly(athleteId, temperature, speed, heartRate, offset, count, callback);
+            return;
+        }
+        batcher.submit(athleteId, temperature, speed, heartRate, offset, count, callback);
+    }
 
-            Request request = new Request.Builder()
-                    .url(API_URL)
-                    .post(RequestBody.create(requestBody.toString(), JSON))
-                    .build();
+    /**
+     * Send a tick's windows to the batch endpoint. The request lists one {@code user_id} and
+     * {@code data} pair per window and the response has one {@code user_id} and {@code is_anomaly}
+     * pair per window, in the same order.
+     */
+    private void sendBatch(List<PredictionBatcher.WindowRequest> batch, PredictionBatcher.BatchCallback callback) {
+        if (batch.size() == 1 || batchUnsupported) {
+            sendIndividually(batch);
+            return;
+        }
 
-            client.newCall(request).enqueue(new Callback() {
-                @Override
-                public void onFailure(Call call, IOException e) {
-                    Log.e(TAG, "API request failed: " + e.getMessage());
-                    callback.onError("Failed to communicate with prediction API: " + e.getMessage());
+        JSONObject requestBody = new JSONObject();
+        try {
+            JSONArray requests = new JSONArray();
+            for (PredictionBatcher.WindowRequest window : batch) {
+                JSONArray dataArray = new JSONArray();
+                for (int i = 0; i < window.size(); i++) {
+                    dataArray.put(dataPoint(window.getTemperature()[i], window.getSpeed()[i],
+                            window.getHeartRate()[i]));
                 }
+                JSONObject entry = new JSONObject();
+                entry.put("user_id", window.getAthleteId());
+                entry.put("data", dataArray);
+                requests.put(entry);
+            }
+            requestBody.put("requests", requests);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error creating batch request body: " + e.getMessage());
+            callback.onError("Error creating API request: " + e.getMessage());
+            return;
+        }
+
+        if (!circuitBreaker.tryAcquire()) {
+            callback.onError(CIRCUIT_OPEN_MESSAGE);
+            return;
+        }
+
+        Request request = new Request.Builder()
+                .url(batchApiUrl)
+                .post(RequestBody.create(requestBody.toString(), JSON))
+                .build();
+
+        long startedAt = System.nanoTime();
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                circuitBreaker.onFailure(elapsedMs(startedAt));
+                Log.e(TAG, "Batch API request failed: " + e.getMessage());
+                callback.onError("Failed to communicate with prediction API: " + e.getMessage());
+            }
 
-                @Override
-                public void onResponse(Call call, Response response) throws IOException {
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                recordResponse(response, startedAt);
+                try (response) {
+                    if (response.code() == 404) {
+                        // Older service without the batch endpoint
+                        Log.w(TAG, "Prediction API has no batch endpoint, sending windows one by one");
+                        batchUnsupported = true;
+                        sendIndividually(batch);
+                        return;
+                    }
                     if (!response.isSuccessful()) {
                         callback.onError("API returned error code: " + response.code());
                         return;
                     }
 
+                    Boolean[] results = new Boolean[batch.size()];
                     try {
-                        String responseBody = response.body().string();
-                        JSONObject result = new JSONObject(responseBody);
-
-                        boolean isAnomaly = result.optBoolean("is_anomaly", false);
-                        Log.d(TAG, "Prediction result for athlete " + athleteId + ": " + isAnomaly);
-                        callback.onSuccess(isAnomaly);
-
+                        JSONArray resultArray = new JSONObject(response.body().string()).getJSONArray("results");
+                        for (int i = 0; i < results.length && i < resultArray.length(); i++) {
+                            JSONObject result = resultArray.optJSONObject(i);
+                            // Only trust a result that answers the window at the same position
+                            if (result != null && batch.get(i).getAthleteId().equals(result.optString("user_id"))) {
+                                results[i] = result.optBoolean("is_anomaly", false);
+                            }
+                        }
                     } catch (JSONException e) {
-                        Log.e(TAG, "Error parsing API response: " + e.getMessage());
+                        Log.e(TAG, "Error parsing batch API response: " + e.getMessage());
                         callback.onError("Error parsing prediction result: " + e.getMessage());
+                        return;
                     }
+                    Log.d(TAG, "Batch prediction results for " + results.length + " athletes");
+                    callback.onSuccess(results);
                 }
-            });
+            }
+        });
+    }
 
-        } catch (JSONException e) {
-            Log.e(TAG, "Error creating request body: " + e.getMessage());
-            callback.onError("Error creating API request: " + e.getMessage());
+    private void sendIndividually(List<PredictionBatcher.WindowRequest> batch) {
+        for (PredictionBatcher.WindowRequest window : batch) {
+            predictAnomaly(window.getAthleteId(), window.getTemperature(), window.getSpeed(),
+                    window.getHeartRate(), 0, window.size(), window.getCallback());
         }
     }
+
+    /**
+     * Breaker guarding the prediction API, for status and manual resets
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Server errors count against the API; any other answer shows it is up
+     */
+    private void recordResponse(Response response, long startedAt) {
+        if (response.code() >= 500) {
+            circuitBreaker.onFailure(elapsedMs(startedAt));
+        } else {
+            circuitBreaker.onSuccess(elapsedMs(startedAt));
+        }
+    }
+
+    private static long elapsedMs(long startedAt) {
+        return (System.nanoTime() - startedAt) / 1_000_000L;
+    }
+
+    private JSONObject dataPoint(double temperature, double speed, int heartRate) throws JSONException {
+        JSONObject jsonPoint = new JSONObject();
+        jsonPoint.put("temperature", temperature);
+        jsonPoint.put("speed", speed);
+        jsonPoint.put("heart_beat", heartRate);
+        return jsonPoint;
+    }
+
+    private void post(String athleteId, JSONArray dataArray, PredictionCallback callback) throws JSONException {
+        JSONObject requestBody = new JSONObject();
+        requestBody.put("user_id", athleteId);
+        requestBody.put("data", dataArray);
+
+        if (!circuitBreaker.tryAcquire()) {
+            callback.onError(CIRCUIT_OPEN_MESSAGE);
+            return;
+        }
+
+        Request request = new Request.Builder()
+                .url(apiUrl)
+                .post(RequestBody.create(requestBody.toString(), JSON))
+                .build();
+
+        long startedAt = System.nanoTime();
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                circuitBreaker.onFailure(elapsedMs(startedAt));
+                Log.e(TAG, "API request failed: " + e.getMessage());
+                callback.onError("Failed to communicate with prediction API: " + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                recordResponse(response, startedAt);
+                if (!response.isSuccessful()) {
+                    callback.onError("API returned error code: " + response.code());
+                    return;
+                }
+
+                try {
+                    String responseBody = response.body().string();
+                    JSONObject result = new JSONObject(responseBody);
+
+                    boolean isAnomaly = result.optBoolean("is_anomaly", false);
+                    Log.d(TAG, "Prediction result for athlete " + athleteId + ": " + isAnomaly);
+                    callback.onSuccess(isAnomaly);
+
+                } catch (JSONException e) {
+                    Log.e(TAG, "Error parsing API response: " + e.getMessage());
+                    callback.onError("Error parsing prediction result: " + e.getMessage());
+                }
+            }
+        });
+    }
 }
@@ -0,0 +1,100 @@
+package com.example.saferun.ml;
+
+import android.util.Log;
+
+import com.example.saferun.data.local.SensorDataStore;
+import com.example.saferun.data.model.SensorSeries;
+import com.example.saferun.data.model.VitalsSketch;
+import com.example.saferun.data.util.VitalsSketchCodec;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Personal alert bands of every athlete, from a {@link VitalsSketch} of their completed sessions
+ * kept in the {@link SensorDataStore}. Each completed session is folded into the sketch once, so
+ * baselines grow incrementally without rescanning history.
+ *
+ * {@link #getBands(String)} is a map lookup and never touches the disk: an athlete seen for the
+ * first time gets {@link AlertBands#DEFAULT} while their sketch loads in the background.
+ * Thread-safe.
+ */
+public class AthleteBaselines {
+    private static final String TAG = "AthleteBaselines";
+
+    private static AthleteBaselines instance;
+
+    private final Map<String, AlertBands> bands = new ConcurrentHashMap<>();
+    private final Set<String> loading = ConcurrentHashMap.newKeySet();
+    // Store reads and writes, one at a time so folds of the same athlete don't race
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private AthleteBaselines() {
+    }
+
+    public static synchronized AthleteBaselines getInstance() {
+        if (instance == null) {
+            instance = new AthleteBaselines();
+        }
+        return instance;
+    }
+
+    /**
+     * Current bands of an athlete
+     */
+    public AlertBands getBands(String athleteId) {
+        AlertBands athleteBands = bands.get(athleteId);
+        if (athleteBands != null) {
+            return athleteBands;
+        }
+        if (loading.add(athleteId)) {
+            executor.execute(() -> load(athleteId));
+        }
+        return AlertBands.DEFAULT;
+    }
+
+    /**
+     * Fold an athlete's samples of a completed session into their baseline, in the background.
+     * Sessions already folded in are skipped.
+     */
+    public void addSession(String sessionId, String athleteId, SensorSeries series) {
+        executor.execute(() -> {
+            SensorDataStore store = SensorDataStore.getInstance();
+            if (store == null || store.hasBaselineSession(athleteId, sessionId)) {
+                return;
+            }
+
+            VitalsSketch sketch = readSketch(store, athleteId);
+            sketch.addAll(series);
+            store.writeBaseline(athleteId, sessionId, VitalsSketchCodec.encode(sketch));
+
+            AlertBands athleteBands = AlertBands.from(sketch);
+            bands.put(athleteId, athleteBands);
+            loading.add(athleteId);
+            Log.d(TAG, "Added session " + sessionId + " to baseline of athlete " + athleteId + ": " + athleteBands);
+        });
+    }
+
+    private void load(String athleteId) {
+        SensorDataStore store = SensorDataStore.getInstance();
+        if (store == null || bands.containsKey(athleteId)) {
+            return;
+        }
+        bands.put(athleteId, AlertBands.from(readSketch(store, athleteId)));
+    }
+
+    private VitalsSketch readSketch(SensorDataStore store, String athleteId) {
+        byte[] data = store.readBaseline(athleteId);
+        if (data != null) {
+            try {
+                return VitalsSketchCodec.decode(data);
+            } catch (IllegalArgumentException e) {
+                Log.e(TAG, "Discarding unreadable baseline of athlete " + athleteId, e);
+            }
+        }
+        return new VitalsSketch();
+    }
+}
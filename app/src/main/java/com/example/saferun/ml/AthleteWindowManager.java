@@ -0,0 +1,141 @@
+package com.example.saferun.ml;
+
+import com.example.saferun.data.model.SensorData;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the last samples of every athlete in a sliding window and hands the window out on a
+ * stride: every {@code stride} new samples instead of every sample. Gives anomaly models
+ * temporal context while cutting prediction requests per athlete by the stride.
+ *
+ * Each window is a primitive ring written twice (at i and i + capacity), so the newest samples
+ * are always one contiguous range of the columns and can be read without copying.
+ * A replayed or older sample is ignored; a gap longer than {@link #MAX_GAP_MS} starts a new
+ * window, so a new session doesn't inherit the previous one's context. Thread-safe.
+ */
+public class AthleteWindowManager {
+
+    public static final int DEFAULT_WINDOW_SIZE = 30;
+    public static final int DEFAULT_STRIDE = 5;
+
+    static final long MAX_GAP_MS = 60_000L;
+
+    /**
+     * Receives the window {@code [offset, offset + count)} of the columns, oldest first.
+     * The columns are only valid during the call.
+     */
+    public interface WindowFunction<T> {
+        T apply(float[] temperature, float[] speed, int[] heartRate, int offset, int count);
+    }
+
+    private final int windowSize;
+    private final int stride;
+    private final Map<String, Window> windows = new HashMap<>();
+
+    public AthleteWindowManager() {
+        this(DEFAULT_WINDOW_SIZE, DEFAULT_STRIDE);
+    }
+
+    public AthleteWindowManager(int windowSize, int stride) {
+        if (windowSize <= 0 || stride <= 0) {
+            throw new IllegalArgumentException("Window size and stride must be positive");
+        }
+        this.windowSize = windowSize;
+        this.stride = stride;
+    }
+
+    /**
+     * Append a sample to the athlete's window. When {@code stride} samples have been added since
+     * the window was last handed out, apply {@code onDue} to it and return the result.
+     *
+     * @return the result of {@code onDue}, or null when no window is due or the sample is a replay
+     */
+    public synchronized <T> T offer(String athleteId, SensorData sample, WindowFunction<T> onDue) {
+        Window window = windows.get(athleteId);
+        if (window == null) {
+            window = new Window(windowSize);
+            windows.put(athleteId, window);
+        }
+
+        if (!window.add(sample)) {
+            return null;
+        }
+        if (++window.sinceDue < stride) {
+            return null;
+        }
+        window.sinceDue = 0;
+        return window.apply(onDue);
+    }
+
+    /**
+     * Number of samples in the athlete's window
+     */
+    public synchronized int size(String athleteId) {
+        Window window = windows.get(athleteId);
+        return window != null ? window.size : 0;
+    }
+
+    /**
+     * Forget an athlete's window, e.g. when their session ends
+     */
+    public synchronized void remove(String athleteId) {
+        windows.remove(athleteId);
+    }
+
+    public synchronized void clear() {
+        windows.clear();
+    }
+
+    private static class Window {
+        private final int capacity;
+        private final float[] temperatures;
+        private final float[] speeds;
+        private final int[] heartRates;
+        // Next slot to write, in [0, capacity)
+        private int next;
+        private int size;
+        private long lastTimestamp = Long.MIN_VALUE;
+        private int sinceDue;
+
+        Window(int capacity) {
+            this.capacity = capacity;
+            temperatures = new float[2 * capacity];
+            speeds = new float[2 * capacity];
+            heartRates = new int[2 * capacity];
+        }
+
+        boolean add(SensorData sample) {
+            long timestamp = sample.getTimestamp();
+            if (size > 0 && timestamp <= lastTimestamp) {
+                return false;
+            }
+            if (size > 0 && timestamp - lastTimestamp > MAX_GAP_MS) {
+                size = 0;
+                sinceDue = 0;
+            }
+            lastTimestamp = timestamp;
+
+            float temperature = (float) sample.getTemperature();
+            float speed = (float) sample.getSpeed();
+            int heartRate = sample.getHeartRate();
+            temperatures[next] = temperature;
+            temperatures[next + capacity] = temperature;
+            speeds[next] = speed;
+            speeds[next + capacity] = speed;
+            heartRates[next] = heartRate;
+            heartRates[next + capacity] = heartRate;
+
+            next = (next + 1) % capacity;
+            size = Math.min(size + 1, capacity);
+            return true;
+        }
+
+        <T> T apply(WindowFunction<T> function) {
+            // The newest sample is at next - 1 + capacity in the mirrored half
+            int offset = next + capacity - size;
+            return function.apply(temperatures, speeds, heartRates, offset, size);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.saferun.ml;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker for a remote endpoint. While closed, calls go through and their outcomes are
+ * kept in a rolling window of the last calls; when enough of them failed or were too slow, the
+ * breaker opens and calls fail fast without touching the network. After the open duration one
+ * probe call is let through (half-open): its success closes the breaker, its failure opens it
+ * again for twice as long, up to the maximum.
+ *
+ * Callers ask {@link #tryAcquire()} before each call and report every acquired call with
+ * {@link #onSuccess(long)} or {@link #onFailure(long)}. Thread-safe.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    public static final int DEFAULT_WINDOW_SIZE = 20;
+    public static final int DEFAULT_MIN_CALLS = 5;
+    public static final double DEFAULT_FAILURE_RATE = 0.5;
+    public static final long DEFAULT_SLOW_CALL_MS = 3_000L;
+    public static final long DEFAULT_OPEN_MS = 15_000L;
+    public static final long DEFAULT_MAX_OPEN_MS = 5 * 60_000L;
+
+    private final int windowSize;
+    private final int minCalls;
+    private final double failureRateThreshold;
+    private final long slowCallMs;
+    private final long baseOpenMs;
+    private final long maxOpenMs;
+    private final LongSupplier clock;
+
+    // Rolling window of the last calls, guarded by this like everything below
+    private final boolean[] failed;
+    private final long[] latencies;
+    private int next;
+    private int calls;
+    private int failures;
+    private long latencySum;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private long openMs;
+    private boolean probeInFlight;
+    private long probeStartedAt;
+
+    public CircuitBreaker() {
+        this(DEFAULT_WINDOW_SIZE, DEFAULT_MIN_CALLS, DEFAULT_FAILURE_RATE, DEFAULT_SLOW_CALL_MS,
+                DEFAULT_OPEN_MS, DEFAULT_MAX_OPEN_MS, () -> System.nanoTime() / 1_000_000L);
+    }
+
+    /**
+     * @param minCalls calls the window must hold before the failure rate can open the breaker
+     * @param slowCallMs calls slower than this count as failures
+     * @param clock milliseconds of a monotonic clock
+     */
+    public CircuitBreaker(int windowSize, int minCalls, double failureRateThreshold, long slowCallMs,
+                          long openMs, long maxOpenMs, LongSupplier clock) {
+        if (windowSize <= 0 || minCalls <= 0 || minCalls > windowSize || openMs <= 0 || maxOpenMs < openMs) {
+            throw new IllegalArgumentException("Invalid circuit breaker settings");
+        }
+        this.windowSize = windowSize;
+        this.minCalls = minCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallMs = slowCallMs;
+        this.baseOpenMs = openMs;
+        this.maxOpenMs = maxOpenMs;
+        this.clock = clock;
+        this.openMs = openMs;
+        failed = new boolean[windowSize];
+        latencies = new long[windowSize];
+    }
+
+    /**
+     * Whether a call may go through now. False means fail fast.
+     */
+    public synchronized boolean tryAcquire() {
+        long now = clock.getAsLong();
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now - openedAt < openMs) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                return startProbe(now);
+            default:
+                // A probe that never reported is given up after the open duration
+                if (probeInFlight && now - probeStartedAt < openMs) {
+                    return false;
+                }
+                return startProbe(now);
+        }
+    }
+
+    private boolean startProbe(long now) {
+        probeInFlight = true;
+        probeStartedAt = now;
+        return true;
+    }
+
+    public synchronized void onSuccess(long latencyMs) {
+        if (latencyMs > slowCallMs) {
+            onFailure(latencyMs);
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            close();
+        }
+        record(false, latencyMs);
+    }
+
+    public synchronized void onFailure(long latencyMs) {
+        if (state == State.HALF_OPEN) {
+            // Back off further after every failed probe
+            open(Math.min(openMs * 2, maxOpenMs));
+            return;
+        }
+        record(true, latencyMs);
+        if (state == State.CLOSED && calls >= minCalls && (double) failures / calls >= failureRateThreshold) {
+            open(baseOpenMs);
+        }
+    }
+
+    /**
+     * Close the breaker and forget the window, e.g. after the endpoint was reconfigured
+     */
+    public synchronized void reset() {
+        close();
+    }
+
+    private void open(long duration) {
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+        openMs = duration;
+        probeInFlight = false;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        openMs = baseOpenMs;
+        probeInFlight = false;
+        next = 0;
+        calls = 0;
+        failures = 0;
+        latencySum = 0;
+    }
+
+    private void record(boolean failure, long latencyMs) {
+        if (calls == windowSize) {
+            if (failed[next]) {
+                failures--;
+            }
+            latencySum -= latencies[next];
+        } else {
+            calls++;
+        }
+        failed[next] = failure;
+        latencies[next] = latencyMs;
+        if (failure) {
+            failures++;
+        }
+        latencySum += latencyMs;
+        next = (next + 1) % windowSize;
+    }
+
+    public synchronized State getState() {
+        // An open breaker whose duration has passed will let the next call probe
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openMs) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * Share of failed calls in the window, 0 without calls
+     */
+    public synchronized double getFailureRate() {
+        return calls > 0 ? (double) failures / calls : 0;
+    }
+
+    /**
+     * Mean latency of the calls in the window, 0 without calls
+     */
+    public synchronized long getAverageLatencyMs() {
+        return calls > 0 ? latencySum / calls : 0;
+    }
+
+    /**
+     * Milliseconds until an open breaker lets a probe through, 0 when not open
+     */
+    public synchronized long getRemainingOpenMs() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, openMs - (clock.getAsLong() - openedAt));
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.saferun.ml;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Answers an anomaly check within a latency budget: with the detection result if it arrives in
+ * time, otherwise with the local rules' verdict at the deadline. A result arriving after the
+ * deadline raises the alert when the local rules found nothing. The local rules are a floor
+ * under every verdict, so an alert they raised stands and any other late result is dropped.
+ * The callback is never called concurrently, and a reconciliation always follows the first answer.
+ */
+class DeadlineReconciler implements AnomalyDetectionModel.AnomalyCallback, Runnable {
+
+    static final String SOURCE_DEADLINE = "Local rules (ML pending)";
+
+    private final BooleanSupplier localRules;
+    private final AnomalyDetectionModel.ReconcilingCallback callback;
+
+    // Guarded by this
+    private boolean answered;
+    private boolean deadlineVerdict;
+    private boolean byDeadline;
+    private ScheduledFuture<?> deadline;
+
+    DeadlineReconciler(BooleanSupplier localRules, AnomalyDetectionModel.ReconcilingCallback callback) {
+        this.localRules = localRules;
+        this.callback = callback;
+    }
+
+    /**
+     * Arm the deadline; call before starting the detection
+     */
+    synchronized void start(ScheduledExecutorService scheduler, long budgetMs) {
+        if (!answered) {
+            deadline = scheduler.schedule(this, budgetMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * The deadline passed without a result
+     */
+    @Override
+    public synchronized void run() {
+        if (answered) {
+            return;
+        }
+        answered = true;
+        byDeadline = true;
+        deadlineVerdict = localRules.getAsBoolean();
+        callback.onDetectionComplete(deadlineVerdict, SOURCE_DEADLINE);
+    }
+
+    /**
+     * The detection result
+     */
+    @Override
+    public synchronized void onDetectionComplete(boolean isAnomaly, String source) {
+        if (!answered) {
+            answered = true;
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
+            callback.onDetectionComplete(isAnomaly, source);
+        } else if (byDeadline && isAnomaly && !deadlineVerdict) {
+            deadlineVerdict = isAnomaly;
+            callback.onReconciled(isAnomaly, source);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.saferun.ml;
+
+import com.example.saferun.data.model.Metric;
+import com.example.saferun.data.model.SensorData;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streaming change-point detection on every athlete's heart rate, speed and temperature.
+ * Each metric keeps a slow exponentially weighted baseline, a noise level and two-sided CUSUM
+ * sums of the deviation from the baseline in units of noise, so a sustained drift that stays
+ * within the fixed thresholds, like creeping core temperature, still adds up to an alarm.
+ *
+ * The noise level comes from differences between consecutive readings, so a drift doesn't
+ * inflate it. The baseline lags a steady drift by a constant amount, so the alarm holds while
+ * the drift goes on; after a one-off step the baseline catches up and the alarm clears.
+ *
+ * Updates are O(1) and allocate nothing once an athlete has been seen. A replayed sample is
+ * ignored and a gap longer than {@link #MAX_GAP_MS} starts over, like a new session. Thread-safe.
+ */
+public class DriftDetector {
+
+    static final long MAX_GAP_MS = 60_000L;
+
+    // Baseline and noise smoothing; the first readings are averaged with weight 1/n instead
+    private static final double BASELINE_ALPHA = 0.002;
+    private static final double NOISE_ALPHA = 0.02;
+    // Readings before the baseline is trusted
+    private static final int WARMUP = 20;
+    // CUSUM allowance and decision threshold, in standard deviations
+    private static final double K = 1.0;
+    private static final double H = 10.0;
+    // Sums are capped so an alarm clears soon after the metric returns to its baseline
+    private static final double MAX_SUM = 2 * H;
+    // Smallest standard deviation per metric, so a very steady baseline doesn't make noise an alarm
+    private static final double[] MIN_SD = {2.0, 0.5, 0.05};
+
+    /**
+     * Flag of an upward drift of a metric in the result of {@link #update}
+     */
+    public static int up(int metric) {
+        return 1 << metric;
+    }
+
+    /**
+     * Flag of a downward drift of a metric in the result of {@link #update}
+     */
+    public static int down(int metric) {
+        return 1 << (metric + Metric.COUNT);
+    }
+
+    /**
+     * Whether drift flags call for an alert: temperature rising, or heart rate rising while the
+     * athlete isn't speeding up. Speed alone, or falling values, are normal changes of pace.
+     */
+    public static boolean isAlarming(int flags) {
+        if ((flags & up(Metric.TEMPERATURE)) != 0) {
+            return true;
+        }
+        return (flags & up(Metric.HEART_RATE)) != 0 && (flags & up(Metric.SPEED)) == 0;
+    }
+
+    private final Map<String, State> states = new HashMap<>();
+
+    /**
+     * Add an athlete's sample
+     *
+     * @return the drift flags of the athlete's metrics after the sample, 0 when none are drifting
+     */
+    public synchronized int update(String athleteId, SensorData sample) {
+        return update(athleteId, sample.getTimestamp(), sample.getHeartRate(), sample.getTemperature(),
+                sample.getSpeed());
+    }
+
+    public synchronized int update(String athleteId, long timestamp, int heartRate, double temperature,
+                                   double speed) {
+        State state = states.get(athleteId);
+        if (state == null) {
+            state = new State();
+            states.put(athleteId, state);
+        }
+
+        if (state.started) {
+            if (timestamp <= state.lastTimestamp) {
+                return state.flags;
+            }
+            if (timestamp - state.lastTimestamp > MAX_GAP_MS) {
+                state.reset();
+            }
+        }
+        state.started = true;
+        state.lastTimestamp = timestamp;
+
+        // Invalid readings are skipped, as in PerformanceAnalyzer
+        if (heartRate > 0) {
+            state.add(Metric.HEART_RATE, heartRate);
+        }
+        if (speed >= 0) {
+            state.add(Metric.SPEED, speed);
+        }
+        if (temperature > 0) {
+            state.add(Metric.TEMPERATURE, temperature);
+        }
+        return state.flags;
+    }
+
+    /**
+     * Drift flags of an athlete after their last sample
+     */
+    public synchronized int getFlags(String athleteId) {
+        State state = states.get(athleteId);
+        return state != null ? state.flags : 0;
+    }
+
+    /**
+     * Forget an athlete, e.g. when their session ends
+     */
+    public synchronized void remove(String athleteId) {
+        states.remove(athleteId);
+    }
+
+    public synchronized void clear() {
+        states.clear();
+    }
+
+    private static class State {
+        private final int[] counts = new int[Metric.COUNT];
+        private final double[] means = new double[Metric.COUNT];
+        // Variance of the readings around their local level, from consecutive differences
+        private final double[] noises = new double[Metric.COUNT];
+        private final double[] lasts = new double[Metric.COUNT];
+        private final double[] highSums = new double[Metric.COUNT];
+        private final double[] lowSums = new double[Metric.COUNT];
+        private int flags;
+        private boolean started;
+        private long lastTimestamp;
+
+        void reset() {
+            for (int metric = 0; metric < Metric.COUNT; metric++) {
+                counts[metric] = 0;
+                means[metric] = 0;
+                noises[metric] = 0;
+                lasts[metric] = 0;
+                highSums[metric] = 0;
+                lowSums[metric] = 0;
+            }
+            flags = 0;
+        }
+
+        void add(int metric, double value) {
+            int count = counts[metric];
+            if (count >= WARMUP) {
+                double sd = Math.max(Math.sqrt(noises[metric]), MIN_SD[metric]);
+                double z = (value - means[metric]) / sd;
+                highSums[metric] = Math.min(MAX_SUM, Math.max(0, highSums[metric] + z - K));
+                lowSums[metric] = Math.min(MAX_SUM, Math.max(0, lowSums[metric] - z - K));
+
+                flags &= ~(up(metric) | down(metric));
+                if (highSums[metric] > H) {
+                    flags |= up(metric);
+                }
+                if (lowSums[metric] > H) {
+                    flags |= down(metric);
+                }
+            }
+
+            counts[metric] = count + 1;
+            means[metric] += Math.max(BASELINE_ALPHA, 1.0 / (count + 1)) * (value - means[metric]);
+            if (count > 0) {
+                // Half the squared difference of independent readings estimates their variance
+                double difference = value - lasts[metric];
+                double alpha = Math.max(NOISE_ALPHA, 1.0 / count);
+                noises[metric] += alpha * (difference * difference / 2 - noises[metric]);
+            }
+            lasts[metric] = value;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.saferun.ml;
+
+import com.example.saferun.data.model.Metric;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One local anomaly rule, written one per line as
+ * <pre>
+ *   &lt;metric&gt; &lt;comparator&gt; &lt;threshold&gt; [for &lt;seconds&gt;s] [when &lt;status&gt;]
+ *   drift [for &lt;seconds&gt;s] [when &lt;status&gt;]
+ * </pre>
+ * where the metric is heart_rate, temperature or speed, the comparator one of
+ * {@code > >= < <= == !=} and the threshold a number, or low / high for the athlete's
+ * {@link AlertBands}. A rule with a duration fires once its condition has held that long;
+ * {@code when} limits it to samples with that session status. {@code drift} fires on
+ * {@link DriftDetector#isAlarming(int) alarming drift}. Blank lines and lines starting
+ * with # are ignored. Immutable.
+ */
+public final class LocalRule {
+
+    /**
+     * Metric of drift rules
+     */
+    static final int METRIC_DRIFT = Metric.COUNT;
+
+    static final int GREATER = 0;
+    static final int GREATER_OR_EQUAL = 1;
+    static final int LESS = 2;
+    static final int LESS_OR_EQUAL = 3;
+    static final int EQUAL = 4;
+    static final int NOT_EQUAL = 5;
+
+    static final int BOUND_NONE = 0;
+    static final int BOUND_LOW = 1;
+    static final int BOUND_HIGH = 2;
+
+    private static final String[] METRIC_NAMES = new String[Metric.COUNT + 1];
+    private static final String[] COMPARATORS = {">", ">=", "<", "<=", "==", "!="};
+    private static final String[] BOUNDS = {null, "low", "high"};
+
+    static {
+        METRIC_NAMES[Metric.HEART_RATE] = "heart_rate";
+        METRIC_NAMES[Metric.SPEED] = "speed";
+        METRIC_NAMES[Metric.TEMPERATURE] = "temperature";
+        METRIC_NAMES[METRIC_DRIFT] = "drift";
+    }
+
+    /**
+     * The built-in rules: outside the athlete's bands, stopped during an active session, or drifting
+     */
+    public static final String DEFAULT_RULES = "heart_rate > high\n"
+            + "heart_rate < low\n"
+            + "temperature > high\n"
+            + "temperature < low\n"
+            + "speed == 0 when active\n"
+            + "drift\n";
+
+    private final int metric;
+    private final int comparator;
+    private final double threshold;
+    private final int bound;
+    private final long durationMs;
+    private final String status;
+
+    LocalRule(int metric, int comparator, double threshold, int bound, long durationMs, String status) {
+        this.metric = metric;
+        this.comparator = comparator;
+        this.threshold = threshold;
+        this.bound = bound;
+        this.durationMs = durationMs;
+        this.status = status;
+    }
+
+    /**
+     * Parse rules, one per line
+     *
+     * @throws IllegalArgumentException naming the first line that isn't a valid rule
+     */
+    public static List<LocalRule> parseAll(String rules) {
+        List<LocalRule> parsed = new ArrayList<>();
+        String[] lines = rules.split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                parsed.add(parse(line));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + (i + 1) + ": " + e.getMessage());
+            }
+        }
+        return Collections.unmodifiableList(parsed);
+    }
+
+    /**
+     * Parse one rule
+     *
+     * @throws IllegalArgumentException if the line isn't a valid rule
+     */
+    public static LocalRule parse(String line) {
+        String[] tokens = line.trim().split("\\s+");
+        int metric = indexOf(METRIC_NAMES, tokens[0].toLowerCase(Locale.ROOT));
+        if (metric < 0) {
+            throw new IllegalArgumentException("unknown metric '" + tokens[0] + "'");
+        }
+
+        int comparator = GREATER;
+        double threshold = 0;
+        int bound = BOUND_NONE;
+        int next = 1;
+        if (metric != METRIC_DRIFT) {
+            if (tokens.length < 3) {
+                throw new IllegalArgumentException("expected '" + tokens[0] + " <comparator> <threshold>'");
+            }
+            comparator = indexOf(COMPARATORS, tokens[1]);
+            if (comparator < 0) {
+                throw new IllegalArgumentException("unknown comparator '" + tokens[1] + "'");
+            }
+            bound = indexOf(BOUNDS, tokens[2].toLowerCase(Locale.ROOT));
+            if (bound < 0) {
+                bound = BOUND_NONE;
+                threshold = parseNumber(tokens[2]);
+            }
+            next = 3;
+        }
+
+        long durationMs = 0;
+        String status = null;
+        while (next < tokens.length) {
+            String keyword = tokens[next].toLowerCase(Locale.ROOT);
+            if (next + 1 >= tokens.length) {
+                throw new IllegalArgumentException("missing value after '" + tokens[next] + "'");
+            }
+            String value = tokens[next + 1];
+            if (keyword.equals("for") && durationMs == 0) {
+                if (!value.endsWith("s")) {
+                    throw new IllegalArgumentException("duration must be in seconds, e.g. '30s'");
+                }
+                double seconds = parseNumber(value.substring(0, value.length() - 1));
+                if (seconds < 0) {
+                    throw new IllegalArgumentException("negative duration '" + value + "'");
+                }
+                durationMs = Math.round(seconds * 1000);
+            } else if (keyword.equals("when") && status == null) {
+                status = value;
+            } else {
+                throw new IllegalArgumentException("unexpected '" + tokens[next] + "'");
+            }
+            next += 2;
+        }
+
+        return new LocalRule(metric, comparator, threshold, bound, durationMs, status);
+    }
+
+    private static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (name.equals(names[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static double parseNumber(String token) {
+        try {
+            double value = Double.parseDouble(token);
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                throw new NumberFormatException();
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("not a number '" + token + "'");
+        }
+    }
+
+    int getMetric() {
+        return metric;
+    }
+
+    int getComparator() {
+        return comparator;
+    }
+
+    double getThreshold() {
+        return threshold;
+    }
+
+    int getBound() {
+        return bound;
+    }
+
+    long getDurationMs() {
+        return durationMs;
+    }
+
+    /**
+     * Session status the rule is limited to, or null for any
+     */
+    String getStatus() {
+        return status;
+    }
+
+    /**
+     * The rule in the syntax it was parsed from
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(METRIC_NAMES[metric]);
+        if (metric != METRIC_DRIFT) {
+            builder.append(' ').append(COMPARATORS[comparator]).append(' ');
+            if (bound != BOUND_NONE) {
+                builder.append(BOUNDS[bound]);
+            } else if (threshold == Math.rint(threshold)) {
+                builder.append((long) threshold);
+            } else {
+                builder.append(threshold);
+            }
+        }
+        if (durationMs > 0) {
+            builder.append(" for ").append(durationMs % 1000 == 0
+                    ? String.valueOf(durationMs / 1000) : String.valueOf(durationMs / 1000.0)).append('s');
+        }
+        if (status != null) {
+            builder.append(" when ").append(status);
+        }
+        return builder.toString();
+    }
+}
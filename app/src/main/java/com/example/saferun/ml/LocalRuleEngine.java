@@ -0,0 +1,205 @@
+package com.example.saferun.ml;
+
+import com.example.saferun.data.model.Metric;
+import com.example.saferun.data.model.SensorData;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The local anomaly rules shared by every detection path. Rules are compiled into flat arrays
+ * once, when they are set, and {@link #evaluate} walks them over a sample without allocating;
+ * only rules with a duration keep state, one array per athlete.
+ *
+ * Starts with {@link LocalRule#DEFAULT_RULES}; {@link AnomalyDetectionModel} installs the
+ * configured rules. Thread-safe.
+ */
+public class LocalRuleEngine {
+
+    private static LocalRuleEngine instance;
+
+    private volatile Program program;
+
+    public LocalRuleEngine() {
+        setRules(LocalRule.parseAll(LocalRule.DEFAULT_RULES));
+    }
+
+    public static synchronized LocalRuleEngine getInstance() {
+        if (instance == null) {
+            instance = new LocalRuleEngine();
+        }
+        return instance;
+    }
+
+    /**
+     * Replace the rules; durations start over
+     */
+    public void setRules(List<LocalRule> rules) {
+        program = new Program(rules);
+    }
+
+    /**
+     * Replace the rules with parsed ones
+     *
+     * @throws IllegalArgumentException if the rules don't parse; the current rules stay
+     */
+    public void setRules(String rules) {
+        setRules(LocalRule.parseAll(rules));
+    }
+
+    public List<LocalRule> getRules() {
+        return program.rules;
+    }
+
+    /**
+     * Check an athlete's sample against the rules
+     *
+     * @param bands the athlete's alert bands, for thresholds of low and high
+     * @param drift the athlete's drift flags from {@link DriftDetector}
+     * @return the first rule that fires, or null when none does
+     */
+    public LocalRule evaluate(String athleteId, SensorData sample, AlertBands bands, int drift) {
+        return program.evaluate(athleteId, sample, bands, drift);
+    }
+
+    /**
+     * Forget an athlete's durations, e.g. when their session ends
+     */
+    public void remove(String athleteId) {
+        program.remove(athleteId);
+    }
+
+    private static final class Program {
+        private static final long NOT_HOLDING = Long.MIN_VALUE;
+
+        private final List<LocalRule> rules;
+        private final int[] metrics;
+        private final int[] comparators;
+        private final double[] thresholds;
+        private final int[] bounds;
+        private final long[] durations;
+        private final String[] statuses;
+        private final boolean hasDurations;
+
+        // Per athlete, when each rule's condition started holding; guarded by itself
+        private final Map<String, long[]> holdingSince = new HashMap<>();
+
+        Program(List<LocalRule> rules) {
+            this.rules = rules;
+            int count = rules.size();
+            metrics = new int[count];
+            comparators = new int[count];
+            thresholds = new double[count];
+            bounds = new int[count];
+            durations = new long[count];
+            statuses = new String[count];
+
+            boolean anyDuration = false;
+            for (int i = 0; i < count; i++) {
+                LocalRule rule = rules.get(i);
+                metrics[i] = rule.getMetric();
+                comparators[i] = rule.getComparator();
+                thresholds[i] = rule.getThreshold();
+                bounds[i] = rule.getBound();
+                durations[i] = rule.getDurationMs();
+                statuses[i] = rule.getStatus();
+                anyDuration |= durations[i] > 0;
+            }
+            hasDurations = anyDuration;
+        }
+
+        LocalRule evaluate(String athleteId, SensorData sample, AlertBands bands, int drift) {
+            if (!hasDurations) {
+                for (int i = 0; i < metrics.length; i++) {
+                    if (holds(i, sample, bands, drift)) {
+                        return rules.get(i);
+                    }
+                }
+                return null;
+            }
+
+            // Every rule is checked so each duration knows whether it still holds
+            long timestamp = sample.getTimestamp();
+            int fired = -1;
+            synchronized (holdingSince) {
+                long[] since = holdingSince.get(athleteId);
+                if (since == null) {
+                    since = new long[metrics.length];
+                    Arrays.fill(since, NOT_HOLDING);
+                    holdingSince.put(athleteId, since);
+                }
+                for (int i = 0; i < metrics.length; i++) {
+                    if (!holds(i, sample, bands, drift)) {
+                        since[i] = NOT_HOLDING;
+                        continue;
+                    }
+                    if (since[i] == NOT_HOLDING || timestamp < since[i]) {
+                        since[i] = timestamp;
+                    }
+                    if (fired < 0 && timestamp - since[i] >= durations[i]) {
+                        fired = i;
+                    }
+                }
+            }
+            return fired >= 0 ? rules.get(fired) : null;
+        }
+
+        void remove(String athleteId) {
+            synchronized (holdingSince) {
+                holdingSince.remove(athleteId);
+            }
+        }
+
+        private boolean holds(int rule, SensorData sample, AlertBands bands, int drift) {
+            String status = statuses[rule];
+            if (status != null && !status.equals(sample.getStatus())) {
+                return false;
+            }
+
+            double value;
+            switch (metrics[rule]) {
+                case Metric.HEART_RATE:
+                    value = sample.getHeartRate();
+                    break;
+                case Metric.SPEED:
+                    value = sample.getSpeed();
+                    break;
+                case Metric.TEMPERATURE:
+                    value = sample.getTemperature();
+                    break;
+                default:
+                    return DriftDetector.isAlarming(drift);
+            }
+
+            double threshold;
+            switch (bounds[rule]) {
+                case LocalRule.BOUND_LOW:
+                    threshold = bands.getLow(metrics[rule]);
+                    break;
+                case LocalRule.BOUND_HIGH:
+                    threshold = bands.getHigh(metrics[rule]);
+                    break;
+                default:
+                    threshold = thresholds[rule];
+                    break;
+            }
+
+            switch (comparators[rule]) {
+                case LocalRule.GREATER:
+                    return value > threshold;
+                case LocalRule.GREATER_OR_EQUAL:
+                    return value >= threshold;
+                case LocalRule.LESS:
+                    return value < threshold;
+                case LocalRule.LESS_OR_EQUAL:
+                    return value <= threshold;
+                case LocalRule.EQUAL:
+                    return value == threshold;
+                default:
+                    return value != threshold;
+            }
+        }
+    }
+}
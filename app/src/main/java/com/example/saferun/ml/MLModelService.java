@@ -1,4 +1,149 @@
 package com.example.saferun.ml;
 
+import android.content.Context;
+import android.util.Log;
+
+import com.example.saferun.data.model.SensorData;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * On-device anomaly inference. Loads the tree ensemble exported from the prediction service
+ * from assets/{@value #MODEL_ASSET} and scores windows of samples locally, in microseconds and
+ * without connectivity. Until a model is loaded (or when the app ships without one)
+ * {@link #isModelLoaded()} is false and callers keep using the prediction API.
+ *
+ * Thread-safe; predictions share one scratch buffer.
+ */
 public class MLModelService {
+    private static final String TAG = "MLModelService";
+
+    public static final String MODEL_ASSET = "anomaly_model.txt";
+
+    private static MLModelService instance;
+
+    private volatile TreeEnsembleModel model;
+
+    // Scratch space for predictions, guarded by this
+    private final float[] features = new float[AnomalyFeatures.COUNT];
+    private float[] temperatures = new float[16];
+    private float[] speeds = new float[16];
+    private int[] heartRates = new int[16];
+
+    private MLModelService() {
+    }
+
+    /**
+     * Start loading the model in the background. Called once from the Application.
+     */
+    public static synchronized void init(Context context) {
+        MLModelService service = getInstance();
+        Context appContext = context.getApplicationContext();
+        ExecutorService loader = Executors.newSingleThreadExecutor();
+        loader.execute(() -> service.loadAsset(appContext));
+        loader.shutdown();
+    }
+
+    public static synchronized MLModelService getInstance() {
+        if (instance == null) {
+            instance = new MLModelService();
+        }
+        return instance;
+    }
+
+    private void loadAsset(Context context) {
+        try (Reader reader = new InputStreamReader(context.getAssets().open(MODEL_ASSET), StandardCharsets.UTF_8)) {
+            setModel(TreeEnsembleModel.load(reader));
+            Log.d(TAG, "Loaded on-device anomaly model with " + model.getTreeCount() + " trees");
+        } catch (FileNotFoundException e) {
+            Log.w(TAG, "No on-device anomaly model in assets, using the prediction API");
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(TAG, "Error loading on-device anomaly model", e);
+        }
+    }
+
+    /**
+     * Replace the model, e.g. with a newer export
+     */
+    public void setModel(TreeEnsembleModel model) {
+        if (model.getFeatureCount() != AnomalyFeatures.COUNT) {
+            throw new IllegalArgumentException("Model expects " + model.getFeatureCount()
+                    + " features, windows have " + AnomalyFeatures.COUNT);
+        }
+        this.model = model;
+    }
+
+    public boolean isModelLoaded() {
+        return model != null;
+    }
+
+    /**
+     * Whether a single sample is an anomaly
+     *
+     * @throws IllegalStateException if no model is loaded
+     */
+    public boolean predict(SensorData sensorData) {
+        return score(Collections.singletonList(sensorData)) >= requireModel().getThreshold();
+    }
+
+    /**
+     * Whether a sequence of samples, oldest first, ends in an anomaly
+     *
+     * @throws IllegalStateException if no model is loaded
+     */
+    public boolean predict(List<SensorData> sensorSequence) {
+        return score(sensorSequence) >= requireModel().getThreshold();
+    }
+
+    /**
+     * Whether the window {@code [offset, offset + count)} of the given columns ends in an anomaly
+     *
+     * @throws IllegalStateException if no model is loaded
+     */
+    public boolean predict(float[] temperature, float[] speed, int[] heartRate, int offset, int count) {
+        TreeEnsembleModel current = requireModel();
+        synchronized (this) {
+            AnomalyFeatures.extract(temperature, speed, heartRate, offset, count, features);
+            return current.predict(features);
+        }
+    }
+
+    /**
+     * Anomaly probability of a sequence of samples, oldest first
+     *
+     * @throws IllegalStateException if no model is loaded
+     */
+    public synchronized double score(List<SensorData> sensorSequence) {
+        TreeEnsembleModel current = requireModel();
+        int count = sensorSequence.size();
+        if (temperatures.length < count) {
+            temperatures = new float[count];
+            speeds = new float[count];
+            heartRates = new int[count];
+        }
+        for (int i = 0; i < count; i++) {
+            SensorData sensorData = sensorSequence.get(i);
+            temperatures[i] = (float) sensorData.getTemperature();
+            speeds[i] = (float) sensorData.getSpeed();
+            heartRates[i] = sensorData.getHeartRate();
+        }
+        AnomalyFeatures.extract(temperatures, speeds, heartRates, 0, count, features);
+        return current.score(features);
+    }
+
+    private TreeEnsembleModel requireModel() {
+        TreeEnsembleModel current = model;
+        if (current == null) {
+            throw new IllegalStateException("No on-device anomaly model loaded");
+        }
+        return current;
+    }
 }
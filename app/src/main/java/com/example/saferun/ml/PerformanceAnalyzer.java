@@ -1,4 +1,211 @@
 package com.example.saferun.ml;
 
+import com.example.saferun.data.model.Metric;
+import com.example.saferun.data.model.SensorData;
+import com.example.saferun.data.model.SensorSeries;
+
+/**
+ * Running statistics of an athlete's vitals, updated in O(1) per sample: count of valid readings,
+ * mean and variance (Welford), min, max and readings outside the {@link AlertBands#DEFAULT}
+ * limits, per metric, plus the number of samples flagged as anomalies. Accumulators of separate
+ * sessions or of parts of one session can be merged, giving the same result as adding every
+ * sample to one accumulator.
+ *
+ * Invalid readings (heart rate or temperature of zero, negative speed) are ignored, as in
+ * {@link com.example.saferun.data.model.SessionSummary}. Not thread-safe.
+ */
 public class PerformanceAnalyzer {
+
+    private final boolean movingSpeedOnly;
+
+    private int sampleCount;
+    private int anomalyCount;
+
+    private final int[] counts = new int[Metric.COUNT];
+    private final double[] means = new double[Metric.COUNT];
+    // Sum of squared deviations from the mean
+    private final double[] m2s = new double[Metric.COUNT];
+    private final double[] mins = new double[Metric.COUNT];
+    private final double[] maxs = new double[Metric.COUNT];
+    private final int[] outOfRangeCounts = new int[Metric.COUNT];
+
+    public PerformanceAnalyzer() {
+        this(false);
+    }
+
+    private PerformanceAnalyzer(boolean movingSpeedOnly) {
+        this.movingSpeedOnly = movingSpeedOnly;
+    }
+
+    /**
+     * Accumulator that ignores speed readings of zero, so speed statistics cover only the time
+     * the athlete was moving
+     */
+    public static PerformanceAnalyzer movingSpeedOnly() {
+        return new PerformanceAnalyzer(true);
+    }
+
+    /**
+     * Accumulator of a whole series
+     */
+    public static PerformanceAnalyzer of(SensorSeries series, boolean movingSpeedOnly) {
+        PerformanceAnalyzer analyzer = new PerformanceAnalyzer(movingSpeedOnly);
+        analyzer.addAll(series);
+        return analyzer;
+    }
+
+    public void add(SensorData sensorData) {
+        add(sensorData.getHeartRate(), sensorData.getTemperature(), sensorData.getSpeed(),
+                sensorData.isAnomalyDetected());
+    }
+
+    public void add(int heartRate, double temperature, double speed, boolean anomaly) {
+        sampleCount++;
+        if (anomaly) {
+            anomalyCount++;
+        }
+        if (heartRate > 0) {
+            addReading(Metric.HEART_RATE, heartRate);
+        }
+        if (movingSpeedOnly ? speed > 0 : speed >= 0) {
+            addReading(Metric.SPEED, speed);
+        }
+        if (temperature > 0) {
+            addReading(Metric.TEMPERATURE, temperature);
+        }
+    }
+
+    public void addAll(SensorSeries series) {
+        for (int i = 0; i < series.size(); i++) {
+            add(series.getHeartRate(i), series.getTemperature(i), series.getSpeed(i), series.isAnomaly(i));
+        }
+    }
+
+    private void addReading(int metric, double value) {
+        int count = ++counts[metric];
+        double delta = value - means[metric];
+        means[metric] += delta / count;
+        m2s[metric] += delta * (value - means[metric]);
+
+        if (count == 1) {
+            mins[metric] = value;
+            maxs[metric] = value;
+        } else {
+            mins[metric] = Math.min(mins[metric], value);
+            maxs[metric] = Math.max(maxs[metric], value);
+        }
+
+        // The fixed limits of the local rules, so sessions and athletes compare alike
+        if (AlertBands.DEFAULT.isOutside(metric, value)) {
+            outOfRangeCounts[metric]++;
+        }
+    }
+
+    /**
+     * Fold another accumulator into this one (Chan et al.'s parallel variance)
+     */
+    public void merge(PerformanceAnalyzer other) {
+        if (other.movingSpeedOnly != movingSpeedOnly) {
+            throw new IllegalArgumentException("Cannot merge accumulators with different speed filters");
+        }
+
+        sampleCount += other.sampleCount;
+        anomalyCount += other.anomalyCount;
+
+        for (int metric = 0; metric < Metric.COUNT; metric++) {
+            int otherCount = other.counts[metric];
+            if (otherCount == 0) {
+                continue;
+            }
+            int count = counts[metric];
+            if (count == 0) {
+                means[metric] = other.means[metric];
+                m2s[metric] = other.m2s[metric];
+                mins[metric] = other.mins[metric];
+                maxs[metric] = other.maxs[metric];
+            } else {
+                int total = count + otherCount;
+                double delta = other.means[metric] - means[metric];
+                means[metric] += delta * otherCount / total;
+                m2s[metric] += other.m2s[metric] + delta * delta * ((double) count * otherCount / total);
+                mins[metric] = Math.min(mins[metric], other.mins[metric]);
+                maxs[metric] = Math.max(maxs[metric], other.maxs[metric]);
+            }
+            counts[metric] += otherCount;
+            outOfRangeCounts[metric] += other.outOfRangeCounts[metric];
+        }
+    }
+
+    public void reset() {
+        sampleCount = 0;
+        anomalyCount = 0;
+        for (int metric = 0; metric < Metric.COUNT; metric++) {
+            counts[metric] = 0;
+            means[metric] = 0;
+            m2s[metric] = 0;
+            mins[metric] = 0;
+            maxs[metric] = 0;
+            outOfRangeCounts[metric] = 0;
+        }
+    }
+
+    /**
+     * Number of samples added, valid or not
+     */
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Number of samples flagged as anomalies
+     */
+    public int getAnomalyCount() {
+        return anomalyCount;
+    }
+
+    /**
+     * Number of valid readings of a metric
+     */
+    public int getCount(int metric) {
+        return counts[metric];
+    }
+
+    /**
+     * Mean of the valid readings of a metric, 0 without any
+     */
+    public double getMean(int metric) {
+        return means[metric];
+    }
+
+    /**
+     * Sample variance of the valid readings of a metric, 0 with fewer than two
+     */
+    public double getVariance(int metric) {
+        return counts[metric] > 1 ? m2s[metric] / (counts[metric] - 1) : 0;
+    }
+
+    public double getStandardDeviation(int metric) {
+        return Math.sqrt(getVariance(metric));
+    }
+
+    /**
+     * Lowest valid reading of a metric, 0 without any
+     */
+    public double getMin(int metric) {
+        return mins[metric];
+    }
+
+    /**
+     * Highest valid reading of a metric, 0 without any
+     */
+    public double getMax(int metric) {
+        return maxs[metric];
+    }
+
+    /**
+     * Number of valid readings of a metric outside its default alert band
+     */
+    public int getOutOfRangeCount(int metric) {
+        return outOfRangeCounts[metric];
+    }
 }
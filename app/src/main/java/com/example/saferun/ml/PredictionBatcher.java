@@ -0,0 +1,182 @@
+package com.example.saferun.ml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces the prediction windows submitted during one tick into a single batch, so a live
+ * session makes one prediction request per tick for the whole squad instead of one per athlete.
+ * The first window of a tick schedules the flush; a full batch is flushed right away.
+ *
+ * The sender answers with one result per window, in order, and the batcher hands each result
+ * back to the window's own callback. A failed batch fails every window in it. Thread-safe.
+ */
+public class PredictionBatcher {
+
+    public static final long DEFAULT_TICK_MS = 250;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+
+    /**
+     * Window of one athlete, copied out of the caller's columns
+     */
+    public static class WindowRequest {
+        private final String athleteId;
+        private final float[] temperature;
+        private final float[] speed;
+        private final int[] heartRate;
+        private final AnomalyPredictionClient.PredictionCallback callback;
+
+        WindowRequest(String athleteId, float[] temperature, float[] speed, int[] heartRate,
+                      AnomalyPredictionClient.PredictionCallback callback) {
+            this.athleteId = athleteId;
+            this.temperature = temperature;
+            this.speed = speed;
+            this.heartRate = heartRate;
+            this.callback = callback;
+        }
+
+        public String getAthleteId() {
+            return athleteId;
+        }
+
+        public float[] getTemperature() {
+            return temperature;
+        }
+
+        public float[] getSpeed() {
+            return speed;
+        }
+
+        public int[] getHeartRate() {
+            return heartRate;
+        }
+
+        public int size() {
+            return heartRate.length;
+        }
+
+        public AnomalyPredictionClient.PredictionCallback getCallback() {
+            return callback;
+        }
+    }
+
+    /**
+     * Result of a batch: one verdict per window in request order, null where the response had none
+     */
+    public interface BatchCallback {
+        void onSuccess(Boolean[] results);
+        void onError(String errorMessage);
+    }
+
+    /**
+     * Sends a batch of windows and completes the callback once, or answers each window's own
+     * callback instead
+     */
+    public interface BatchSender {
+        void send(List<WindowRequest> batch, BatchCallback callback);
+    }
+
+    private final long tickMs;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+    private final BatchSender sender;
+
+    // Windows of the current tick, guarded by this
+    private List<WindowRequest> pending = new ArrayList<>();
+
+    public PredictionBatcher(ScheduledExecutorService scheduler, BatchSender sender) {
+        this(DEFAULT_TICK_MS, DEFAULT_MAX_BATCH_SIZE, scheduler, sender);
+    }
+
+    public PredictionBatcher(long tickMs, int maxBatchSize, ScheduledExecutorService scheduler,
+                             BatchSender sender) {
+        if (tickMs < 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Tick must not be negative and batch size must be positive");
+        }
+        this.tickMs = tickMs;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = scheduler;
+        this.sender = sender;
+    }
+
+    /**
+     * Queue the window {@code [offset, offset + count)} of the given columns for the current tick.
+     * The columns are read before this method returns.
+     */
+    public void submit(String athleteId, float[] temperature, float[] speed, int[] heartRate,
+                       int offset, int count, AnomalyPredictionClient.PredictionCallback callback) {
+        WindowRequest request = new WindowRequest(athleteId,
+                Arrays.copyOfRange(temperature, offset, offset + count),
+                Arrays.copyOfRange(speed, offset, offset + count),
+                Arrays.copyOfRange(heartRate, offset, offset + count),
+                callback);
+
+        List<WindowRequest> full;
+        boolean first;
+        synchronized (this) {
+            pending.add(request);
+            first = pending.size() == 1;
+            full = pending.size() >= maxBatchSize ? takePending() : null;
+        }
+
+        if (full != null) {
+            scheduler.execute(() -> send(full));
+        } else if (first) {
+            scheduler.schedule(this::flush, tickMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Send the windows of the current tick now
+     */
+    public void flush() {
+        List<WindowRequest> batch;
+        synchronized (this) {
+            batch = takePending();
+        }
+        send(batch);
+    }
+
+    /**
+     * Number of windows waiting for the current tick
+     */
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    private List<WindowRequest> takePending() {
+        List<WindowRequest> batch = pending;
+        pending = new ArrayList<>();
+        return batch;
+    }
+
+    private void send(List<WindowRequest> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        sender.send(batch, new BatchCallback() {
+            @Override
+            public void onSuccess(Boolean[] results) {
+                for (int i = 0; i < batch.size(); i++) {
+                    AnomalyPredictionClient.PredictionCallback callback = batch.get(i).getCallback();
+                    Boolean result = i < results.length ? results[i] : null;
+                    if (result != null) {
+                        callback.onSuccess(result);
+                    } else {
+                        callback.onError("No prediction for athlete " + batch.get(i).getAthleteId());
+                    }
+                }
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                for (WindowRequest request : batch) {
+                    request.getCallback().onError(errorMessage);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,332 @@
+package com.example.saferun.ml;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache of anomaly predictions, evicting the least recently used entry when full and
+ * expiring entries older than the time to live.
+ *
+ * Keys are longs packing an athlete index with the quantized vitals of a sample (see
+ * {@link #key(String, int, double, double)}) or a hash of those of a window (see
+ * {@link #windowKey}), so lookups neither build strings nor box.
+ * Entries live in parallel arrays with an intrusive LRU list; the hash table is open addressing
+ * with linear probing over entry indices. Thread-safe.
+ */
+public class PredictionCache {
+
+    // Key layout, from the high bits: athlete index, heart rate, temperature and speed buckets
+    private static final int ATHLETE_BITS = 24;
+    private static final int HEART_RATE_BITS = 12;
+    private static final int TEMPERATURE_BITS = 12;
+    private static final int SPEED_BITS = 16;
+    private static final int SAMPLE_BITS = HEART_RATE_BITS + TEMPERATURE_BITS + SPEED_BITS;
+
+    // Bucket widths, as used for the old string keys
+    private static final int HEART_RATE_BUCKET = 5;
+    private static final double TEMPERATURE_BUCKET = 0.5;
+    private static final double SPEED_BUCKET = 1.0;
+
+    private static final int NONE = -1;
+
+    private final int maxEntries;
+    private final long ttlMs;
+    private final LongSupplier clock;
+
+    // Athlete ids are numbered on first use; indices wrap after 2^24 athletes
+    private final ConcurrentHashMap<String, Integer> athleteIndices = new ConcurrentHashMap<>();
+    private int nextAthleteIndex;
+
+    // Hash table of entry indices, NONE when free; guarded by this like everything below
+    private final int[] table;
+    private final int mask;
+
+    // Entries
+    private final long[] keys;
+    private final boolean[] values;
+    private final long[] writtenAt;
+    private final int[] previous;
+    private final int[] next;
+    private int size;
+    // Most and least recently used entries
+    private int head = NONE;
+    private int tail = NONE;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    public PredictionCache(int maxEntries, long ttlMs) {
+        this(maxEntries, ttlMs, () -> System.nanoTime() / 1_000_000L);
+    }
+
+    /**
+     * @param clock milliseconds of a monotonic clock
+     */
+    public PredictionCache(int maxEntries, long ttlMs, LongSupplier clock) {
+        if (maxEntries <= 0 || ttlMs <= 0) {
+            throw new IllegalArgumentException("Cache size and time to live must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+        this.clock = clock;
+
+        // At most half full, so probe sequences stay short
+        int capacity = Integer.highestOneBit(Math.max(2, maxEntries) * 2 - 1) << 1;
+        table = new int[capacity];
+        Arrays.fill(table, NONE);
+        mask = capacity - 1;
+
+        keys = new long[maxEntries];
+        values = new boolean[maxEntries];
+        writtenAt = new long[maxEntries];
+        previous = new int[maxEntries];
+        next = new int[maxEntries];
+    }
+
+    /**
+     * Key of an athlete's sample: heart rate rounded to 5 bpm, temperature to 0.5 degrees and speed
+     * to 1 km/h, so similar samples share a prediction
+     */
+    public long key(String athleteId, int heartRate, double temperature, double speed) {
+        return athleteBits(athleteId) | sampleBits(heartRate, temperature, speed);
+    }
+
+    /**
+     * Key of a window of an athlete's samples, {@code [offset, offset + count)} of the columns:
+     * the buckets of its samples, as in {@link #key(String, int, double, double)}, hashed below
+     * the athlete index. A window of one sample has that sample's key.
+     */
+    public long windowKey(String athleteId, float[] temperature, float[] speed, int[] heartRate,
+                          int offset, int count) {
+        if (count == 1) {
+            return key(athleteId, heartRate[offset], temperature[offset], speed[offset]);
+        }
+        long hash = count;
+        for (int i = offset; i < offset + count; i++) {
+            hash = mix(hash * 31 + sampleBits(heartRate[i], temperature[i], speed[i]));
+        }
+        return athleteBits(athleteId) | (hash & ((1L << SAMPLE_BITS) - 1));
+    }
+
+    private long athleteBits(String athleteId) {
+        return (athleteIndex(athleteId) & ((1L << ATHLETE_BITS) - 1)) << SAMPLE_BITS;
+    }
+
+    private static long sampleBits(int heartRate, double temperature, double speed) {
+        long heartRateBucket = Math.round((float) heartRate / HEART_RATE_BUCKET) & ((1L << HEART_RATE_BITS) - 1);
+        long temperatureBucket = Math.round(temperature / TEMPERATURE_BUCKET) & ((1L << TEMPERATURE_BITS) - 1);
+        long speedBucket = Math.round(speed / SPEED_BUCKET) & ((1L << SPEED_BITS) - 1);
+
+        return heartRateBucket << (TEMPERATURE_BITS + SPEED_BITS)
+                | temperatureBucket << SPEED_BITS
+                | speedBucket;
+    }
+
+    private int athleteIndex(String athleteId) {
+        Integer index = athleteIndices.get(athleteId);
+        if (index != null) {
+            return index;
+        }
+        synchronized (athleteIndices) {
+            index = athleteIndices.get(athleteId);
+            if (index == null) {
+                index = nextAthleteIndex++;
+                athleteIndices.put(athleteId, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Cached prediction for a key, or null when absent or expired
+     */
+    public synchronized Boolean get(long key) {
+        int entry = find(key);
+        if (entry == NONE) {
+            misses++;
+            return null;
+        }
+        if (clock.getAsLong() - writtenAt[entry] >= ttlMs) {
+            remove(entry);
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        moveToHead(entry);
+        return values[entry];
+    }
+
+    public synchronized void put(long key, boolean isAnomaly) {
+        int entry = find(key);
+        if (entry == NONE) {
+            if (size == maxEntries) {
+                remove(tail);
+                evictions++;
+            }
+            // Entries are packed in [0, size)
+            entry = size++;
+            keys[entry] = key;
+            insert(entry);
+            linkHead(entry);
+        } else {
+            moveToHead(entry);
+        }
+        values[entry] = isAnomaly;
+        writtenAt[entry] = clock.getAsLong();
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(table, NONE);
+        size = 0;
+        head = NONE;
+        tail = NONE;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Number of entries dropped to make room for newer ones
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Number of entries dropped because they outlived the time to live
+     */
+    public synchronized long getExpirationCount() {
+        return expirations;
+    }
+
+    private static int hash(long key) {
+        return (int) mix(key);
+    }
+
+    private static long mix(long key) {
+        // Murmur3 finalizer
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private int find(long key) {
+        for (int slot = hash(key) & mask; table[slot] != NONE; slot = (slot + 1) & mask) {
+            if (keys[table[slot]] == key) {
+                return table[slot];
+            }
+        }
+        return NONE;
+    }
+
+    private int slotOf(int entry) {
+        int slot = hash(keys[entry]) & mask;
+        while (table[slot] != entry) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void insert(int entry) {
+        int slot = hash(keys[entry]) & mask;
+        while (table[slot] != NONE) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = entry;
+    }
+
+    /**
+     * Remove an entry, keeping the entries packed by moving the last one into its place
+     */
+    private void remove(int entry) {
+        deleteSlot(slotOf(entry));
+        unlink(entry);
+
+        int last = --size;
+        if (entry != last) {
+            table[slotOf(last)] = entry;
+            keys[entry] = keys[last];
+            values[entry] = values[last];
+            writtenAt[entry] = writtenAt[last];
+            previous[entry] = previous[last];
+            next[entry] = next[last];
+            if (previous[entry] != NONE) {
+                next[previous[entry]] = entry;
+            } else {
+                head = entry;
+            }
+            if (next[entry] != NONE) {
+                previous[next[entry]] = entry;
+            } else {
+                tail = entry;
+            }
+        }
+    }
+
+    /**
+     * Free a slot and shift back the entries after it that would no longer be reachable
+     */
+    private void deleteSlot(int slot) {
+        int free = slot;
+        for (int current = (slot + 1) & mask; table[current] != NONE; current = (current + 1) & mask) {
+            int home = hash(keys[table[current]]) & mask;
+            // Move the entry unless its home lies cyclically in (free, current]
+            boolean reachable = free <= current
+                    ? free < home && home <= current
+                    : free < home || home <= current;
+            if (!reachable) {
+                table[free] = table[current];
+                free = current;
+            }
+        }
+        table[free] = NONE;
+    }
+
+    private void linkHead(int entry) {
+        previous[entry] = NONE;
+        next[entry] = head;
+        if (head != NONE) {
+            previous[head] = entry;
+        }
+        head = entry;
+        if (tail == NONE) {
+            tail = entry;
+        }
+    }
+
+    private void unlink(int entry) {
+        if (previous[entry] != NONE) {
+            next[previous[entry]] = next[entry];
+        } else {
+            head = next[entry];
+        }
+        if (next[entry] != NONE) {
+            previous[next[entry]] = previous[entry];
+        } else {
+            tail = previous[entry];
+        }
+    }
+
+    private void moveToHead(int entry) {
+        if (head != entry) {
+            unlink(entry);
+            linkHead(entry);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.saferun.ml;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coalesces concurrent prediction requests with the same key into one call. The first caller
+ * for a key leads: it makes the call with the callback {@link #join} returns. Callers that
+ * arrive while the call is in flight only wait, and every caller is completed with its result.
+ * Once the call completes the key is free again. Thread-safe.
+ */
+public class SingleFlight {
+
+    // Callers waiting on each in-flight call, the leader first; guarded by this
+    private final Map<Long, List<AnomalyPredictionClient.PredictionCallback>> inFlight = new HashMap<>();
+
+    /**
+     * Join the call for a key, starting one if none is in flight
+     *
+     * @return the callback to make the call with when this caller leads, or null when an
+     *         in-flight call will complete {@code callback}
+     */
+    public AnomalyPredictionClient.PredictionCallback join(long key, AnomalyPredictionClient.PredictionCallback callback) {
+        synchronized (this) {
+            List<AnomalyPredictionClient.PredictionCallback> waiters = inFlight.get(key);
+            if (waiters != null) {
+                waiters.add(callback);
+                return null;
+            }
+            waiters = new ArrayList<>();
+            waiters.add(callback);
+            inFlight.put(key, waiters);
+        }
+
+        return new AnomalyPredictionClient.PredictionCallback() {
+            @Override
+            public void onSuccess(boolean isAnomaly) {
+                for (AnomalyPredictionClient.PredictionCallback waiter : complete(key)) {
+                    waiter.onSuccess(isAnomaly);
+                }
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                for (AnomalyPredictionClient.PredictionCallback waiter : complete(key)) {
+                    waiter.onError(errorMessage);
+                }
+            }
+        };
+    }
+
+    /**
+     * Number of calls in flight
+     */
+    public synchronized int size() {
+        return inFlight.size();
+    }
+
+    private synchronized List<AnomalyPredictionClient.PredictionCallback> complete(long key) {
+        // Callers are completed outside the lock, so they may start a new call for the key
+        List<AnomalyPredictionClient.PredictionCallback> waiters = inFlight.remove(key);
+        return waiters != null ? waiters : Collections.emptyList();
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.saferun.ml;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Gradient-boosted tree ensemble for binary classification, evaluated without allocation.
+ * The probability of the positive class is sigmoid(baseScore + sum of the leaf of every tree).
+ *
+ * Models are exported from the prediction service as text, one node per line
+ * (xgboost's conventions, so a booster dump converts line by line):
+ * <pre>
+ *   # comments and blank lines are ignored
+ *   format saferun-trees 1
+ *   features &lt;count&gt;
+ *   base_score &lt;margin&gt;
+ *   threshold &lt;probability&gt;
+ *   tree &lt;nodeCount&gt;
+ *   &lt;id&gt; split &lt;feature&gt; &lt;threshold&gt; &lt;yes&gt; &lt;no&gt; &lt;missing&gt;
+ *   &lt;id&gt; leaf &lt;value&gt;
+ *   ...
+ * </pre>
+ * Node ids are numbered from 0 (the root) within their tree and listed in order; children have
+ * higher ids than their parent. A split goes to {@code yes} when the feature is below the
+ * threshold and to {@code missing} when it is NaN.
+ */
+public class TreeEnsembleModel {
+
+    private static final String FORMAT = "saferun-trees";
+    private static final int VERSION = 1;
+
+    private final int featureCount;
+    private final double baseScore;
+    private final double threshold;
+
+    // Nodes of all trees, flattened; feature is -1 for leaves
+    private final int[] treeRoots;
+    private final int[] features;
+    private final float[] thresholds;
+    private final int[] yes;
+    private final int[] no;
+    private final int[] missing;
+    private final float[] values;
+
+    private TreeEnsembleModel(int featureCount, double baseScore, double threshold, int[] treeRoots,
+                              int[] features, float[] thresholds, int[] yes, int[] no, int[] missing,
+                              float[] values) {
+        this.featureCount = featureCount;
+        this.baseScore = baseScore;
+        this.threshold = threshold;
+        this.treeRoots = treeRoots;
+        this.features = features;
+        this.thresholds = thresholds;
+        this.yes = yes;
+        this.no = no;
+        this.missing = missing;
+        this.values = values;
+    }
+
+    /**
+     * Parse a model in the text format above
+     *
+     * @throws IOException if the model can't be read or is malformed
+     */
+    public static TreeEnsembleModel load(Reader source) throws IOException {
+        Parser parser = new Parser(new BufferedReader(source));
+
+        String[] header = parser.next("format");
+        if (header.length != 3 || !FORMAT.equals(header[1]) || parser.parseInt(header[2]) != VERSION) {
+            throw parser.error("Unsupported model format");
+        }
+        int featureCount = parser.parseInt(parser.value("features"));
+        double baseScore = parser.parseDouble(parser.value("base_score"));
+        double threshold = parser.parseDouble(parser.value("threshold"));
+        if (featureCount <= 0) {
+            throw parser.error("Feature count must be positive");
+        }
+
+        int treeCount = 0;
+        int nodeCount = 0;
+        int[] treeRoots = new int[16];
+        int[] features = new int[256];
+        float[] thresholds = new float[256];
+        int[] yes = new int[256];
+        int[] no = new int[256];
+        int[] missing = new int[256];
+        float[] values = new float[256];
+
+        String[] line;
+        while ((line = parser.nextOrNull()) != null) {
+            if (!"tree".equals(line[0]) || line.length != 2) {
+                throw parser.error("Expected tree");
+            }
+            int size = parser.parseInt(line[1]);
+            if (size <= 0) {
+                throw parser.error("Empty tree");
+            }
+
+            if (treeCount == treeRoots.length) {
+                treeRoots = Arrays.copyOf(treeRoots, treeCount * 2);
+            }
+            int root = nodeCount;
+            treeRoots[treeCount++] = root;
+
+            if (nodeCount + size > features.length) {
+                int capacity = Math.max(features.length * 2, nodeCount + size);
+                features = Arrays.copyOf(features, capacity);
+                thresholds = Arrays.copyOf(thresholds, capacity);
+                yes = Arrays.copyOf(yes, capacity);
+                no = Arrays.copyOf(no, capacity);
+                missing = Arrays.copyOf(missing, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+
+            for (int id = 0; id < size; id++) {
+                String[] node = parser.next("node");
+                if (parser.parseInt(node[0]) != id) {
+                    throw parser.error("Expected node " + id);
+                }
+                int index = root + id;
+
+                if ("leaf".equals(node[1]) && node.length == 3) {
+                    features[index] = -1;
+                    values[index] = parser.parseFloat(node[2]);
+                } else if ("split".equals(node[1]) && node.length == 7) {
+                    int feature = parser.parseInt(node[2]);
+                    if (feature < 0 || feature >= featureCount) {
+                        throw parser.error("Feature out of range: " + feature);
+                    }
+                    features[index] = feature;
+                    thresholds[index] = parser.parseFloat(node[3]);
+                    yes[index] = root + parser.child(node[4], id, size);
+                    no[index] = root + parser.child(node[5], id, size);
+                    missing[index] = root + parser.child(node[6], id, size);
+                } else {
+                    throw parser.error("Expected split or leaf");
+                }
+            }
+            nodeCount += size;
+        }
+
+        if (treeCount == 0) {
+            throw parser.error("Model has no trees");
+        }
+
+        return new TreeEnsembleModel(featureCount, baseScore, threshold, Arrays.copyOf(treeRoots, treeCount),
+                Arrays.copyOf(features, nodeCount), Arrays.copyOf(thresholds, nodeCount),
+                Arrays.copyOf(yes, nodeCount), Arrays.copyOf(no, nodeCount), Arrays.copyOf(missing, nodeCount),
+                Arrays.copyOf(values, nodeCount));
+    }
+
+    public int getFeatureCount() {
+        return featureCount;
+    }
+
+    public int getTreeCount() {
+        return treeRoots.length;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Probability of the positive class
+     *
+     * @param x at least {@link #getFeatureCount()} features
+     */
+    public double score(float[] x) {
+        double margin = baseScore;
+        for (int root : treeRoots) {
+            int node = root;
+            while (features[node] >= 0) {
+                float value = x[features[node]];
+                if (Float.isNaN(value)) {
+                    node = missing[node];
+                } else {
+                    node = value < thresholds[node] ? yes[node] : no[node];
+                }
+            }
+            margin += values[node];
+        }
+        return 1.0 / (1.0 + Math.exp(-margin));
+    }
+
+    /**
+     * Whether the score reaches the model's decision threshold
+     */
+    public boolean predict(float[] x) {
+        return score(x) >= threshold;
+    }
+
+    /**
+     * Line reader that skips comments and reports the line number in errors
+     */
+    private static class Parser {
+        private final BufferedReader reader;
+        private int lineNumber;
+
+        Parser(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        String[] nextOrNull() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    return line.split("\\s+");
+                }
+            }
+            return null;
+        }
+
+        String[] next(String expected) throws IOException {
+            String[] line = nextOrNull();
+            if (line == null) {
+                throw error("Unexpected end of model, expected " + expected);
+            }
+            return line;
+        }
+
+        String value(String key) throws IOException {
+            String[] line = next(key);
+            if (line.length != 2 || !key.equals(line[0])) {
+                throw error("Expected " + key);
+            }
+            return line[1];
+        }
+
+        int child(String token, int parent, int size) throws IOException {
+            int child = parseInt(token);
+            if (child <= parent || child >= size) {
+                throw error("Invalid child " + child + " of node " + parent);
+            }
+            return child;
+        }
+
+        int parseInt(String token) throws IOException {
+            try {
+                return Integer.parseInt(token);
+            } catch (NumberFormatException e) {
+                throw error("Invalid integer: " + token);
+            }
+        }
+
+        float parseFloat(String token) throws IOException {
+            return (float) parseDouble(token);
+        }
+
+        double parseDouble(String token) throws IOException {
+            try {
+                return Double.parseDouble(token);
+            } catch (NumberFormatException e) {
+                throw error("Invalid number: " + token);
+            }
+        }
+
+        IOException error(String message) {
+            return new IOException(message + " (line " + lineNumber + ")");
+        }
+    }
+}
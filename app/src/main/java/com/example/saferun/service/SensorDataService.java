@@ -1,4 +1,341 @@
 package com.example.saferun.service;
 
-public class SensorDataService {
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
+
+import com.example.saferun.R;
+import com.example.saferun.data.firebase.RealtimeDatabaseManager;
+import com.example.saferun.data.model.RunSession;
+import com.example.saferun.data.model.SensorData;
+import com.example.saferun.data.repository.RunSessionRepository;
+import com.example.saferun.data.repository.SensorDataRepository;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Foreground ingestion pipeline for live run sessions.
+ * Subscribes once per active session, to every athlete in {@link RunSession#getAthletes()},
+ * decodes each sample once and fans it out to all registered consumers
+ * (monitoring screens, anomaly detection, recorders).
+ * Sessions started with {@link #startRecording} are also archived to sensor_chunks
+ * through a write-behind {@link SensorDataUploader}, and are ended with
+ * {@link #completeSession} once their samples are uploaded.
+ */
+public class SensorDataService extends Service {
+    private static final String TAG = "SensorDataService";
+
+    private static final String ACTION_START_SESSION = "com.example.saferun.action.START_SESSION";
+    private static final String ACTION_STOP_SESSION = "com.example.saferun.action.STOP_SESSION";
+    private static final String EXTRA_SESSION_ID = "session_id";
+    private static final String EXTRA_RECORD = "record";
+    private static final String EXTRA_UNLESS_RECORDING = "unless_recording";
+
+    private static final String CHANNEL_ID = "sensor_ingestion";
+    private static final int NOTIFICATION_ID = 1001;
+
+    /**
+     * Receives every sample of every athlete for the sessions it is registered on.
+     * Called on the main thread. The SensorData instance is shared between consumers.
+     */
+    public interface SensorDataConsumer {
+        void onSensorData(String sessionId, String athleteId, SensorData sensorData);
+    }
+
+    public class LocalBinder extends Binder {
+        public SensorDataService getService() {
+            return SensorDataService.this;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+
+    private SensorDataRepository sensorDataRepository;
+    private RunSessionRepository runSessionRepository;
+
+    // Session ID -> (athlete ID -> stream)
+    private final Map<String, Map<String, RealtimeDatabaseManager.StreamRegistration>> sessionStreams = new HashMap<>();
+    // Session ID -> consumers
+    private final Map<String, List<SensorDataConsumer>> sessionConsumers = new HashMap<>();
+    // Sessions whose samples are archived by the uploader
+    private final Set<String> recordingSessions = new HashSet<>();
+    // Completed sessions whose recorded samples are still being uploaded
+    private int uploadingSessions = 0;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private SensorDataUploader uploader;
+
+    public static void startIngestion(Context context, String sessionId) {
+        Intent intent = new Intent(context, SensorDataService.class);
+        intent.setAction(ACTION_START_SESSION);
+        intent.putExtra(EXTRA_SESSION_ID, sessionId);
+        ContextCompat.startForegroundService(context, intent);
+    }
+
+    /**
+     * Start ingestion and also archive every received sample to sensor_chunks.
+     * Started by the coach's live session screen; the sensor gateway only writes the realtime
+     * stream, so this is what makes the session's history. Other screens join with
+     * {@link #startIngestion}, which leaves an ongoing recording in place.
+     */
+    public static void startRecording(Context context, String sessionId) {
+        Intent intent = new Intent(context, SensorDataService.class);
+        intent.setAction(ACTION_START_SESSION);
+        intent.putExtra(EXTRA_SESSION_ID, sessionId);
+        intent.putExtra(EXTRA_RECORD, true);
+        ContextCompat.startForegroundService(context, intent);
+    }
+
+    public static void stopIngestion(Context context, String sessionId) {
+        Intent intent = new Intent(context, SensorDataService.class);
+        intent.setAction(ACTION_STOP_SESSION);
+        intent.putExtra(EXTRA_SESSION_ID, sessionId);
+        context.startService(intent);
+    }
+
+    /**
+     * Stop ingestion joined with {@link #startIngestion}, unless the session is being recorded by
+     * then: the recording keeps ingesting until {@link #completeSession}. Needs no binding.
+     */
+    public static void leaveIngestion(Context context, String sessionId) {
+        Intent intent = new Intent(context, SensorDataService.class);
+        intent.setAction(ACTION_STOP_SESSION);
+        intent.putExtra(EXTRA_SESSION_ID, sessionId);
+        intent.putExtra(EXTRA_UNLESS_RECORDING, true);
+        context.startService(intent);
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        sensorDataRepository = SensorDataRepository.getInstance();
+        runSessionRepository = RunSessionRepository.getInstance();
+        uploader = new SensorDataUploader(sensorDataRepository);
+        createNotificationChannel();
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // Must be called promptly after startForegroundService()
+        startForeground(NOTIFICATION_ID, buildNotification());
+
+        String sessionId = intent != null ? intent.getStringExtra(EXTRA_SESSION_ID) : null;
+        String action = intent != null ? intent.getAction() : null;
+
+        if (sessionId == null) {
+            stopIfIdle();
+            return START_NOT_STICKY;
+        }
+
+        if (ACTION_STOP_SESSION.equals(action)) {
+            boolean keepRecording = intent.getBooleanExtra(EXTRA_UNLESS_RECORDING, false);
+            if (!keepRecording || !recordingSessions.contains(sessionId)) {
+                unsubscribeSession(sessionId);
+            }
+            stopIfIdle();
+        } else {
+            if (intent.getBooleanExtra(EXTRA_RECORD, false)) {
+                recordingSessions.add(sessionId);
+            }
+            subscribeSession(sessionId);
+        }
+
+        return START_NOT_STICKY;
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    @Override
+    public void onDestroy() {
+        for (Map<String, RealtimeDatabaseManager.StreamRegistration> streams : sessionStreams.values()) {
+            for (RealtimeDatabaseManager.StreamRegistration stream : streams.values()) {
+                stream.remove();
+            }
+        }
+        sessionStreams.clear();
+        sessionConsumers.clear();
+        recordingSessions.clear();
+        uploader.shutdown();
+        super.onDestroy();
+    }
+
+    /**
+     * Register a consumer for all athletes of a session
+     */
+    public void addConsumer(String sessionId, SensorDataConsumer consumer) {
+        List<SensorDataConsumer> consumers = sessionConsumers.get(sessionId);
+        if (consumers == null) {
+            consumers = new CopyOnWriteArrayList<>();
+            sessionConsumers.put(sessionId, consumers);
+        }
+        if (!consumers.contains(consumer)) {
+            consumers.add(consumer);
+        }
+    }
+
+    public void removeConsumer(String sessionId, SensorDataConsumer consumer) {
+        List<SensorDataConsumer> consumers = sessionConsumers.get(sessionId);
+        if (consumers != null) {
+            consumers.remove(consumer);
+        }
+    }
+
+    /**
+     * End a session: stop ingesting it, upload what was recorded, and only then mark it
+     * completed, which seals its history in the local store and materializes its summaries
+     * from the complete samples. The service stays in the foreground until the upload is done.
+     * The callback is called on the main thread.
+     */
+    public void completeSession(String sessionId, RunSessionRepository.OperationCallback callback) {
+        boolean recording = recordingSessions.remove(sessionId);
+        unsubscribeSession(sessionId);
+        if (!recording) {
+            runSessionRepository.completeSession(sessionId, callback);
+            stopIfIdle();
+            return;
+        }
+
+        uploadingSessions++;
+        uploader.closeSession(sessionId, () -> mainHandler.post(() -> {
+            uploadingSessions--;
+            Log.d(TAG, "Uploaded recording of session " + sessionId);
+            runSessionRepository.completeSession(sessionId, callback);
+            stopIfIdle();
+        }));
+    }
+
+    public boolean isIngesting(String sessionId) {
+        return sessionStreams.containsKey(sessionId);
+    }
+
+    public boolean isRecording(String sessionId) {
+        return recordingSessions.contains(sessionId);
+    }
+
+    private void subscribeSession(String sessionId) {
+        if (sessionStreams.containsKey(sessionId)) {
+            Log.d(TAG, "Session already ingesting: " + sessionId);
+            return;
+        }
+
+        // Reserve the slot so concurrent start requests don't subscribe twice
+        sessionStreams.put(sessionId, new HashMap<>());
+
+        runSessionRepository.getRunSession(sessionId, new RunSessionRepository.RunSessionCallback() {
+            @Override
+            public void onSuccess(RunSession session) {
+                Map<String, RealtimeDatabaseManager.StreamRegistration> streams = sessionStreams.get(sessionId);
+                if (streams == null) {
+                    // Stopped while the session was loading
+                    return;
+                }
+
+                for (String athleteId : session.getAthletes()) {
+                    if (!streams.containsKey(athleteId)) {
+                        streams.put(athleteId, subscribeAthlete(sessionId, athleteId));
+                    }
+                }
+
+                Log.d(TAG, "Ingesting session " + sessionId + " for " + streams.size() + " athletes");
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                Log.e(TAG, "Failed to load session " + sessionId + ": " + errorMessage);
+                sessionStreams.remove(sessionId);
+                recordingSessions.remove(sessionId);
+                stopIfIdle();
+            }
+        });
+    }
+
+    private RealtimeDatabaseManager.StreamRegistration subscribeAthlete(String sessionId, String athleteId) {
+        return sensorDataRepository.observeRawSensorData(sessionId, athleteId,
+                new SensorDataRepository.SensorDataCallback() {
+                    @Override
+                    public void onSuccess(SensorData sensorData) {
+                        if (recordingSessions.contains(sessionId)) {
+                            uploader.offer(sessionId, athleteId, sensorData);
+                        }
+                        dispatch(sessionId, athleteId, sensorData);
+                    }
+
+                    @Override
+                    public void onError(String errorMessage) {
+                        Log.e(TAG, "Stream error for athlete " + athleteId + ": " + errorMessage);
+                    }
+                });
+    }
+
+    private void dispatch(String sessionId, String athleteId, SensorData sensorData) {
+        List<SensorDataConsumer> consumers = sessionConsumers.get(sessionId);
+        if (consumers == null) {
+            return;
+        }
+        for (SensorDataConsumer consumer : consumers) {
+            consumer.onSensorData(sessionId, athleteId, sensorData);
+        }
+    }
+
+    private void unsubscribeSession(String sessionId) {
+        Map<String, RealtimeDatabaseManager.StreamRegistration> streams = sessionStreams.remove(sessionId);
+        if (streams != null) {
+            for (RealtimeDatabaseManager.StreamRegistration stream : streams.values()) {
+                stream.remove();
+            }
+        }
+        if (recordingSessions.remove(sessionId)) {
+            uploader.closeSession(sessionId);
+        }
+        Log.d(TAG, "Stopped ingesting session " + sessionId);
+    }
+
+    private void stopIfIdle() {
+        if (sessionStreams.isEmpty() && uploadingSessions == 0) {
+            stopForeground(true);
+            stopSelf();
+        }
+    }
+
+    private void createNotificationChannel() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID,
+                    "Live session monitoring", NotificationManager.IMPORTANCE_LOW);
+            NotificationManager manager = getSystemService(NotificationManager.class);
+            if (manager != null) {
+                manager.createNotificationChannel(channel);
+            }
+        }
+    }
+
+    private Notification buildNotification() {
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setContentTitle("SafeRun")
+                .setContentText("Monitoring live session")
+                .setSmallIcon(R.drawable.ic_directions_run)
+                .setOngoing(true)
+                .build();
+    }
 }
@@ -0,0 +1,364 @@
+package com.example.saferun.service;
+
+import android.util.Log;
+
+import com.example.saferun.data.model.SensorChunk;
+import com.example.saferun.data.model.SensorData;
+import com.example.saferun.data.model.SensorSeries;
+import com.example.saferun.data.repository.SensorDataRepository;
+import com.example.saferun.data.util.SensorChunkCodec;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind recorder for live samples. Samples are buffered in memory per athlete and
+ * written to sensor_chunks in a single WriteBatch when enough samples have arrived or the
+ * flush interval elapses, instead of one write per sample.
+ *
+ * The current minute of each athlete is rewritten on every flush until the minute ends; it is
+ * then encoded and queued once. When the queue is over its limit (e.g. while offline and the
+ * batches keep failing), the oldest queued minutes are dropped first, so recording never blocks
+ * ingestion and memory stays bounded.
+ *
+ * All buffering and flushing runs on one background thread; {@link #offer} may be called from any thread.
+ */
+public class SensorDataUploader {
+    private static final String TAG = "SensorDataUploader";
+
+    public static final int DEFAULT_FLUSH_SAMPLES = 500;
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 5_000L;
+    public static final int DEFAULT_MAX_PENDING_SAMPLES = 30_000;
+
+    private final SensorDataRepository repository;
+    private final int flushSamples;
+    private final int maxPendingSamples;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    // Confined to the executor thread
+    private final Map<String, MinuteBuffer> buffers = new HashMap<>();
+    private final ArrayDeque<SensorChunk> closedChunks = new ArrayDeque<>();
+    private int closedSamples = 0;
+    private int samplesSinceFlush = 0;
+    private boolean flushInFlight = false;
+    private boolean closed = false;
+    // Session ID -> callbacks waiting for everything recorded for the session to be uploaded
+    private final Map<String, List<Runnable>> uploadWaiters = new HashMap<>();
+
+    private final AtomicLong uploadedSamples = new AtomicLong();
+    private final AtomicLong droppedSamples = new AtomicLong();
+
+    /**
+     * Samples of one athlete within the current minute
+     */
+    private static class MinuteBuffer {
+        final String sessionId;
+        final String athleteId;
+        final SensorSeries samples = new SensorSeries();
+        long chunkStart = -1;
+        // Bumped on every change; a flush only marks the buffer clean if it is unchanged since
+        int version = 0;
+        int uploadedVersion = 0;
+
+        MinuteBuffer(String sessionId, String athleteId) {
+            this.sessionId = sessionId;
+            this.athleteId = athleteId;
+        }
+
+        boolean isDirty() {
+            return version != uploadedVersion && !samples.isEmpty();
+        }
+    }
+
+    public SensorDataUploader(SensorDataRepository repository) {
+        this(repository, DEFAULT_FLUSH_SAMPLES, DEFAULT_FLUSH_INTERVAL_MS, DEFAULT_MAX_PENDING_SAMPLES);
+    }
+
+    public SensorDataUploader(SensorDataRepository repository, int flushSamples, long flushIntervalMs,
+                              int maxPendingSamples) {
+        this.repository = repository;
+        this.flushSamples = flushSamples;
+        this.maxPendingSamples = maxPendingSamples;
+
+        executor.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queue a sample for upload. The sample is copied, so the caller may reuse it.
+     */
+    public void offer(String sessionId, String athleteId, SensorData sensorData) {
+        long timestamp = sensorData.getTimestamp();
+        int heartRate = sensorData.getHeartRate();
+        double temperature = sensorData.getTemperature();
+        double speed = sensorData.getSpeed();
+        boolean anomaly = sensorData.isAnomalyDetected();
+
+        execute(() -> append(sessionId, athleteId, timestamp, heartRate, temperature, speed, anomaly));
+    }
+
+    /**
+     * Close the open minutes of a session and upload everything buffered for it
+     */
+    public void closeSession(String sessionId) {
+        closeSession(sessionId, null);
+    }
+
+    /**
+     * Close the open minutes of a session and upload everything buffered for it
+     * @param onUploaded run on the uploader thread once no sample of the session is left to
+     *                   upload, i.e. every batch of it was written or dropped; may be null
+     */
+    public void closeSession(String sessionId, Runnable onUploaded) {
+        execute(() -> {
+            Iterator<MinuteBuffer> iterator = buffers.values().iterator();
+            while (iterator.hasNext()) {
+                MinuteBuffer buffer = iterator.next();
+                if (buffer.sessionId.equals(sessionId)) {
+                    closeMinute(buffer);
+                    iterator.remove();
+                }
+            }
+            if (onUploaded != null) {
+                List<Runnable> waiters = uploadWaiters.get(sessionId);
+                if (waiters == null) {
+                    waiters = new ArrayList<>();
+                    uploadWaiters.put(sessionId, waiters);
+                }
+                waiters.add(onUploaded);
+            }
+            flush();
+            notifyUploaded();
+        });
+    }
+
+    /**
+     * Upload everything still buffered, then stop. Batches already committed are kept by
+     * Firestore's offline queue even if this process ends before they reach the server.
+     */
+    public void shutdown() {
+        execute(() -> {
+            for (MinuteBuffer buffer : buffers.values()) {
+                closeMinute(buffer);
+            }
+            buffers.clear();
+            // The last flushes must not wait for the ones still in flight
+            do {
+                flushInFlight = false;
+                flush();
+            } while (!closedChunks.isEmpty());
+            closed = true;
+            // Everything is in Firestore's offline queue now
+            for (List<Runnable> waiters : uploadWaiters.values()) {
+                for (Runnable waiter : waiters) {
+                    waiter.run();
+                }
+            }
+            uploadWaiters.clear();
+            executor.shutdown();
+        });
+    }
+
+    public long getUploadedSampleCount() {
+        return uploadedSamples.get();
+    }
+
+    public long getDroppedSampleCount() {
+        return droppedSamples.get();
+    }
+
+    private void append(String sessionId, String athleteId, long timestamp, int heartRate,
+                        double temperature, double speed, boolean anomaly) {
+        if (closed) {
+            return;
+        }
+
+        String key = sessionId + "/" + athleteId;
+        MinuteBuffer buffer = buffers.get(key);
+        if (buffer == null) {
+            buffer = new MinuteBuffer(sessionId, athleteId);
+            buffers.put(key, buffer);
+        }
+
+        long chunkStart = SensorChunkCodec.chunkStart(timestamp);
+        if (chunkStart < buffer.chunkStart) {
+            // Its minute was already closed; rewriting it would lose the samples queued for it
+            Log.w(TAG, "Dropping late sample for athlete " + athleteId + " at " + timestamp);
+            droppedSamples.incrementAndGet();
+            return;
+        }
+        if (chunkStart > buffer.chunkStart) {
+            closeMinute(buffer);
+            buffer.chunkStart = chunkStart;
+        }
+
+        buffer.samples.add(timestamp, heartRate, temperature, speed, anomaly);
+        buffer.version++;
+        enforceLimit();
+
+        if (++samplesSinceFlush >= flushSamples) {
+            flush();
+        }
+    }
+
+    /**
+     * Encode and queue the buffered minute if it has changes that weren't uploaded yet
+     */
+    private void closeMinute(MinuteBuffer buffer) {
+        if (buffer.isDirty()) {
+            buffer.samples.sortByTimestamp();
+            SensorChunk chunk = SensorChunk.encode(buffer.sessionId, buffer.athleteId,
+                    buffer.samples, 0, buffer.samples.size());
+            closedChunks.addLast(chunk);
+            closedSamples += chunk.getCount();
+        }
+        buffer.samples.clear();
+        buffer.version = 0;
+        buffer.uploadedVersion = 0;
+    }
+
+    /**
+     * Drop the oldest queued minutes while more samples are pending than allowed
+     */
+    private void enforceLimit() {
+        while (closedSamples > maxPendingSamples && !closedChunks.isEmpty()) {
+            SensorChunk dropped = closedChunks.pollFirst();
+            closedSamples -= dropped.getCount();
+            long total = droppedSamples.addAndGet(dropped.getCount());
+            Log.w(TAG, "Upload queue full, dropped " + dropped.getCount() + " samples of athlete "
+                    + dropped.getAthleteId() + " (" + total + " dropped so far)");
+        }
+    }
+
+    private void flush() {
+        if (flushInFlight || (closedChunks.isEmpty() && !hasDirtyBuffers())) {
+            return;
+        }
+
+        List<SensorChunk> chunks = new ArrayList<>();
+        while (!closedChunks.isEmpty() && chunks.size() < SensorDataRepository.MAX_BATCH_WRITES) {
+            chunks.add(closedChunks.pollFirst());
+        }
+        int closedCount = chunks.size();
+
+        // Open minutes are rewritten whole, with everything received so far
+        List<MinuteBuffer> openBuffers = new ArrayList<>();
+        List<long[]> openMarks = new ArrayList<>();
+        for (MinuteBuffer buffer : buffers.values()) {
+            if (chunks.size() == SensorDataRepository.MAX_BATCH_WRITES) {
+                break;
+            }
+            if (buffer.isDirty()) {
+                buffer.samples.sortByTimestamp();
+                chunks.add(SensorChunk.encode(buffer.sessionId, buffer.athleteId,
+                        buffer.samples, 0, buffer.samples.size()));
+                openBuffers.add(buffer);
+                openMarks.add(new long[]{buffer.chunkStart, buffer.version});
+            }
+        }
+
+        List<SensorChunk> closedBatch = new ArrayList<>(chunks.subList(0, closedCount));
+        for (SensorChunk chunk : closedBatch) {
+            closedSamples -= chunk.getCount();
+        }
+
+        flushInFlight = true;
+        samplesSinceFlush = 0;
+
+        repository.writeSensorChunks(chunks, new SensorDataRepository.OperationCallback() {
+            @Override
+            public void onSuccess() {
+                execute(() -> {
+                    flushInFlight = false;
+                    for (SensorChunk chunk : closedBatch) {
+                        uploadedSamples.addAndGet(chunk.getCount());
+                    }
+                    for (int i = 0; i < openBuffers.size(); i++) {
+                        // Only if the buffer still holds the minute that was written
+                        MinuteBuffer buffer = openBuffers.get(i);
+                        long[] mark = openMarks.get(i);
+                        if (buffer.chunkStart == mark[0] && buffer.version >= mark[1]) {
+                            buffer.uploadedVersion = (int) mark[1];
+                        }
+                    }
+                    // Closed sessions don't wait for the next interval
+                    if (!uploadWaiters.isEmpty()) {
+                        flush();
+                    }
+                    notifyUploaded();
+                });
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                Log.e(TAG, "Flush failed, requeueing " + closedBatch.size() + " chunks: " + errorMessage);
+                execute(() -> {
+                    flushInFlight = false;
+                    for (int i = closedBatch.size() - 1; i >= 0; i--) {
+                        SensorChunk chunk = closedBatch.get(i);
+                        closedChunks.addFirst(chunk);
+                        closedSamples += chunk.getCount();
+                    }
+                    enforceLimit();
+                    notifyUploaded();
+                });
+            }
+        });
+    }
+
+    /**
+     * Run the waiters of closed sessions with nothing left to upload. A batch in flight may hold
+     * any session's samples, so nothing is done until it completes.
+     */
+    private void notifyUploaded() {
+        if (flushInFlight || uploadWaiters.isEmpty()) {
+            return;
+        }
+        Iterator<Map.Entry<String, List<Runnable>>> iterator = uploadWaiters.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, List<Runnable>> entry = iterator.next();
+            if (hasQueuedChunks(entry.getKey())) {
+                continue;
+            }
+            iterator.remove();
+            for (Runnable waiter : entry.getValue()) {
+                waiter.run();
+            }
+        }
+    }
+
+    private boolean hasQueuedChunks(String sessionId) {
+        for (SensorChunk chunk : closedChunks) {
+            if (chunk.getSessionId().equals(sessionId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasDirtyBuffers() {
+        for (MinuteBuffer buffer : buffers.values()) {
+            if (buffer.isDirty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Uploader already shut down");
+        }
+    }
+}
@@ -16,6 +16,7 @@ import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
 import com.example.saferun.R;
+import com.example.saferun.data.firebase.ReadPolicy;
 import com.example.saferun.data.repository.UserRepository;
 import com.example.saferun.ui.auth.LoginActivity;
 
@@ -81,7 +82,7 @@ public class AthleteDashboardActivity extends AppCompatActivity {
     }
 
     private void loadUserName() {
-        userRepository.getCurrentUser(new UserRepository.UserCallback() {
+        userRepository.getCurrentUser(ReadPolicy.CACHE_THEN_SERVER, new UserRepository.UserCallback() {
             @Override
             public void onSuccess(com.example.saferun.data.model.User user) {
                 userNameTextView.setText("Welcome, " + user.getName());
@@ -12,11 +12,13 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
 import com.example.saferun.R;
+import com.example.saferun.data.model.Metric;
 import com.example.saferun.data.model.RunSession;
-import com.example.saferun.data.model.SensorData;
+import com.example.saferun.data.model.SensorSeries;
 import com.example.saferun.data.repository.RunSessionRepository;
 import com.example.saferun.data.repository.SensorDataRepository;
 import com.example.saferun.data.repository.UserRepository;
+import com.example.saferun.ml.PerformanceAnalyzer;
 import com.github.mikephil.charting.charts.BarChart;
 import com.github.mikephil.charting.charts.LineChart;
 import com.github.mikephil.charting.components.Legend;
@@ -33,6 +35,7 @@ import com.github.mikephil.charting.formatter.ValueFormatter;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -57,7 +60,8 @@ public class AthleteGlobalPerformanceActivity extends AppCompatActivity {
     private UserRepository userRepository;
 
     private List<RunSession> sessions = new ArrayList<>();
-    private Map<String, List<SensorData>> sessionSensorData = new HashMap<>();
+    // Session ID -> statistics of the athlete's samples; the samples themselves aren't kept
+    private Map<String, PerformanceAnalyzer> sessionStats = new HashMap<>();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -260,65 +264,62 @@ public class AthleteGlobalPerformanceActivity extends AppCompatActivity {
     }
 
     private void loadSensorDataForSessions() {
-        final int[] loadedCount = {0};
-        final int totalSessions = sessions.size();
-
-        if (totalSessions == 0) {
+        if (sessions.isEmpty()) {
             showProgress(false);
             showNoData(true);
             return;
         }
 
         // Clear previous data
-        sessionSensorData.clear();
+        sessionStats.clear();
 
-        // Process each session
-        for (RunSession session : sessions) {
-            String sessionId = session.getId();
-            Log.d(TAG, "Loading sensor data for session: " + sessionId);
-
-            sensorDataRepository.getSensorDataHistory(sessionId, userRepository.getCurrentUserId(), 1000,
-                    new SensorDataRepository.SensorDataListCallback() {
-                        @Override
-                        public void onSuccess(List<SensorData> sensorDataList) {
-                            if (sensorDataList != null && !sensorDataList.isEmpty()) {
-                                sessionSensorData.put(sessionId, sensorDataList);
-                                Log.d(TAG, "Loaded " + sensorDataList.size() + " data points for session " + sessionId);
-                            }
+        String athleteId = userRepository.getCurrentUserId();
 
-                            loadedCount[0]++;
-                            checkAllDataLoaded(loadedCount[0], totalSessions);
+        // One batched load for all sessions instead of a query per session
+        sensorDataRepository.getSensorSeriesBatch(sessions, Collections.singletonList(athleteId),
+                new SensorDataRepository.SensorSeriesBatchCallback() {
+                    @Override
+                    public void onSuccess(Map<String, Map<String, SensorSeries>> seriesBySession) {
+                        for (RunSession session : sessions) {
+                            String sessionId = session.getId();
+                            Map<String, SensorSeries> athleteSeries = seriesBySession.get(sessionId);
+                            SensorSeries series = athleteSeries != null ? athleteSeries.get(athleteId) : null;
+
+                            if (series != null && !series.isEmpty()) {
+                                // Speed statistics only cover the time the athlete was moving
+                                sessionStats.put(sessionId, PerformanceAnalyzer.of(series, true));
+                                Log.d(TAG, "Loaded " + series.size() + " data points for session " + sessionId);
+                            }
                         }
 
-                        @Override
-                        public void onError(String errorMessage) {
-                            Log.e(TAG, "Error loading sensor data for session " + sessionId + ": " + errorMessage);
-                            loadedCount[0]++;
-                            checkAllDataLoaded(loadedCount[0], totalSessions);
-                        }
-                    });
-        }
+                        onSensorDataLoaded();
+                    }
+
+                    @Override
+                    public void onError(String errorMessage) {
+                        Log.e(TAG, "Error loading sensor data: " + errorMessage);
+                        onSensorDataLoaded();
+                    }
+                });
     }
 
-    private void checkAllDataLoaded(int loadedCount, int totalSessions) {
-        if (loadedCount >= totalSessions) {
-            // All sessions processed
-            showProgress(false);
+    private void onSensorDataLoaded() {
+        // All sessions processed
+        showProgress(false);
 
-            if (isAllSensorDataEmpty()) {
-                showNoData(true);
-                Log.d(TAG, "No sensor data found for any session");
-            } else {
-                showNoData(false);
-                updateStatistics();
-                updateCharts();
-            }
+        if (isAllSensorDataEmpty()) {
+            showNoData(true);
+            Log.d(TAG, "No sensor data found for any session");
+        } else {
+            showNoData(false);
+            updateStatistics();
+            updateCharts();
         }
     }
 
     private boolean isAllSensorDataEmpty() {
-        for (List<SensorData> dataList : sessionSensorData.values()) {
-            if (dataList != null && !dataList.isEmpty()) {
+        for (PerformanceAnalyzer stats : sessionStats.values()) {
+            if (stats.getSampleCount() > 0) {
                 return false;
             }
         }
@@ -415,44 +416,13 @@ public class AthleteGlobalPerformanceActivity extends AppCompatActivity {
 
     private double calculateSessionPerformance(RunSession session) {
         // Get sensor data for this session
-        List<SensorData> dataList = sessionSensorData.get(session.getId());
-        if (dataList == null || dataList.isEmpty()) {
+        PerformanceAnalyzer stats = sessionStats.get(session.getId());
+        if (stats == null || stats.getSampleCount() == 0) {
             return 50.0; // Default score if no data
         }
 
-        // Calculate metrics from sensor data
-        double avgHeartRate = 0;
-        double maxHeartRate = 0;
-        int heartRateCount = 0;
-
-        double avgSpeed = 0;
-        double maxSpeed = 0;
-        int speedCount = 0;
-
-        for (SensorData data : dataList) {
-            // Process heart rate
-            if (data.getHeartRate() > 0) {
-                avgHeartRate += data.getHeartRate();
-                heartRateCount++;
-                maxHeartRate = Math.max(maxHeartRate, data.getHeartRate());
-            }
-
-            // Process speed
-            if (data.getSpeed() > 0) {
-                avgSpeed += data.getSpeed();
-                speedCount++;
-                maxSpeed = Math.max(maxSpeed, data.getSpeed());
-            }
-        }
-
-        // Calculate averages
-        if (heartRateCount > 0) {
-            avgHeartRate /= heartRateCount;
-        }
-
-        if (speedCount > 0) {
-            avgSpeed /= speedCount;
-        }
+        double avgHeartRate = stats.getMean(Metric.HEART_RATE);
+        double avgSpeed = stats.getMean(Metric.SPEED);
 
         // Calculate performance score (simplified algorithm)
         double heartRateEfficiency = 0;
@@ -499,24 +469,12 @@ public class AthleteGlobalPerformanceActivity extends AppCompatActivity {
         // Use most recent sessions
         for (int i = Math.max(0, sessions.size() - sessionLimit); i < sessions.size(); i++) {
             RunSession session = sessions.get(i);
-            List<SensorData> dataList = sessionSensorData.get(session.getId());
-
-            if (dataList != null && !dataList.isEmpty()) {
-                // Calculate average and max heart rate
-                double avgHeartRate = 0;
-                int maxHeartRate = 0;
-                int count = 0;
-
-                for (SensorData data : dataList) {
-                    if (data.getHeartRate() > 0) {
-                        avgHeartRate += data.getHeartRate();
-                        count++;
-                        maxHeartRate = Math.max(maxHeartRate, data.getHeartRate());
-                    }
-                }
+            PerformanceAnalyzer stats = sessionStats.get(session.getId());
 
-                if (count > 0) {
-                    avgHeartRate /= count;
+            if (stats != null) {
+                if (stats.getCount(Metric.HEART_RATE) > 0) {
+                    double avgHeartRate = stats.getMean(Metric.HEART_RATE);
+                    double maxHeartRate = stats.getMax(Metric.HEART_RATE);
 
                     // Add data points
                     avgHeartRateEntries.add(new Entry(index, (float)avgHeartRate));
@@ -581,24 +539,12 @@ public class AthleteGlobalPerformanceActivity extends AppCompatActivity {
         // Use most recent sessions
         for (int i = Math.max(0, sessions.size() - sessionLimit); i < sessions.size(); i++) {
             RunSession session = sessions.get(i);
-            List<SensorData> dataList = sessionSensorData.get(session.getId());
-
-            if (dataList != null && !dataList.isEmpty()) {
-                // Calculate average and max speed
-                double avgSpeed = 0;
-                double maxSpeed = 0;
-                int count = 0;
-
-                for (SensorData data : dataList) {
-                    if (data.getSpeed() > 0) {
-                        avgSpeed += data.getSpeed();
-                        count++;
-                        maxSpeed = Math.max(maxSpeed, data.getSpeed());
-                    }
-                }
+            PerformanceAnalyzer stats = sessionStats.get(session.getId());
 
-                if (count > 0) {
-                    avgSpeed /= count;
+            if (stats != null) {
+                if (stats.getCount(Metric.SPEED) > 0) {
+                    double avgSpeed = stats.getMean(Metric.SPEED);
+                    double maxSpeed = stats.getMax(Metric.SPEED);
 
                     // Add data points
                     avgSpeedEntries.add(new Entry(index, (float)avgSpeed));
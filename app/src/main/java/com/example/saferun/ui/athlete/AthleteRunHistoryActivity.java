@@ -20,7 +20,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.saferun.R;
 import com.example.saferun.data.firebase.FirebaseAuthManager;
 import com.example.saferun.data.model.RunSession;
-import com.example.saferun.data.model.SensorData;
+import com.example.saferun.data.model.SensorSeries;
 import com.example.saferun.data.repository.RunSessionRepository;
 import com.example.saferun.data.repository.SensorDataRepository;
 import com.github.mikephil.charting.charts.LineChart;
@@ -58,7 +58,7 @@ public class AthleteRunHistoryActivity extends AppCompatActivity implements Athl
     private SensorDataRepository sensorDataRepository;
     private AthleteRunSessionAdapter sessionAdapter;
     private List<RunSession> sessions = new ArrayList<>();
-    private Map<String, List<SensorData>> sessionSensorDataMap = new HashMap<>();
+    private Map<String, SensorSeries> sessionSensorDataMap = new HashMap<>();
 
     private String currentAthleteId;
 
@@ -318,53 +318,34 @@ public class AthleteRunHistoryActivity extends AppCompatActivity implements Athl
         try {
             // Reset tracking variables
             sessionSensorDataMap.clear();
-            final int[] loadedCount = {0};
-            final int totalSessions = sessions.size();
 
-            if (totalSessions == 0) {
+            if (sessions.isEmpty()) {
                 showProgress(false);
                 setSafeStatisticsToZero();
                 return;
             }
 
-            // Load sensor data for each session
-            for (RunSession session : sessions) {
-                if (session == null) {
-                    loadedCount[0]++;
-                    checkIfDoneLoading(loadedCount[0], totalSessions);
-                    continue;
-                }
-
-                final String sessionId = session.getId();
-
-                if (sessionId == null || sessionId.isEmpty()) {
-                    loadedCount[0]++;
-                    checkIfDoneLoading(loadedCount[0], totalSessions);
-                    continue;
-                }
-
-                sensorDataRepository.getSensorDataHistory(sessionId, currentAthleteId, 1000,
-                        new SensorDataRepository.SensorDataListCallback() {
-                            @Override
-                            public void onSuccess(List<SensorData> sensorDataList) {
-                                loadedCount[0]++;
-
-                                if (sensorDataList != null && !sensorDataList.isEmpty()) {
-                                    sessionSensorDataMap.put(sessionId, sensorDataList);
+            // One batched load for all sessions instead of a query per session
+            sensorDataRepository.getSensorSeriesBatch(sessions, Collections.singletonList(currentAthleteId),
+                    new SensorDataRepository.SensorSeriesBatchCallback() {
+                        @Override
+                        public void onSuccess(Map<String, Map<String, SensorSeries>> seriesBySession) {
+                            for (Map.Entry<String, Map<String, SensorSeries>> entry : seriesBySession.entrySet()) {
+                                SensorSeries series = entry.getValue().get(currentAthleteId);
+                                if (series != null && !series.isEmpty()) {
+                                    sessionSensorDataMap.put(entry.getKey(), series);
                                 }
-
-                                checkIfDoneLoading(loadedCount[0], totalSessions);
                             }
 
-                            @Override
-                            public void onError(String errorMessage) {
-                                loadedCount[0]++;
-                                Log.e(TAG, "Error loading sensor data for session " + sessionId + ": " + errorMessage);
+                            onSensorDataLoaded();
+                        }
 
-                                checkIfDoneLoading(loadedCount[0], totalSessions);
-                            }
-                        });
-            }
+                        @Override
+                        public void onError(String errorMessage) {
+                            Log.e(TAG, "Error loading sensor data: " + errorMessage);
+                            onSensorDataLoaded();
+                        }
+                    });
         } catch (Exception e) {
             Log.e(TAG, "Error in loadSensorDataForSessions: " + e.getMessage(), e);
             showProgress(false);
@@ -372,12 +353,10 @@ public class AthleteRunHistoryActivity extends AppCompatActivity implements Athl
         }
     }
 
-    private void checkIfDoneLoading(int loadedCount, int totalSessions) {
-        if (loadedCount >= totalSessions) {
-            showProgress(false);
-            updateSummaryStatistics();
-            updatePerformanceChart();
-        }
+    private void onSensorDataLoaded() {
+        showProgress(false);
+        updateSummaryStatistics();
+        updatePerformanceChart();
     }
 
     private void updateSummaryStatistics() {
@@ -413,20 +392,19 @@ public class AthleteRunHistoryActivity extends AppCompatActivity implements Athl
             int validSpeedDatapoints = 0;
             int validHeartRateDatapoints = 0;
 
-            for (Map.Entry<String, List<SensorData>> entry : sessionSensorDataMap.entrySet()) {
-                List<SensorData> dataList = entry.getValue();
-                if (dataList != null) {
-                    for (SensorData data : dataList) {
-                        if (data != null) {
-                            if (data.getSpeed() > 0) {
-                                avgSpeed += data.getSpeed();
-                                validSpeedDatapoints++;
-                            }
+            for (SensorSeries series : sessionSensorDataMap.values()) {
+                if (series != null) {
+                    for (int i = 0; i < series.size(); i++) {
+                        float speed = series.getSpeed(i);
+                        if (speed > 0) {
+                            avgSpeed += speed;
+                            validSpeedDatapoints++;
+                        }
 
-                            if (data.getHeartRate() > 0) {
-                                avgHeartRate += data.getHeartRate();
-                                validHeartRateDatapoints++;
-                            }
+                        int heartRate = series.getHeartRate(i);
+                        if (heartRate > 0) {
+                            avgHeartRate += heartRate;
+                            validHeartRateDatapoints++;
                         }
                     }
                 }
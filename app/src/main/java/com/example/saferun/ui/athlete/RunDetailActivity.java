@@ -16,15 +16,16 @@ import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
 import com.example.saferun.R;
+import com.example.saferun.data.model.Metric;
 import com.example.saferun.data.model.RunSession;
-import com.example.saferun.data.model.SensorData;
+import com.example.saferun.data.model.SensorPyramid;
 import com.example.saferun.data.repository.RunSessionRepository;
 import com.example.saferun.data.repository.SensorDataRepository;
+import com.example.saferun.ui.charts.PyramidChartFeed;
 import com.github.mikephil.charting.charts.LineChart;
 import com.github.mikephil.charting.components.Legend;
 import com.github.mikephil.charting.components.XAxis;
 import com.github.mikephil.charting.components.YAxis;
-import com.github.mikephil.charting.data.Entry;
 import com.github.mikephil.charting.data.LineData;
 import com.github.mikephil.charting.data.LineDataSet;
 import com.github.mikephil.charting.formatter.ValueFormatter;
@@ -32,7 +33,6 @@ import com.github.mikephil.charting.formatter.ValueFormatter;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
 import java.util.Locale;
 
 public class RunDetailActivity extends AppCompatActivity {
@@ -61,10 +61,9 @@ public class RunDetailActivity extends AppCompatActivity {
     private String athleteId;
     private RunSession session;
 
-    // Charts data
-    private List<Entry> heartRateEntries = new ArrayList<>();
-    private List<Entry> speedEntries = new ArrayList<>();
-    private List<Entry> temperatureEntries = new ArrayList<>();
+    // Charts data; x values are milliseconds since chartOrigin
+    private SensorPyramid pyramid;
+    private long chartOrigin;
     private SimpleDateFormat timeFormat;
 
     @Override
@@ -203,7 +202,7 @@ public class RunDetailActivity extends AppCompatActivity {
             xAxis.setValueFormatter(new ValueFormatter() {
                 @Override
                 public String getFormattedValue(float value) {
-                    return timeFormat.format(new Date((long) value));
+                    return timeFormat.format(new Date(chartOrigin + (long) value));
                 }
             });
 
@@ -252,7 +251,7 @@ public class RunDetailActivity extends AppCompatActivity {
             xAxis.setValueFormatter(new ValueFormatter() {
                 @Override
                 public String getFormattedValue(float value) {
-                    return timeFormat.format(new Date((long) value));
+                    return timeFormat.format(new Date(chartOrigin + (long) value));
                 }
             });
 
@@ -301,7 +300,7 @@ public class RunDetailActivity extends AppCompatActivity {
             xAxis.setValueFormatter(new ValueFormatter() {
                 @Override
                 public String getFormattedValue(float value) {
-                    return timeFormat.format(new Date((long) value));
+                    return timeFormat.format(new Date(chartOrigin + (long) value));
                 }
             });
 
@@ -450,20 +449,20 @@ public class RunDetailActivity extends AppCompatActivity {
                 return;
             }
 
-            sensorDataRepository.getSensorDataHistory(sessionId, athleteId, 1000,
-                    new SensorDataRepository.SensorDataListCallback() {
+            sensorDataRepository.getSensorPyramid(sessionId, athleteId, 1000, session != null && session.isCompleted(),
+                    new SensorDataRepository.SensorPyramidCallback() {
                         @Override
-                        public void onSuccess(List<SensorData> sensorDataList) {
+                        public void onSuccess(SensorPyramid sensorPyramid) {
                             showProgress(false);
 
-                            if (sensorDataList == null || sensorDataList.isEmpty()) {
+                            if (sensorPyramid == null || sensorPyramid.isEmpty()) {
                                 Toast.makeText(RunDetailActivity.this,
                                         "No sensor data available for this session",
                                         Toast.LENGTH_SHORT).show();
                                 return;
                             }
 
-                            processSensorData(sensorDataList);
+                            processSensorData(sensorPyramid);
                         }
 
                         @Override
@@ -482,67 +481,26 @@ public class RunDetailActivity extends AppCompatActivity {
         }
     }
 
-    private void processSensorData(List<SensorData> sensorDataList) {
+    private void processSensorData(SensorPyramid sensorPyramid) {
         try {
-            if (sensorDataList == null || sensorDataList.isEmpty()) {
+            if (sensorPyramid == null || sensorPyramid.isEmpty()) {
                 Log.w(TAG, "No sensor data to process");
                 return;
             }
 
-            // Clear existing entries
-            heartRateEntries.clear();
-            speedEntries.clear();
-            temperatureEntries.clear();
-
-            // Calculate averages and maximums
-            double sumHeartRate = 0;
-            int maxHeartRate = 0;
-            double sumSpeed = 0;
-            double maxSpeed = 0;
-            double sumTemperature = 0;
-
-            int validHeartRateCount = 0;
-            int validSpeedCount = 0;
-            int validTemperatureCount = 0;
-
-            // Process sensor data
-            for (SensorData data : sensorDataList) {
-                if (data == null) continue;
-
-                long timestamp = data.getTimestamp();
-
-                // Add heart rate data point
-                if (data.getHeartRate() > 0) {
-                    heartRateEntries.add(new Entry(timestamp, data.getHeartRate()));
-                    sumHeartRate += data.getHeartRate();
-                    maxHeartRate = Math.max(maxHeartRate, data.getHeartRate());
-                    validHeartRateCount++;
-                }
-
-                // Add speed data point
-                if (data.getSpeed() >= 0) {
-                    speedEntries.add(new Entry(timestamp, (float) data.getSpeed()));
-                    sumSpeed += data.getSpeed();
-                    maxSpeed = Math.max(maxSpeed, data.getSpeed());
-                    validSpeedCount++;
-                }
+            pyramid = sensorPyramid;
+            chartOrigin = pyramid.getStartTime();
 
-                // Add temperature data point
-                if (data.getTemperature() > 0) {
-                    temperatureEntries.add(new Entry(timestamp, (float) data.getTemperature()));
-                    sumTemperature += data.getTemperature();
-                    validTemperatureCount++;
-                }
-            }
-
-            // Calculate averages
-            double avgHeartRate = validHeartRateCount > 0 ? sumHeartRate / validHeartRateCount : 0;
-            double avgSpeed = validSpeedCount > 0 ? sumSpeed / validSpeedCount : 0;
-            double avgTemperature = validTemperatureCount > 0 ? sumTemperature / validTemperatureCount : 0;
+            // Session statistics come from the coarsest level of the pyramid
+            double avgHeartRate = pyramid.getMean(Metric.HEART_RATE);
+            float maxHeartRate = pyramid.getMax(Metric.HEART_RATE);
+            double avgSpeed = pyramid.getMean(Metric.SPEED);
+            float maxSpeed = pyramid.getMax(Metric.SPEED);
+            double avgTemperature = pyramid.getMean(Metric.TEMPERATURE);
 
             // Update UI with calculated statistics (with null checks)
             safeSetText(avgHeartRateTextView, String.format("%.0f bpm", avgHeartRate));
-            safeSetText(maxHeartRateTextView, String.format("%d bpm", maxHeartRate));
+            safeSetText(maxHeartRateTextView, String.format("%.0f bpm", maxHeartRate));
             safeSetText(avgSpeedTextView, String.format("%.1f km/h", avgSpeed));
             safeSetText(maxSpeedTextView, String.format("%.1f km/h", maxSpeed));
             safeSetText(avgTemperatureTextView, String.format("%.1f °C", avgTemperature));
@@ -564,18 +522,18 @@ public class RunDetailActivity extends AppCompatActivity {
     private void updateCharts() {
         try {
             // Update heart rate chart
-            if (heartRateChart != null && !heartRateEntries.isEmpty()) {
-                LineDataSet heartRateDataSet = new LineDataSet(heartRateEntries, "Heart Rate (bpm)");
+            if (heartRateChart != null && pyramid.getCount(Metric.HEART_RATE) > 0) {
+                LineDataSet heartRateDataSet = new LineDataSet(new ArrayList<>(), "Heart Rate (bpm)");
                 heartRateDataSet.setColor(Color.RED);
                 heartRateDataSet.setCircleColor(Color.RED);
                 heartRateDataSet.setDrawCircles(false);
                 heartRateDataSet.setLineWidth(2f);
                 heartRateDataSet.setDrawValues(false);
-                heartRateDataSet.setMode(LineDataSet.Mode.CUBIC_BEZIER);
+                heartRateDataSet.setMode(LineDataSet.Mode.LINEAR);
+                // Min and max share an x per bucket, a curve would overshoot them
 
-                LineData heartRateData = new LineData(heartRateDataSet);
-                heartRateChart.setData(heartRateData);
-                heartRateChart.invalidate();
+                // Reloaded from the pyramid as the chart is zoomed
+                new PyramidChartFeed(heartRateChart, pyramid, Metric.HEART_RATE).bind(heartRateDataSet);
             } else if (heartRateChart != null) {
                 // Clear chart if no data
                 heartRateChart.clear();
@@ -584,8 +542,8 @@ public class RunDetailActivity extends AppCompatActivity {
             }
 
             // Update speed chart
-            if (speedChart != null && !speedEntries.isEmpty()) {
-                LineDataSet speedDataSet = new LineDataSet(speedEntries, "Speed (km/h)");
+            if (speedChart != null && pyramid.getCount(Metric.SPEED) > 0) {
+                LineDataSet speedDataSet = new LineDataSet(new ArrayList<>(), "Speed (km/h)");
                 speedDataSet.setColor(Color.BLUE);
                 speedDataSet.setCircleColor(Color.BLUE);
                 speedDataSet.setDrawCircles(false);
@@ -593,9 +551,8 @@ public class RunDetailActivity extends AppCompatActivity {
                 speedDataSet.setDrawValues(false);
                 speedDataSet.setMode(LineDataSet.Mode.CUBIC_BEZIER);
 
-                LineData speedData = new LineData(speedDataSet);
-                speedChart.setData(speedData);
-                speedChart.invalidate();
+                // Reloaded from the pyramid as the chart is zoomed
+                new PyramidChartFeed(speedChart, pyramid, Metric.SPEED).bind(speedDataSet);
             } else if (speedChart != null) {
                 // Clear chart if no data
                 speedChart.clear();
@@ -604,8 +561,8 @@ public class RunDetailActivity extends AppCompatActivity {
             }
 
             // Update temperature chart
-            if (temperatureChart != null && !temperatureEntries.isEmpty()) {
-                LineDataSet temperatureDataSet = new LineDataSet(temperatureEntries, "Temperature (°C)");
+            if (temperatureChart != null && pyramid.getCount(Metric.TEMPERATURE) > 0) {
+                LineDataSet temperatureDataSet = new LineDataSet(new ArrayList<>(), "Temperature (°C)");
                 temperatureDataSet.setColor(Color.GREEN);
                 temperatureDataSet.setCircleColor(Color.GREEN);
                 temperatureDataSet.setDrawCircles(false);
@@ -613,9 +570,8 @@ public class RunDetailActivity extends AppCompatActivity {
                 temperatureDataSet.setDrawValues(false);
                 temperatureDataSet.setMode(LineDataSet.Mode.CUBIC_BEZIER);
 
-                LineData temperatureData = new LineData(temperatureDataSet);
-                temperatureChart.setData(temperatureData);
-                temperatureChart.invalidate();
+                // Reloaded from the pyramid as the chart is zoomed
+                new PyramidChartFeed(temperatureChart, pyramid, Metric.TEMPERATURE).bind(temperatureDataSet);
             } else if (temperatureChart != null) {
                 // Clear chart if no data
                 temperatureChart.clear();
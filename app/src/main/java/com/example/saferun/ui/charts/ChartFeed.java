@@ -0,0 +1,105 @@
+package com.example.saferun.ui.charts;
+
+import android.view.View;
+
+import com.example.saferun.data.model.Metric;
+import com.example.saferun.data.model.SensorSeries;
+
+/**
+ * Turns a sensor series into chart points, downsampled to the chart's width.
+ * Heart rate keeps the min and max of every bucket so spikes are never smoothed away;
+ * speed and temperature use LTTB. Samples without a valid reading are skipped
+ * (heart rate and temperature of zero, negative speed).
+ */
+public final class ChartFeed {
+
+    // Below this a chart isn't laid out yet or is too small to matter
+    private static final int MIN_POINTS = 100;
+
+    // Reused between calls; chart feeds are built on the main thread
+    private static long[] scratchX = new long[0];
+    private static float[] scratchY = new float[0];
+    private static int[] scratchIndices = new int[0];
+
+    private ChartFeed() {
+    }
+
+    /**
+     * Number of points worth drawing in a chart: one per horizontal pixel
+     */
+    public static int targetPoints(View chart) {
+        int width = chart != null ? chart.getWidth() : 0;
+        if (width <= 0) {
+            // Not laid out yet, the screen width is an upper bound
+            width = chart != null ? chart.getResources().getDisplayMetrics().widthPixels : 0;
+        }
+        return Math.max(MIN_POINTS, width);
+    }
+
+    /**
+     * Downsampled points of one metric, a {@link Metric} id, written into a chart window, reusing {@code window}
+     * when it has exactly the capacity needed
+     */
+    public static ChartRingBuffer window(SensorSeries series, int metric, int targetPoints,
+                                         ChartRingBuffer window) {
+        int kept = select(series, metric, targetPoints);
+        int capacity = Math.max(1, kept);
+        if (window == null || window.capacity() != capacity) {
+            window = new ChartRingBuffer(capacity);
+        } else {
+            window.clear();
+        }
+        for (int i = 0; i < kept; i++) {
+            int index = scratchIndices[i];
+            window.add(scratchX[index], scratchY[index]);
+        }
+        return window;
+    }
+
+    /**
+     * Collect the valid points of a metric into the scratch arrays and select the ones to draw
+     *
+     * @return the number of selected indices in scratchIndices
+     */
+    private static int select(SensorSeries series, int metric, int targetPoints) {
+        int size = series.size();
+        if (scratchX.length < size) {
+            scratchX = new long[size];
+            scratchY = new float[size];
+            scratchIndices = new int[size];
+        }
+
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            float value = value(series, metric, i);
+            if (Float.isNaN(value)) {
+                continue;
+            }
+            scratchX[count] = series.getTimestamp(i);
+            scratchY[count] = value;
+            count++;
+        }
+
+        if (metric == Metric.HEART_RATE) {
+            return Downsampler.minMax(scratchY, count, targetPoints / 2, scratchIndices);
+        }
+        return Downsampler.lttb(scratchX, scratchY, count, targetPoints, scratchIndices);
+    }
+
+    /**
+     * Reading of a metric at one sample, NaN when it isn't a valid reading
+     */
+    private static float value(SensorSeries series, int metric, int index) {
+        switch (metric) {
+            case Metric.HEART_RATE:
+                int heartRate = series.getHeartRate(index);
+                return heartRate > 0 ? heartRate : Float.NaN;
+            case Metric.SPEED:
+                float speed = series.getSpeed(index);
+                return speed >= 0 ? speed : Float.NaN;
+            default:
+                float temperature = series.getTemperature(index);
+                return temperature > 0 ? temperature : Float.NaN;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.saferun.ui.charts;
+
+import com.github.mikephil.charting.data.Entry;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Fixed-capacity ring buffer of chart points for live chart windows.
+ * Values are kept in primitive arrays and a pool of reusable Entry objects, so appending
+ * is constant time and allocation-free once the buffer is full. {@link #asEntryList()}
+ * exposes the window, oldest first, as a read-only List that a LineDataSet can use
+ * directly as its backing list without copying.
+ */
+public class ChartRingBuffer {
+    private final float[] xValues;
+    private final float[] yValues;
+    private final Entry[] entries;
+    private final List<Entry> entryView = new EntryView();
+
+    private int head = 0;  // Index of the oldest point
+    private int size = 0;
+
+    public ChartRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        xValues = new float[capacity];
+        yValues = new float[capacity];
+        entries = new Entry[capacity];
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = new Entry();
+        }
+    }
+
+    /**
+     * Append a point, overwriting the oldest one when the buffer is full
+     */
+    public void add(float x, float y) {
+        int slot;
+        if (size < xValues.length) {
+            slot = (head + size) % xValues.length;
+            size++;
+        } else {
+            slot = head;
+            head = (head + 1) % xValues.length;
+        }
+
+        xValues[slot] = x;
+        yValues[slot] = y;
+        entries[slot].setX(x);
+        entries[slot].setY(y);
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int capacity() {
+        return xValues.length;
+    }
+
+    /**
+     * X value of the i-th point, oldest first
+     */
+    public float getX(int index) {
+        return xValues[slot(index)];
+    }
+
+    /**
+     * Y value of the i-th point, oldest first
+     */
+    public float getY(int index) {
+        return yValues[slot(index)];
+    }
+
+    public float getFirstX() {
+        return getX(0);
+    }
+
+    public float getLastX() {
+        return getX(size - 1);
+    }
+
+    public float getMinY() {
+        float min = Float.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            min = Math.min(min, yValues[i]);
+        }
+        return min;
+    }
+
+    public float getMaxY() {
+        float max = -Float.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, yValues[i]);
+        }
+        return max;
+    }
+
+    /**
+     * Live, read-only view of the window in chronological order.
+     * Entries are reused, so callers must not keep references across appends.
+     */
+    public List<Entry> asEntryList() {
+        return entryView;
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return (head + index) % xValues.length;
+    }
+
+    private class EntryView extends AbstractList<Entry> {
+        @Override
+        public Entry get(int index) {
+            return entries[slot(index)];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            // DataSet.clear() lands here; treat it as clearing the window
+            ChartRingBuffer.this.clear();
+        }
+    }
+}
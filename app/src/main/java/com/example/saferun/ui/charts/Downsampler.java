@@ -0,0 +1,132 @@
+package com.example.saferun.ui.charts;
+
+/**
+ * Reduces a time series to about as many points as a chart can draw, so rendering cost
+ * depends on the chart's width rather than on the session's length.
+ * Both algorithms select indices into the input, in ascending order, and allocate nothing.
+ */
+public final class Downsampler {
+
+    private Downsampler() {
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets: keeps the first and last point and, from each of
+     * {@code threshold - 2} equal buckets in between, the point forming the largest triangle
+     * with the previously kept point and the average of the next bucket. Preserves the visual
+     * shape of the line, including most local extremes.
+     *
+     * @param x         ascending x values
+     * @param y         y values
+     * @param count     number of points in x and y to use
+     * @param threshold number of points to keep, at least 3 to have any effect
+     * @param out       receives the kept indices, must hold at least min(count, threshold) values
+     * @return the number of indices written to {@code out}
+     */
+    public static int lttb(long[] x, float[] y, int count, int threshold, int[] out) {
+        if (threshold >= count || threshold < 3) {
+            return all(count, out);
+        }
+
+        // X is taken relative to the first point to keep precision with epoch timestamps
+        long origin = x[0];
+        double bucketSize = (double) (count - 2) / (threshold - 2);
+
+        int kept = 0;
+        int selected = 0;
+        out[kept++] = selected;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = (int) ((bucket + 1) * bucketSize) + 1;
+
+            // Average of the next bucket, or the last point for the final bucket
+            int nextStart = end;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, count);
+            if (bucket == threshold - 3) {
+                nextStart = count - 1;
+                nextEnd = count;
+            }
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += x[i] - origin;
+                averageY += y[i];
+            }
+            int nextCount = nextEnd - nextStart;
+            averageX /= nextCount;
+            averageY /= nextCount;
+
+            double selectedX = x[selected] - origin;
+            double selectedY = y[selected];
+
+            double maxArea = -1;
+            int best = start;
+            for (int i = start; i < end; i++) {
+                // Twice the triangle's area; the factor doesn't change the maximum
+                double area = Math.abs((selectedX - averageX) * (y[i] - selectedY)
+                        - (selectedX - (x[i] - origin)) * (averageY - selectedY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    best = i;
+                }
+            }
+
+            out[kept++] = best;
+            selected = best;
+        }
+
+        out[kept++] = count - 1;
+        return kept;
+    }
+
+    /**
+     * Min/max per bucket: splits the points into {@code buckets} equal buckets and keeps the
+     * lowest and the highest point of each. Every peak and dip of the input survives, which
+     * matters for short heart rate spikes.
+     *
+     * @param buckets number of buckets, usually half the chart's width in pixels
+     * @param out     receives the kept indices, must hold at least min(count, 2 * buckets) values
+     * @return the number of indices written to {@code out}
+     */
+    public static int minMax(float[] y, int count, int buckets, int[] out) {
+        if (buckets <= 0 || 2 * buckets >= count) {
+            return all(count, out);
+        }
+
+        double bucketSize = (double) count / buckets;
+        int kept = 0;
+
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int start = (int) (bucket * bucketSize);
+            int end = Math.min((int) ((bucket + 1) * bucketSize), count);
+
+            int min = start;
+            int max = start;
+            for (int i = start + 1; i < end; i++) {
+                if (y[i] < y[min]) {
+                    min = i;
+                } else if (y[i] > y[max]) {
+                    max = i;
+                }
+            }
+
+            // Keep x order within the bucket
+            if (min == max) {
+                out[kept++] = min;
+            } else {
+                out[kept++] = Math.min(min, max);
+                out[kept++] = Math.max(min, max);
+            }
+        }
+
+        return kept;
+    }
+
+    private static int all(int count, int[] out) {
+        for (int i = 0; i < count; i++) {
+            out[i] = i;
+        }
+        return count;
+    }
+}
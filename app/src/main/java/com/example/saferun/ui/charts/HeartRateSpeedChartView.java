@@ -14,22 +14,22 @@ import com.github.mikephil.charting.charts.LineChart;
 import com.github.mikephil.charting.components.Legend;
 import com.github.mikephil.charting.components.XAxis;
 import com.github.mikephil.charting.components.YAxis;
-import com.github.mikephil.charting.data.Entry;
 import com.github.mikephil.charting.data.LineData;
 import com.github.mikephil.charting.data.LineDataSet;
 import com.github.mikephil.charting.formatter.ValueFormatter;
 
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
 import java.util.Locale;
 
 public class HeartRateSpeedChartView extends FrameLayout {
 
+    // Number of points kept in the live window
+    private static final int MAX_POINTS = 100;
+
     private LineChart chart;
-    private List<Entry> heartRateEntries;
-    private List<Entry> speedEntries;
+    private ChartRingBuffer heartRateEntries;
+    private ChartRingBuffer speedEntries;
     private SimpleDateFormat timeFormat;
 
     public HeartRateSpeedChartView(@NonNull Context context) {
@@ -51,8 +51,8 @@ public class HeartRateSpeedChartView extends FrameLayout {
         LayoutInflater.from(context).inflate(R.layout.view_heart_rate_speed_chart, this, true);
         chart = findViewById(R.id.heart_rate_speed_chart);
 
-        heartRateEntries = new ArrayList<>();
-        speedEntries = new ArrayList<>();
+        heartRateEntries = new ChartRingBuffer(MAX_POINTS);
+        speedEntries = new ChartRingBuffer(MAX_POINTS);
         timeFormat = new SimpleDateFormat("HH:mm:ss", Locale.getDefault());
     }
 
@@ -113,41 +113,22 @@ public class HeartRateSpeedChartView extends FrameLayout {
             chart.setData(data);
         }
 
-        // Add heart rate entry
-        heartRateEntries.add(new Entry(timestamp, heartRate));
+        // Add entries; the oldest point is overwritten once the window is full
+        heartRateEntries.add(timestamp, heartRate);
+        speedEntries.add(timestamp, (float) speed);
+
         if (data.getDataSetByIndex(0) == null) {
             // Create heart rate dataset if it doesn't exist
-            LineDataSet heartRateSet = createHeartRateDataSet();
-            data.addDataSet(heartRateSet);
-        } else {
-            // Update existing dataset
-            data.getDataSetByIndex(0).clear();
-            for (Entry entry : heartRateEntries) {
-                data.getDataSetByIndex(0).addEntry(entry);
-            }
+            data.addDataSet(createHeartRateDataSet());
         }
-
-        // Add speed entry
-        speedEntries.add(new Entry(timestamp, (float) speed));
         if (data.getDataSetByIndex(1) == null) {
             // Create speed dataset if it doesn't exist
-            LineDataSet speedSet = createSpeedDataSet();
-            data.addDataSet(speedSet);
-        } else {
-            // Update existing dataset
-            data.getDataSetByIndex(1).clear();
-            for (Entry entry : speedEntries) {
-                data.getDataSetByIndex(1).addEntry(entry);
-            }
+            data.addDataSet(createSpeedDataSet());
         }
 
-        // Limit data points to keep performance optimal
-//        if (heartRateEntries.size() > 100) {  // 100
-//            heartRateEntries.remove(0);
-//        }
-//        if (speedEntries.size() > 100) {  // 100
-//            speedEntries.remove(0);
-//        }
+        // Datasets read the windows directly, only their bounds need recomputing
+        data.getDataSetByIndex(0).calcMinMax();
+        data.getDataSetByIndex(1).calcMinMax();
 
         // Notify data changed
         data.notifyDataChanged();
@@ -161,7 +142,7 @@ public class HeartRateSpeedChartView extends FrameLayout {
     }
 
     private LineDataSet createHeartRateDataSet() {
-        LineDataSet set = new LineDataSet(heartRateEntries, "Heart Rate (bpm)");
+        LineDataSet set = new LineDataSet(heartRateEntries.asEntryList(), "Heart Rate (bpm)");
         set.setAxisDependency(YAxis.AxisDependency.LEFT);
         set.setColor(Color.RED);
         set.setCircleColor(Color.RED);
@@ -175,7 +156,7 @@ public class HeartRateSpeedChartView extends FrameLayout {
     }
 
     private LineDataSet createSpeedDataSet() {
-        LineDataSet set = new LineDataSet(speedEntries, "Speed (km/h)");
+        LineDataSet set = new LineDataSet(speedEntries.asEntryList(), "Speed (km/h)");
         set.setAxisDependency(YAxis.AxisDependency.RIGHT);
         set.setColor(Color.BLUE);
         set.setCircleColor(Color.BLUE);
@@ -0,0 +1,181 @@
+package com.example.saferun.ui.charts;
+
+import android.view.MotionEvent;
+
+import com.example.saferun.data.model.Metric;
+import com.example.saferun.data.model.SensorPyramid;
+import com.github.mikephil.charting.charts.LineChart;
+import com.github.mikephil.charting.data.Entry;
+import com.github.mikephil.charting.data.LineData;
+import com.github.mikephil.charting.data.LineDataSet;
+import com.github.mikephil.charting.listener.ChartTouchListener;
+import com.github.mikephil.charting.listener.OnChartGestureListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Feeds a zoomable chart of one vital from a {@link SensorPyramid}. After every zoom or scroll the
+ * chart shows the finest level whose buckets over the visible range fit its width, loaded for the
+ * visible range plus one screen on each side, so zooming into a long session stays at about one
+ * point per pixel and never needs the raw samples.
+ *
+ * X values are milliseconds since the start of the session: float epoch milliseconds are off by
+ * minutes, which is invisible zoomed out but breaks zooming in. Axis formatters add
+ * {@link #getOrigin()} back.
+ */
+public class PyramidChartFeed implements OnChartGestureListener {
+
+    private final LineChart chart;
+    private final SensorPyramid pyramid;
+    private final int metric;
+    // Heart rate draws the min and max of every bucket so spikes survive zooming out
+    private final boolean keepExtremes;
+    private final long origin;
+    private final float span;
+
+    private LineDataSet dataSet;
+    private SensorPyramid.Level loadedLevel;
+    private float loadedFrom;
+    private float loadedTo;
+
+    public PyramidChartFeed(LineChart chart, SensorPyramid pyramid, int metric) {
+        this.chart = chart;
+        this.pyramid = pyramid;
+        this.metric = metric;
+        this.keepExtremes = metric == Metric.HEART_RATE;
+        this.origin = pyramid.getStartTime();
+        this.span = pyramid.getEndTime() - origin;
+    }
+
+    /**
+     * Epoch time of x = 0
+     */
+    public long getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Show the feed in the chart through {@code dataSet}, whose values are replaced on every zoom
+     */
+    public void bind(LineDataSet dataSet) {
+        this.dataSet = dataSet;
+        loadedLevel = null;
+
+        // Fixed to the whole session, otherwise the axis would shrink to the loaded window
+        chart.getXAxis().setAxisMinimum(0f);
+        chart.getXAxis().setAxisMaximum(span);
+        // Scrolling is followed through gestures, a fling would move past the loaded window
+        chart.setDragDecelerationEnabled(false);
+        chart.setOnChartGestureListener(this);
+
+        chart.setData(new LineData(dataSet));
+        refresh();
+    }
+
+    /**
+     * Reload the data set if the visible range needs another level or is outside the loaded window
+     */
+    public void refresh() {
+        if (dataSet == null) {
+            return;
+        }
+
+        // Until the chart is laid out the whole session is visible
+        boolean laidOut = chart.getWidth() > 0;
+        float low = laidOut ? chart.getLowestVisibleX() : 0f;
+        float high = laidOut ? chart.getHighestVisibleX() : span;
+        float range = Math.max(1f, high - low);
+
+        int targetPoints = ChartFeed.targetPoints(chart);
+        SensorPyramid.Level level = pyramid.levelFor((long) range,
+                keepExtremes ? targetPoints / 2 : targetPoints);
+        if (level == loadedLevel && low >= loadedFrom && high <= loadedTo) {
+            return;
+        }
+
+        loadedLevel = level;
+        loadedFrom = Math.max(0f, low - range);
+        loadedTo = Math.min(span, high + range);
+
+        dataSet.setValues(entries(level, loadedFrom, loadedTo));
+        chart.getData().notifyDataChanged();
+        chart.notifyDataSetChanged();
+        chart.invalidate();
+    }
+
+    /**
+     * Entries of the buckets of a level overlapping [from, to], x relative to the origin.
+     * Buckets without a reading of the metric are skipped.
+     */
+    private List<Entry> entries(SensorPyramid.Level level, float from, float to) {
+        long duration = level.getBucketDuration();
+        List<Entry> entries = new ArrayList<>();
+        float previous = Float.NaN;
+
+        for (int i = level.indexOf(origin + (long) from); i < level.size(); i++) {
+            float x = level.getStart(i) - origin;
+            if (x > to) {
+                break;
+            }
+            if (level.getCount(metric, i) == 0) {
+                continue;
+            }
+
+            x += duration / 2f;
+            float min = level.getMin(metric, i);
+            float max = level.getMax(metric, i);
+            if (!keepExtremes || min == max) {
+                previous = level.getMean(metric, i);
+                entries.add(new Entry(x, previous));
+                continue;
+            }
+
+            // Visit the extreme closer to the previous point first so the line doesn't cross itself
+            boolean maxFirst = !Float.isNaN(previous) && previous - max > min - previous;
+            entries.add(new Entry(x, maxFirst ? max : min));
+            previous = maxFirst ? min : max;
+            entries.add(new Entry(x, previous));
+        }
+        return entries;
+    }
+
+    @Override
+    public void onChartGestureStart(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
+    }
+
+    @Override
+    public void onChartGestureEnd(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
+        refresh();
+    }
+
+    @Override
+    public void onChartLongPressed(MotionEvent me) {
+    }
+
+    @Override
+    public void onChartDoubleTapped(MotionEvent me) {
+        // The chart zooms after notifying the listener
+        chart.post(this::refresh);
+    }
+
+    @Override
+    public void onChartSingleTapped(MotionEvent me) {
+    }
+
+    @Override
+    public void onChartFling(MotionEvent me1, MotionEvent me2, float velocityX, float velocityY) {
+    }
+
+    @Override
+    public void onChartScale(MotionEvent me, float scaleX, float scaleY) {
+    }
+
+    @Override
+    public void onChartTranslate(MotionEvent me, float dX, float dY) {
+        // Keep up while dragging once the loaded window runs out; same level, so this is rare
+        if (chart.getLowestVisibleX() < loadedFrom || chart.getHighestVisibleX() > loadedTo) {
+            refresh();
+        }
+    }
+}
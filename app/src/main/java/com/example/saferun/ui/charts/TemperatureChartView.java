@@ -14,21 +14,21 @@ import com.github.mikephil.charting.charts.LineChart;
 import com.github.mikephil.charting.components.Legend;
 import com.github.mikephil.charting.components.XAxis;
 import com.github.mikephil.charting.components.YAxis;
-import com.github.mikephil.charting.data.Entry;
 import com.github.mikephil.charting.data.LineData;
 import com.github.mikephil.charting.data.LineDataSet;
 import com.github.mikephil.charting.formatter.ValueFormatter;
 
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
 import java.util.Locale;
 
 public class TemperatureChartView extends FrameLayout {
 
+    // Number of points kept in the live window
+    private static final int MAX_POINTS = 100;
+
     private LineChart chart;
-    private List<Entry> temperatureEntries;
+    private ChartRingBuffer temperatureEntries;
     private SimpleDateFormat timeFormat;
 
     public TemperatureChartView(@NonNull Context context) {
@@ -50,7 +50,7 @@ public class TemperatureChartView extends FrameLayout {
         LayoutInflater.from(context).inflate(R.layout.view_temperature_chart, this, true);
 
         chart = findViewById(R.id.temperature_chart);
-        temperatureEntries = new ArrayList<>();
+        temperatureEntries = new ChartRingBuffer(MAX_POINTS);
         timeFormat = new SimpleDateFormat("HH:mm:ss", Locale.getDefault());
     }
 
@@ -111,24 +111,15 @@ public class TemperatureChartView extends FrameLayout {
             chart.setData(data);
         }
 
-        // Add temperature entry
-        temperatureEntries.add(new Entry(timestamp, (float) temperature));
+        // Add entry; the oldest point is overwritten once the window is full
+        temperatureEntries.add(timestamp, (float) temperature);
         if (data.getDataSetByIndex(0) == null) {
             // Create temperature dataset if it doesn't exist
-            LineDataSet temperatureSet = createTemperatureDataSet();
-            data.addDataSet(temperatureSet);
-        } else {
-            // Update existing dataset
-            data.getDataSetByIndex(0).clear();
-            for (Entry entry : temperatureEntries) {
-                data.getDataSetByIndex(0).addEntry(entry);
-            }
+            data.addDataSet(createTemperatureDataSet());
         }
 
-        // Limit data points to keep performance optimal
-//        if (temperatureEntries.size() > 100) {  // 100
-//            temperatureEntries.remove(0);
-//        }
+        // Dataset reads the window directly, only its bounds need recomputing
+        data.getDataSetByIndex(0).calcMinMax();
 
         // Notify data changed
         data.notifyDataChanged();
@@ -142,7 +133,7 @@ public class TemperatureChartView extends FrameLayout {
     }
 
     private LineDataSet createTemperatureDataSet() {
-        LineDataSet set = new LineDataSet(temperatureEntries, "Temperature (°C)");
+        LineDataSet set = new LineDataSet(temperatureEntries.asEntryList(), "Temperature (°C)");
         set.setAxisDependency(YAxis.AxisDependency.LEFT);
         set.setColor(Color.GREEN);
         set.setCircleColor(Color.GREEN);
@@ -14,6 +14,7 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.saferun.R;
+import com.example.saferun.data.firebase.ReadPolicy;
 import com.example.saferun.data.model.User;
 import com.example.saferun.data.repository.UserRepository;
 import com.example.saferun.ui.common.adapters.AthleteAdapter;
@@ -71,7 +72,7 @@ public class AthleteListActivity extends AppCompatActivity implements AthleteAda
     private void loadAthletes() {
         showProgress(true);
 
-        userRepository.getAthletes(new UserRepository.UsersCallback() {
+        userRepository.getAthletes(ReadPolicy.CACHE_THEN_SERVER, new UserRepository.UsersCallback() {
             @Override
             public void onSuccess(List<User> users) {
                 showProgress(false);
@@ -1,9 +1,13 @@
 package com.example.saferun.ui.coach;
 
+import android.content.ComponentName;
+import android.content.Context;
 import android.content.Intent;
+import android.content.ServiceConnection;
 import android.graphics.Color;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.IBinder;
 import android.os.Looper;
 import android.util.Log;
 import android.view.View;
@@ -22,25 +26,26 @@ import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
 import com.example.saferun.R;
+import com.example.saferun.data.model.Metric;
 import com.example.saferun.data.model.RunSession;
 import com.example.saferun.data.model.SensorData;
+import com.example.saferun.data.model.SensorSeries;
 import com.example.saferun.data.repository.RunSessionRepository;
 import com.example.saferun.data.repository.SensorDataRepository;
+import com.example.saferun.service.SensorDataService;
+import com.example.saferun.ui.charts.ChartFeed;
+import com.example.saferun.ui.charts.ChartRingBuffer;
 import com.github.mikephil.charting.charts.LineChart;
 import com.github.mikephil.charting.components.Legend;
 import com.github.mikephil.charting.components.XAxis;
 import com.github.mikephil.charting.components.YAxis;
-import com.github.mikephil.charting.data.Entry;
 import com.github.mikephil.charting.data.LineData;
 import com.github.mikephil.charting.data.LineDataSet;
 import com.github.mikephil.charting.formatter.ValueFormatter;
 import com.google.android.material.card.MaterialCardView;
 
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
-import java.util.List;
 import java.util.Locale;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -52,6 +57,13 @@ public class AthleteMonitoringActivity extends AppCompatActivity {
     private static final String EXTRA_ATHLETE_ID = "athlete_id";
     private static final String EXTRA_ATHLETE_NAME = "athlete_name";
 
+    // Number of points kept in the chart window
+    private static final int MAX_CHART_POINTS = 100;
+    // Past this the session series is halved; far more points than a chart has pixels
+    private static final int MAX_SESSION_POINTS = 20_000;
+    // Samples requested per history query
+    private static final int HISTORY_PAGE_SIZE = 250;
+
     private Toolbar toolbar;
     private TextView athleteNameTextView;
     private TextView heartRateTextView;
@@ -78,10 +90,17 @@ public class AthleteMonitoringActivity extends AppCompatActivity {
 
     private SimpleDateFormat timeFormat;
 
-    // Data for charts
-    private List<Entry> heartRateEntries;
-    private List<Entry> speedEntries;
-    private List<Entry> temperatureEntries;
+    // Data for charts (fixed-size windows read directly by the datasets)
+    private final ChartRingBuffer heartRateEntries = new ChartRingBuffer(MAX_CHART_POINTS);
+    private final ChartRingBuffer speedEntries = new ChartRingBuffer(MAX_CHART_POINTS);
+    private final ChartRingBuffer temperatureEntries = new ChartRingBuffer(MAX_CHART_POINTS);
+
+    // The session, halved whenever it reaches MAX_SESSION_POINTS; the summary charts show it
+    // downsampled to their width through their own windows, the live windows above stay fixed
+    private final SensorSeries sessionSeries = new SensorSeries();
+    private ChartRingBuffer heartRateSummary;
+    private ChartRingBuffer speedSummary;
+    private ChartRingBuffer temperatureSummary;
 
     // Line datasets for charts
     private LineDataSet heartRateDataSet;
@@ -95,10 +114,15 @@ public class AthleteMonitoringActivity extends AppCompatActivity {
     private String athleteId;
     private String athleteName;
 
-    private Timer dataRefreshTimer;
+    private Timer dataRefreshTimer;  // Only used to generate mock data
+    private SensorDataService sensorDataService;
+    private boolean serviceBound = false;
+    // Whether this screen started the session's ingestion, rather than joining the live session's
+    private boolean startedIngestion = false;
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private int alertsCount = 0;
     private SensorData lastSensorData;
+    private SensorDataRepository.PageStream historyStream;
 
     // Flag to track if athlete has been contacted for current anomaly
     private boolean athleteContacted = false;
@@ -122,11 +146,6 @@ public class AthleteMonitoringActivity extends AppCompatActivity {
             return insets;
         });
 
-        // Initialize chart data lists
-        heartRateEntries = new ArrayList<>();
-        speedEntries = new ArrayList<>();
-        temperatureEntries = new ArrayList<>();
-
         // Get data from intent
         sessionId = getIntent().getStringExtra(EXTRA_SESSION_ID);
         athleteId = getIntent().getStringExtra(EXTRA_ATHLETE_ID);
@@ -176,19 +195,17 @@ public class AthleteMonitoringActivity extends AppCompatActivity {
     protected void onPause() {
         super.onPause();
         // Stop data refresh when activity is not visible
-        if (dataRefreshTimer != null) {
-            dataRefreshTimer.cancel();
-            dataRefreshTimer = null;
-        }
+        stopDataRefresh();
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        // Ensure timer is canceled when activity is destroyed
-        if (dataRefreshTimer != null) {
-            dataRefreshTimer.cancel();
-            dataRefreshTimer = null;
+        // Ensure stream is detached when activity is destroyed
+        stopDataRefresh();
+        leaveStartedIngestion();
+        if (historyStream != null) {
+            historyStream.cancel();
         }
     }
 
@@ -335,48 +352,44 @@ public class AthleteMonitoringActivity extends AppCompatActivity {
     private void loadSessionHistoricalData() {
         showProgress(true);
 
-        // Fetch historical sensor data for this athlete in this session
-        sensorDataRepository.getSensorDataHistory(sessionId, athleteId, 1000,
-                new SensorDataRepository.SensorDataListCallback() {
+        // Clear previous data
+        heartRateEntries.clear();
+        speedEntries.clear();
+        temperatureEntries.clear();
+        sessionSeries.clear();
+
+        // Stream the full history page by page, charts fill in as pages arrive
+        historyStream = sensorDataRepository.streamSensorDataHistory(sessionId, athleteId, HISTORY_PAGE_SIZE,
+                new SensorDataRepository.SensorSeriesPageConsumer() {
                     @Override
-                    public void onSuccess(List<SensorData> sensorDataList) {
+                    public void onPage(SensorSeries page) {
                         showProgress(false);
 
-                        // Clear previous data
-                        heartRateEntries.clear();
-                        speedEntries.clear();
-                        temperatureEntries.clear();
-
-                        if (sensorDataList != null && !sensorDataList.isEmpty()) {
-                            Log.d(TAG, "Retrieved " + sensorDataList.size() + " sensor data points for analysis");
-
-                            // Sort data by timestamp to ensure chronological order
-                            Collections.sort(sensorDataList, (data1, data2) ->
-                                    Long.compare(data1.getTimestamp(), data2.getTimestamp()));
-
-                            // Process historical data
-                            for (SensorData data : sensorDataList) {
-                                // Add data points to charts
-                                addDataPoint(data.getTimestamp(),
-                                        data.getHeartRate(),
-                                        (float) data.getSpeed(),
-                                        (float) data.getTemperature(),
-                                        false);  // Don't update charts yet
-                            }
+                        for (int i = 0; i < page.size(); i++) {
+                            addDataPoint(page.getTimestamp(i),
+                                    page.getHeartRate(i),
+                                    page.getSpeed(i),
+                                    page.getTemperature(i),
+                                    false);  // Charts are refreshed once per page
+                        }
+                        showWholeSession();
+                    }
 
-                            // Show session summary with all loaded data
-                            showSessionSummary();
+                    @Override
+                    public void onComplete(int totalCount) {
+                        showProgress(false);
 
-                            Log.d(TAG, "Successfully processed " + sensorDataList.size() + " historical data points");
+                        if (totalCount > 0) {
+                            Log.d(TAG, "Successfully processed " + totalCount + " historical data points");
                         } else {
                             Log.w(TAG, "No sensor data found for session " + sessionId + " and athlete " + athleteId);
                             Toast.makeText(AthleteMonitoringActivity.this,
                                     "No sensor data available for this session",
                                     Toast.LENGTH_SHORT).show();
-
-                            // Show empty charts
-                            showSessionSummary();
                         }
+
+                        // Show session summary with all loaded data
+                        showSessionSummary();
                     }
 
                     @Override
@@ -408,7 +421,7 @@ public class AthleteMonitoringActivity extends AppCompatActivity {
 
     private void createInitialDatasets() {
         // Create datasets with initial empty data
-        heartRateDataSet = new LineDataSet(new ArrayList<>(), "Heart Rate (bpm)");
+        heartRateDataSet = new LineDataSet(heartRateEntries.asEntryList(), "Heart Rate (bpm)");
         heartRateDataSet.setAxisDependency(YAxis.AxisDependency.LEFT);
         heartRateDataSet.setColor(Color.RED);
         heartRateDataSet.setCircleColor(Color.RED);
@@ -422,7 +435,7 @@ public class AthleteMonitoringActivity extends AppCompatActivity {
         heartRateDataSet.setDrawValues(false);
         heartRateDataSet.setMode(LineDataSet.Mode.LINEAR);
 
-        speedDataSet = new LineDataSet(new ArrayList<>(), "Speed (km/h)");
+        speedDataSet = new LineDataSet(speedEntries.asEntryList(), "Speed (km/h)");
         speedDataSet.setAxisDependency(YAxis.AxisDependency.RIGHT);
         speedDataSet.setColor(Color.BLUE);
         speedDataSet.setCircleColor(Color.BLUE);
@@ -436,7 +449,7 @@ public class AthleteMonitoringActivity extends AppCompatActivity {
         speedDataSet.setDrawValues(false);
         speedDataSet.setMode(LineDataSet.Mode.LINEAR);
 
-        temperatureDataSet = new LineDataSet(new ArrayList<>(), "Temperature (°C)");
+        temperatureDataSet = new LineDataSet(temperatureEntries.asEntryList(), "Temperature (°C)");
         temperatureDataSet.setAxisDependency(YAxis.AxisDependency.LEFT);
         temperatureDataSet.setColor(Color.GREEN);
         temperatureDataSet.setCircleColor(Color.GREEN);
@@ -591,55 +604,50 @@ public class AthleteMonitoringActivity extends AppCompatActivity {
     }
 
     private void addDataPoint(long timestamp, float heartRate, float speed, float temperature, boolean updateUI) {
-        // Add to entries lists
-        heartRateEntries.add(new Entry(timestamp, heartRate));
-        speedEntries.add(new Entry(timestamp, speed));
-        temperatureEntries.add(new Entry(timestamp, temperature));
-
-        // Limit data points to keep performance optimal (do this BEFORE updating charts)
-        while (heartRateEntries.size() > 100) {
-            heartRateEntries.remove(0);
-        }
-        while (speedEntries.size() > 100) {
-            speedEntries.remove(0);
-        }
-        while (temperatureEntries.size() > 100) {
-            temperatureEntries.remove(0);
+        if (sessionSeries.size() == MAX_SESSION_POINTS) {
+            sessionSeries.halve();
         }
+        sessionSeries.add(timestamp, Math.round(heartRate), temperature, speed, false);
+
+        // Add to chart windows; the oldest point is overwritten once a window is full
+        heartRateEntries.add(timestamp, heartRate);
+        speedEntries.add(timestamp, speed);
+        temperatureEntries.add(timestamp, temperature);
 
         // Only update charts if session has ended and we're viewing summary
         if (sessionEnded && updateUI) {
-            updateChartsWithCurrentData();
+            showWholeSession();
         }
-
-        Log.d(TAG, "Added new data point: time=" + new Date(timestamp) +
-                ", HR=" + heartRate + ", speed=" + speed + ", temp=" + temperature);
     }
 
-    private void updateChartsWithCurrentData() {
-        if (heartRateDataSet == null || speedDataSet == null || temperatureDataSet == null) {
-            // Initialize charts and datasets if needed
+    /**
+     * Show the whole session in the charts, downsampled to their width into the summary windows
+     */
+    private void showWholeSession() {
+        if (heartRateDataSet == null) {
             setupCharts();
         }
 
-        // Clear and re-add all entries to datasets
-        heartRateDataSet.clear();
-        speedDataSet.clear();
-        temperatureDataSet.clear();
-
-        for (Entry entry : heartRateEntries) {
-            heartRateDataSet.addEntry(entry);
-        }
-
-        for (Entry entry : speedEntries) {
-            speedDataSet.addEntry(entry);
-        }
-
-        for (Entry entry : temperatureEntries) {
-            temperatureDataSet.addEntry(entry);
-        }
+        int heartRateSpeedPoints = ChartFeed.targetPoints(heartRateSpeedChart);
+        heartRateSummary = ChartFeed.window(sessionSeries, Metric.HEART_RATE,
+                heartRateSpeedPoints, heartRateSummary);
+        speedSummary = ChartFeed.window(sessionSeries, Metric.SPEED,
+                heartRateSpeedPoints, speedSummary);
+        temperatureSummary = ChartFeed.window(sessionSeries, Metric.TEMPERATURE,
+                ChartFeed.targetPoints(temperatureChart), temperatureSummary);
+
+        // Point the datasets at the summary windows, which may have been reallocated
+        heartRateDataSet.setValues(heartRateSummary.asEntryList());
+        speedDataSet.setValues(speedSummary.asEntryList());
+        temperatureDataSet.setValues(temperatureSummary.asEntryList());
+        updateCharts(heartRateSummary, speedSummary, temperatureSummary);
+    }
 
-        // Notify datasets of changes
+    /**
+     * Refresh the charts after the windows their datasets read have changed
+     */
+    private void updateCharts(ChartRingBuffer heartRate, ChartRingBuffer speed, ChartRingBuffer temperature) {
+        // Datasets read the chart windows directly, just notify them of changes
         heartRateDataSet.notifyDataSetChanged();
         speedDataSet.notifyDataSetChanged();
         temperatureDataSet.notifyDataSetChanged();
@@ -649,9 +657,9 @@ public class AthleteMonitoringActivity extends AppCompatActivity {
         temperatureChart.getData().notifyDataChanged();
 
         // Update chart axis ranges and visibility
-        if (!heartRateEntries.isEmpty()) {
-            float minX = heartRateEntries.get(0).getX();
-            float maxX = heartRateEntries.get(heartRateEntries.size() - 1).getX();
+        if (!heartRate.isEmpty()) {
+            float minX = heartRate.getFirstX();
+            float maxX = heartRate.getLastX();
 
             // Set visible X range to show all data
             heartRateSpeedChart.getXAxis().setAxisMinimum(minX);
@@ -660,24 +668,9 @@ public class AthleteMonitoringActivity extends AppCompatActivity {
             temperatureChart.getXAxis().setAxisMaximum(maxX + (maxX - minX) * 0.05f); // Add 5% padding
 
             // Auto-scale Y axis if needed
-            float minHR = Float.MAX_VALUE, maxHR = Float.MIN_VALUE;
-            float minSpeed = Float.MAX_VALUE, maxSpeed = Float.MIN_VALUE;
-            float minTemp = Float.MAX_VALUE, maxTemp = Float.MIN_VALUE;
-
-            for (Entry entry : heartRateEntries) {
-                minHR = Math.min(minHR, entry.getY());
-                maxHR = Math.max(maxHR, entry.getY());
-            }
-
-            for (Entry entry : speedEntries) {
-                minSpeed = Math.min(minSpeed, entry.getY());
-                maxSpeed = Math.max(maxSpeed, entry.getY());
-            }
-
-            for (Entry entry : temperatureEntries) {
-                minTemp = Math.min(minTemp, entry.getY());
-                maxTemp = Math.max(maxTemp, entry.getY());
-            }
+            float minHR = heartRate.getMinY(), maxHR = heartRate.getMaxY();
+            float minSpeed = speed.getMinY(), maxSpeed = speed.getMaxY();
+            float minTemp = temperature.getMinY(), maxTemp = temperature.getMaxY();
 
             // Set heart rate Y axis limits with padding
             if (minHR < Float.MAX_VALUE && maxHR > Float.MIN_VALUE) {
@@ -704,71 +697,123 @@ public class AthleteMonitoringActivity extends AppCompatActivity {
             heartRateSpeedChart.invalidate();
             temperatureChart.invalidate();
 
-            Log.d(TAG, "Charts updated with " + heartRateEntries.size() + " data points");
+            Log.d(TAG, "Charts updated with " + heartRate.size() + " data points");
         }
     }
 
     private void startDataRefresh() {
-        // Cancel any existing timer
+        // Detach any existing stream or timer
+        stopDataRefresh();
+
+        // For testing with mock data
+        if (useMockData) {
+            dataRefreshTimer = new Timer();
+            dataRefreshTimer.scheduleAtFixedRate(new TimerTask() {
+                @Override
+                public void run() {
+                    if (!sessionEnded) {
+                        generateMockData();
+                    }
+                }
+            }, 0, 2000);
+            return;
+        }
+
+        // Real data is pushed through the session-wide ingestion service, started once connected
+        serviceBound = bindService(new Intent(this, SensorDataService.class),
+                serviceConnection, Context.BIND_AUTO_CREATE);
+
+        Log.d(TAG, "Bound to sensor ingestion service");
+    }
+
+    private void stopDataRefresh() {
+        if (serviceBound) {
+            if (sensorDataService != null) {
+                sensorDataService.removeConsumer(sessionId, sensorDataConsumer);
+                sensorDataService = null;
+            }
+            unbindService(serviceConnection);
+            serviceBound = false;
+        }
+
         if (dataRefreshTimer != null) {
             dataRefreshTimer.cancel();
             dataRefreshTimer = null;
         }
+    }
+
+    /**
+     * Stop the ingestion this screen started, unless the live session screen records it by now
+     */
+    private void leaveStartedIngestion() {
+        if (startedIngestion) {
+            SensorDataService.leaveIngestion(this, sessionId);
+            startedIngestion = false;
+        }
+    }
 
-        // Create new timer that refreshes data at a consistent rate
-        dataRefreshTimer = new Timer();
-        dataRefreshTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                if (!sessionEnded) {
-                    refreshData();
-                }
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            sensorDataService = ((SensorDataService.LocalBinder) binder).getService();
+            if (!sensorDataService.isIngesting(sessionId)) {
+                startedIngestion = true;
+                SensorDataService.startIngestion(AthleteMonitoringActivity.this, sessionId);
             }
-        }, 0, 2000); // Initial delay 0, period 2 seconds for more predictable updates
+            sensorDataService.addConsumer(sessionId, sensorDataConsumer);
+        }
 
-        Log.d(TAG, "Data refresh timer started with 2-second interval");
-    }
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            sensorDataService = null;
+        }
+    };
 
-    private void refreshData() {
-        // For testing with mock data
-        if (useMockData) {
-            lastTimestamp += 1000; // 1 second later
-            int hr = 70 + (int)(Math.random() * 20);
-            float speed = 5.0f + (float)(Math.random() * 2.0);
-            float temp = 36.5f + (float)(Math.random() * 0.5);
-
-            SensorData mockData = new SensorData();
-            mockData.setTimestamp(lastTimestamp);
-            mockData.setHeartRate(hr);
-            mockData.setSpeed(speed);
-            mockData.setTemperature(temp);
-            mockData.setStatus("active");
-            mockData.setAnomalyDetected(false);
-
-            final SensorData finalMockData = mockData;
-            mainHandler.post(() -> updateUI(finalMockData));
+    // Receives samples for every athlete in the session; this screen only shows one
+    private final SensorDataService.SensorDataConsumer sensorDataConsumer = (sampleSessionId, sampleAthleteId, sensorData) -> {
+        if (!athleteId.equals(sampleAthleteId) || sessionEnded) {
             return;
         }
 
-        // Real data from repository
-        sensorDataRepository.getLatestSensorData(sessionId, athleteId, new SensorDataRepository.SensorDataCallback() {
+        // A re-attached stream replays the latest sample; skip what we already have
+        if (lastSensorData != null && sensorData.getTimestamp() <= lastSensorData.getTimestamp()) {
+            return;
+        }
+        lastSensorData = sensorData; // Store for reference
+
+        sensorDataRepository.detectAnomalies(sensorData, athleteId, new SensorDataRepository.ReconcilingSensorDataCallback() {
+            @Override
+            public void onSuccess(SensorData checkedData) {
+                mainHandler.post(() -> updateUI(checkedData));
+            }
+
             @Override
-            public void onSuccess(SensorData sensorData) {
-                lastSensorData = sensorData; // Store for reference
-                mainHandler.post(() -> updateUI(sensorData));
-                Log.d(TAG, "Received sensor data: HR=" + sensorData.getHeartRate() +
-                        ", Speed=" + sensorData.getSpeed() +
-                        ", Temp=" + sensorData.getTemperature());
+            public void onReconciled(SensorData checkedData) {
+                mainHandler.post(() -> reconcileAlert(checkedData));
             }
 
             @Override
             public void onError(String errorMessage) {
-                mainHandler.post(() -> {
-                    Log.e(TAG, "Error fetching sensor data: " + errorMessage);
-                    // Don't show toast for every failure as it might be annoying
-                });
+                mainHandler.post(() -> Log.e(TAG, "Error checking sensor data: " + errorMessage));
             }
         });
+    };
+
+    private void generateMockData() {
+        lastTimestamp += 1000; // 1 second later
+        int hr = 70 + (int)(Math.random() * 20);
+        float speed = 5.0f + (float)(Math.random() * 2.0);
+        float temp = 36.5f + (float)(Math.random() * 0.5);
+
+        SensorData mockData = new SensorData();
+        mockData.setTimestamp(lastTimestamp);
+        mockData.setHeartRate(hr);
+        mockData.setSpeed(speed);
+        mockData.setTemperature(temp);
+        mockData.setStatus("active");
+        mockData.setAnomalyDetected(false);
+
+        mainHandler.post(() -> updateUI(mockData));
     }
 
     private void updateUI(SensorData sensorData) {
@@ -838,6 +883,16 @@ public class AthleteMonitoringActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * The ML verdict for a sample arrived after the local rules passed it, and found an anomaly
+     */
+    private void reconcileAlert(SensorData sensorData) {
+        if (isFinishing() || isDestroyed() || sessionEnded) {
+            return;
+        }
+        showAlert(sensorData);
+    }
+
     private void dismissAlert() {
         alertCardView.setVisibility(View.GONE);
         if (contactAthleteButton != null) {
@@ -876,11 +931,9 @@ public class AthleteMonitoringActivity extends AppCompatActivity {
         // Mark session as ended
         sessionEnded = true;
 
-        // Stop data refresh timer
-        if (dataRefreshTimer != null) {
-            dataRefreshTimer.cancel();
-            dataRefreshTimer = null;
-        }
+        // Stop data stream
+        stopDataRefresh();
+        leaveStartedIngestion();
 
         // Hide monitoring UI elements
         if (endSessionButton != null) endSessionButton.setVisibility(View.GONE);
@@ -925,8 +978,8 @@ public class AthleteMonitoringActivity extends AppCompatActivity {
             setupCharts();
         }
 
-        // Update charts with accumulated data
-        updateChartsWithCurrentData();
+        // Update charts with the whole session
+        showWholeSession();
 
         // Show session summary card if it exists
         if (summaryCardView != null) {
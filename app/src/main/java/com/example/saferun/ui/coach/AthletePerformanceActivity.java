@@ -24,7 +24,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.saferun.R;
 import com.example.saferun.data.model.RunSession;
-import com.example.saferun.data.model.SensorData;
+import com.example.saferun.data.model.SessionSummary;
 import com.example.saferun.data.repository.RunSessionRepository;
 import com.example.saferun.data.repository.SensorDataRepository;
 import com.github.mikephil.charting.charts.LineChart;
@@ -72,7 +72,7 @@ public class AthletePerformanceActivity extends AppCompatActivity {
     private List<RunSession> sessions = new ArrayList<>();
 
     // Maps to store sensor data for each session
-    private Map<String, List<SensorData>> sessionSensorData = new HashMap<>();
+    private Map<String, SessionSummary> sessionSummaries = new HashMap<>();
     // Maps to store aggregated data per session for charts
     private Map<String, Double> sessionAvgHeartRate = new HashMap<>();
     private Map<String, Integer> sessionMaxHeartRate = new HashMap<>();
@@ -345,8 +345,6 @@ public class AthletePerformanceActivity extends AppCompatActivity {
     }
 
     private void loadSensorDataForSessions() {
-        // Use counter to track when all sensor data has been loaded
-        final int[] loadedCount = {0};
         final int totalSessions = sessions.size();
 
         Log.d(TAG, "Loading sensor data for " + totalSessions + " sessions");
@@ -358,170 +356,91 @@ public class AthletePerformanceActivity extends AppCompatActivity {
         }
 
         // Clear previous data
-        sessionSensorData.clear();
+        sessionSummaries.clear();
         sessionAvgHeartRate.clear();
         sessionMaxHeartRate.clear();
         sessionAvgSpeed.clear();
         sessionMaxSpeed.clear();
         sessionAvgTemperature.clear();
 
-        for (RunSession session : sessions) {
-            String sessionId = session.getId();
-            Log.d(TAG, "Loading sensor data for session: " + sessionId +
-                    ", Title: " + session.getTitle() +
-                    ", Date: " + (session.getDate() != null ? session.getDate().toString() : "null"));
-
-            sensorDataRepository.getSensorDataHistory(sessionId, athleteId, 1000,
-                    new SensorDataRepository.SensorDataListCallback() {
-                        @Override
-                        public void onSuccess(List<SensorData> sensorDataList) {
-                            Log.d(TAG, "Sensor data loaded successfully for session " + sessionId +
-                                    ": " + (sensorDataList != null ? sensorDataList.size() : 0) + " data points");
-
-                            if (sensorDataList != null && !sensorDataList.isEmpty()) {
-                                sessionSensorData.put(sessionId, sensorDataList);
-
-                                // Calculate avg, max values for this session
-                                processSessionData(sessionId, sensorDataList);
-
-                                // Log some sample data points for debugging
-                                if (sensorDataList.size() > 0) {
-                                    SensorData firstPoint = sensorDataList.get(0);
-                                    Log.d(TAG, "Sample data point: HR=" + firstPoint.getHeartRate() +
-                                            ", Temp=" + firstPoint.getTemperature() +
-                                            ", Speed=" + firstPoint.getSpeed());
-                                }
+        // One small summary document per session instead of every raw sample
+        runSessionRepository.getSessionSummaries(sessions, athleteId,
+                new RunSessionRepository.SessionSummariesCallback() {
+                    @Override
+                    public void onSuccess(Map<String, SessionSummary> summaries) {
+                        for (RunSession session : sessions) {
+                            String sessionId = session.getId();
+                            SessionSummary summary = summaries.get(sessionId);
+
+                            if (summary != null) {
+                                sessionSummaries.put(sessionId, summary);
+
+                                // Keep avg, max values for this session
+                                processSessionData(sessionId, summary);
                             } else {
                                 Log.w(TAG, "No sensor data found for session: " + sessionId);
-                                sessionSensorData.put(sessionId, new ArrayList<>());
                             }
-
-                            loadedCount[0]++;
-                            checkAllDataLoaded(loadedCount[0], totalSessions);
                         }
 
-                        @Override
-                        public void onError(String errorMessage) {
-                            Log.e(TAG, "Error loading sensor data for session " +
-                                    sessionId + ": " + errorMessage);
+                        onSensorDataLoaded();
+                    }
 
-                            // Still need to track this session attempt even on error
-                            sessionSensorData.put(sessionId, new ArrayList<>());
-                            loadedCount[0]++;
-                            checkAllDataLoaded(loadedCount[0], totalSessions);
-                        }
-                    });
-        }
+                    @Override
+                    public void onError(String errorMessage) {
+                        Log.e(TAG, "Error loading session summaries: " + errorMessage);
+                        onSensorDataLoaded();
+                    }
+                });
     }
 
-    private void processSessionData(String sessionId, List<SensorData> dataList) {
-        // Calculate per-session statistics
-        double sumHeartRate = 0;
-        int maxHeartRate = 0;
-        int validHeartRateCount = 0;
-
-        double sumSpeed = 0;
-        double maxSpeed = 0;
-        int validSpeedCount = 0;
-
-        double sumTemperature = 0;
-        int validTempCount = 0;
-
-        // Log data points for debugging
-        Log.d(TAG, "Processing session data for " + sessionId + " with " + dataList.size() + " points");
-
-        for (SensorData data : dataList) {
-            // Process heart rate
-            int heartRate = data.getHeartRate();
-            if (heartRate > 0) {
-                sumHeartRate += heartRate;
-                validHeartRateCount++;
-                maxHeartRate = Math.max(maxHeartRate, heartRate);
-                Log.d(TAG, "Valid heart rate: " + heartRate);
-            }
-
-            // Process speed
-            double speed = data.getSpeed();
-            if (speed >= 0) {
-                sumSpeed += speed;
-                validSpeedCount++;
-                maxSpeed = Math.max(maxSpeed, speed);
-                Log.d(TAG, "Valid speed: " + speed);
-            }
-
-            // Process temperature
-            double temperature = data.getTemperature();
-            if (temperature > 0) {
-                sumTemperature += temperature;
-                validTempCount++;
-                Log.d(TAG, "Valid temperature: " + temperature);
-            }
-        }
-
-        Log.d(TAG, "Session " + sessionId + " has " + validHeartRateCount + " valid HR readings.");
-        Log.d(TAG, "All HR values for session " + sessionId + ":");
-        for (SensorData d : dataList) {
-            Log.d(TAG, "HR = " + d.getHeartRate());
-        }
-
-        // Calculate averages and store in maps
-        if (validHeartRateCount > 0) {
-            double avgHeartRate = sumHeartRate / validHeartRateCount;
-            sessionAvgHeartRate.put(sessionId, avgHeartRate);
-            sessionMaxHeartRate.put(sessionId, maxHeartRate);
-            Log.d(TAG, "Session " + sessionId + " - Avg HR: " + avgHeartRate + ", Max HR: " + maxHeartRate +
-                    " (from " + validHeartRateCount + " readings)");
+    private void processSessionData(String sessionId, SessionSummary summary) {
+        // Store per-session statistics in maps
+        if (summary.getHeartRateCount() > 0) {
+            sessionAvgHeartRate.put(sessionId, summary.getAvgHeartRate());
+            sessionMaxHeartRate.put(sessionId, summary.getMaxHeartRate());
         } else {
             Log.w(TAG, "No valid heart rate readings for session " + sessionId);
         }
 
-        if (validSpeedCount > 0) {
-            double avgSpeed = sumSpeed / validSpeedCount;
-            sessionAvgSpeed.put(sessionId, avgSpeed);
-            sessionMaxSpeed.put(sessionId, maxSpeed);
-            Log.d(TAG, "Session " + sessionId + " - Avg Speed: " + avgSpeed + ", Max Speed: " + maxSpeed +
-                    " (from " + validSpeedCount + " readings)");
+        if (summary.getSpeedCount() > 0) {
+            sessionAvgSpeed.put(sessionId, summary.getAvgSpeed());
+            sessionMaxSpeed.put(sessionId, summary.getMaxSpeed());
         } else {
             Log.w(TAG, "No valid speed readings for session " + sessionId);
         }
 
-        if (validTempCount > 0) {
-            double avgTemperature = sumTemperature / validTempCount;
-            sessionAvgTemperature.put(sessionId, avgTemperature);
-            Log.d(TAG, "Session " + sessionId + " - Avg Temperature: " + avgTemperature +
-                    " (from " + validTempCount + " readings)");
+        if (summary.getTemperatureCount() > 0) {
+            sessionAvgTemperature.put(sessionId, summary.getAvgTemperature());
         } else {
             Log.w(TAG, "No valid temperature readings for session " + sessionId);
         }
     }
 
-    private void checkAllDataLoaded(int loadedCount, int totalSessions) {
-        if (loadedCount >= totalSessions) {
-            if (isAllSensorDataEmpty()) {
-                Log.w(TAG, "No sensor data found for any session");
-
-                // Show message to user but still display the session list
-                Toast.makeText(this, "No performance data available yet for this athlete",
-                        Toast.LENGTH_LONG).show();
-
-                // Zero out all stats
-                avgHeartRateText.setText("0 bpm");
-                maxHeartRateText.setText("0 bpm");
-                avgTemperatureText.setText("0.0°C");
-                avgSpeedText.setText("0.0 km/h");
-                maxSpeedText.setText("0.0 km/h");
-                performanceScoreText.setText("0");
-
-                // Clear charts
-                clearCharts();
-            } else {
-                // We have some data, let's update the UI
-                updateChartsAndStats();
-            }
+    private void onSensorDataLoaded() {
+        if (isAllSensorDataEmpty()) {
+            Log.w(TAG, "No sensor data found for any session");
 
-            // Always hide progress indicator when loading is complete
-            showProgress(false);
+            // Show message to user but still display the session list
+            Toast.makeText(this, "No performance data available yet for this athlete",
+                    Toast.LENGTH_LONG).show();
+
+            // Zero out all stats
+            avgHeartRateText.setText("0 bpm");
+            maxHeartRateText.setText("0 bpm");
+            avgTemperatureText.setText("0.0°C");
+            avgSpeedText.setText("0.0 km/h");
+            maxSpeedText.setText("0.0 km/h");
+            performanceScoreText.setText("0");
+
+            // Clear charts
+            clearCharts();
+        } else {
+            // We have some data, let's update the UI
+            updateChartsAndStats();
         }
+
+        // Always hide progress indicator when loading is complete
+        showProgress(false);
     }
 
     private void clearCharts() {
@@ -539,17 +458,10 @@ public class AthletePerformanceActivity extends AppCompatActivity {
     }
 
     private boolean isAllSensorDataEmpty() {
-        for (List<SensorData> dataList : sessionSensorData.values()) {
-            if (dataList != null && !dataList.isEmpty()) {
-                // Check if the list actually has any useful data
-                boolean hasRealData = dataList.stream().anyMatch(data ->
-                        data.getHeartRate() > 0 ||
-                                data.getTemperature() > 0 ||
-                                data.getSpeed() > 0);
-
-                if (hasRealData) {
-                    return false;
-                }
+        for (SessionSummary summary : sessionSummaries.values()) {
+            // Check if the session actually has any useful data
+            if (summary.hasReadings()) {
+                return false;
             }
         }
         return true;
@@ -568,32 +480,18 @@ public class AthletePerformanceActivity extends AppCompatActivity {
         double totalTempSum = 0;
         int totalTempReadings = 0;
 
-        // Loop through all sensor data to get true global stats
-        for (List<SensorData> dataList : sessionSensorData.values()) {
-            for (SensorData data : dataList) {
-                // Heart Rate
-                int hr = data.getHeartRate();
-                if (hr > 0) {
-                    totalHeartRateSum += hr;
-                    totalHeartRateReadings++;
-                    globalMaxHeartRate = Math.max(globalMaxHeartRate, hr);
-                }
+        // Combine session summaries to get true global stats
+        for (SessionSummary summary : sessionSummaries.values()) {
+            totalHeartRateSum += summary.getHeartRateSum();
+            totalHeartRateReadings += summary.getHeartRateCount();
+            globalMaxHeartRate = Math.max(globalMaxHeartRate, summary.getMaxHeartRate());
 
-                // Speed
-                double speed = data.getSpeed();
-                if (speed >= 0) {
-                    totalSpeedSum += speed;
-                    totalSpeedReadings++;
-                    globalMaxSpeed = Math.max(globalMaxSpeed, speed);
-                }
+            totalSpeedSum += summary.getSpeedSum();
+            totalSpeedReadings += summary.getSpeedCount();
+            globalMaxSpeed = Math.max(globalMaxSpeed, summary.getMaxSpeed());
 
-                // Temperature
-                double temp = data.getTemperature();
-                if (temp > 0) {
-                    totalTempSum += temp;
-                    totalTempReadings++;
-                }
-            }
+            totalTempSum += summary.getTemperatureSum();
+            totalTempReadings += summary.getTemperatureCount();
         }
 
         // Calculate averages
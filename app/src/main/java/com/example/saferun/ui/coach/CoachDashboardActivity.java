@@ -18,6 +18,7 @@ import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
 import com.example.saferun.R;
+import com.example.saferun.data.firebase.ReadPolicy;
 import com.example.saferun.data.model.User;
 import com.example.saferun.data.repository.TeamRequestRepository;
 import com.example.saferun.data.repository.UserRepository;
@@ -92,7 +93,7 @@ public class CoachDashboardActivity extends AppCompatActivity {
     }
 
     private void loadUserData() {
-        userRepository.getCurrentUser(new UserRepository.UserCallback() {
+        userRepository.getCurrentUser(ReadPolicy.CACHE_THEN_SERVER, new UserRepository.UserCallback() {
             @Override
             public void onSuccess(User user) {
                 currentCoach = user;
@@ -16,12 +16,14 @@ import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
 import com.example.saferun.R;
+import com.example.saferun.data.model.Metric;
 import com.example.saferun.data.model.RunSession;
-import com.example.saferun.data.model.SensorData;
+import com.example.saferun.data.model.SensorSeries;
 import com.example.saferun.data.model.User;
 import com.example.saferun.data.repository.RunSessionRepository;
 import com.example.saferun.data.repository.SensorDataRepository;
 import com.example.saferun.data.repository.UserRepository;
+import com.example.saferun.ml.PerformanceAnalyzer;
 import com.github.mikephil.charting.charts.BarChart;
 import com.github.mikephil.charting.charts.HorizontalBarChart;
 import com.github.mikephil.charting.components.Legend;
@@ -61,7 +63,7 @@ public class GlobalPerformanceActivity extends AppCompatActivity {
     private List<User> athletes = new ArrayList<>();
     private Map<String, User> athleteMap = new HashMap<>();  // For quick lookup
     private List<RunSession> allSessions = new ArrayList<>();
-    private Map<String, List<SensorData>> athleteSensorData = new HashMap<>();
+    private Map<String, SensorSeries> athleteSensorData = new HashMap<>();
     private Map<String, Double> athletePerformanceScores = new HashMap<>();
 
     // Separate maps for average and maximum values
@@ -319,67 +321,62 @@ public class GlobalPerformanceActivity extends AppCompatActivity {
             return;
         }
 
-        final int[] loadedCount = {0};
-        final int totalAthletes = athletes.size();
+        // For simplicity, we'll just load data from one session per athlete
+        // In a real app, you'd aggregate data from all sessions
+        Map<String, String> athleteSessionIds = new HashMap<>();
+        List<RunSession> selectedSessions = new ArrayList<>();
+        List<String> athleteIds = new ArrayList<>();
 
         for (User athlete : athletes) {
             String athleteId = athlete.getUid();
-            List<SensorData> athleteData = new ArrayList<>();
-
-            // For simplicity, we'll just load data from one session per athlete
-            // In a real app, you'd aggregate data from all sessions
-            String sessionId = null;
 
             for (RunSession session : allSessions) {
                 if (session.getAthletes().contains(athleteId) && session.isCompleted()) {
-                    sessionId = session.getId();
+                    athleteSessionIds.put(athleteId, session.getId());
+                    athleteIds.add(athleteId);
+                    if (!selectedSessions.contains(session)) {
+                        selectedSessions.add(session);
+                    }
                     break;
                 }
             }
+        }
 
-            if (sessionId != null) {
-                final String finalSessionId = sessionId;
-
-                sensorDataRepository.getSensorDataHistory(sessionId, athleteId, 1000,
-                        new SensorDataRepository.SensorDataListCallback() {
-                            @Override
-                            public void onSuccess(List<SensorData> sensorDataList) {
-                                athleteSensorData.put(athleteId, sensorDataList);
+        // One batched load for every (session, athlete) pair
+        sensorDataRepository.getSensorSeriesBatch(selectedSessions, athleteIds,
+                new SensorDataRepository.SensorSeriesBatchCallback() {
+                    @Override
+                    public void onSuccess(Map<String, Map<String, SensorSeries>> seriesBySession) {
+                        for (User athlete : athletes) {
+                            String athleteId = athlete.getUid();
+                            Map<String, SensorSeries> sessionSeries = seriesBySession.get(athleteSessionIds.get(athleteId));
+                            SensorSeries series = sessionSeries != null ? sessionSeries.get(athleteId) : null;
+                            if (series == null) {
+                                continue;
+                            }
 
-                                // Process the athlete's data
-                                processAthletePerformanceData(athlete, sensorDataList);
+                            athleteSensorData.put(athleteId, series);
 
-                                // Calculate performance score for this athlete
-                                double score = calculatePerformanceScore(athleteId, sensorDataList);
-                                athletePerformanceScores.put(athleteId, score);
+                            // Process the athlete's data
+                            processAthletePerformanceData(athlete, series);
 
-                                loadedCount[0]++;
-                                if (loadedCount[0] >= totalAthletes) {
-                                    // All sensor data loaded
-                                    updateCharts();
-                                    showProgress(false);
-                                }
-                            }
+                            // Calculate performance score for this athlete
+                            double score = calculatePerformanceScore(athleteId, series);
+                            athletePerformanceScores.put(athleteId, score);
+                        }
 
-                            @Override
-                            public void onError(String errorMessage) {
-                                loadedCount[0]++;
-                                if (loadedCount[0] >= totalAthletes) {
-                                    // All sensor data attempts completed
-                                    updateCharts();
-                                    showProgress(false);
-                                }
-                            }
-                        });
-            } else {
-                loadedCount[0]++;
-                if (loadedCount[0] >= totalAthletes) {
-                    // All sensor data attempts completed
-                    updateCharts();
-                    showProgress(false);
-                }
-            }
-        }
+                        // All sensor data loaded
+                        updateCharts();
+                        showProgress(false);
+                    }
+
+                    @Override
+                    public void onError(String errorMessage) {
+                        Log.e(TAG, "Error loading sensor data: " + errorMessage);
+                        updateCharts();
+                        showProgress(false);
+                    }
+                });
     }
 
     /**
@@ -400,7 +397,7 @@ public class GlobalPerformanceActivity extends AppCompatActivity {
             String athleteId = athlete.getUid();
 
             // Create simulated data with known averages and maximums
-            List<SensorData> simulatedData = new ArrayList<>();
+            SensorSeries simulatedData = new SensorSeries(20);
 
             // Create different values for each athlete
             double baseHR = 70 + (Math.random() * 20);
@@ -408,23 +405,21 @@ public class GlobalPerformanceActivity extends AppCompatActivity {
 
             // Create 20 data points with variation
             for (int i = 0; i < 20; i++) {
-                SensorData data = new SensorData();
-                data.setTimestamp(System.currentTimeMillis() - (i * 1000));
+                long timestamp = System.currentTimeMillis() - (i * 1000);
 
                 // Heart rate: ensure average is notably different from max
                 double factor = Math.random();
                 double hr = baseHR + (factor * 40);  // Ensures max is higher than average
-                data.setHeartRate((int)hr);
 
                 // Speed: ensure average is notably different from max
                 double speed = baseSpeed + (factor * 5);  // Ensures max is higher than average
-                data.setSpeed(speed);
 
                 // Temperature is less important for this test
-                data.setTemperature(36.5 + (Math.random() * 1.5));
+                double temperature = 36.5 + (Math.random() * 1.5);
 
-                simulatedData.add(data);
+                simulatedData.add(timestamp, (int) hr, temperature, speed, false);
             }
+            simulatedData.sortByTimestamp();
 
             // Store the simulated data
             athleteSensorData.put(athleteId, simulatedData);
@@ -446,61 +441,26 @@ public class GlobalPerformanceActivity extends AppCompatActivity {
      * Processes athlete performance data to prepare for chart rendering
      * Making sure average and maximum values are properly separated
      */
-    private void processAthletePerformanceData(User athlete, List<SensorData> dataList) {
-        // Calculate per-athlete statistics
-        double sumHeartRate = 0;
-        int maxHeartRate = 0;
-        int validHeartRateCount = 0;
-
-        double sumSpeed = 0;
-        double maxSpeed = 0;
-        int validSpeedCount = 0;
-
+    private void processAthletePerformanceData(User athlete, SensorSeries series) {
         // Log for debugging
         Log.d(TAG, "Processing data for athlete: " + athlete.getName() +
-                " with " + (dataList != null ? dataList.size() : 0) + " data points");
+                " with " + (series != null ? series.size() : 0) + " data points");
 
-        if (dataList == null || dataList.isEmpty()) {
+        if (series == null || series.isEmpty()) {
             Log.w(TAG, "No data found for athlete: " + athlete.getName());
             return;
         }
 
-        // IMPORTANT: Thoroughly inspect the data before processing
-        Log.d(TAG, "First few data points for " + athlete.getName() + ":");
-        int sampleSize = Math.min(5, dataList.size());
-        for (int i = 0; i < sampleSize; i++) {
-            SensorData data = dataList.get(i);
-            Log.d(TAG, "Data point " + i + ": HR=" + data.getHeartRate() +
-                    ", Speed=" + data.getSpeed() + ", Temp=" + data.getTemperature());
-        }
-
-        for (SensorData data : dataList) {
-            // Process heart rate - only count valid readings
-            if (data.getHeartRate() > 0) {
-                sumHeartRate += data.getHeartRate();
-                validHeartRateCount++;
-
-                // Track max heart rate
-                if (data.getHeartRate() > maxHeartRate) {
-                    maxHeartRate = data.getHeartRate();
-                }
-            }
-
-            // Process speed - only count valid readings
-            if (data.getSpeed() > 0) {  // Changed from >= 0 to > 0
-                sumSpeed += data.getSpeed();
-                validSpeedCount++;
-
-                // Track max speed
-                if (data.getSpeed() > maxSpeed) {
-                    maxSpeed = data.getSpeed();
-                }
-            }
-        }
+        // Only count valid readings; speed only while the athlete is moving
+        PerformanceAnalyzer stats = PerformanceAnalyzer.of(series, true);
+        int validHeartRateCount = stats.getCount(Metric.HEART_RATE);
+        double maxHeartRate = stats.getMax(Metric.HEART_RATE);
+        int validSpeedCount = stats.getCount(Metric.SPEED);
+        double maxSpeed = stats.getMax(Metric.SPEED);
 
         // Calculate averages and store in maps - with thorough checks
         if (validHeartRateCount > 0) {
-            double avgHeartRate = sumHeartRate / validHeartRateCount;
+            double avgHeartRate = stats.getMean(Metric.HEART_RATE);
 
             // Verify avg is not equal to max (sanity check)
             if (Math.abs(avgHeartRate - maxHeartRate) < 0.001 && validHeartRateCount > 1) {
@@ -510,19 +470,19 @@ public class GlobalPerformanceActivity extends AppCompatActivity {
 
             // Store in separate maps for avg and max
             athleteAvgHeartRate.put(athlete.getUid(), avgHeartRate);
-            athleteMaxHeartRate.put(athlete.getUid(), (double)maxHeartRate);
+            athleteMaxHeartRate.put(athlete.getUid(), maxHeartRate);
 
             Log.d(TAG, "Athlete " + athlete.getName() +
                     " - Avg HR: " + avgHeartRate +
                     ", Max HR: " + maxHeartRate +
                     ", From " + validHeartRateCount + " readings" +
-                    ", Sum: " + sumHeartRate);
+                    ", SD: " + stats.getStandardDeviation(Metric.HEART_RATE));
         } else {
             Log.w(TAG, "No valid heart rate readings for " + athlete.getName());
         }
 
         if (validSpeedCount > 0) {
-            double avgSpeed = sumSpeed / validSpeedCount;
+            double avgSpeed = stats.getMean(Metric.SPEED);
 
             // Verify avg is not equal to max (sanity check)
             if (Math.abs(avgSpeed - maxSpeed) < 0.001 && validSpeedCount > 1) {
@@ -538,14 +498,14 @@ public class GlobalPerformanceActivity extends AppCompatActivity {
                     " - Avg Speed: " + avgSpeed +
                     ", Max Speed: " + maxSpeed +
                     ", From " + validSpeedCount + " readings" +
-                    ", Sum: " + sumSpeed);
+                    ", SD: " + stats.getStandardDeviation(Metric.SPEED));
         } else {
             Log.w(TAG, "No valid speed readings for " + athlete.getName());
         }
     }
 
-    private double calculatePerformanceScore(String athleteId, List<SensorData> dataList) {
-        if (dataList == null || dataList.isEmpty()) {
+    private double calculatePerformanceScore(String athleteId, SensorSeries series) {
+        if (series == null || series.isEmpty()) {
             return 0;
         }
 
@@ -1,7 +1,11 @@
 package com.example.saferun.ui.coach;
 
+import android.content.ComponentName;
+import android.content.Context;
 import android.content.Intent;
+import android.content.ServiceConnection;
 import android.os.Bundle;
+import android.os.IBinder;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
@@ -25,6 +29,7 @@ import com.example.saferun.data.model.RunSession;
 import com.example.saferun.data.model.User;
 import com.example.saferun.data.repository.RunSessionRepository;
 import com.example.saferun.data.repository.UserRepository;
+import com.example.saferun.service.SensorDataService;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -53,6 +58,9 @@ public class LiveSessionActivity extends AppCompatActivity implements Participat
     private RunSession currentSession;
     private List<User> participatingAthletes = new ArrayList<>();
 
+    private SensorDataService sensorDataService;
+    private boolean serviceBound = false;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -130,6 +138,16 @@ public class LiveSessionActivity extends AppCompatActivity implements Participat
             public void onSuccess(RunSession session) {
                 currentSession = session;
                 updateUI(session);
+
+                // One shared ingestion stream for every athlete in the session; the coach's
+                // device is the one that archives the samples to sensor_chunks
+                if (!session.isCompleted()) {
+                    SensorDataService.startRecording(LiveSessionActivity.this, sessionId);
+                    if (!serviceBound) {
+                        serviceBound = bindService(new Intent(LiveSessionActivity.this, SensorDataService.class),
+                                serviceConnection, Context.BIND_AUTO_CREATE);
+                    }
+                }
                 loadParticipatingAthletes(session);
             }
 
@@ -234,7 +252,7 @@ public class LiveSessionActivity extends AppCompatActivity implements Participat
     private void endSession() {
         showProgress(true);
 
-        runSessionRepository.updateSessionStatus(sessionId, "completed", new RunSessionRepository.OperationCallback() {
+        RunSessionRepository.OperationCallback callback = new RunSessionRepository.OperationCallback() {
             @Override
             public void onSuccess() {
                 showProgress(false);
@@ -248,9 +266,30 @@ public class LiveSessionActivity extends AppCompatActivity implements Participat
                 Toast.makeText(LiveSessionActivity.this,
                         "Error ending session: " + errorMessage, Toast.LENGTH_SHORT).show();
             }
-        });
+        };
+
+        if (sensorDataService != null) {
+            // The recording is uploaded before the session is sealed and summarized
+            sensorDataService.completeSession(sessionId, callback);
+        } else {
+            // Nothing recorded here; stop any ingestion that is still starting up
+            SensorDataService.stopIngestion(this, sessionId);
+            runSessionRepository.completeSession(sessionId, callback);
+        }
     }
 
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            sensorDataService = ((SensorDataService.LocalBinder) binder).getService();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            sensorDataService = null;
+        }
+    };
+
     private void showProgress(boolean show) {
         progressBar.setVisibility(show ? View.VISIBLE : View.GONE);
     }
@@ -269,4 +308,14 @@ public class LiveSessionActivity extends AppCompatActivity implements Participat
             loadSessionData();
         }
     }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (serviceBound) {
+            unbindService(serviceConnection);
+            serviceBound = false;
+            sensorDataService = null;
+        }
+    }
 }
\ No newline at end of file
@@ -17,6 +17,7 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.saferun.R;
+import com.example.saferun.data.firebase.ReadPolicy;
 import com.example.saferun.data.model.User;
 import com.example.saferun.data.repository.RunSessionRepository;
 import com.example.saferun.data.repository.UserRepository;
@@ -95,7 +96,7 @@ public class RunSessionListActivity extends AppCompatActivity implements Athlete
         showProgress(true);
 
         // Get all athletes associated with this coach
-        userRepository.getAthletes(new UserRepository.UsersCallback() {
+        userRepository.getAthletes(ReadPolicy.CACHE_THEN_SERVER, new UserRepository.UsersCallback() {
             @Override
             public void onSuccess(List<User> users) {
                 showProgress(false);
@@ -13,6 +13,7 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.saferun.R;
+import com.example.saferun.data.firebase.ReadPolicy;
 import com.example.saferun.data.model.Team;
 import com.example.saferun.data.repository.TeamRepository;
 import com.example.saferun.ui.common.adapters.TeamAdapter;
@@ -76,7 +77,7 @@ public class TeamListActivity extends AppCompatActivity implements TeamAdapter.O
     private void loadTeams() {
         showProgress(true);
 
-        teamRepository.getTeamsForCoach(new TeamRepository.TeamsCallback() {
+        teamRepository.getTeamsForCoach(ReadPolicy.CACHE_THEN_SERVER, new TeamRepository.TeamsCallback() {
             @Override
             public void onSuccess(List<Team> loadedTeams) {
                 showProgress(false);
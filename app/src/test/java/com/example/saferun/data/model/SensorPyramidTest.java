@@ -0,0 +1,122 @@
+package com.example.saferun.data.model;
+
+import com.example.saferun.data.util.SensorPyramidCodec;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SensorPyramidTest {
+
+    // Aligned to five minutes so every level has whole buckets
+    private static final long START = 1700000100000L;
+
+    private static SensorSeries twoHourSession() {
+        SensorSeries series = new SensorSeries();
+        for (int i = 0; i < 7200; i++) {
+            int heartRate = i == 4321 ? 198 : 120 + (i % 30);
+            // A sensor dropout every 100 samples
+            double temperature = i % 100 == 0 ? 0 : 36.5 + (i % 10) * 0.1;
+            series.add(START + i * 1000L, heartRate, temperature, 8 + (i % 4) * 0.5, false);
+        }
+        return series;
+    }
+
+    @Test
+    public void buildsEveryLevel() {
+        SensorPyramid pyramid = SensorPyramid.fromSeries(twoHourSession());
+
+        assertEquals(4, pyramid.getLevelCount());
+        assertEquals(7200, pyramid.getLevel(0).size());
+        assertEquals(720, pyramid.getLevel(1).size());
+        assertEquals(120, pyramid.getLevel(2).size());
+        assertEquals(24, pyramid.getLevel(3).size());
+        assertEquals(START, pyramid.getStartTime());
+        assertEquals(START + 7200 * 1000L, pyramid.getEndTime());
+    }
+
+    @Test
+    public void aggregatesMatchRawSamples() {
+        SensorSeries series = twoHourSession();
+        SensorPyramid pyramid = SensorPyramid.fromSeries(series);
+        SessionSummary summary = SessionSummary.fromSeries("s", "a", series);
+
+        assertEquals(summary.getAvgHeartRate(), pyramid.getMean(Metric.HEART_RATE), 0.01);
+        assertEquals(summary.getAvgTemperature(), pyramid.getMean(Metric.TEMPERATURE), 0.01);
+        assertEquals(summary.getAvgSpeed(), pyramid.getMean(Metric.SPEED), 0.01);
+        assertEquals(198f, pyramid.getMax(Metric.HEART_RATE), 0f);
+        assertEquals(summary.getTemperatureCount(), pyramid.getCount(Metric.TEMPERATURE));
+
+        // The spike survives in the max of every level
+        for (int l = 0; l < pyramid.getLevelCount(); l++) {
+            SensorPyramid.Level level = pyramid.getLevel(l);
+            int bucket = level.indexOf(START + 4321 * 1000L);
+            assertEquals(198f, level.getMax(Metric.HEART_RATE, bucket), 0f);
+        }
+
+        // A bucket holding only a dropout has no temperature reading
+        SensorPyramid.Level finest = pyramid.getLevel(0);
+        assertEquals(0, finest.getCount(Metric.TEMPERATURE, 100));
+        assertTrue(Float.isNaN(finest.getMean(Metric.TEMPERATURE, 100)));
+    }
+
+    @Test
+    public void picksFinestLevelThatFitsTheChart() {
+        SensorPyramid pyramid = SensorPyramid.fromSeries(twoHourSession());
+
+        assertEquals(300_000L, pyramid.levelFor(2 * 3_600_000L, 20).getBucketDuration());
+        assertEquals(10_000L, pyramid.levelFor(2 * 3_600_000L, 1080).getBucketDuration());
+        assertEquals(1_000L, pyramid.levelFor(10 * 60_000L, 1080).getBucketDuration());
+        // Nothing is coarse enough, fall back to the coarsest
+        assertEquals(300_000L, pyramid.levelFor(48 * 3_600_000L, 10).getBucketDuration());
+    }
+
+    @Test
+    public void indexOfFindsBucketContainingTime() {
+        SensorPyramid.Level level = SensorPyramid.fromSeries(twoHourSession()).getLevel(2);
+
+        assertEquals(0, level.indexOf(0));
+        assertEquals(0, level.indexOf(START + 59_999L));
+        assertEquals(1, level.indexOf(START + 60_000L));
+        assertEquals(level.size(), level.indexOf(START + 3 * 3_600_000L));
+    }
+
+    @Test
+    public void roundTripsThroughCodec() {
+        SensorPyramid pyramid = SensorPyramid.fromSeries(twoHourSession());
+
+        byte[] encoded = SensorPyramidCodec.encode(pyramid);
+        SensorPyramid decoded = SensorPyramidCodec.decode(encoded);
+
+        assertEquals(pyramid.getLevelCount(), decoded.getLevelCount());
+        for (int l = 0; l < pyramid.getLevelCount(); l++) {
+            SensorPyramid.Level expected = pyramid.getLevel(l);
+            SensorPyramid.Level actual = decoded.getLevel(l);
+            assertEquals(expected.getBucketDuration(), actual.getBucketDuration());
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.getStart(i), actual.getStart(i));
+                for (int metric = 0; metric < Metric.COUNT; metric++) {
+                    assertEquals(expected.getCount(metric, i), actual.getCount(metric, i));
+                    if (expected.getCount(metric, i) > 0) {
+                        assertEquals(expected.getMin(metric, i), actual.getMin(metric, i), 0.005);
+                        assertEquals(expected.getMax(metric, i), actual.getMax(metric, i), 0.005);
+                        assertEquals(expected.getMean(metric, i), actual.getMean(metric, i), 0.005);
+                    }
+                }
+            }
+        }
+
+        // All levels together take less than half of the raw samples' 29 bytes each
+        assertTrue("encoded to " + encoded.length + " bytes", encoded.length < 7200 * 29 / 2);
+    }
+
+    @Test
+    public void emptySeriesGivesEmptyPyramid() {
+        SensorPyramid pyramid = SensorPyramid.fromSeries(new SensorSeries());
+
+        assertTrue(pyramid.isEmpty());
+        assertEquals(0, pyramid.getMean(Metric.HEART_RATE), 0);
+        assertTrue(SensorPyramidCodec.decode(SensorPyramidCodec.encode(pyramid)).isEmpty());
+    }
+}
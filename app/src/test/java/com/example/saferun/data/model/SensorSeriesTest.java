@@ -0,0 +1,42 @@
+package com.example.saferun.data.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SensorSeriesTest {
+
+    @Test
+    public void halvingKeepsTheSpikeOfEachPair() {
+        SensorSeries series = new SensorSeries();
+        int[] heartRates = {120, 121, 122, 190, 123, 40, 124};
+        for (int i = 0; i < heartRates.length; i++) {
+            series.add(i * 1000L, heartRates[i], 36.5 + i * 0.1, 10, i == 3);
+        }
+
+        series.halve();
+
+        assertEquals(4, series.size());
+        assertEquals(120, series.getHeartRate(0));
+        assertEquals(190, series.getHeartRate(1));
+        assertEquals(3000L, series.getTimestamp(1));
+        assertEquals(36.8, series.getTemperature(1), 1e-5);
+        assertTrue(series.isAnomaly(1));
+        assertEquals(40, series.getHeartRate(2));
+        // The unpaired last sample stays
+        assertEquals(124, series.getHeartRate(3));
+        assertEquals(1, series.getAnomalyCount());
+    }
+
+    @Test
+    public void halvingSmallSeries() {
+        SensorSeries series = new SensorSeries();
+        series.halve();
+        assertTrue(series.isEmpty());
+
+        series.add(0L, 120, 36.5, 10, true);
+        series.halve();
+        assertEquals(1, series.size());
+        assertTrue(series.isAnomaly(0));
+    }
+}
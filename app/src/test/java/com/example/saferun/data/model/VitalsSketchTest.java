@@ -0,0 +1,115 @@
+package com.example.saferun.data.model;
+
+import com.example.saferun.data.util.VitalsSketchCodec;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class VitalsSketchTest {
+
+    private static SensorSeries session(Random random, int size, double heartRate) {
+        SensorSeries series = new SensorSeries(size);
+        for (int i = 0; i < size; i++) {
+            series.add(1000L * i, (int) Math.round(heartRate + random.nextGaussian() * 12),
+                    37.0 + random.nextGaussian() * 0.3, Math.max(0, 10 + random.nextGaussian() * 2), false);
+        }
+        return series;
+    }
+
+    @Test
+    public void quantilesMatchExactValuesWithinHalfABin() {
+        SensorSeries series = session(new Random(24), 5000, 150);
+        VitalsSketch sketch = new VitalsSketch();
+        sketch.addAll(series);
+
+        double[] temperatures = new double[series.size()];
+        for (int i = 0; i < series.size(); i++) {
+            temperatures[i] = series.getTemperature(i);
+        }
+        Arrays.sort(temperatures);
+
+        for (double q : new double[]{0.01, 0.5, 0.995}) {
+            double exact = temperatures[(int) Math.ceil(q * temperatures.length) - 1];
+            assertEquals(exact, sketch.quantile(Metric.TEMPERATURE, q), 0.025 + 1e-9);
+        }
+    }
+
+    @Test
+    public void heartRateQuantilesAreExact() {
+        VitalsSketch sketch = new VitalsSketch();
+        for (int heartRate = 101; heartRate <= 200; heartRate++) {
+            sketch.add(heartRate, 37.0, 10);
+        }
+
+        assertEquals(101, sketch.quantile(Metric.HEART_RATE, 0.01), 0);
+        assertEquals(150, sketch.quantile(Metric.HEART_RATE, 0.5), 0);
+        assertEquals(200, sketch.quantile(Metric.HEART_RATE, 0.995), 0);
+    }
+
+    @Test
+    public void ignoresInvalidReadingsAndClampsOutliers() {
+        VitalsSketch sketch = new VitalsSketch();
+        sketch.add(0, 0, -1);
+        assertEquals(0, sketch.getCount(Metric.HEART_RATE));
+        assertEquals(0, sketch.getCount(Metric.SPEED));
+        assertEquals(0, sketch.getCount(Metric.TEMPERATURE));
+        assertTrue(Double.isNaN(sketch.quantile(Metric.HEART_RATE, 0.5)));
+
+        sketch.add(400, 20.0, 1000);
+        assertEquals(VitalsSketch.getBinValue(Metric.HEART_RATE, VitalsSketch.getBinCount(Metric.HEART_RATE) - 1),
+                sketch.quantile(Metric.HEART_RATE, 0.5), 0);
+        assertEquals(30.0, sketch.quantile(Metric.TEMPERATURE, 0.5), 0);
+    }
+
+    @Test
+    public void mergeEqualsAddingBothSessions() {
+        Random random = new Random(7);
+        SensorSeries first = session(random, 1000, 140);
+        SensorSeries second = session(random, 1000, 160);
+
+        VitalsSketch merged = new VitalsSketch();
+        merged.addAll(first);
+        VitalsSketch other = new VitalsSketch();
+        other.addAll(second);
+        merged.merge(other);
+
+        VitalsSketch both = new VitalsSketch();
+        both.addAll(first);
+        both.addAll(second);
+
+        assertSketchesEqual(both, merged);
+    }
+
+    @Test
+    public void codecRoundTripIsCompact() {
+        VitalsSketch sketch = new VitalsSketch();
+        Random random = new Random(3);
+        for (int i = 0; i < 20; i++) {
+            sketch.addAll(session(random, 3600, 150));
+        }
+
+        byte[] data = VitalsSketchCodec.encode(sketch);
+        assertSketchesEqual(sketch, VitalsSketchCodec.decode(data));
+        assertTrue("encoded to " + data.length + " bytes", data.length < 1024);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void codecRejectsUnknownVersion() {
+        byte[] data = VitalsSketchCodec.encode(new VitalsSketch());
+        data[0] = 99;
+        VitalsSketchCodec.decode(data);
+    }
+
+    private static void assertSketchesEqual(VitalsSketch expected, VitalsSketch actual) {
+        for (int metric = 0; metric < Metric.COUNT; metric++) {
+            assertEquals(expected.getCount(metric), actual.getCount(metric));
+            for (int bin = 0; bin < VitalsSketch.getBinCount(metric); bin++) {
+                assertEquals(expected.getBin(metric, bin), actual.getBin(metric, bin));
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.saferun.data.util;
+
+import com.example.saferun.data.model.SensorData;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Per-sample decode cost of {@link DataConverter} against the decoder it replaced, which looked
+ * every field up by name, rescanned the map for each alias list and built a log message per field.
+ * Timings depend on the machine, so nothing is asserted; run with {@code ./gradlew test -Pbenchmark}.
+ */
+public class DataConverterBenchmark {
+
+    @Test
+    public void decodeCostPerSample() {
+        assumeTrue("Benchmarks run with -Pbenchmark", Boolean.getBoolean("benchmark"));
+
+        Map<String, Object>[] samples = buildSamples(2000);
+        int rounds = 200;
+
+        // Warm up both paths
+        long sink = 0;
+        for (int i = 0; i < 20; i++) {
+            sink += runLegacy(samples) + runDecoder(samples);
+        }
+
+        long legacyNanos = Long.MAX_VALUE;
+        long decoderNanos = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            sink += runLegacy(samples);
+            legacyNanos = Math.min(legacyNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            sink += runDecoder(samples);
+            decoderNanos = Math.min(decoderNanos, System.nanoTime() - start);
+        }
+
+        System.out.printf("Decode cost per sample: legacy %.1f ns, DataConverter %.1f ns (checksum %d)%n",
+                (double) legacyNanos / samples.length, (double) decoderNanos / samples.length, sink);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Map<String, Object>[] buildSamples(int count) {
+        Map<String, Object>[] samples = new Map[count];
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> value = new HashMap<>();
+            value.put("heart_rate", (long) (60 + i % 120));
+            value.put("temperature", 36.0 + (i % 30) / 10.0);
+            value.put("speed", (double) (i % 20));
+            value.put("status", "active");
+            value.put("anomaly_detected", i % 50 == 0);
+            value.put("timestamp", 1700000000000L + i * 1000L);
+            samples[i] = value;
+        }
+        return samples;
+    }
+
+    private static long runDecoder(Map<String, Object>[] samples) {
+        long checksum = 0;
+        for (int i = 0; i < samples.length; i++) {
+            SensorData data = DataConverter.decodeSensorData("sample" + (i & 7), samples[i], "s", "a");
+            checksum += data.getHeartRate();
+        }
+        return checksum;
+    }
+
+    private static long runLegacy(Map<String, Object>[] samples) {
+        long checksum = 0;
+        for (int i = 0; i < samples.length; i++) {
+            SensorData data = legacyDecode("sample" + (i & 7), samples[i]);
+            checksum += data.getHeartRate();
+        }
+        return checksum;
+    }
+
+    /**
+     * The decoder DataConverter replaced, with DataSnapshot.hasChild()/child().getValue() mapped
+     * onto the value map. Log messages are still built, as their arguments were evaluated eagerly.
+     */
+    private static SensorData legacyDecode(String key, Map<String, Object> snapshot) {
+        SensorData sensorData = new SensorData();
+        sensorData.setSessionId("s");
+        sensorData.setAthleteId("a");
+        sensorData.setHeartRate(0);
+        sensorData.setTemperature(0.0);
+        sensorData.setSpeed(0.0);
+        sensorData.setTimestamp(System.currentTimeMillis());
+        sensorData.setStatus("active");
+        sensorData.setAnomalyDetected(false);
+
+        String log;
+        try {
+            sensorData.setTimestamp(Long.parseLong(key));
+            log = "Using timestamp from key: " + key;
+        } catch (NumberFormatException e) {
+            if (snapshot.containsKey("timestamp")) {
+                Object timeValue = snapshot.get("timestamp");
+                if (timeValue instanceof Number) {
+                    sensorData.setTimestamp(((Number) timeValue).longValue());
+                    log = "Using timestamp from value: " + sensorData.getTimestamp();
+                }
+            }
+        }
+
+        if (snapshot.containsKey("heart_rate")) {
+            Object heartRateValue = snapshot.get("heart_rate");
+            if (heartRateValue instanceof Number) {
+                sensorData.setHeartRate(((Number) heartRateValue).intValue());
+                log = "Found heart rate: " + sensorData.getHeartRate();
+            }
+        } else if (snapshot.containsKey("heartRate")) {
+            Object heartRateValue = snapshot.get("heartRate");
+            if (heartRateValue instanceof Number) {
+                sensorData.setHeartRate(((Number) heartRateValue).intValue());
+                log = "Found heart rate (alternative field): " + sensorData.getHeartRate();
+            }
+        }
+        if (snapshot.containsKey("temperature")) {
+            Object tempValue = snapshot.get("temperature");
+            if (tempValue instanceof Number) {
+                sensorData.setTemperature(((Number) tempValue).doubleValue());
+                log = "Found temperature: " + sensorData.getTemperature();
+            }
+        }
+        if (snapshot.containsKey("speed")) {
+            Object speedValue = snapshot.get("speed");
+            if (speedValue instanceof Number) {
+                sensorData.setSpeed(((Number) speedValue).doubleValue());
+                log = "Found speed: " + sensorData.getSpeed();
+            }
+        }
+        if (snapshot.containsKey("status")) {
+            Object statusValue = snapshot.get("status");
+            if (statusValue != null) {
+                sensorData.setStatus(statusValue.toString());
+            }
+        }
+        if (snapshot.containsKey("anomaly_detected")) {
+            Object anomalyValue = snapshot.get("anomaly_detected");
+            if (anomalyValue instanceof Boolean) {
+                sensorData.setAnomalyDetected((Boolean) anomalyValue);
+            }
+        } else if (snapshot.containsKey("anomalyDetected")) {
+            Object anomalyValue = snapshot.get("anomalyDetected");
+            if (anomalyValue instanceof Boolean) {
+                sensorData.setAnomalyDetected((Boolean) anomalyValue);
+            }
+        }
+
+        log = "Map keys: " + snapshot.keySet();
+        for (String alias : new String[]{"heart_rate", "heartRate", "heart-rate", "heartrate"}) {
+            if (snapshot.containsKey(alias) && snapshot.get(alias) instanceof Number) {
+                sensorData.setHeartRate(((Number) snapshot.get(alias)).intValue());
+                log = "Found heart rate from map with key '" + alias + "': " + sensorData.getHeartRate();
+                break;
+            }
+        }
+        for (String alias : new String[]{"temperature", "temp", "bodyTemp", "body_temp"}) {
+            if (snapshot.containsKey(alias) && snapshot.get(alias) instanceof Number) {
+                sensorData.setTemperature(((Number) snapshot.get(alias)).doubleValue());
+                log = "Found temperature from map with key '" + alias + "': " + sensorData.getTemperature();
+                break;
+            }
+        }
+        for (String alias : new String[]{"speed", "velocity"}) {
+            if (snapshot.containsKey(alias) && snapshot.get(alias) instanceof Number) {
+                sensorData.setSpeed(((Number) snapshot.get(alias)).doubleValue());
+                log = "Found speed from map with key '" + alias + "': " + sensorData.getSpeed();
+                break;
+            }
+        }
+
+        return sensorData;
+    }
+}
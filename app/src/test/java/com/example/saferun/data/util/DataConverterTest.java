@@ -0,0 +1,112 @@
+package com.example.saferun.data.util;
+
+import com.example.saferun.data.model.SensorData;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DataConverterTest {
+
+    @Test
+    public void decodesCanonicalFieldNames() {
+        Map<String, Object> value = new HashMap<>();
+        value.put("heart_rate", 152L);
+        value.put("temperature", 37.4);
+        value.put("speed", 11.5);
+        value.put("status", "running");
+        value.put("anomaly_detected", true);
+
+        SensorData data = DataConverter.decodeSensorData("1700000000000", value, "session", "athlete");
+
+        assertEquals(1700000000000L, data.getTimestamp());
+        assertEquals(152, data.getHeartRate());
+        assertEquals(37.4, data.getTemperature(), 1e-9);
+        assertEquals(11.5, data.getSpeed(), 1e-9);
+        assertEquals("running", data.getStatus());
+        assertTrue(data.isAnomalyDetected());
+        assertEquals("session", data.getSessionId());
+        assertEquals("athlete", data.getAthleteId());
+    }
+
+    @Test
+    public void decodesAliases() {
+        Map<String, Object> value = new HashMap<>();
+        value.put("heart-rate", 90L);
+        value.put("body_temp", 36.6);
+        value.put("velocity", 3L);
+        value.put("anomalyDetected", true);
+        value.put("timestamp", 42L);
+
+        SensorData data = DataConverter.decodeSensorData("-Nx1pushId", value, "s", "a");
+
+        assertEquals(42L, data.getTimestamp());
+        assertEquals(90, data.getHeartRate());
+        assertEquals(36.6, data.getTemperature(), 1e-9);
+        assertEquals(3.0, data.getSpeed(), 1e-9);
+        assertTrue(data.isAnomalyDetected());
+    }
+
+    @Test
+    public void preferredAliasWinsRegardlessOfOrder() {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("heartrate", 70L);
+        value.put("heart_rate", 150L);
+        value.put("temp", 35.0);
+        value.put("temperature", 38.0);
+
+        SensorData data = DataConverter.decodeSensorData("1", value, "s", "a");
+
+        assertEquals(150, data.getHeartRate());
+        assertEquals(38.0, data.getTemperature(), 1e-9);
+    }
+
+    @Test
+    public void numericKeyTakesPrecedenceOverTimestampField() {
+        Map<String, Object> value = new HashMap<>();
+        value.put("timestamp", 5L);
+
+        assertEquals(1000L, DataConverter.decodeSensorData("1000", value, "s", "a").getTimestamp());
+    }
+
+    @Test
+    public void mistypedAndMissingFieldsFallBackToDefaults() {
+        Map<String, Object> value = new HashMap<>();
+        value.put("heart_rate", "fast");
+        value.put("heartRate", 120L);
+        value.put("speed", null);
+        value.put("anomaly_detected", "yes");
+
+        long before = System.currentTimeMillis();
+        SensorData data = DataConverter.decodeSensorData("pushId", value, "s", "a");
+
+        assertEquals(120, data.getHeartRate());
+        assertEquals(0.0, data.getTemperature(), 0.0);
+        assertEquals(0.0, data.getSpeed(), 0.0);
+        assertEquals("active", data.getStatus());
+        assertFalse(data.isAnomalyDetected());
+        assertTrue(data.getTimestamp() >= before);
+    }
+
+    @Test
+    public void nonMapValueGivesDefaults() {
+        SensorData data = DataConverter.decodeSensorData("7", 12L, "s", "a");
+
+        assertEquals(7L, data.getTimestamp());
+        assertEquals(0, data.getHeartRate());
+        assertEquals("active", data.getStatus());
+    }
+
+    @Test
+    public void parsesOnlyPlainIntegerKeys() {
+        assertEquals(123L, DataConverter.parseTimestampKey("123"));
+        assertEquals(-1L, DataConverter.parseTimestampKey("-12"));
+        assertEquals(-1L, DataConverter.parseTimestampKey("12a"));
+        assertEquals(-1L, DataConverter.parseTimestampKey(""));
+        assertEquals(-1L, DataConverter.parseTimestampKey(null));
+    }
+}
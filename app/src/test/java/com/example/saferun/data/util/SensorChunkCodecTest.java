@@ -0,0 +1,99 @@
+package com.example.saferun.data.util;
+
+import com.example.saferun.data.model.SensorSeries;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SensorChunkCodecTest {
+
+    @Test
+    public void roundTripsOneMinuteOfSamples() {
+        SensorSeries series = new SensorSeries();
+        long start = 1700000040000L;
+        for (int i = 0; i < 60; i++) {
+            series.add(start + i * 1000L, 120 + (i % 7) - 3, 36.5 + i * 0.01, 10.25 - i * 0.05, i % 13 == 0);
+        }
+
+        byte[] encoded = SensorChunkCodec.encode(series, 0, series.size());
+        SensorSeries decoded = new SensorSeries();
+        assertEquals(60, SensorChunkCodec.decode(encoded, decoded));
+
+        assertEquals(series.size(), decoded.size());
+        for (int i = 0; i < series.size(); i++) {
+            assertEquals(series.getTimestamp(i), decoded.getTimestamp(i));
+            assertEquals(series.getHeartRate(i), decoded.getHeartRate(i));
+            assertEquals(series.getTemperature(i), decoded.getTemperature(i), 0.005);
+            assertEquals(series.getSpeed(i), decoded.getSpeed(i), 0.005);
+            assertEquals(series.isAnomaly(i), decoded.isAnomaly(i));
+        }
+
+        // A steady one-sample-per-second minute stays far below the size of 60 documents
+        assertTrue("Chunk is " + encoded.length + " bytes", encoded.length < 60 * 8);
+    }
+
+    @Test
+    public void decodesRangeAndAppendsAfterExistingSamples() {
+        SensorSeries series = new SensorSeries();
+        for (int i = 0; i < 10; i++) {
+            series.add(1000L * i, 100 + i, 37.0, 5.0, i == 6);
+        }
+
+        SensorSeries decoded = new SensorSeries();
+        decoded.add(1L, 1, 1.0, 1.0, true);
+        SensorChunkCodec.decode(SensorChunkCodec.encode(series, 4, 8), decoded);
+
+        assertEquals(5, decoded.size());
+        assertEquals(4000L, decoded.getTimestamp(1));
+        assertEquals(107, decoded.getHeartRate(4));
+        assertTrue(decoded.isAnomaly(0));
+        assertFalse(decoded.isAnomaly(1));
+        assertTrue(decoded.isAnomaly(3));
+    }
+
+    @Test
+    public void handlesEmptyRangeAndNegativeDeltas() {
+        SensorSeries series = new SensorSeries();
+        series.add(5L, 0, -1.5, 0.0, false);
+        series.add(5L, 200, 42.0, 30.0, false);
+        series.add(9L, 40, 34.99, 0.01, false);
+
+        SensorSeries decoded = new SensorSeries();
+        assertEquals(0, SensorChunkCodec.decode(SensorChunkCodec.encode(series, 1, 1), decoded));
+        SensorChunkCodec.decode(SensorChunkCodec.encode(series, 0, 3), decoded);
+
+        assertEquals(3, decoded.size());
+        assertEquals(-1.5, decoded.getTemperature(0), 0.005);
+        assertEquals(200, decoded.getHeartRate(1));
+        assertEquals(40, decoded.getHeartRate(2));
+        assertEquals(34.99, decoded.getTemperature(2), 0.005);
+    }
+
+    @Test
+    public void chunkStartAlignsToMinutes() {
+        assertEquals(120000L, SensorChunkCodec.chunkStart(179999L));
+        assertEquals(180000L, SensorChunkCodec.chunkStart(180000L));
+        assertEquals(0L, SensorChunkCodec.chunkStart(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnsortedSamples() {
+        SensorSeries series = new SensorSeries();
+        series.add(10L, 1, 1.0, 1.0, false);
+        series.add(5L, 1, 1.0, 1.0, false);
+        SensorChunkCodec.encode(series, 0, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedData() {
+        SensorSeries series = new SensorSeries();
+        series.add(10L, 1, 1.0, 1.0, false);
+        series.add(20L, 2, 1.0, 1.0, false);
+        byte[] encoded = SensorChunkCodec.encode(series, 0, 2);
+
+        byte[] truncated = new byte[encoded.length - 2];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+        SensorChunkCodec.decode(truncated, new SensorSeries());
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.saferun.ml;
+
+import com.example.saferun.data.model.Metric;
+import com.example.saferun.data.model.VitalsSketch;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AlertBandsTest {
+
+    private static VitalsSketch sketch(int readings, double heartRate, double heartRateSd, double temperature) {
+        Random random = new Random(24);
+        VitalsSketch sketch = new VitalsSketch();
+        for (int i = 0; i < readings; i++) {
+            sketch.add((int) Math.round(heartRate + random.nextGaussian() * heartRateSd),
+                    temperature + random.nextGaussian() * 0.2, 10);
+        }
+        return sketch;
+    }
+
+    @Test
+    public void defaultsKeepTheFixedLimits() {
+        AlertBands bands = AlertBands.DEFAULT;
+
+        assertFalse(bands.isPersonal());
+        assertFalse(bands.isOutside(Metric.HEART_RATE, 40));
+        assertFalse(bands.isOutside(Metric.HEART_RATE, 180));
+        assertTrue(bands.isOutside(Metric.HEART_RATE, 39));
+        assertTrue(bands.isOutside(Metric.HEART_RATE, 181));
+        // Missing readings stay anomalies
+        assertTrue(bands.isOutside(Metric.HEART_RATE, 0));
+        assertTrue(bands.isOutside(Metric.TEMPERATURE, 39.1));
+        assertTrue(bands.isOutside(Metric.TEMPERATURE, 34.9));
+        assertFalse(bands.isOutside(Metric.SPEED, 0));
+    }
+
+    @Test
+    public void shortHistoryKeepsTheDefaults() {
+        assertSame(AlertBands.DEFAULT, AlertBands.from(sketch((int) AlertBands.MIN_READINGS - 1, 150, 10, 37.0)));
+    }
+
+    @Test
+    public void bandsFollowTheAthletesHistory() {
+        AlertBands bands = AlertBands.from(sketch(10000, 110, 8, 36.6));
+
+        assertTrue(bands.isPersonal());
+        // 99.5th percentile is about 110 + 2.6 * 8, plus the margin
+        assertEquals(136, bands.getHigh(Metric.HEART_RATE), 3);
+        assertEquals(36.6 + 2.6 * 0.2 + 0.3, bands.getHigh(Metric.TEMPERATURE), 0.1);
+        assertTrue(bands.isOutside(Metric.HEART_RATE, 150));
+        assertFalse(bands.isOutside(Metric.HEART_RATE, 120));
+        assertTrue(bands.isOutside(Metric.HEART_RATE, 0));
+    }
+
+    @Test
+    public void bandsStayWithinAbsoluteLimits() {
+        AlertBands bands = AlertBands.from(sketch(10000, 185, 15, 37.0));
+
+        assertEquals(200, bands.getHigh(Metric.HEART_RATE), 0);
+        assertTrue(bands.isOutside(Metric.HEART_RATE, 205));
+        assertFalse(bands.isOutside(Metric.HEART_RATE, 195));
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.saferun.ml;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AnomalyPredictionClientTest {
+
+    @Test
+    public void batchEndpointFollowsTheConfiguredUrl() {
+        assertEquals("http://localhost:5000/api/predict_batch",
+                AnomalyPredictionClient.batchUrl(AnomalyPredictionClient.DEFAULT_API_URL));
+        assertEquals("https://ml.example.com/v2/predict_batch",
+                AnomalyPredictionClient.batchUrl("https://ml.example.com/v2/predict/"));
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.saferun.ml;
+
+import com.example.saferun.data.model.SensorData;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AthleteWindowManagerTest {
+
+    private static final long START = 1700000000000L;
+
+    private static SensorData sample(long timestamp, int heartRate) {
+        return new SensorData(timestamp, heartRate, 37.0, 10.0, "active");
+    }
+
+    /**
+     * Heart rates of a window, oldest first
+     */
+    private static int[] heartRates(AthleteWindowManager manager, String athleteId, SensorData sample) {
+        return manager.offer(athleteId, sample, (temperature, speed, heartRate, offset, count) -> {
+            int[] copy = new int[count];
+            System.arraycopy(heartRate, offset, copy, 0, count);
+            return copy;
+        });
+    }
+
+    @Test
+    public void handsOutWindowEveryStride() {
+        AthleteWindowManager manager = new AthleteWindowManager(4, 2);
+        List<int[]> windows = new ArrayList<>();
+
+        for (int i = 0; i < 9; i++) {
+            int[] window = heartRates(manager, "a", sample(START + i * 1000L, 100 + i));
+            if (window != null) {
+                windows.add(window);
+            }
+        }
+
+        assertEquals(4, windows.size());
+        assertArrayEquals(new int[]{100, 101}, windows.get(0));
+        assertArrayEquals(new int[]{100, 101, 102, 103}, windows.get(1));
+        assertArrayEquals(new int[]{102, 103, 104, 105}, windows.get(2));
+        assertArrayEquals(new int[]{104, 105, 106, 107}, windows.get(3));
+    }
+
+    @Test
+    public void windowStaysInOrderAcrossWraps() {
+        AthleteWindowManager manager = new AthleteWindowManager(5, 1);
+        int[] window = null;
+
+        for (int i = 0; i < 23; i++) {
+            window = heartRates(manager, "a", sample(START + i * 1000L, i));
+        }
+
+        assertArrayEquals(new int[]{18, 19, 20, 21, 22}, window);
+    }
+
+    @Test
+    public void keepsAthletesApart() {
+        AthleteWindowManager manager = new AthleteWindowManager(3, 1);
+
+        heartRates(manager, "a", sample(START, 100));
+        heartRates(manager, "b", sample(START, 150));
+        int[] a = heartRates(manager, "a", sample(START + 1000, 101));
+        int[] b = heartRates(manager, "b", sample(START + 1000, 151));
+
+        assertArrayEquals(new int[]{100, 101}, a);
+        assertArrayEquals(new int[]{150, 151}, b);
+    }
+
+    @Test
+    public void ignoresReplayedSamples() {
+        AthleteWindowManager manager = new AthleteWindowManager(3, 1);
+
+        heartRates(manager, "a", sample(START, 100));
+        heartRates(manager, "a", sample(START + 1000, 101));
+
+        assertNull(heartRates(manager, "a", sample(START + 1000, 101)));
+        assertNull(heartRates(manager, "a", sample(START, 100)));
+        assertEquals(2, manager.size("a"));
+    }
+
+    @Test
+    public void longGapStartsNewWindow() {
+        AthleteWindowManager manager = new AthleteWindowManager(5, 2);
+
+        heartRates(manager, "a", sample(START, 100));
+        heartRates(manager, "a", sample(START + 1000, 101));
+        heartRates(manager, "a", sample(START + 2000, 102));
+
+        // The next session starts an hour later; its first window holds only its own samples
+        assertNull(heartRates(manager, "a", sample(START + 3_600_000L, 60)));
+        assertArrayEquals(new int[]{60, 61}, heartRates(manager, "a", sample(START + 3_601_000L, 61)));
+    }
+
+    @Test
+    public void removeForgetsAthlete() {
+        AthleteWindowManager manager = new AthleteWindowManager(5, 1);
+        heartRates(manager, "a", sample(START, 100));
+
+        manager.remove("a");
+
+        assertEquals(0, manager.size("a"));
+        assertArrayEquals(new int[]{90}, heartRates(manager, "a", sample(START - 5000, 90)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroStride() {
+        new AthleteWindowManager(5, 0);
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.saferun.ml;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+
+    private long now;
+
+    /**
+     * Window of 10 calls, opens at 50% failures after 4 calls, calls over 1 s are slow,
+     * open for 1 s doubling up to 4 s
+     */
+    private CircuitBreaker breaker() {
+        return new CircuitBreaker(10, 4, 0.5, 1000, 1000, 4000, () -> now);
+    }
+
+    private static void fail(CircuitBreaker breaker, int times) {
+        for (int i = 0; i < times; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure(10);
+        }
+    }
+
+    @Test
+    public void staysClosedBelowMinimumCalls() {
+        CircuitBreaker breaker = breaker();
+
+        fail(breaker, 3);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void opensAtFailureRateAndFailsFast() {
+        CircuitBreaker breaker = breaker();
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onSuccess(20);
+        }
+        fail(breaker, 3);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        fail(breaker, 1);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(1000, breaker.getRemainingOpenMs());
+    }
+
+    @Test
+    public void slowCallsCountAsFailures() {
+        CircuitBreaker breaker = breaker();
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onSuccess(1500);
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void probeSuccessCloses() {
+        CircuitBreaker breaker = breaker();
+        fail(breaker, 4);
+
+        now = 1000;
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        // Only one probe at a time
+        assertFalse(breaker.tryAcquire());
+        breaker.onSuccess(30);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0.0, breaker.getFailureRate(), 0);
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void probeFailureReopensWithBackoff() {
+        CircuitBreaker breaker = breaker();
+        fail(breaker, 4);
+
+        now = 1000;
+        fail(breaker, 1);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2000, breaker.getRemainingOpenMs());
+
+        now = 3000;
+        fail(breaker, 1);
+        assertEquals(4000, breaker.getRemainingOpenMs());
+
+        now = 7000;
+        fail(breaker, 1);
+        // Capped at the maximum
+        assertEquals(4000, breaker.getRemainingOpenMs());
+    }
+
+    @Test
+    public void lostProbeIsRetriedAfterOpenDuration() {
+        CircuitBreaker breaker = breaker();
+        fail(breaker, 4);
+
+        now = 1000;
+        assertTrue(breaker.tryAcquire());
+        now = 1999;
+        assertFalse(breaker.tryAcquire());
+        now = 2000;
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void windowRollsOverOldCalls() {
+        CircuitBreaker breaker = breaker();
+
+        // 4 failures among 10 calls stay under the threshold...
+        fail(breaker, 3);
+        for (int i = 0; i < 6; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onSuccess(100);
+        }
+        fail(breaker, 1);
+        assertEquals(0.4, breaker.getFailureRate(), 1e-9);
+
+        // ...and the oldest failures drop out as new calls come in
+        for (int i = 0; i < 3; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onSuccess(40);
+        }
+        assertEquals(0.1, breaker.getFailureRate(), 1e-9);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals((6 * 100 + 10 + 3 * 40) / 10, breaker.getAverageLatencyMs());
+    }
+
+    @Test
+    public void resetCloses() {
+        CircuitBreaker breaker = breaker();
+        fail(breaker, 4);
+
+        breaker.reset();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+}
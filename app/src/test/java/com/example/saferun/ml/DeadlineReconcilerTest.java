@@ -0,0 +1,109 @@
+package com.example.saferun.ml;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DeadlineReconcilerTest {
+
+    /**
+     * Records calls as "answer:<verdict>:<source>" and "reconcile:<verdict>:<source>"
+     */
+    private static class Recorder implements AnomalyDetectionModel.ReconcilingCallback {
+        final List<String> calls = new ArrayList<>();
+        final CountDownLatch answered = new CountDownLatch(1);
+
+        @Override
+        public synchronized void onDetectionComplete(boolean isAnomaly, String source) {
+            calls.add("answer:" + isAnomaly + ":" + source);
+            answered.countDown();
+        }
+
+        @Override
+        public synchronized void onReconciled(boolean isAnomaly, String source) {
+            calls.add("reconcile:" + isAnomaly + ":" + source);
+        }
+    }
+
+    @Test
+    public void resultInTimeIsTheOnlyAnswer() {
+        Recorder recorder = new Recorder();
+        DeadlineReconciler reconciler = new DeadlineReconciler(() -> true, recorder);
+
+        reconciler.onDetectionComplete(false, "ML API");
+        // The deadline firing afterwards changes nothing
+        reconciler.run();
+
+        assertEquals(1, recorder.calls.size());
+        assertEquals("answer:false:ML API", recorder.calls.get(0));
+    }
+
+    @Test
+    public void lateNormalResultKeepsTheLocalAlert() {
+        Recorder recorder = new Recorder();
+        DeadlineReconciler reconciler = new DeadlineReconciler(() -> true, recorder);
+
+        reconciler.run();
+        reconciler.onDetectionComplete(false, "ML API");
+
+        assertEquals(1, recorder.calls.size());
+        assertEquals("answer:true:" + DeadlineReconciler.SOURCE_DEADLINE, recorder.calls.get(0));
+    }
+
+    @Test
+    public void lateDisagreeingResultRaisesTheAlert() {
+        Recorder recorder = new Recorder();
+        DeadlineReconciler reconciler = new DeadlineReconciler(() -> false, recorder);
+
+        reconciler.run();
+        reconciler.onDetectionComplete(true, "ML API");
+
+        assertEquals("reconcile:true:ML API", recorder.calls.get(1));
+    }
+
+    @Test
+    public void lateAgreeingResultIsDropped() {
+        Recorder recorder = new Recorder();
+        DeadlineReconciler reconciler = new DeadlineReconciler(() -> false, recorder);
+
+        reconciler.run();
+        reconciler.onDetectionComplete(false, "Local rules (API fallback)");
+
+        assertEquals(1, recorder.calls.size());
+    }
+
+    @Test
+    public void deadlineAnswersWhenResultNeverArrives() throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        Recorder recorder = new Recorder();
+        DeadlineReconciler reconciler = new DeadlineReconciler(() -> true, recorder);
+
+        reconciler.start(scheduler, 20);
+
+        assertTrue(recorder.answered.await(5, TimeUnit.SECONDS));
+        scheduler.shutdown();
+        assertEquals("answer:true:" + DeadlineReconciler.SOURCE_DEADLINE, recorder.calls.get(0));
+    }
+
+    @Test
+    public void resultInTimeCancelsTheDeadline() throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        Recorder recorder = new Recorder();
+        DeadlineReconciler reconciler = new DeadlineReconciler(() -> true, recorder);
+
+        reconciler.start(scheduler, 50);
+        reconciler.onDetectionComplete(false, "On-device model");
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(1, recorder.calls.size());
+        assertEquals("answer:false:On-device model", recorder.calls.get(0));
+    }
+}
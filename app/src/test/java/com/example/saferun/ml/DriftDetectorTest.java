@@ -0,0 +1,153 @@
+package com.example.saferun.ml;
+
+import com.example.saferun.data.model.Metric;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DriftDetectorTest {
+
+    private static final long START = 1700000000000L;
+
+    private final Random random = new Random(23);
+
+    private int heartRate(double mean) {
+        return (int) Math.round(mean + random.nextGaussian() * 3);
+    }
+
+    private double temperature(double mean) {
+        return mean + random.nextGaussian() * 0.05;
+    }
+
+    private double speed(double mean) {
+        return Math.max(0, mean + random.nextGaussian() * 0.5);
+    }
+
+    /**
+     * Feed an hour of steady readings, one per second
+     */
+    private long steady(DriftDetector detector, String athleteId, long from) {
+        for (int i = 0; i < 3600; i++) {
+            assertEquals(0, detector.update(athleteId, from + i * 1000L, heartRate(140), temperature(37.0),
+                    speed(10)));
+        }
+        return from + 3600 * 1000L;
+    }
+
+    @Test
+    public void steadyReadingsRaiseNoAlarm() {
+        DriftDetector detector = new DriftDetector();
+
+        steady(detector, "a", START);
+    }
+
+    @Test
+    public void catchesCreepingTemperatureBelowThreshold() {
+        DriftDetector detector = new DriftDetector();
+        long time = steady(detector, "a", START);
+
+        // +0.5 degrees over ten minutes, never near the 39 degree limit
+        int flags = 0;
+        int alarmAt = -1;
+        for (int i = 0; i < 600; i++) {
+            flags = detector.update("a", time + i * 1000L, heartRate(140), temperature(37.0 + 0.5 * i / 600),
+                    speed(10));
+            if (alarmAt < 0 && (flags & DriftDetector.up(Metric.TEMPERATURE)) != 0) {
+                alarmAt = i;
+            }
+        }
+
+        assertTrue(alarmAt > 0);
+        assertTrue("alarm after " + alarmAt + " s", alarmAt < 400);
+        assertEquals(DriftDetector.up(Metric.TEMPERATURE), flags);
+    }
+
+    @Test
+    public void catchesSlowingDown() {
+        DriftDetector detector = new DriftDetector();
+        long time = steady(detector, "a", START);
+
+        int flags = 0;
+        for (int i = 0; i < 300; i++) {
+            flags = detector.update("a", time + i * 1000L, heartRate(140), temperature(37.0),
+                    speed(10 - 4.0 * i / 300));
+        }
+
+        assertEquals(DriftDetector.down(Metric.SPEED), flags);
+    }
+
+    @Test
+    public void alarmClearsOnceBaselineCatchesUp() {
+        DriftDetector detector = new DriftDetector();
+        long time = steady(detector, "a", START);
+
+        int flags = detector.update("a", time, 160, temperature(37.0), speed(10));
+        for (int i = 1; i < 60; i++) {
+            flags = detector.update("a", time + i * 1000L, heartRate(160), temperature(37.0), speed(10));
+        }
+        assertEquals(DriftDetector.up(Metric.HEART_RATE), flags);
+
+        for (int i = 60; i < 3600; i++) {
+            flags = detector.update("a", time + i * 1000L, heartRate(160), temperature(37.0), speed(10));
+        }
+        assertEquals(0, flags);
+    }
+
+    @Test
+    public void replayedSampleChangesNothing() {
+        DriftDetector detector = new DriftDetector();
+        long time = steady(detector, "a", START);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, detector.update("a", time - 1000, 200, 40.0, 0));
+        }
+    }
+
+    @Test
+    public void gapStartsOver() {
+        DriftDetector detector = new DriftDetector();
+        long time = steady(detector, "a", START);
+
+        // A new session at a different level is learnt, not flagged
+        steadyAt(detector, "a", time + DriftDetector.MAX_GAP_MS + 1000, 170);
+    }
+
+    private void steadyAt(DriftDetector detector, String athleteId, long from, double heartRate) {
+        for (int i = 0; i < 600; i++) {
+            assertEquals(0, detector.update(athleteId, from + i * 1000L, heartRate(heartRate),
+                    temperature(37.0), speed(10)));
+        }
+    }
+
+    @Test
+    public void keepsAthletesApart() {
+        DriftDetector detector = new DriftDetector();
+        steady(detector, "a", START);
+        long time = steady(detector, "b", START);
+
+        for (int i = 0; i < 300; i++) {
+            detector.update("a", time + i * 1000L, heartRate(140), temperature(37.0 + 0.6 * i / 300), speed(10));
+            detector.update("b", time + i * 1000L, heartRate(140), temperature(37.0), speed(10));
+        }
+
+        assertEquals(DriftDetector.up(Metric.TEMPERATURE), detector.getFlags("a"));
+        assertEquals(0, detector.getFlags("b"));
+    }
+
+    @Test
+    public void onlyRisingTemperatureOrUnexplainedHeartRateAlarm() {
+        int heartRateUp = DriftDetector.up(Metric.HEART_RATE);
+        int speedUp = DriftDetector.up(Metric.SPEED);
+
+        assertTrue(DriftDetector.isAlarming(DriftDetector.up(Metric.TEMPERATURE)));
+        assertTrue(DriftDetector.isAlarming(heartRateUp));
+        assertFalse(DriftDetector.isAlarming(heartRateUp | speedUp));
+        assertFalse(DriftDetector.isAlarming(speedUp));
+        assertFalse(DriftDetector.isAlarming(DriftDetector.down(Metric.SPEED)));
+        assertFalse(DriftDetector.isAlarming(DriftDetector.down(Metric.HEART_RATE)));
+        assertFalse(DriftDetector.isAlarming(0));
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.saferun.ml;
+
+import com.example.saferun.data.model.Metric;
+import com.example.saferun.data.model.SensorData;
+import com.example.saferun.data.model.VitalsSketch;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LocalRuleEngineTest {
+
+    private static SensorData sample(long timestamp, int heartRate, double temperature, double speed, String status) {
+        SensorData data = new SensorData();
+        data.setTimestamp(timestamp);
+        data.setHeartRate(heartRate);
+        data.setTemperature(temperature);
+        data.setSpeed(speed);
+        data.setStatus(status);
+        return data;
+    }
+
+    private static boolean fires(LocalRuleEngine engine, SensorData sample) {
+        return engine.evaluate("a", sample, AlertBands.DEFAULT, 0) != null;
+    }
+
+    @Test
+    public void defaultRulesMatchTheFixedLimits() {
+        LocalRuleEngine engine = new LocalRuleEngine();
+
+        assertFalse(fires(engine, sample(0, 140, 37.0, 10, "active")));
+        assertTrue(fires(engine, sample(0, 181, 37.0, 10, "active")));
+        assertTrue(fires(engine, sample(0, 39, 37.0, 10, "active")));
+        assertTrue(fires(engine, sample(0, 0, 37.0, 10, "active")));
+        assertTrue(fires(engine, sample(0, 140, 39.1, 10, "active")));
+        assertTrue(fires(engine, sample(0, 140, 34.9, 10, "active")));
+        assertFalse(fires(engine, sample(0, 180, 39.0, 10, "active")));
+        assertTrue(fires(engine, sample(0, 140, 37.0, 0, "active")));
+        assertFalse(fires(engine, sample(0, 140, 37.0, 0, "paused")));
+        assertTrue(engine.evaluate("a", sample(0, 140, 37.0, 10, "active"), AlertBands.DEFAULT,
+                DriftDetector.up(Metric.TEMPERATURE)) != null);
+    }
+
+    @Test
+    public void bandThresholdsFollowTheAthlete() {
+        VitalsSketch sketch = new VitalsSketch();
+        for (int i = 0; i < 1000; i++) {
+            sketch.add(100 + i % 20, 36.5, 10);
+        }
+        AlertBands bands = AlertBands.from(sketch);
+        LocalRuleEngine engine = new LocalRuleEngine();
+
+        LocalRule rule = engine.evaluate("a", sample(0, 150, 36.5, 10, "active"), bands, 0);
+        assertNotNull(rule);
+        assertEquals("heart_rate > high", rule.toString());
+        assertNull(engine.evaluate("a", sample(0, 150, 36.5, 10, "active"), AlertBands.DEFAULT, 0));
+    }
+
+    @Test
+    public void ruleFiresOnceItsConditionHasHeldLongEnough() {
+        LocalRuleEngine engine = new LocalRuleEngine();
+        engine.setRules("speed == 0 for 30s when active");
+
+        assertFalse(fires(engine, sample(0, 140, 37.0, 0, "active")));
+        assertFalse(fires(engine, sample(29_000, 140, 37.0, 0, "active")));
+        assertTrue(fires(engine, sample(30_000, 140, 37.0, 0, "active")));
+
+        // Moving again starts the duration over
+        assertFalse(fires(engine, sample(31_000, 140, 37.0, 5, "active")));
+        assertFalse(fires(engine, sample(32_000, 140, 37.0, 0, "active")));
+
+        // Each athlete has their own duration
+        assertNull(engine.evaluate("b", sample(40_000, 140, 37.0, 0, "active"), AlertBands.DEFAULT, 0));
+    }
+
+    @Test
+    public void parsedRulesPrintAsWritten() {
+        String rules = "heart_rate >= 190 for 10s\n"
+                + "temperature < low when active\n"
+                + "speed != 2.5\n"
+                + "drift for 1.5s\n";
+        List<LocalRule> parsed = LocalRule.parseAll("# comment\n\n" + rules);
+
+        StringBuilder printed = new StringBuilder();
+        for (LocalRule rule : parsed) {
+            printed.append(rule).append('\n');
+        }
+        assertEquals(rules, printed.toString());
+        assertEquals(6, LocalRule.parseAll(LocalRule.DEFAULT_RULES).size());
+    }
+
+    @Test
+    public void invalidRulesNameTheLineAndKeepTheCurrentRules() {
+        LocalRuleEngine engine = new LocalRuleEngine();
+        String[] invalid = {"pulse > 100", "heart_rate => 100", "heart_rate > fast", "heart_rate >",
+                "speed == 0 for 30", "speed == 0 when", "drift always", "heart_rate > 100 for -1s"};
+
+        for (String rules : invalid) {
+            try {
+                engine.setRules("heart_rate > 180\n" + rules);
+                fail("accepted '" + rules + "'");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Line 2: "));
+            }
+        }
+        assertEquals(6, engine.getRules().size());
+    }
+
+    @Test
+    public void firstMatchingRuleIsReported() {
+        LocalRuleEngine engine = new LocalRuleEngine();
+        engine.setRules("temperature > 38\nheart_rate > 100");
+
+        LocalRule rule = engine.evaluate("a", sample(0, 150, 38.5, 10, "active"), AlertBands.DEFAULT, 0);
+        assertEquals("temperature > 38", rule.toString());
+        assertEquals(Metric.HEART_RATE, LocalRule.parse("heart_rate > 1").getMetric());
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.saferun.ml;
+
+import com.example.saferun.data.model.Metric;
+import com.example.saferun.data.model.SensorSeries;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PerformanceAnalyzerTest {
+
+    @Test
+    public void tracksValidReadingsOnly() {
+        PerformanceAnalyzer analyzer = new PerformanceAnalyzer();
+        analyzer.add(120, 36.5, 10.0, false);
+        analyzer.add(0, 0, -1, false);
+        analyzer.add(140, 37.5, 0.0, true);
+        analyzer.add(190, 39.5, 12.0, true);
+
+        assertEquals(4, analyzer.getSampleCount());
+        assertEquals(2, analyzer.getAnomalyCount());
+        assertEquals(3, analyzer.getCount(Metric.HEART_RATE));
+        assertEquals(150.0, analyzer.getMean(Metric.HEART_RATE), 1e-9);
+        assertEquals(1300.0, analyzer.getVariance(Metric.HEART_RATE), 1e-9);
+        assertEquals(120.0, analyzer.getMin(Metric.HEART_RATE), 0);
+        assertEquals(190.0, analyzer.getMax(Metric.HEART_RATE), 0);
+        assertEquals(1, analyzer.getOutOfRangeCount(Metric.HEART_RATE));
+
+        assertEquals(3, analyzer.getCount(Metric.SPEED));
+        assertEquals(0.0, analyzer.getMin(Metric.SPEED), 0);
+        assertEquals(0, analyzer.getOutOfRangeCount(Metric.SPEED));
+
+        assertEquals(3, analyzer.getCount(Metric.TEMPERATURE));
+        assertEquals(1, analyzer.getOutOfRangeCount(Metric.TEMPERATURE));
+    }
+
+    @Test
+    public void movingSpeedOnlyIgnoresStops() {
+        PerformanceAnalyzer analyzer = PerformanceAnalyzer.movingSpeedOnly();
+        analyzer.add(120, 36.5, 10.0, false);
+        analyzer.add(120, 36.5, 0.0, false);
+        analyzer.add(120, 36.5, 14.0, false);
+
+        assertEquals(2, analyzer.getCount(Metric.SPEED));
+        assertEquals(12.0, analyzer.getMean(Metric.SPEED), 1e-9);
+        assertEquals(10.0, analyzer.getMin(Metric.SPEED), 0);
+    }
+
+    @Test
+    public void emptyAccumulatorReportsZeros() {
+        PerformanceAnalyzer analyzer = new PerformanceAnalyzer();
+
+        assertEquals(0, analyzer.getCount(Metric.HEART_RATE));
+        assertEquals(0, analyzer.getMean(Metric.HEART_RATE), 0);
+        assertEquals(0, analyzer.getVariance(Metric.HEART_RATE), 0);
+        assertEquals(0, analyzer.getMax(Metric.HEART_RATE), 0);
+    }
+
+    @Test
+    public void mergedPartsMatchOnePass() {
+        SensorSeries series = new SensorSeries();
+        for (int i = 0; i < 10_000; i++) {
+            int heartRate = i % 97 == 0 ? 0 : 100 + (i * 37) % 90;
+            series.add(1700000000000L + i * 1000L, heartRate, 36 + (i % 40) * 0.1,
+                    (i * 13) % 20 - 1, i % 500 == 0);
+        }
+        PerformanceAnalyzer whole = PerformanceAnalyzer.of(series, false);
+
+        // Split the samples unevenly over three accumulators, one of them left empty
+        PerformanceAnalyzer first = new PerformanceAnalyzer();
+        PerformanceAnalyzer second = new PerformanceAnalyzer();
+        PerformanceAnalyzer empty = new PerformanceAnalyzer();
+        for (int i = 0; i < series.size(); i++) {
+            PerformanceAnalyzer target = i < 3_000 ? first : second;
+            target.add(series.getHeartRate(i), series.getTemperature(i), series.getSpeed(i), series.isAnomaly(i));
+        }
+        PerformanceAnalyzer merged = new PerformanceAnalyzer();
+        merged.merge(empty);
+        merged.merge(second);
+        merged.merge(first);
+
+        assertEquals(whole.getSampleCount(), merged.getSampleCount());
+        assertEquals(whole.getAnomalyCount(), merged.getAnomalyCount());
+        for (int metric : new int[]{Metric.HEART_RATE, Metric.SPEED, Metric.TEMPERATURE}) {
+            assertEquals(whole.getCount(metric), merged.getCount(metric));
+            assertEquals(whole.getMean(metric), merged.getMean(metric), 1e-9);
+            assertEquals(whole.getVariance(metric), merged.getVariance(metric), 1e-6);
+            assertEquals(whole.getMin(metric), merged.getMin(metric), 0);
+            assertEquals(whole.getMax(metric), merged.getMax(metric), 0);
+            assertEquals(whole.getOutOfRangeCount(metric), merged.getOutOfRangeCount(metric));
+        }
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        PerformanceAnalyzer analyzer = new PerformanceAnalyzer();
+        analyzer.add(150, 37, 11, true);
+        analyzer.reset();
+        analyzer.add(100, 36, 9, false);
+
+        assertEquals(1, analyzer.getSampleCount());
+        assertEquals(0, analyzer.getAnomalyCount());
+        assertEquals(100.0, analyzer.getMin(Metric.HEART_RATE), 0);
+        assertEquals(100.0, analyzer.getMax(Metric.HEART_RATE), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMergingDifferentSpeedFilters() {
+        new PerformanceAnalyzer().merge(PerformanceAnalyzer.movingSpeedOnly());
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.saferun.ml;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PredictionBatcherTest {
+
+    /**
+     * Sender that records batches and answers them later
+     */
+    private static class RecordingSender implements PredictionBatcher.BatchSender {
+        final List<List<PredictionBatcher.WindowRequest>> batches = new ArrayList<>();
+        final List<PredictionBatcher.BatchCallback> callbacks = new ArrayList<>();
+        final CountDownLatch sent = new CountDownLatch(1);
+
+        @Override
+        public synchronized void send(List<PredictionBatcher.WindowRequest> batch,
+                                      PredictionBatcher.BatchCallback callback) {
+            batches.add(batch);
+            callbacks.add(callback);
+            sent.countDown();
+        }
+    }
+
+    /**
+     * Callback that records its outcome: true, false, or an error message
+     */
+    private static class Outcome implements AnomalyPredictionClient.PredictionCallback {
+        Object value;
+        int calls;
+
+        @Override
+        public void onSuccess(boolean isAnomaly) {
+            value = isAnomaly;
+            calls++;
+        }
+
+        @Override
+        public void onError(String errorMessage) {
+            value = errorMessage;
+            calls++;
+        }
+    }
+
+    private static void submit(PredictionBatcher batcher, String athleteId, int heartRate, Outcome outcome) {
+        float[] temperature = {36.5f, 36.6f, 36.7f, 36.8f};
+        float[] speed = {10f, 11f, 12f, 13f};
+        int[] heartRates = {0, heartRate, heartRate + 1, 0};
+        batcher.submit(athleteId, temperature, speed, heartRates, 1, 2, outcome);
+    }
+
+    @Test
+    public void coalescesWindowsOfOneTick() throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        RecordingSender sender = new RecordingSender();
+        PredictionBatcher batcher = new PredictionBatcher(50, 64, scheduler, sender);
+
+        for (int i = 0; i < 25; i++) {
+            submit(batcher, "athlete" + i, 100 + i, new Outcome());
+        }
+        assertTrue(sender.sent.await(5, TimeUnit.SECONDS));
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(1, sender.batches.size());
+        List<PredictionBatcher.WindowRequest> batch = sender.batches.get(0);
+        assertEquals(25, batch.size());
+        assertEquals("athlete7", batch.get(7).getAthleteId());
+        assertArrayEquals(new int[]{107, 108}, batch.get(7).getHeartRate());
+        assertEquals(36.6f, batch.get(7).getTemperature()[0], 0f);
+        assertEquals(0, batcher.pendingCount());
+    }
+
+    @Test
+    public void routesResultsToTheirCallers() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        RecordingSender sender = new RecordingSender();
+        PredictionBatcher batcher = new PredictionBatcher(60_000, 64, scheduler, sender);
+        Outcome a = new Outcome();
+        Outcome b = new Outcome();
+        Outcome c = new Outcome();
+
+        submit(batcher, "a", 100, a);
+        submit(batcher, "b", 190, b);
+        submit(batcher, "c", 120, c);
+        batcher.flush();
+        scheduler.shutdownNow();
+
+        sender.callbacks.get(0).onSuccess(new Boolean[]{false, true, null});
+
+        assertEquals(Boolean.FALSE, a.value);
+        assertEquals(Boolean.TRUE, b.value);
+        // No result for c: its caller falls back
+        assertTrue(c.value instanceof String);
+        assertEquals(1, a.calls);
+        assertEquals(1, b.calls);
+        assertEquals(1, c.calls);
+    }
+
+    @Test
+    public void failedBatchFailsEveryCaller() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        RecordingSender sender = new RecordingSender();
+        PredictionBatcher batcher = new PredictionBatcher(60_000, 64, scheduler, sender);
+        Outcome a = new Outcome();
+        Outcome b = new Outcome();
+
+        submit(batcher, "a", 100, a);
+        submit(batcher, "b", 110, b);
+        batcher.flush();
+        scheduler.shutdownNow();
+
+        sender.callbacks.get(0).onError("API returned error code: 500");
+
+        assertEquals("API returned error code: 500", a.value);
+        assertEquals("API returned error code: 500", b.value);
+        assertEquals(1, a.calls);
+        assertEquals(1, b.calls);
+    }
+
+    @Test
+    public void shortResultListFailsTheRest() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        RecordingSender sender = new RecordingSender();
+        PredictionBatcher batcher = new PredictionBatcher(60_000, 64, scheduler, sender);
+        Outcome a = new Outcome();
+        Outcome b = new Outcome();
+
+        submit(batcher, "a", 100, a);
+        submit(batcher, "b", 110, b);
+        batcher.flush();
+        scheduler.shutdownNow();
+
+        sender.callbacks.get(0).onSuccess(new Boolean[]{true});
+
+        assertEquals(Boolean.TRUE, a.value);
+        assertTrue(b.value instanceof String);
+    }
+
+    @Test
+    public void fullBatchIsSentWithoutWaitingForTheTick() throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        RecordingSender sender = new RecordingSender();
+        PredictionBatcher batcher = new PredictionBatcher(60_000, 3, scheduler, sender);
+
+        for (int i = 0; i < 4; i++) {
+            submit(batcher, "athlete" + i, 100, new Outcome());
+        }
+        assertTrue(sender.sent.await(5, TimeUnit.SECONDS));
+        scheduler.shutdownNow();
+
+        assertEquals(3, sender.batches.get(0).size());
+        assertEquals(1, batcher.pendingCount());
+    }
+
+    @Test
+    public void flushWithoutWindowsSendsNothing() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        RecordingSender sender = new RecordingSender();
+        PredictionBatcher batcher = new PredictionBatcher(60_000, 64, scheduler, sender);
+
+        batcher.flush();
+        scheduler.shutdownNow();
+
+        assertTrue(sender.batches.isEmpty());
+    }
+}
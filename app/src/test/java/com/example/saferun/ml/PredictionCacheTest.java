@@ -0,0 +1,150 @@
+package com.example.saferun.ml;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PredictionCacheTest {
+
+    private long now;
+
+    private PredictionCache cache(int maxEntries, long ttlMs) {
+        return new PredictionCache(maxEntries, ttlMs, () -> now);
+    }
+
+    @Test
+    public void similarSamplesShareAKey() {
+        PredictionCache cache = cache(8, 1000);
+
+        long key = cache.key("a", 121, 36.6, 10.2);
+
+        assertEquals(key, cache.key("a", 119, 36.4, 9.8));
+        assertNotEquals(key, cache.key("a", 126, 36.6, 10.2));
+        assertNotEquals(key, cache.key("a", 121, 37.0, 10.2));
+        assertNotEquals(key, cache.key("a", 121, 36.6, 11.0));
+        assertNotEquals(key, cache.key("b", 121, 36.6, 10.2));
+    }
+
+    @Test
+    public void similarWindowsShareAKey() {
+        PredictionCache cache = cache(8, 1000);
+        float[] temperature = {36.6f, 36.7f, 36.9f, 37.0f};
+        float[] speed = {10.2f, 10.4f, 10.1f, 9.9f};
+        int[] heartRate = {121, 124, 128, 131};
+
+        long key = cache.windowKey("a", temperature, speed, heartRate, 0, 3);
+
+        assertEquals(key, cache.windowKey("a", new float[] {36.5f, 36.6f, 36.8f},
+                new float[] {9.8f, 10.3f, 10.0f}, new int[] {119, 123, 129}, 0, 3));
+        assertNotEquals(key, cache.windowKey("a", temperature, speed, heartRate, 1, 3));
+        assertNotEquals(key, cache.windowKey("a", temperature, speed, heartRate, 0, 4));
+        assertNotEquals(key, cache.windowKey("b", temperature, speed, heartRate, 0, 3));
+        // A window of one sample is that sample
+        assertEquals(cache.key("a", 124, 36.7, 10.4), cache.windowKey("a", temperature, speed, heartRate, 1, 1));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        PredictionCache cache = cache(3, 1000);
+
+        cache.put(1, true);
+        cache.put(2, false);
+        cache.put(3, true);
+        // Touch 1, so 2 is the least recently used
+        assertEquals(Boolean.TRUE, cache.get(1));
+        cache.put(4, false);
+
+        assertNull(cache.get(2));
+        assertEquals(Boolean.TRUE, cache.get(1));
+        assertEquals(Boolean.TRUE, cache.get(3));
+        assertEquals(Boolean.FALSE, cache.get(4));
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void expiresEntriesAfterTimeToLive() {
+        PredictionCache cache = cache(4, 1000);
+
+        cache.put(1, true);
+        now = 999;
+        assertEquals(Boolean.TRUE, cache.get(1));
+        now = 1000;
+        assertNull(cache.get(1));
+
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getExpirationCount());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    public void overwritingRefreshesTimeToLive() {
+        PredictionCache cache = cache(4, 1000);
+
+        cache.put(1, true);
+        now = 800;
+        cache.put(1, false);
+        now = 1500;
+
+        assertEquals(Boolean.FALSE, cache.get(1));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void countsHitsAndMisses() {
+        PredictionCache cache = cache(4, 1000);
+
+        cache.get(1);
+        cache.put(1, true);
+        cache.get(1);
+        cache.get(1);
+        cache.get(2);
+
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void matchesReferenceLruUnderRandomOperations() {
+        int maxEntries = 16;
+        PredictionCache cache = cache(maxEntries, Long.MAX_VALUE);
+        Map<Long, Boolean> reference = new LinkedHashMap<Long, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        Random random = new Random(17);
+
+        for (int i = 0; i < 20_000; i++) {
+            // Keys collide in the table often enough to exercise deletion
+            long key = random.nextInt(40) * 0x1000000000L;
+            if (random.nextBoolean()) {
+                boolean value = random.nextBoolean();
+                cache.put(key, value);
+                reference.put(key, value);
+            } else {
+                assertEquals(reference.get(key), cache.get(key));
+            }
+            assertEquals(reference.size(), cache.size());
+        }
+    }
+
+    @Test
+    public void clearEmptiesTheCache() {
+        PredictionCache cache = cache(4, 1000);
+
+        cache.put(1, true);
+        cache.put(2, true);
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get(1));
+        cache.put(3, false);
+        assertEquals(Boolean.FALSE, cache.get(3));
+    }
+}
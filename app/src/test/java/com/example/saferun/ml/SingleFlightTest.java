@@ -0,0 +1,121 @@
+package com.example.saferun.ml;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SingleFlightTest {
+
+    /**
+     * Callback that records its outcome: true, false, or an error message
+     */
+    private static class Outcome implements AnomalyPredictionClient.PredictionCallback {
+        final List<Object> values = new ArrayList<>();
+
+        @Override
+        public void onSuccess(boolean isAnomaly) {
+            values.add(isAnomaly);
+        }
+
+        @Override
+        public void onError(String errorMessage) {
+            values.add(errorMessage);
+        }
+    }
+
+    @Test
+    public void concurrentCallersShareOneCall() {
+        SingleFlight flights = new SingleFlight();
+        Outcome first = new Outcome();
+        Outcome second = new Outcome();
+        Outcome third = new Outcome();
+
+        AnomalyPredictionClient.PredictionCallback leader = flights.join(42, first);
+        assertNotNull(leader);
+        assertNull(flights.join(42, second));
+        assertNull(flights.join(42, third));
+        assertEquals(1, flights.size());
+
+        leader.onSuccess(true);
+
+        assertEquals(1, first.values.size());
+        assertEquals(Boolean.TRUE, first.values.get(0));
+        assertEquals(Boolean.TRUE, second.values.get(0));
+        assertEquals(Boolean.TRUE, third.values.get(0));
+        assertEquals(0, flights.size());
+    }
+
+    @Test
+    public void differentKeysMakeSeparateCalls() {
+        SingleFlight flights = new SingleFlight();
+        Outcome a = new Outcome();
+        Outcome b = new Outcome();
+
+        AnomalyPredictionClient.PredictionCallback leaderA = flights.join(1, a);
+        AnomalyPredictionClient.PredictionCallback leaderB = flights.join(2, b);
+        assertNotNull(leaderA);
+        assertNotNull(leaderB);
+
+        leaderB.onSuccess(false);
+        leaderA.onSuccess(true);
+
+        assertEquals(Boolean.TRUE, a.values.get(0));
+        assertEquals(Boolean.FALSE, b.values.get(0));
+    }
+
+    @Test
+    public void errorsReachEveryCaller() {
+        SingleFlight flights = new SingleFlight();
+        Outcome first = new Outcome();
+        Outcome second = new Outcome();
+
+        AnomalyPredictionClient.PredictionCallback leader = flights.join(7, first);
+        flights.join(7, second);
+        leader.onError("timeout");
+
+        assertEquals("timeout", first.values.get(0));
+        assertEquals("timeout", second.values.get(0));
+    }
+
+    @Test
+    public void keyIsFreeAfterCompletion() {
+        SingleFlight flights = new SingleFlight();
+        Outcome first = new Outcome();
+        Outcome later = new Outcome();
+
+        flights.join(7, first).onSuccess(false);
+        AnomalyPredictionClient.PredictionCallback leader = flights.join(7, later);
+
+        assertNotNull(leader);
+        assertTrue(later.values.isEmpty());
+        leader.onSuccess(true);
+        assertEquals(1, first.values.size());
+        assertEquals(Boolean.TRUE, later.values.get(0));
+    }
+
+    @Test
+    public void callerCanStartANewCallFromItsCallback() {
+        SingleFlight flights = new SingleFlight();
+        Outcome retried = new Outcome();
+        List<AnomalyPredictionClient.PredictionCallback> retries = new ArrayList<>();
+
+        AnomalyPredictionClient.PredictionCallback leader = flights.join(3,
+                new AnomalyPredictionClient.PredictionCallback() {
+                    @Override
+                    public void onSuccess(boolean isAnomaly) {
+                    }
+
+                    @Override
+                    public void onError(String errorMessage) {
+                        retries.add(flights.join(3, retried));
+                    }
+                });
+        leader.onError("server error");
+
+        assertNotNull(retries.get(0));
+        assertEquals(1, flights.size());
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.saferun.ml;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TreeEnsembleModelTest {
+
+    private static TreeEnsembleModel fixture() throws IOException {
+        try (Reader reader = new InputStreamReader(
+                TreeEnsembleModelTest.class.getResourceAsStream("/anomaly_model_fixture.txt"),
+                StandardCharsets.UTF_8)) {
+            return TreeEnsembleModel.load(reader);
+        }
+    }
+
+    private static boolean predict(TreeEnsembleModel model, float[] temperature, float[] speed, int[] heartRate) {
+        float[] features = new float[AnomalyFeatures.COUNT];
+        AnomalyFeatures.extract(temperature, speed, heartRate, 0, heartRate.length, features);
+        return model.predict(features);
+    }
+
+    @Test
+    public void loadsFixture() throws IOException {
+        TreeEnsembleModel model = fixture();
+
+        assertEquals(AnomalyFeatures.COUNT, model.getFeatureCount());
+        assertEquals(2, model.getTreeCount());
+        assertEquals(0.5, model.getThreshold(), 0);
+    }
+
+    @Test
+    public void scoresWindows() throws IOException {
+        TreeEnsembleModel model = fixture();
+
+        assertFalse(predict(model, new float[]{36.8f, 37.0f}, new float[]{9, 10}, new int[]{130, 140}));
+        // Heart rate ends above 180
+        assertTrue(predict(model, new float[]{36.8f, 37.0f}, new float[]{9, 10}, new int[]{150, 185}));
+        // Heart rate ends below 40
+        assertTrue(predict(model, new float[]{37.0f}, new float[]{0}, new int[]{35}));
+        // Temperature peaked earlier in the window
+        assertTrue(predict(model, new float[]{39.6f, 38.0f}, new float[]{9, 10}, new int[]{130, 140}));
+
+        float[] features = new float[AnomalyFeatures.COUNT];
+        AnomalyFeatures.extract(new float[]{37.0f}, new float[]{10}, new int[]{120}, 0, 1, features);
+        assertEquals(1.0 / (1.0 + Math.exp(3.0)), model.score(features), 1e-9);
+
+        // Only windows ending at 180 to 199 bpm are anomalies
+        int window = 30;
+        float[] temperature = new float[window];
+        float[] speed = new float[window];
+        int[] heartRate = new int[window];
+        for (int i = 0; i < window; i++) {
+            temperature[i] = 37 + i * 0.01f;
+            speed[i] = 10 + i % 3;
+            heartRate[i] = 140 + i;
+        }
+        int anomalies = 0;
+        for (int i = 0; i < 50; i++) {
+            heartRate[window - 1] = 150 + i;
+            AnomalyFeatures.extract(temperature, speed, heartRate, 0, window, features);
+            anomalies += model.predict(features) ? 1 : 0;
+        }
+        assertEquals(20, anomalies);
+    }
+
+    @Test
+    public void routesMissingFeatures() throws IOException {
+        TreeEnsembleModel model = fixture();
+        float[] features = new float[AnomalyFeatures.COUNT];
+        Arrays.fill(features, Float.NaN);
+
+        // Missing heart rate goes to node 1, then node 4; missing temperature to node 1
+        assertEquals(1.0 / (1.0 + Math.exp(3.0)), model.score(features), 1e-9);
+    }
+
+    @Test
+    public void extractsWindowStatistics() {
+        float[] features = new float[AnomalyFeatures.COUNT];
+        AnomalyFeatures.extract(new float[]{0, 36.0f, 37.0f, 38.0f}, new float[]{0, 8, 8, 8},
+                new int[]{0, 100, 130, 130}, 1, 3, features);
+
+        int temperature = AnomalyFeatures.VITAL_TEMPERATURE;
+        assertEquals(38.0f, features[AnomalyFeatures.index(temperature, AnomalyFeatures.STAT_LAST)], 1e-5f);
+        assertEquals(37.0f, features[AnomalyFeatures.index(temperature, AnomalyFeatures.STAT_MEAN)], 1e-5f);
+        assertEquals((float) Math.sqrt(2.0 / 3.0),
+                features[AnomalyFeatures.index(temperature, AnomalyFeatures.STAT_STD)], 1e-5f);
+        assertEquals(36.0f, features[AnomalyFeatures.index(temperature, AnomalyFeatures.STAT_MIN)], 1e-5f);
+        assertEquals(1.0f, features[AnomalyFeatures.index(temperature, AnomalyFeatures.STAT_SLOPE)], 1e-5f);
+
+        assertEquals(0f, features[AnomalyFeatures.index(AnomalyFeatures.VITAL_SPEED, AnomalyFeatures.STAT_SLOPE)], 0f);
+        int heartRate = AnomalyFeatures.VITAL_HEART_RATE;
+        assertEquals(130f, features[AnomalyFeatures.index(heartRate, AnomalyFeatures.STAT_MAX)], 0f);
+        assertEquals(15f, features[AnomalyFeatures.index(heartRate, AnomalyFeatures.STAT_SLOPE)], 1e-5f);
+    }
+
+    @Test
+    public void rejectsMalformedModels() {
+        String[] models = {
+                "",
+                "format other 1\nfeatures 18\nbase_score 0\nthreshold 0.5\ntree 1\n0 leaf 1",
+                "format saferun-trees 1\nfeatures 18\nbase_score 0\nthreshold 0.5",
+                "format saferun-trees 1\nfeatures 18\nbase_score 0\nthreshold 0.5\ntree 2\n0 leaf 1",
+                "format saferun-trees 1\nfeatures 18\nbase_score 0\nthreshold 0.5\ntree 1\n0 split 30 1 1 1 1",
+                // A child pointing back at its parent would loop forever
+                "format saferun-trees 1\nfeatures 18\nbase_score 0\nthreshold 0.5\ntree 2\n0 split 0 1 0 1 1\n1 leaf 0",
+                "format saferun-trees 1\nfeatures 18\nbase_score zero\nthreshold 0.5\ntree 1\n0 leaf 1",
+        };
+        for (String model : models) {
+            try {
+                TreeEnsembleModel.load(new StringReader(model));
+                fail("Accepted malformed model: " + model);
+            } catch (IOException expected) {
+                // Malformed
+            }
+        }
+    }
+}
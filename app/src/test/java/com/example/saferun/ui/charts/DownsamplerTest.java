@@ -0,0 +1,121 @@
+package com.example.saferun.ui.charts;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DownsamplerTest {
+
+    private static final long START = 1700000000000L;
+
+    @Test
+    public void keepsEveryPointWhenBelowThreshold() {
+        long[] x = timestamps(50);
+        float[] y = new float[50];
+        int[] out = new int[50];
+
+        assertEquals(50, Downsampler.lttb(x, y, 50, 100, out));
+        assertEquals(50, Downsampler.minMax(y, 50, 25, out));
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, out[i]);
+        }
+    }
+
+    @Test
+    public void lttbKeepsEndpointsAndThreshold() {
+        int count = 10_000;
+        long[] x = timestamps(count);
+        float[] y = new float[count];
+        for (int i = 0; i < count; i++) {
+            y[i] = (float) (140 + 20 * Math.sin(i / 300.0));
+        }
+        int[] out = new int[count];
+
+        int kept = Downsampler.lttb(x, y, count, 400, out);
+
+        assertEquals(400, kept);
+        assertEquals(0, out[0]);
+        assertEquals(count - 1, out[kept - 1]);
+        assertAscending(out, kept);
+    }
+
+    @Test
+    public void lttbKeepsIsolatedSpike() {
+        int count = 5_000;
+        long[] x = timestamps(count);
+        float[] y = new float[count];
+        for (int i = 0; i < count; i++) {
+            y[i] = 120;
+        }
+        y[2_345] = 195;
+        int[] out = new int[count];
+
+        int kept = Downsampler.lttb(x, y, count, 200, out);
+
+        assertTrue(contains(out, kept, 2_345));
+    }
+
+    @Test
+    public void minMaxKeepsPeaksAndDips() {
+        int count = 20_000;
+        long[] x = timestamps(count);
+        float[] y = new float[count];
+        for (int i = 0; i < count; i++) {
+            y[i] = 130 + (i % 5);
+        }
+        y[7_777] = 210;
+        y[12_001] = 35;
+        int[] out = new int[count];
+
+        int kept = Downsampler.minMax(y, count, 150, out);
+
+        assertTrue(kept <= 300);
+        assertAscending(out, kept);
+        assertTrue(contains(out, kept, 7_777));
+        assertTrue(contains(out, kept, 12_001));
+    }
+
+    @Test
+    public void downsamplesLongSessionToChartWidth() {
+        int count = 100_000;
+        long[] x = timestamps(count);
+        float[] y = new float[count];
+        for (int i = 0; i < count; i++) {
+            y[i] = (float) (140 + 25 * Math.sin(i / 500.0) + (i % 17));
+        }
+        int[] out = new int[count];
+
+        int kept = Downsampler.lttb(x, y, count, 1080, out);
+        assertEquals(1080, kept);
+        assertAscending(out, kept);
+        assertEquals(0, out[0]);
+        assertEquals(count - 1, out[kept - 1]);
+
+        kept = Downsampler.minMax(y, count, 540, out);
+        assertTrue(kept <= 1080);
+        assertAscending(out, kept);
+    }
+
+    private static long[] timestamps(int count) {
+        long[] x = new long[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = START + i * 1000L;
+        }
+        return x;
+    }
+
+    private static void assertAscending(int[] indices, int count) {
+        for (int i = 1; i < count; i++) {
+            assertTrue("Indices out of order at " + i, indices[i] > indices[i - 1]);
+        }
+    }
+
+    private static boolean contains(int[] indices, int count, int index) {
+        for (int i = 0; i < count; i++) {
+            if (indices[i] == index) {
+                return true;
+            }
+        }
+        return false;
+    }
+}